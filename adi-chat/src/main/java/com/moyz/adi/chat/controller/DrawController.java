@@ -1,23 +1,23 @@
 package com.moyz.adi.chat.controller;
 
 import com.moyz.adi.common.dto.*;
+import com.moyz.adi.common.entity.AdiFile;
 import com.moyz.adi.common.exception.BaseException;
+import com.moyz.adi.common.file.LocalFileSender;
 import com.moyz.adi.common.service.DrawService;
 import com.moyz.adi.common.service.FileService;
 import com.moyz.adi.common.util.UrlUtil;
 import io.swagger.v3.oas.annotations.Operation;
 import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.constraints.NotBlank;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.hibernate.validator.constraints.Length;
-import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.IOException;
 import java.util.Map;
 
 import static com.moyz.adi.common.enums.ErrorEnum.*;
@@ -240,24 +240,17 @@ public class DrawController {
      *
      * @param drawUuid 绘图任务 UUID
      * @param imageUuidWithExt 图片 UUID（含扩展名）
+     * @param request 请求对象
      * @param response 响应对象
      */
     @Operation(summary = "公开的图片,可能带水印（根据水印设置决定）")
-    @GetMapping(value = "/public/image/{drawUuid}/{imageUuidWithExt}", produces = MediaType.IMAGE_PNG_VALUE)
-    public void publicImage(@Length(min = 32) @PathVariable String drawUuid, @Length(min = 32, max = 32) @PathVariable String imageUuidWithExt, HttpServletResponse response) {
+    @GetMapping(value = "/public/image/{drawUuid}/{imageUuidWithExt}")
+    public void publicImage(@Length(min = 32) @PathVariable String drawUuid, @Length(min = 32, max = 32) @PathVariable String imageUuidWithExt, HttpServletRequest request, HttpServletResponse response) {
         DrawDto drawDto = drawService.getPublicOrMine(drawUuid);
         if (null == drawDto) {
             throw new BaseException(A_AI_IMAGE_NO_AUTH);
         }
-        String imageUuid = UrlUtil.getUuid(imageUuidWithExt);
-        BufferedImage bufferedImage = fileService.readImage(imageUuid, false);
-        // 把图片写回浏览器响应流，保持直接输出二进制内容
-        try {
-            ImageIO.write(bufferedImage, "png", response.getOutputStream());
-        } catch (IOException e) {
-            log.error("publicImage error", e);
-            throw new BaseException(B_IMAGE_LOAD_ERROR);
-        }
+        responseImage(UrlUtil.getUuid(imageUuidWithExt), false, request, response);
     }
 
     /**
@@ -265,22 +258,30 @@ public class DrawController {
      *
      * @param drawUuid 绘图任务 UUID
      * @param imageUuidWithExt 图片 UUID（含扩展名）
+     * @param request 请求对象
      * @param response 响应对象
      */
     @Operation(summary = "公开的缩略图,可能带水印（根据水印设置决定）")
-    @GetMapping(value = "/public/thumbnail/{drawUuid}/{imageUuidWithExt}", produces = MediaType.IMAGE_PNG_VALUE)
-    public void publicThumbnail(@Length(min = 32) @PathVariable String drawUuid, @Length(min = 32) @PathVariable String imageUuidWithExt, HttpServletResponse response) {
+    @GetMapping(value = "/public/thumbnail/{drawUuid}/{imageUuidWithExt}")
+    public void publicThumbnail(@Length(min = 32) @PathVariable String drawUuid, @Length(min = 32) @PathVariable String imageUuidWithExt, HttpServletRequest request, HttpServletResponse response) {
         DrawDto drawDto = drawService.getPublicOrMine(drawUuid);
         if (null == drawDto) {
             throw new BaseException(A_AI_IMAGE_NO_AUTH);
         }
-        String imageUuid = UrlUtil.getUuid(imageUuidWithExt);
-        BufferedImage bufferedImage = fileService.readImage(imageUuid, true);
-        try {
-            ImageIO.write(bufferedImage, "png", response.getOutputStream());
-        } catch (IOException e) {
-            log.error("publicThumbnail error", e);
-            throw new BaseException(B_IMAGE_LOAD_ERROR);
-        }
+        responseImage(UrlUtil.getUuid(imageUuidWithExt), true, request, response);
+    }
+
+    /**
+     * 按原样输出图片或缩略图的文件字节，支持 Range 与 ETag。
+     *
+     * @param imageUuid 图片 UUID
+     * @param thumbnail 是否输出缩略图
+     * @param request 请求对象
+     * @param response 响应对象
+     */
+    private void responseImage(String imageUuid, boolean thumbnail, HttpServletRequest request, HttpServletResponse response) {
+        AdiFile adiFile = fileService.getFile(imageUuid);
+        String etag = StringUtils.isBlank(adiFile.getSha256()) ? null : adiFile.getSha256() + (thumbnail ? "-thumbnail" : "");
+        LocalFileSender.send(request, response, fileService.getLocalImageFile(adiFile, thumbnail), etag, null);
     }
 }
@@ -3,31 +3,27 @@ package com.moyz.adi.chat.controller;
 import com.moyz.adi.common.entity.AdiFile;
 import com.moyz.adi.common.exception.BaseException;
 import com.moyz.adi.common.file.FileOperatorContext;
-import com.moyz.adi.common.file.LocalFileUtil;
+import com.moyz.adi.common.file.LocalFileSender;
 import com.moyz.adi.common.service.FileService;
 import com.moyz.adi.common.util.UrlUtil;
 import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.validator.constraints.Length;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.*;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 
 import static com.moyz.adi.common.cosntant.AdiConstant.IMAGE_EXTENSIONS;
 import static com.moyz.adi.common.enums.ErrorEnum.A_FILE_NOT_EXIST;
-import static com.moyz.adi.common.enums.ErrorEnum.B_IMAGE_LOAD_ERROR;
-import static org.springframework.http.HttpHeaders.CACHE_CONTROL;
+
 /**
  * 文件与图片资源访问接口控制器。
  */
@@ -36,11 +32,6 @@ import static org.springframework.http.HttpHeaders.CACHE_CONTROL;
 @Validated
 public class FileController {
 
-    /**
-     * 浏览器缓存时间设置，一年有效。
-     */
-    private static final String CACHE_TIME = "public, max-age=31536000";
-
     /**
      * 文件服务，负责文件存储与读取。
      */
@@ -61,16 +52,17 @@ public class FileController {
      * 获取当前用户图片的缩略图。
      *
      * @param uuidWithExt 图片 UUID（含扩展名）
+     * @param request 请求对象
      * @param response 响应对象
      */
-    @GetMapping(value = "/my-thumbnail/{uuidWithExt}", produces = MediaType.IMAGE_PNG_VALUE)
-    public void thumbnail(@Length(min = 32) @PathVariable String uuidWithExt, HttpServletResponse response) {
+    @GetMapping(value = "/my-thumbnail/{uuidWithExt}")
+    public void thumbnail(@Length(min = 32) @PathVariable String uuidWithExt, HttpServletRequest request, HttpServletResponse response) {
         String uuid = UrlUtil.getUuid(uuidWithExt);
         AdiFile adiFile = fileService.getByUuid(uuid);
         if (null == adiFile) {
             throw new BaseException(A_FILE_NOT_EXIST);
         }
-        responseImage(uuid, adiFile.getExt(), true, response);
+        responseImage(uuid, true, request, response);
     }
 
 //    /**
@@ -89,55 +81,43 @@ public class FileController {
 //    }
 
     /**
-     * 下载文件或直接输出图片资源。
+     * 下载文件或直接输出图片资源，按原样输出文件字节，支持 Range 与 ETag。
      *
      * @param uuidWithExt 文件 UUID（含扩展名）
+     * @param request 请求对象
      * @param response 响应对象
-     * @return 资源响应
      */
     @GetMapping(value = "/file/{uuidWithExt}")
-    public ResponseEntity<org.springframework.core.io.Resource> file(@Length(min = 32) @PathVariable String uuidWithExt, HttpServletResponse response) {
+    public void file(@Length(min = 32) @PathVariable String uuidWithExt, HttpServletRequest request, HttpServletResponse response) {
         String uuid = UrlUtil.getUuid(uuidWithExt);
         AdiFile adiFile = fileService.getByUuid(uuid);
         if (null == adiFile) {
             throw new BaseException(A_FILE_NOT_EXIST);
         }
         if (IMAGE_EXTENSIONS.contains(adiFile.getExt().toLowerCase())) {
-            responseImage(uuid, adiFile.getExt(), false, response);
-            return null;
+            responseImage(uuid, false, request, response);
+            return;
         }
-        response.setHeader(CACHE_CONTROL, CACHE_TIME);
-        byte[] bytes = LocalFileUtil.readBytes(adiFile.getPath());
-        InputStreamResource inputStreamResource = new InputStreamResource(new ByteArrayInputStream(bytes));
-
         String fileName = adiFile.getName();
         if (StringUtils.isBlank(fileName)) {
             fileName = adiFile.getUuid() + "." + adiFile.getExt();
         }
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentDisposition(ContentDisposition.attachment().filename(fileName).build());
-        return new ResponseEntity<>(inputStreamResource, headers, HttpStatus.OK);
+        LocalFileSender.send(request, response, new File(adiFile.getPath()), adiFile.getSha256(), fileName);
     }
 
     /**
-     * 输出图片流并设置缓存头。
+     * 输出图片或缩略图，按原样输出已存储的文件字节，不再解码后重新编码。
      *
      * @param uuid 图片 UUID
-     * @param ext 图片扩展名
      * @param thumbnail 是否输出缩略图
+     * @param request 请求对象
      * @param response 响应对象
      */
-    private void responseImage(String uuid, String ext, boolean thumbnail, HttpServletResponse response) {
-        BufferedImage bufferedImage = fileService.readMyImage(uuid, thumbnail);
-        // 把图片写回浏览器响应流，避免再次封装
-        try {
-            // 缓存30天
-            response.setHeader(CACHE_CONTROL, CACHE_TIME);
-            ImageIO.write(bufferedImage, ext, response.getOutputStream());
-        } catch (IOException e) {
-            log.error("image error", e);
-            throw new BaseException(B_IMAGE_LOAD_ERROR);
-        }
+    private void responseImage(String uuid, boolean thumbnail, HttpServletRequest request, HttpServletResponse response) {
+        AdiFile adiFile = fileService.getMyFileOrThrow(uuid);
+        File file = fileService.getLocalImageFile(adiFile, thumbnail);
+        String etag = StringUtils.isBlank(adiFile.getSha256()) ? null : adiFile.getSha256() + (thumbnail ? "-thumbnail" : "");
+        LocalFileSender.send(request, response, file, etag, null);
     }
 
     /**
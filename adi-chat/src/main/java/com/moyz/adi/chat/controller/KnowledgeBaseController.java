@@ -3,6 +3,7 @@ package com.moyz.adi.chat.controller;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.moyz.adi.common.base.ThreadContext;
 import com.moyz.adi.common.dto.KbEditReq;
+import com.moyz.adi.common.dto.KbIndexingProgressResp;
 import com.moyz.adi.common.dto.KbInfoResp;
 import com.moyz.adi.common.dto.KbItemIndexBatchReq;
 import com.moyz.adi.common.dto.KbSearchReq;
@@ -169,6 +170,17 @@ public class KnowledgeBaseController {
         return knowledgeBaseService.checkIndexIsFinish();
     }
 
+    /**
+     * 查询知识库向量化进度。
+     *
+     * @param uuid 知识库uuid
+     * @return 进度
+     */
+    @GetMapping("/indexing/progress/{uuid}")
+    public KbIndexingProgressResp indexingProgress(@PathVariable String uuid) {
+        return knowledgeBaseService.getIndexingProgress(uuid);
+    }
+
     /**
      * 切换知识库点赞状态。
      *
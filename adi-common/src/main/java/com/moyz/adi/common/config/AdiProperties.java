@@ -1,9 +1,16 @@
 package com.moyz.adi.common.config;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * 应用自定义配置属性。
  */
@@ -57,6 +64,86 @@ public class AdiProperties {
      */
     private Encrypt encrypt;
 
+    /**
+     * 知识图谱抽取配置。
+     */
+    private GraphExtract graphExtract = new GraphExtract();
+
+    /**
+     * 短期记忆存储配置。
+     */
+    private ChatMemory chatMemory = new ChatMemory();
+
+    /**
+     * 查询向量缓存配置。
+     */
+    private EmbeddingCache embeddingCache = new EmbeddingCache();
+
+    /**
+     * 知识库语义答案缓存配置。
+     */
+    private AnswerCache answerCache = new AnswerCache();
+
+    /**
+     * 知识库向量化入库流水线配置。
+     */
+    private EmbeddingIngest embeddingIngest = new EmbeddingIngest();
+
+    /**
+     * pgvector 向量索引与检索计划配置。
+     */
+    private PgVectorIndex pgvectorIndex = new PgVectorIndex();
+
+    /**
+     * pgvector 知识库向量表分区配置。
+     */
+    private PgVectorPartition pgvectorPartition = new PgVectorPartition();
+
+    /**
+     * AI 搜索配置。
+     */
+    private AiSearch aiSearch = new AiSearch();
+
+    /**
+     * 长期记忆配置。
+     */
+    private LongTermMemory longTermMemory = new LongTermMemory();
+
+    /**
+     * 用户消耗统计配置。
+     */
+    private UserCost userCost = new UserCost();
+
+    /**
+     * 请求限流配置。
+     */
+    private RateLimit rateLimit = new RateLimit();
+
+    /**
+     * 登录 token 本地缓存配置。
+     */
+    private TokenCache tokenCache = new TokenCache();
+
+    /**
+     * SSE 流式输出配置。
+     */
+    private SseStream sseStream = new SseStream();
+
+    /**
+     * 主执行器与下游并发限制配置。
+     */
+    private Executor executor = new Executor();
+
+    /**
+     * RAG 检索配置。
+     */
+    private Retrieval retrieval = new Retrieval();
+
+    /**
+     * 图谱检索的实体词典配置。
+     */
+    private GraphEntity graphEntity = new GraphEntity();
+
     /**
      * 代理配置项。
      */
@@ -124,4 +211,503 @@ public class AdiProperties {
          */
         private String aesKey;
     }
+
+    /**
+     * 知识图谱抽取配置项。
+     */
+    @Data
+    public static class GraphExtract {
+        /**
+         * 抽取线程池大小。
+         */
+        private int poolSize = 16;
+        /**
+         * 抽取线程池的队列容量，队列已满时拒绝提交，对应的图谱入库失败。
+         */
+        private int queueCapacity = 256;
+        /**
+         * 单个模型同时进行的抽取请求数上限（所有知识库共享）。
+         */
+        private int modelConcurrency = 4;
+        /**
+         * 单个知识库同时进行的抽取请求数上限。
+         */
+        private int kbConcurrency = 2;
+        /**
+         * 瞬时失败（限流、超时、服务端错误）时的最大重试次数。
+         */
+        private int maxRetries = 3;
+        /**
+         * 首次重试的退避时间（毫秒），之后按 2 的幂次递增。
+         */
+        private long retryBackoffMillis = 1000;
+    }
+
+    /**
+     * 短期记忆存储配置项。
+     */
+    @Data
+    public static class ChatMemory {
+        /**
+         * 存储实现：mapdb（单文件，每次写入同步提交）、sharded（分片、增量追加、定时批量提交）、redis（多节点共享）。
+         */
+        private String store = "mapdb";
+        /**
+         * sharded 模式下的分片数，每个分片对应一个独立的 MapDB 文件。
+         */
+        private int shards = 8;
+        /**
+         * sharded 模式下批量提交的间隔（毫秒），即进程崩溃时最多丢失的写入时间窗口。
+         */
+        private long flushIntervalMillis = 1000;
+        /**
+         * sharded、redis 模式下内存中缓存的活跃会话数上限（sharded 为所有分片合计）。
+         */
+        private int cacheSize = 2000;
+        /**
+         * redis 模式下本地缓存的过期时间（秒），兜底丢失的失效通知。
+         */
+        private long nearCacheTtlSeconds = 300;
+        /**
+         * redis 模式下单个会话最多保留的消息数，超出时丢弃最早的消息。
+         */
+        private int redisMaxMessages = 200;
+        /**
+         * redis 模式下会话的过期时间（天），每次写入后顺延。
+         */
+        private int redisTtlDays = 30;
+    }
+
+    /**
+     * 查询向量缓存配置项。
+     */
+    @Data
+    public static class EmbeddingCache {
+        /**
+         * 是否启用。
+         */
+        private boolean enable = true;
+        /**
+         * 最多缓存的向量数。
+         */
+        private long maxSize = 5000;
+        /**
+         * 缓存过期时间（分钟）。
+         */
+        private long ttlMinutes = 60;
+        /**
+         * 超过该长度的文本不缓存。
+         */
+        private int maxTextLength = 2000;
+    }
+
+    /**
+     * 知识库语义答案缓存配置项，是否启用及命中阈值在知识库上单独设置。
+     */
+    @Data
+    public static class AnswerCache {
+        /**
+         * 本地近缓存最多缓存答案的知识库数。
+         */
+        private long maxKbs = 200;
+        /**
+         * 单个知识库最多缓存的答案数，Redis 与本地近缓存均按此裁剪。
+         */
+        private int maxEntriesPerKb = 500;
+        /**
+         * 答案有效期（分钟）。
+         */
+        private long ttlMinutes = 1440;
+    }
+
+    /**
+     * 知识库向量化入库流水线配置项，流水线分为切分、向量化、写入三个阶段，各阶段之间以有界队列衔接。
+     */
+    @Data
+    public static class EmbeddingIngest {
+        /**
+         * 切分阶段的线程数。
+         */
+        private int splitWorkers = 2;
+        /**
+         * 向量化阶段的线程数，即同时进行的向量模型请求数上限。
+         */
+        private int embedWorkers = 2;
+        /**
+         * 写入阶段的线程数。
+         */
+        private int storeWorkers = 1;
+        /**
+         * 单次向量模型请求包含的文本段数上限，可跨多个知识点。
+         */
+        private int embedBatchSize = 32;
+        /**
+         * 单次写入向量库的文本段数上限。
+         */
+        private int storeBatchSize = 256;
+        /**
+         * 等待切分的知识点数上限，超出时提交方阻塞。
+         */
+        private int maxPendingItems = 100;
+        /**
+         * 等待向量化、等待写入的文本段数上限（每个队列），超出时上一阶段阻塞。
+         */
+        private int segmentQueueCapacity = 2048;
+        /**
+         * 凑满一批前最多等待的时间（毫秒）。
+         */
+        private long batchWaitMillis = 200;
+    }
+
+    /**
+     * pgvector 向量索引与检索计划配置项。
+     */
+    @Data
+    public static class PgVectorIndex {
+        /**
+         * 向量索引类型：hnsw、ivfflat、none（不建向量索引）。
+         */
+        private String type = "hnsw";
+        /**
+         * HNSW 索引每个节点的最大连接数。
+         */
+        private int hnswM = 16;
+        /**
+         * HNSW 索引构建时的候选列表大小。
+         */
+        private int hnswEfConstruction = 64;
+        /**
+         * IVFFlat 索引的聚类数，建议约为行数的平方根（行数超过 100 万时为行数/1000），应在已有数据后建索引。
+         */
+        private int ivfflatLists = 1000;
+        /**
+         * 近似检索的基础搜索宽度：HNSW 为 hnsw.ef_search，IVFFlat 为 ivfflat.probes。
+         */
+        private int searchBreadth = 40;
+        /**
+         * 过滤条件命中比例较低时按比例放大搜索宽度，此为放大后的上限。
+         */
+        private int maxSearchBreadth = 1000;
+        /**
+         * 过滤条件预估命中行数不超过该值时，先按过滤条件取出候选行再精确计算距离，不使用向量索引。
+         * pgvector 低于 0.8（不支持迭代扫描）时，命中比例低到放大后的搜索宽度超过上限也走精确检索。
+         */
+        private long exactSearchMaxRows = 20000;
+        /**
+         * 过滤条件命中行数预估值的缓存时间（秒）。
+         */
+        private long estimateCacheSeconds = 60;
+    }
+
+    /**
+     * pgvector 知识库向量表分区配置项。
+     */
+    @Data
+    public static class PgVectorPartition {
+        /**
+         * 知识库向量表是否按 kb_uuid 列表分区（每个知识库一个分区）。
+         * 开启后若已存在未分区的旧表，启动时在一个事务内迁移为分区表。
+         */
+        private boolean enable = false;
+    }
+
+    /**
+     * AI 搜索配置项。
+     */
+    @Data
+    public static class AiSearch {
+        /**
+         * 回答完成后是否把网页向量异步写入 adi_ai_search_embedding。
+         * 检索本身只使用请求内的内存向量库，不依赖该表。
+         */
+        private boolean persistEmbeddings = false;
+        /**
+         * 抓取正文的搜索结果数（按排名取前 N 条），其余结果使用摘要。
+         */
+        private int fetchPages = 3;
+        /**
+         * 抓取到该数量的网页（成功或失败均计入）即开始生成回答。
+         */
+        private int fetchQuorum = 2;
+        /**
+         * 开始生成回答前最多等待抓取的时间（毫秒）。
+         */
+        private long fetchBudgetMillis = 3000;
+        /**
+         * 单个网页的抓取期限（毫秒），超时后放弃，迟到的正文只用于引用展示。
+         */
+        private long pageTimeoutMillis = 8000;
+        /**
+         * 连接超时（毫秒）。
+         */
+        private long connectTimeoutMillis = 2000;
+        /**
+         * 同一主机同时抓取的网页数上限，超出时该网页直接使用摘要。
+         */
+        private int maxConnectionsPerHost = 2;
+        /**
+         * 单个网页最多读取的字节数。
+         */
+        private int maxPageBytes = 2 * 1024 * 1024;
+        /**
+         * 单个网页正文最多保留的字符数。
+         */
+        private int maxPageChars = 20000;
+    }
+
+    /**
+     * 长期记忆配置项。
+     */
+    @Data
+    public static class LongTermMemory {
+        /**
+         * 整理线程池大小，即所有会话同时整理的数量上限。
+         */
+        private int poolSize = 4;
+        /**
+         * 对话轮次的合并等待时间（毫秒），期间同一会话的后续轮次合并为一次整理。
+         */
+        private long coalesceMillis = 2000;
+        /**
+         * 单个会话最多缓冲的对话轮次，超出时丢弃最早的轮次。
+         */
+        private int maxBufferedTurns = 10;
+        /**
+         * 每个事实检索的旧记忆数。
+         */
+        private int searchMaxResults = 5;
+        /**
+         * 检索旧记忆的最低相似度。
+         */
+        private double searchMinScore = 0.7;
+    }
+
+    /**
+     * 用户消耗统计配置项。
+     */
+    @Data
+    public static class UserCost {
+        /**
+         * Redis 计数落库到 adi_user_day_cost 的间隔（毫秒），即数据库统计相对实时计数的最大延迟。
+         */
+        private long flushIntervalMillis = 5000;
+        /**
+         * 每次落库的最大行数。
+         */
+        private int flushBatchSize = 500;
+        /**
+         * 当月计数在 Redis 中的保留天数。
+         */
+        private int ttlDays = 40;
+    }
+
+    /**
+     * 请求限流配置项，用户级限制取自系统配置，此处为模型级与全站限制，0 表示不限制。
+     */
+    @Data
+    public static class RateLimit {
+        /**
+         * 单个模型每分钟的文本请求数上限。
+         */
+        private int modelTextPerMinute = 0;
+        /**
+         * 全站每分钟的文本请求数上限。
+         */
+        private int globalTextPerMinute = 0;
+        /**
+         * 单个模型每分钟的绘图请求数上限。
+         */
+        private int modelImagePerMinute = 0;
+        /**
+         * 全站每分钟的绘图请求数上限。
+         */
+        private int globalImagePerMinute = 0;
+    }
+
+    /**
+     * 登录 token 本地缓存配置项。
+     */
+    @Data
+    public static class TokenCache {
+        /**
+         * 是否启用本地缓存，关闭时每个请求都从 Redis 读取登录用户。
+         */
+        private boolean enable = true;
+        /**
+         * 本地缓存的 token 数上限。
+         */
+        private long maxSize = 10000;
+        /**
+         * 缓存条目存活时间（秒），也是失效通知丢失时其他节点最长的不一致时间。
+         */
+        private long ttlSeconds = 30;
+    }
+
+    /**
+     * SSE 流式输出配置项。
+     */
+    @Data
+    public static class SseStream {
+        /**
+         * 合并分片的时间窗口（毫秒），窗口内的分片合并后一次写出；0 表示每个分片立即写出。
+         */
+        private long flushIntervalMillis = 30;
+        /**
+         * 缓冲的字符数达到该值时立即写出，不再等待时间窗口。
+         */
+        private int maxBufferChars = 2048;
+        /**
+         * 定时写出线程数。
+         */
+        private int flushThreads = 2;
+        /**
+         * 按接口路径前缀覆盖的配置，最长前缀优先。
+         */
+        private List<SseStreamEndpoint> endpoints = new ArrayList<>();
+    }
+
+    /**
+     * 单个接口的 SSE 流式输出配置项。
+     */
+    @Data
+    public static class SseStreamEndpoint {
+        /**
+         * 接口路径前缀，如 /workflow/run/。
+         */
+        private String pathPrefix;
+        /**
+         * 合并分片的时间窗口（毫秒），0 表示每个分片立即写出。
+         */
+        private long flushIntervalMillis;
+        /**
+         * 缓冲的字符数达到该值时立即写出。
+         */
+        private int maxBufferChars = 2048;
+    }
+
+    /**
+     * 主执行器与下游并发限制配置项。
+     */
+    @Data
+    public static class Executor {
+        /**
+         * 主执行器模式：pool 为平台线程池；virtual 为每个任务一个虚拟线程（需 JDK 21+，低版本回退为 pool）。
+         */
+        private String mode = "pool";
+        /**
+         * 虚拟线程模式下同时执行的任务数上限，0 表示不限制。
+         */
+        private int virtualConcurrencyLimit = 0;
+        /**
+         * 每个模型平台同时进行的大模型调用数上限，0 表示不限制。
+         */
+        private int llmPermits = 0;
+        /**
+         * 按模型平台覆盖的大模型调用数上限（平台名 -> 上限）。
+         */
+        private Map<String, Integer> llmPlatformPermits = new HashMap<>();
+        /**
+         * 同时进行的图数据库检索数上限，0 表示不限制。
+         */
+        private int graphPermits = 0;
+        /**
+         * 等待下游许可的最长时间（毫秒），超时返回服务繁忙。
+         */
+        private long acquireTimeoutMillis = 60000;
+        /**
+         * 交互线程池（主执行器，承载对话、知识库问答、搜索、工作流）。
+         */
+        private Pool chat = new Pool(100, 500);
+        /**
+         * 交互请求内的并发检索线程池。
+         */
+        private Pool retrieval = new Pool(32, 1000);
+        /**
+         * 知识库索引等后台线程池。
+         */
+        private Pool index = new Pool(2, 20);
+        /**
+         * 图片生成线程池，线程数为 0 时取 CPU 核数。
+         */
+        private Pool images = new Pool(0, 100);
+        /**
+         * 长期记忆整理线程池的队列长度，线程数见 long-term-memory.pool-size。
+         */
+        private int memoryQueueCapacity = 1000;
+        /**
+         * 交互任务排队耗时目标（毫秒），超过时后台任务推迟开始。
+         */
+        private long interactiveWaitSloMillis = 200;
+        /**
+         * 交互任务排队超过目标后，视为交互时延有风险的持续时间（毫秒）。
+         */
+        private long riskCooldownMillis = 5000;
+        /**
+         * 后台任务最长推迟时间（毫秒），超过后无论交互负载如何都提交到线程池。
+         */
+        private long backgroundMaxDeferMillis = 30000;
+    }
+
+    /**
+     * 线程池配置项。
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Pool {
+        /**
+         * 线程数（核心线程数与最大线程数相同，空闲线程会回收）。
+         */
+        private int poolSize;
+        /**
+         * 队列长度，队列满时拒绝新任务。
+         */
+        private int queueCapacity;
+    }
+
+    /**
+     * RAG 检索配置项。
+     */
+    @Data
+    public static class Retrieval {
+        /**
+         * 组合检索（向量、图谱）的总期限（毫秒），到期后只使用已返回的检索结果，小于等于 0 表示不限制。
+         */
+        private long deadlineMillis = 5000;
+    }
+
+    /**
+     * 图谱检索的实体词典配置项。
+     */
+    @Data
+    public static class GraphEntity {
+        /**
+         * 是否使用本地实体词典从问题中匹配实体。
+         */
+        private boolean dictionaryEnable = true;
+        /**
+         * 词典未匹配到实体时，是否回退为调用大模型抽取实体。
+         */
+        private boolean llmFallback = true;
+        /**
+         * 本地缓存的知识库词典数量上限。
+         */
+        private int maxKbs = 200;
+        /**
+         * 单个知识库词典的最大实体数，超出时不再加载。
+         */
+        private int maxNames = 200000;
+        /**
+         * 词典的有效期（分钟），到期后从图谱重新加载，用于同步其他节点写入的实体。
+         */
+        private int ttlMinutes = 60;
+        /**
+         * 参与匹配的实体名称最小长度，过短的名称容易误匹配。
+         */
+        private int minNameLength = 2;
+        /**
+         * 单个问题最多匹配的实体数。
+         */
+        private int maxEntities = 20;
+    }
 }
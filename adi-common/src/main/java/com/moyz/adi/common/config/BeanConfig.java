@@ -16,9 +16,11 @@ import com.moyz.adi.common.base.UUIDTypeHandler;
 import com.moyz.adi.common.cosntant.AdiConstant;
 import com.moyz.adi.common.dto.SearchEngineResp;
 import com.moyz.adi.common.entity.AiModel;
+import com.moyz.adi.common.helper.WorkloadMonitor;
 import com.moyz.adi.common.service.ModelPlatformService;
 import com.moyz.adi.common.languagemodel.DashScopeEmbeddingModelService;
 import com.moyz.adi.common.languagemodel.OpenAiEmbeddingModelService;
+import com.moyz.adi.common.rag.CachingEmbeddingModel;
 import com.moyz.adi.common.util.AdiPropertiesUtil;
 import com.moyz.adi.common.util.LocalDateTimeUtil;
 import com.moyz.adi.common.util.SpringUtil;
@@ -26,6 +28,7 @@ import com.pgvector.PGvector;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
 import dev.langchain4j.model.embedding.onnx.bgesmallzhv15.BgeSmallZhV15EmbeddingModel;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.ibatis.session.SqlSessionFactory;
@@ -35,6 +38,7 @@ import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Primary;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.http.client.BufferingClientHttpRequestFactory;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
@@ -58,6 +62,12 @@ public class BeanConfig {
     @Resource
     private AdiProperties adiProperties;
 
+    /**
+     * 线程池负载监控。
+     */
+    @Resource
+    private WorkloadMonitor workloadMonitor;
+
     /**
      * 构建 RestTemplate。
      *
@@ -96,19 +106,50 @@ public class BeanConfig {
     }
 
     /**
-     * 主线程池执行器。
+     * 主执行器，承载默认的 @Async 交互任务（对话、知识库问答、搜索、工作流）。
+     * 这些任务大部分时间阻塞在大模型、数据库、Redis 调用上，配置为 virtual 且运行在 JDK 21+ 时每个任务使用一个虚拟线程，
+     * 下游并发改由 {@link com.moyz.adi.common.helper.DownstreamLimiter} 限制；否则使用平台线程池。
      *
      * @return 异步执行器
      */
     @Bean(name = "mainExecutor")
     @Primary
     public AsyncTaskExecutor mainExecutor() {
-        int processorsNum = Runtime.getRuntime().availableProcessors();
-        log.info("mainExecutor,processorsNum:{}", processorsNum);
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(processorsNum * 2);
-        executor.setMaxPoolSize(100);
-        return executor;
+        AdiProperties.Executor config = adiProperties.getExecutor();
+        if (AdiConstant.ExecutorMode.VIRTUAL.equalsIgnoreCase(config.getMode())) {
+            if (Runtime.version().feature() >= 21) {
+                log.info("mainExecutor,virtual threads,concurrencyLimit:{}", config.getVirtualConcurrencyLimit());
+                SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("main-vt-");
+                executor.setVirtualThreads(true);
+                executor.setTaskDecorator(workloadMonitor.decorator("main", WorkloadMonitor.Workload.INTERACTIVE));
+                if (config.getVirtualConcurrencyLimit() > 0) {
+                    executor.setConcurrencyLimit(config.getVirtualConcurrencyLimit());
+                }
+                return executor;
+            }
+            log.warn("mainExecutor,virtual threads require JDK 21+,current:{},fallback to thread pool", Runtime.version().feature());
+        }
+        return newPool("main", config.getChat(), WorkloadMonitor.Workload.INTERACTIVE);
+    }
+
+    /**
+     * 交互请求内的并发检索线程池，与主执行器分开，避免主执行器线程等待提交到自身的子任务而饿死。
+     *
+     * @return 异步执行器
+     */
+    @Bean(name = "retrievalExecutor")
+    public AsyncTaskExecutor retrievalExecutor() {
+        return newPool("retrieval", adiProperties.getExecutor().getRetrieval(), WorkloadMonitor.Workload.INTERACTIVE);
+    }
+
+    /**
+     * 知识库索引等后台任务线程池，交互时延有风险时推迟提交，队列满时拒绝新的索引请求。
+     *
+     * @return 异步执行器
+     */
+    @Bean(name = "indexExecutor")
+    public AsyncTaskExecutor indexExecutor() {
+        return newPool("index", adiProperties.getExecutor().getIndex(), WorkloadMonitor.Workload.BACKGROUND);
     }
 
     /**
@@ -118,11 +159,79 @@ public class BeanConfig {
      */
     @Bean(name = "imagesExecutor")
     public AsyncTaskExecutor imagesExecutor() {
-        int processorsNum = Runtime.getRuntime().availableProcessors();
+        AdiProperties.Pool images = adiProperties.getExecutor().getImages();
+        int poolSize = images.getPoolSize() > 0 ? images.getPoolSize() : Runtime.getRuntime().availableProcessors();
+        return newPool("images", new AdiProperties.Pool(poolSize, images.getQueueCapacity()), WorkloadMonitor.Workload.BACKGROUND);
+    }
+
+    /**
+     * 知识图谱抽取线程池执行器，与主线程池隔离，避免批量抽取占满聊天请求的线程。
+     *
+     * @return 异步执行器
+     */
+    @Bean(name = "graphExtractExecutor")
+    public AsyncTaskExecutor graphExtractExecutor() {
+        int poolSize = adiProperties.getGraphExtract().getPoolSize();
+        int queueCapacity = Math.max(0, adiProperties.getGraphExtract().getQueueCapacity());
+        log.info("graphExtractExecutor poolSize:{},queueCapacity:{}", poolSize, queueCapacity);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("graph-extract-");
+        // 抽取任务由索引任务提交，索引任务已经过准入控制；抽取任务提交前已占用并发许可，不再推迟
+        workloadMonitor.instrument("graph-extract", executor, WorkloadMonitor.Workload.PIPELINE);
+        return executor;
+    }
+
+    /**
+     * 知识库向量化入库流水线线程池执行器，各阶段的常驻线程均运行在此线程池中。
+     *
+     * @return 异步执行器
+     */
+    @Bean(name = "embeddingIngestExecutor")
+    public AsyncTaskExecutor embeddingIngestExecutor() {
+        AdiProperties.EmbeddingIngest config = adiProperties.getEmbeddingIngest();
+        int poolSize = Math.max(1, config.getSplitWorkers()) + Math.max(1, config.getEmbedWorkers()) + Math.max(1, config.getStoreWorkers());
+        log.info("embeddingIngestExecutor poolSize:{}", poolSize);
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        log.info("imagesExecutor corePoolSize:{},maxPoolSize:{}", processorsNum, processorsNum * 2);
-        executor.setCorePoolSize(processorsNum);
-        executor.setMaxPoolSize(processorsNum * 2);
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("embedding-ingest-");
+        workloadMonitor.instrument("embedding-ingest", executor, WorkloadMonitor.Workload.PIPELINE);
+        return executor;
+    }
+
+    /**
+     * 长期记忆整理线程池执行器，线程数限制了同时整理的会话数，避免整理任务占满主线程池。
+     *
+     * @return 异步执行器
+     */
+    @Bean(name = "longTermMemoryExecutor")
+    public AsyncTaskExecutor longTermMemoryExecutor() {
+        int poolSize = Math.max(1, adiProperties.getLongTermMemory().getPoolSize());
+        return newPool("long-term-memory", new AdiProperties.Pool(poolSize, adiProperties.getExecutor().getMemoryQueueCapacity()), WorkloadMonitor.Workload.BACKGROUND);
+    }
+
+    /**
+     * 创建固定线程数、有界队列并带负载监控的线程池，空闲线程会回收。
+     *
+     * @param name     线程池名称，也用作线程名前缀与指标的 pool 标签
+     * @param pool     线程池配置
+     * @param workload 负载类型
+     * @return 线程池
+     */
+    private ThreadPoolTaskExecutor newPool(String name, AdiProperties.Pool pool, WorkloadMonitor.Workload workload) {
+        int poolSize = Math.max(1, pool.getPoolSize());
+        log.info("{}Executor poolSize:{},queueCapacity:{},workload:{}", name, poolSize, pool.getQueueCapacity(), workload);
+        ThreadPoolTaskExecutor executor = workloadMonitor.newExecutor(workload);
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(Math.max(0, pool.getQueueCapacity()));
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix(name + "-");
+        workloadMonitor.instrument(name, executor, workload);
         return executor;
     }
 
@@ -168,11 +277,27 @@ public class BeanConfig {
     /**
      * 初始化 EmbeddingModel（单例），根据配置选择不同实现。
      *
+     * @param meterRegistry 指标注册表
      * @return EmbeddingModel 实例
      */
     @Bean
     @DependsOn("initializer")
-    public EmbeddingModel initEmbeddingModel() {
+    public EmbeddingModel initEmbeddingModel(MeterRegistry meterRegistry) {
+        EmbeddingModel embeddingModel = createEmbeddingModel();
+        AdiProperties.EmbeddingCache embeddingCache = adiProperties.getEmbeddingCache();
+        if (embeddingCache.isEnable()) {
+            // 检索时的查询向量走缓存，同一问题在多个检索器间只计算一次
+            return new CachingEmbeddingModel(embeddingModel, adiProperties.getEmbeddingModel(), embeddingCache, meterRegistry);
+        }
+        return embeddingModel;
+    }
+
+    /**
+     * 根据配置创建 EmbeddingModel。
+     *
+     * @return EmbeddingModel 实例
+     */
+    private EmbeddingModel createEmbeddingModel() {
         if (adiProperties.getEmbeddingModel().equals(AdiConstant.EmbeddingModel.ALL_MINILM_L6)) {
             return new AllMiniLmL6V2EmbeddingModel();
         }
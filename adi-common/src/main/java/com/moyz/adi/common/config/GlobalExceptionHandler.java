@@ -11,6 +11,7 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 全局异常处理器。
@@ -44,6 +45,18 @@ public class GlobalExceptionHandler {
         return new BaseResponse(exception.getCode(), exception.getInfo(), exception.getData());
     }
 
+    /**
+     * 处理线程池队列已满导致的任务拒绝，返回服务繁忙。
+     *
+     * @param exception 任务拒绝异常
+     * @return 统一响应
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    private BaseResponse handleRejectedExecutionException(final RejectedExecutionException exception) {
+        log.warn("任务被拒绝:{}", exception.getMessage());
+        return new BaseResponse(ErrorEnum.B_DOWNSTREAM_BUSY.getCode(), ErrorEnum.B_DOWNSTREAM_BUSY.getInfo(), null);
+    }
+
     /**
      * 处理未捕获异常。
      *
@@ -1,10 +1,16 @@
 package com.moyz.adi.common.config.embeddingstore;
 
 import com.moyz.adi.common.config.AdiProperties;
+import com.moyz.adi.common.cosntant.AdiConstant;
+import com.moyz.adi.common.rag.pgvector.AdiPgVectorEmbeddingStore;
+import com.moyz.adi.common.rag.pgvector.PartitionedPgVectorEmbeddingStore;
+import com.moyz.adi.common.rag.pgvector.PgVectorIndexManager;
+import com.moyz.adi.common.rag.pgvector.PgVectorPartitionManager;
 import com.moyz.adi.common.util.AdiPropertiesUtil;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -15,7 +21,11 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
 
+import javax.sql.DataSource;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -51,6 +61,44 @@ public class PgVectorEmbeddingStoreConfig {
     @Resource
     private AdiProperties adiProperties;
 
+    /**
+     * 数据源，用于建索引与按检索计划查询。
+     */
+    @Resource
+    private DataSource dataSource;
+
+    /**
+     * 指标注册表。
+     */
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 后台任务线程池，用于后台建索引。
+     */
+    @Resource(name = "indexExecutor")
+    private AsyncTaskExecutor indexExecutor;
+
+    /**
+     * 向量表索引管理器。
+     *
+     * @return 索引管理器
+     */
+    @Bean
+    public PgVectorIndexManager pgVectorIndexManager() {
+        return new PgVectorIndexManager(new JdbcTemplate(dataSource), adiProperties.getPgvectorIndex(), indexExecutor);
+    }
+
+    /**
+     * 知识库向量表分区管理器。
+     *
+     * @return 分区管理器
+     */
+    @Bean
+    public PgVectorPartitionManager pgVectorPartitionManager() {
+        return new PgVectorPartitionManager(new JdbcTemplate(dataSource));
+    }
+
     /**
      * 知识库向量库。
      *
@@ -65,7 +113,16 @@ public class PgVectorEmbeddingStoreConfig {
         if (StringUtils.isNotBlank(pair.getLeft())) {
             tableName = tableName + "_" + pair.getLeft();
         }
-        return createEmbeddingStore(tableName, pair.getRight());
+        if (!adiProperties.getPgvectorPartition().isEnable()) {
+            return createEmbeddingStore(tableName, pair.getRight(), List.of(AdiConstant.MetadataKey.KB_UUID, AdiConstant.MetadataKey.KB_ITEM_UUID));
+        }
+        // 按 kb_uuid 分区：需在原始存储建表前建好分区表，kb_uuid 为分区键列，无需元数据索引
+        PgVectorPartitionManager partitionManager = pgVectorPartitionManager();
+        partitionManager.prepareTable(tableName, pair.getRight());
+        PgVectorEmbeddingStore embeddingStore = buildPgVectorEmbeddingStore(tableName, pair.getRight());
+        PgVectorIndexManager indexManager = pgVectorIndexManager();
+        indexManager.ensureIndexesAsync(tableName, pair.getRight(), List.of(AdiConstant.MetadataKey.KB_ITEM_UUID));
+        return new PartitionedPgVectorEmbeddingStore(embeddingStore, dataSource, tableName, adiProperties.getPgvectorIndex(), indexManager.getIndexType(), meterRegistry, partitionManager);
     }
 
     /**
@@ -81,7 +138,7 @@ public class PgVectorEmbeddingStoreConfig {
         if (StringUtils.isNotBlank(pair.getLeft())) {
             tableName = tableName + "_" + pair.getLeft();
         }
-        return createEmbeddingStore(tableName, pair.getRight());
+        return createEmbeddingStore(tableName, pair.getRight(), List.of(AdiConstant.MetadataKey.CONVERSATION_ID));
     }
 
     /**
@@ -97,17 +154,34 @@ public class PgVectorEmbeddingStoreConfig {
         if (StringUtils.isNotBlank(pair.getLeft())) {
             tableName = tableName + "_" + pair.getLeft();
         }
-        return createEmbeddingStore(tableName, pair.getRight());
+        return createEmbeddingStore(tableName, pair.getRight(), List.of(AdiConstant.MetadataKey.SEARCH_UUID));
     }
 
     /**
      * 构建 PgVector 向量库实例。
      *
+     * 向量库建好后在后台补建索引，检索按过滤条件的选择度在精确检索与向量索引检索之间选择。
+     *
+     * @param tableName    表名
+     * @param dimension    向量维度
+     * @param metadataKeys 需要建索引的元数据过滤键
+     * @return 向量库实例
+     */
+    private EmbeddingStore<TextSegment> createEmbeddingStore(String tableName, int dimension, List<String> metadataKeys) {
+        PgVectorEmbeddingStore embeddingStore = buildPgVectorEmbeddingStore(tableName, dimension);
+        PgVectorIndexManager indexManager = pgVectorIndexManager();
+        indexManager.ensureIndexesAsync(tableName, dimension, metadataKeys);
+        return new AdiPgVectorEmbeddingStore(embeddingStore, dataSource, tableName, adiProperties.getPgvectorIndex(), indexManager.getIndexType(), meterRegistry);
+    }
+
+    /**
+     * 构建原始 PgVectorEmbeddingStore，表不存在时自动建表。
+     *
      * @param tableName 表名
      * @param dimension 向量维度
-     * @return 向量库实例
+     * @return 原始向量库
      */
-    private EmbeddingStore<TextSegment> createEmbeddingStore(String tableName, int dimension) {
+    private PgVectorEmbeddingStore buildPgVectorEmbeddingStore(String tableName, int dimension) {
         // 通过正则解析 JDBC 连接字符串，提取主机、端口和数据库名
         String regex = "jdbc:postgresql://([^:/]+):(\\d+)/(\\w+).+";
         Pattern pattern = Pattern.compile(regex);
@@ -38,6 +38,24 @@ public class ApacheAgeGraphStoreConfig {
     @Value("${spring.datasource.password}")
     private String dataBasePassword;
 
+    /**
+     * 图谱连接池最大连接数。
+     */
+    @Value("${adi.datasource.apache-age.max-pool-size:10}")
+    private Integer maxPoolSize;
+
+    /**
+     * 图谱连接池最小空闲连接数。
+     */
+    @Value("${adi.datasource.apache-age.min-idle:2}")
+    private Integer minIdle;
+
+    /**
+     * 每个连接缓存的预编译语句数量。
+     */
+    @Value("${adi.datasource.apache-age.prepared-statement-cache-size:256}")
+    private Integer preparedStatementCacheSize;
+
     /**
      * 构建知识库图存储。
      *
@@ -74,6 +92,9 @@ public class ApacheAgeGraphStoreConfig {
                 .createGraph(true)
                 .dropGraphFirst(false)
                 .graphName("adi_knowledge_base_graph")
+                .maxPoolSize(maxPoolSize)
+                .minIdle(minIdle)
+                .preparedStatementCacheSize(preparedStatementCacheSize)
                 .build();
     }
 }
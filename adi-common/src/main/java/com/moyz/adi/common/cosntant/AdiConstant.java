@@ -128,6 +128,7 @@ public class AdiConstant {
 
         public static final String KB_UUID = "kb_uuid";
         public static final String KB_ITEM_UUID = "kb_item_uuid";
+        public static final String SEGMENT_HASH = "segment_hash";
         public static final String ENGINE_NAME = "engine_name";
         public static final String SEARCH_UUID = "search_uuid";
         public static final String CONVERSATION_ID = "conv_id";
@@ -407,6 +408,17 @@ public class AdiConstant {
         public static List<String> ALL = List.of(OPENAI, HUGGING_FACE, QWEN);
     }
 
+    public static class ChatMemoryStore {
+        public static final String MAPDB = "mapdb";
+        public static final String SHARDED = "sharded";
+        public static final String REDIS = "redis";
+    }
+
+    public static class ExecutorMode {
+        public static final String POOL = "pool";
+        public static final String VIRTUAL = "virtual";
+    }
+
     public static class EmbeddingModel {
         public static String ALL_MINILM_L6 = "local:all-minilm-l6-v2";
         public static String BGE_SMALL_ZH_V15 = "local:bge-small-zh-v1.5";
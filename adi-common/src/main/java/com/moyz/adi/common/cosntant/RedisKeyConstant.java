@@ -39,6 +39,19 @@ public class RedisKeyConstant {
      */
     public static final String USER_TOKEN = "user:token:{0}";
 
+    /**
+     * 用户的登录token集合，用户信息变更时据此改写或删除其全部登录token
+     * {0}:用户id
+     * 值：登录token集合
+     */
+    public static final String USER_TOKENS = "user:tokens:{0}";
+
+    /**
+     * 登录 token 本地缓存失效通知频道
+     * 消息：节点id|token:登录token 或 节点id|user:用户id
+     */
+    public static final String USER_TOKEN_INVALIDATE_CHANNEL = "user:token:invalidate";
+
     /**
      * 参数：游客的uuid
      * 值：json.format(guest)
@@ -67,13 +80,24 @@ public class RedisKeyConstant {
     public static final String USER_DRAWING = "user:drawing:{0}";
 
     /**
-     * 用户提问限流计数
-     * 参数：用户id
-     * 值: 当前时间窗口访问量
+     * 用户请求限流滑动窗口（zset）
+     * 参数：限流类型(text/image)、用户id
+     * 成员：请求标识，分值：请求时间（毫秒）
+     * 限流类型作为哈希标签，同一次检查的用户、模型、全局限制在集群中位于同一槽位，可在一个脚本中操作
      */
-    public static final String USER_REQUEST_TEXT_TIMES = "user:request-text:times:{0}";
+    public static final String RATE_LIMIT_USER = "rate-limit:'{'{0}'}':user:{1}";
 
-    public static final String USER_REQUEST_IMAGE_TIMES = "user:request-image:times:{0}";
+    /**
+     * 模型请求限流滑动窗口（zset）
+     * 参数：限流类型(text/image)、模型名称
+     */
+    public static final String RATE_LIMIT_MODEL = "rate-limit:'{'{0}'}':model:{1}";
+
+    /**
+     * 全站请求限流滑动窗口（zset）
+     * 参数：限流类型(text/image)
+     */
+    public static final String RATE_LIMIT_GLOBAL = "rate-limit:'{'{0}'}':global";
 
     /**
      * 用户信息缓存
@@ -138,4 +162,52 @@ public class RedisKeyConstant {
     public static final String WORKFLOW_COMPONENT_KEY = "workflow:component";
 
     public static final String WORKFLOW_COPY_DOING = "workflow:copy:doing:{0}";
+
+    /**
+     * 短期记忆消息列表
+     * 参数：memoryId
+     * 值：单条消息 JSON 组成的列表
+     */
+    public static final String CHAT_MEMORY = "chat:memory:{0}";
+
+    /**
+     * 短期记忆变更通知频道，用于失效其他节点的本地缓存
+     * 消息：节点id|memoryId
+     */
+    public static final String CHAT_MEMORY_INVALIDATE_CHANNEL = "chat:memory:invalidate";
+
+    /**
+     * 知识库语义答案缓存版本号，知识库内容变化时递增
+     * 参数：知识库uuid
+     * 值：版本号
+     */
+    public static final String KB_ANSWER_CACHE_VERSION = "kb:answer-cache:version:{0}";
+
+    /**
+     * 知识库语义答案列表（list），按序号先后排列
+     * 参数：知识库uuid
+     * 元素：序号|答案json
+     * 知识库uuid作为哈希标签，与答案序号在集群中位于同一槽位，可在一个脚本中操作
+     */
+    public static final String KB_ANSWER_CACHE_ENTRIES = "kb:answer-cache:'{'{0}'}':entries";
+
+    /**
+     * 知识库语义答案序号，每缓存一个答案递增
+     * 参数：知识库uuid
+     * 值：最新答案的序号
+     */
+    public static final String KB_ANSWER_CACHE_SEQ = "kb:answer-cache:'{'{0}'}':seq";
+
+    /**
+     * 用户当月消耗计数（hash）
+     * 参数：用户id、月份yyyyMM、是否免费额度(1/0)
+     * 字段：日期yyyyMMdd:tokens|requests|draws 为当天计数，month:tokens|requests|draws 为当月计数，seeded 表示已从数据库加载
+     */
+    public static final String USER_COST = "user:cost:{0}:{1}:{2}";
+
+    /**
+     * 有未落库计数的用户日统计（set）
+     * 成员：用户id:日期yyyyMMdd:是否免费额度(1/0)
+     */
+    public static final String USER_COST_DIRTY = "user:cost:dirty";
 }
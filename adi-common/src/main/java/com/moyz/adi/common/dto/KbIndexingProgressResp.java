@@ -0,0 +1,52 @@
+package com.moyz.adi.common.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 知识库向量化进度响应
+ */
+@Data
+public class KbIndexingProgressResp {
+    /**
+     * 知识库UUID
+     */
+    private String kbUuid;
+    /**
+     * 本轮已提交的知识点数
+     */
+    private long submittedItems;
+    /**
+     * 已完成的知识点数
+     */
+    private long doneItems;
+    /**
+     * 失败的知识点数
+     */
+    private long failedItems;
+    /**
+     * 已切分的文本段数
+     */
+    private long splitSegments;
+    /**
+     * 指纹未变、沿用已有向量的文本段数
+     */
+    private long reusedSegments;
+    /**
+     * 已向量化的文本段数
+     */
+    private long embeddedSegments;
+    /**
+     * 已写入向量库的文本段数
+     */
+    private long storedSegments;
+    /**
+     * 本轮开始时间
+     */
+    private LocalDateTime startTime;
+    /**
+     * 写入吞吐量（文本段/秒）
+     */
+    private double segmentsPerSecond;
+}
@@ -73,6 +73,14 @@ public class KbInfoResp {
      * 查询系统消息
      */
     private String querySystemMessage;
+    /**
+     * 是否启用语义答案缓存
+     */
+    private Boolean answerCacheEnable;
+    /**
+     * 语义答案缓存命中所需的最低相似度
+     */
+    private Double answerCacheMinScore;
     /**
      * ownerUUID
      */
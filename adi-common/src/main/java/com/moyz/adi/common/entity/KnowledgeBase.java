@@ -128,4 +128,16 @@ public class KnowledgeBase extends BaseEntity {
     @Schema(title = "请求LLM时的系统提示词")
     @TableField("query_system_message")
     private String querySystemMessage;
+    /**
+     * 是否启用语义答案缓存
+     */
+    @Schema(title = "是否启用语义答案缓存")
+    @TableField("answer_cache_enable")
+    private Boolean answerCacheEnable;
+    /**
+     * 语义答案缓存命中所需的最低相似度
+     */
+    @Schema(title = "语义答案缓存命中所需的最低相似度")
+    @TableField("answer_cache_min_score")
+    private Double answerCacheMinScore;
 }
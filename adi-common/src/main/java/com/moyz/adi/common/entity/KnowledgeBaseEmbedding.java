@@ -33,4 +33,10 @@ public class KnowledgeBaseEmbedding{
     @Schema(title = "对应的文档")
     @TableField("text")
     private String text;
+    /**
+     * 文本段指纹，存于 metadata 中
+     */
+    @Schema(title = "文本段指纹")
+    @TableField(exist = false)
+    private String segmentHash;
 }
@@ -34,6 +34,12 @@ public class KnowledgeBaseGraphSegment extends BaseEntity {
     @Schema(title = "内容")
     @TableField("remark")
     private String remark;
+    /**
+     * 分段指纹，抽取成功后记录，用于增量索引
+     */
+    @Schema(title = "分段指纹")
+    @TableField("segment_hash")
+    private String segmentHash;
     /**
      * 创建用户id
      */
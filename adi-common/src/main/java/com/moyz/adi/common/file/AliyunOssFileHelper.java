@@ -17,6 +17,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.InputStream;
 import java.util.List;
 
@@ -92,6 +93,18 @@ public class AliyunOssFileHelper {
             log.info("Ali oss put object:{}", putObjectResult.getETag());
         }
     }
+    /**
+     * 从本地文件保存对象到 OSS，边读边上传，不整体读入内存。
+     *
+     * @param file 本地文件
+     * @param name 对象名称
+     */
+    public void saveObj(File file, String name) {
+        PutObjectResult putObjectResult = client.putObject(configObj.getBucketName(), name, file);
+        if (null != putObjectResult) {
+            log.info("Ali oss put object:{}", putObjectResult.getETag());
+        }
+    }
     /**
      * 批量删除对象。
      *
@@ -13,10 +13,10 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 
@@ -40,23 +40,19 @@ public class AliyunOssFileOperator implements IFileOperator {
         return aliyunOssFileHelper.doesObjectExist(getObjectName(adiFile));
     }
     /**
-     * 保存文件并返回访问路径与后缀。
+     * 获取上传文件的临时存放目录。
      */
     @Override
-    public Pair<String, String> save(MultipartFile file, boolean image, String fileName) {
-        String objectName;
-        String ext;
-        if (fileName.contains(".")) {
-            ext = LocalFileUtil.getFileExtension(fileName);
-        } else {
-            ext = LocalFileUtil.getFileExtension(file.getOriginalFilename());
-        }
-        objectName = fileName + "." + ext;
-        try {
-            aliyunOssFileHelper.saveObj(file.getBytes(), objectName);
-        } catch (IOException e) {
-            throw new BaseException(B_DELETE_FILE_ERROR);
-        }
+    public String getTempDir(boolean image) {
+        return System.getProperty("java.io.tmpdir");
+    }
+    /**
+     * 将临时文件上传到 OSS 并返回访问地址与后缀。
+     */
+    @Override
+    public Pair<String, String> save(Path tempFile, boolean image, String uuid, String ext) {
+        String objectName = uuid + "." + ext;
+        aliyunOssFileHelper.saveObj(tempFile.toFile(), objectName);
         return new ImmutablePair<>(aliyunOssFileHelper.getUrl(objectName), ext);
     }
     /**
@@ -6,8 +6,8 @@ import com.moyz.adi.common.service.SysConfigService;
 import com.moyz.adi.common.vo.SaveRemoteImageResult;
 import dev.langchain4j.data.document.Document;
 import org.apache.commons.lang3.tuple.Pair;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -56,11 +56,19 @@ public class FileOperatorContext {
         return CONCRETE_OPT.get(adiFile.getStorageLocation()).checkIfExist(adiFile);
     }
     /**
-     * 保存文件并返回路径与后缀。
+     * 获取上传文件的临时存放目录。
      */
-    public Pair<String, String> save(MultipartFile file, boolean image, String fileName) {
-        return currentOpt.save(file, image, fileName);
+    public String getTempDir(boolean image) {
+        return currentOpt.getTempDir(image);
+    }
+
+    /**
+     * 保存已写入临时目录的上传文件并返回路径与后缀。
+     */
+    public Pair<String, String> save(Path tempFile, boolean image, String uuid, String ext) {
+        return currentOpt.save(tempFile, image, uuid, ext);
     }
+
     /**
      * 保存字节数组并返回路径与后缀。
      */
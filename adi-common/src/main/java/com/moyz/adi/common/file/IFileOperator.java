@@ -4,7 +4,9 @@ import com.moyz.adi.common.entity.AdiFile;
 import com.moyz.adi.common.vo.SaveRemoteImageResult;
 import dev.langchain4j.data.document.Document;
 import org.apache.commons.lang3.tuple.Pair;
-import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.file.Path;
+
 /**
  * 文件操作器接口。
  */
@@ -18,14 +20,24 @@ public interface IFileOperator {
     boolean checkIfExist(AdiFile adiFile);
 
     /**
-     * 保存文件并返回路径与后缀。
+     * 获取上传文件的临时存放目录。
      *
-     * @param file     文件
+     * @param image 是否图片
+     * @return 临时目录
+     */
+    String getTempDir(boolean image);
+
+    /**
+     * 保存已写入临时目录的上传文件并返回路径与后缀。
+     * 临时文件可能被移走，调用方在保存后仍需尝试删除。
+     *
+     * @param tempFile 临时文件
      * @param image    是否图片
-     * @param fileName 文件名（不带后缀时根据file获取后缀并追加到fileName）
+     * @param uuid     文件标识
+     * @param ext      文件后缀
      * @return 文件路径及后缀
      */
-    Pair<String, String> save(MultipartFile file, boolean image, String fileName);
+    Pair<String, String> save(Path tempFile, boolean image, String uuid, String ext);
 
     /**
      * 保存字节数组并返回路径与后缀。
@@ -12,8 +12,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
@@ -47,11 +47,20 @@ public class LocalFileOperator implements IFileOperator {
         return LocalFileUtil.checkIfExist(adiFile.getPath());
     }
     /**
-     * 保存文件并返回路径与后缀。
+     * 获取上传文件的临时存放目录，与最终存放目录相同以便原子移动。
      */
     @Override
-    public Pair<String, String> save(MultipartFile file, boolean image, String uuid) {
-        return LocalFileUtil.saveToLocal(file, image ? imagePath : filePath, uuid);
+    public String getTempDir(boolean image) {
+        return image ? imagePath : filePath;
+    }
+    /**
+     * 将临时文件移动到存放目录并返回路径与后缀。
+     */
+    @Override
+    public Pair<String, String> save(Path tempFile, boolean image, String uuid, String ext) {
+        String targetPath = (image ? imagePath : filePath) + uuid + "." + ext;
+        LocalFileUtil.moveTo(tempFile, targetPath);
+        return new ImmutablePair<>(targetPath, ext);
     }
     /**
      * 保存字节数组并返回路径与后缀。
@@ -0,0 +1,201 @@
+package com.moyz.adi.common.file;
+
+import com.moyz.adi.common.exception.BaseException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import static com.moyz.adi.common.enums.ErrorEnum.A_FILE_NOT_EXIST;
+
+/**
+ * 本地文件输出。
+ * <p>
+ * 按原样输出已存储的文件字节，不解码、不重新编码：
+ * <ul>
+ *     <li>ETag 取自文件的 sha256，If-None-Match 命中时返回 304</li>
+ *     <li>支持单段 Range 请求（206/416）</li>
+ *     <li>Tomcat 支持 sendfile 时交给容器零拷贝发送，否则用 FileChannel.transferTo 写入响应</li>
+ * </ul>
+ */
+@Slf4j
+public class LocalFileSender {
+
+    /**
+     * 浏览器缓存时间设置，一年有效（文件内容不变，变化时 uuid 也会变化）。
+     */
+    public static final String CACHE_TIME = "public, max-age=31536000";
+
+    /**
+     * Tomcat 是否支持 sendfile 的请求属性。
+     */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    /**
+     * Tomcat sendfile 文件名属性。
+     */
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    /**
+     * Tomcat sendfile 起始位置属性。
+     */
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    /**
+     * Tomcat sendfile 结束位置（不含）属性。
+     */
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 工具类，不允许实例化。
+     */
+    private LocalFileSender() {
+    }
+
+    /**
+     * 输出本地文件。
+     *
+     * @param request        请求
+     * @param response       响应
+     * @param file           本地文件
+     * @param etag           实体标签（不含引号），为空时按文件大小与修改时间生成
+     * @param attachmentName 以附件下载时的文件名，为空时内联展示
+     * @return 无
+     * @throws BaseException 文件不存在或读取失败时抛出异常
+     */
+    public static void send(HttpServletRequest request, HttpServletResponse response, File file, String etag, String attachmentName) {
+        if (null == file || !file.isFile()) {
+            throw new BaseException(A_FILE_NOT_EXIST);
+        }
+        long length = file.length();
+        String quotedEtag = "\"" + (StringUtils.isNotBlank(etag) ? etag : Long.toHexString(length) + "-" + Long.toHexString(file.lastModified())) + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_TIME);
+        response.setHeader(HttpHeaders.ETAG, quotedEtag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), quotedEtag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(MediaTypeFactory.getMediaType(file.getName()).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        if (StringUtils.isNotBlank(attachmentName)) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(attachmentName, StandardCharsets.UTF_8).build().toString());
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        // If-Range 与当前版本不一致时忽略 Range，返回完整文件
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (StringUtils.isNotBlank(range) && (StringUtils.isBlank(ifRange) || ifRange.equals(quotedEtag))) {
+            long[] parsed = parseRange(range, length);
+            if (null == parsed) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (parsed.length == 2) {
+                start = parsed[0];
+                end = parsed[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equalsIgnoreCase(request.getMethod()) || count <= 0) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.getAbsolutePath());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                long sent = channel.transferTo(position, end + 1 - position, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        } catch (IOException e) {
+            // 客户端中断连接时同样会抛出异常，无需按错误处理
+            log.warn("send file interrupted,file:{},error:{}", file.getName(), e.toString());
+        }
+    }
+
+    /**
+     * 解析单段 Range。
+     *
+     * @param range  Range 请求头
+     * @param length 文件大小
+     * @return 空数组表示忽略 Range（多段或非 bytes 单位），两个元素为起止位置（含），null 表示范围无法满足
+     */
+    private static long[] parseRange(String range, long length) {
+        if (!range.startsWith("bytes=") || range.contains(",")) {
+            return new long[0];
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                // 后缀范围：最后 N 个字节
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+            }
+            if (start >= length || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    /**
+     * 判断 If-None-Match 是否命中。
+     *
+     * @param ifNoneMatch If-None-Match 请求头
+     * @param quotedEtag  当前 ETag（含引号）
+     * @return 是否命中
+     */
+    private static boolean etagMatches(String ifNoneMatch, String quotedEtag) {
+        if (StringUtils.isBlank(ifNoneMatch)) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = StringUtils.removeStart(candidate.trim(), "W/");
+            if ("*".equals(value) || quotedEtag.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -3,6 +3,7 @@ package com.moyz.adi.common.file;
 import cn.hutool.core.img.ImgUtil;
 import com.moyz.adi.common.entity.AdiFile;
 import com.moyz.adi.common.exception.BaseException;
+import com.moyz.adi.common.util.HashUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -18,11 +19,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
 import static com.moyz.adi.common.enums.ErrorEnum.*;
 /**
@@ -32,30 +37,71 @@ import static com.moyz.adi.common.enums.ErrorEnum.*;
 public class LocalFileUtil {
 
     /**
-     * 保存 MultipartFile 到本地。
+     * 将上传文件写入临时文件，同时计算 SHA-256。
+     * 文件内容只读取一遍，不整体读入内存；临时文件与最终存放目录在同一文件系统时可原子移动到位。
      *
-     * @param file    文件
-     * @param dir     存放目录
-     * @param newName 文件名（包括后缀）
-     * @return 文件路径及后缀
+     * @param file 文件
+     * @param dir  临时文件所在目录
+     * @return 临时文件路径及 SHA-256
      */
-    public static Pair<String, String> saveToLocal(MultipartFile file, String dir, String newName) {
+    public static Pair<Path, String> saveToTemp(MultipartFile file, String dir) {
         if (file.isEmpty()) {
-            log.info("save to local,file is empty");
+            log.info("save to temp,file is empty");
             throw new BaseException(A_FILE_NOT_EXIST);
         }
-        String fileName = StringUtils.cleanPath(file.getOriginalFilename());
-        String fileExt = getFileExtension(fileName);
-        log.info("save to local,original name:{},new name:{}", fileName, newName);
-        String filePath = dir + newName + "." + fileExt;
+        Path tempFile = null;
+        try {
+            Path dirPath = Paths.get(dir);
+            Files.createDirectories(dirPath);
+            tempFile = Files.createTempFile(dirPath, ".upload-", ".tmp");
+            try (InputStream in = file.getInputStream(); OutputStream out = Files.newOutputStream(tempFile)) {
+                String sha256 = HashUtil.sha256(in, out);
+                return new ImmutablePair<>(tempFile, sha256);
+            }
+        } catch (IOException e) {
+            log.error("save to temp error", e);
+            deleteQuietly(tempFile);
+            throw new BaseException(B_SAVE_FILE_ERROR);
+        }
+    }
+
+    /**
+     * 将临时文件移动到目标路径，文件系统支持时原子移动，读者不会看到写了一半的文件。
+     *
+     * @param source 临时文件
+     * @param target 目标路径
+     * @return 无
+     */
+    public static void moveTo(Path source, String target) {
+        Path targetPath = Paths.get(target);
         try {
-            // 将文件保存到目标路径
-            file.transferTo(new File(filePath));
+            try {
+                Files.move(source, targetPath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                log.warn("atomic move not supported,fallback to replace,target:{}", target);
+                Files.move(source, targetPath, StandardCopyOption.REPLACE_EXISTING);
+            }
         } catch (IOException e) {
-            log.error("save to local error", e);
+            log.error("move file error,target:{}", target, e);
             throw new BaseException(B_SAVE_FILE_ERROR);
         }
-        return new ImmutablePair<>(filePath, fileExt);
+    }
+
+    /**
+     * 删除文件，失败时只记录日志。
+     *
+     * @param path 文件路径，为 null 时忽略
+     * @return 无
+     */
+    public static void deleteQuietly(Path path) {
+        if (null == path) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("delete file error,path:{},error:{}", path, e.toString());
+        }
     }
 
     /**
@@ -93,24 +139,51 @@ public class LocalFileUtil {
      */
     public static BufferedImage readLocalImage(AdiFile adiFile, boolean thumbnail, String thumbnailsPath) {
         try {
-            String currentFilePath = adiFile.getPath();
-            if (thumbnail) {
-                currentFilePath = thumbnailsPath + adiFile.getUuid() + "." + adiFile.getExt();
-                // 缩略图不存在则创建
-                if (new File(adiFile.getPath()).exists() && !new File(currentFilePath).exists()) {
-                    ImgUtil.scale(
-                            cn.hutool.core.io.FileUtil.file(adiFile.getPath()),
-                            cn.hutool.core.io.FileUtil.file(currentFilePath),
-                            0.2f
-                    );
-                }
-            }
-            return ImageIO.read(new FileInputStream(currentFilePath));
+            return ImageIO.read(new FileInputStream(getLocalImageFile(adiFile, thumbnail, thumbnailsPath)));
         } catch (IOException e) {
             log.error("read image error", e);
             throw new BaseException(B_IO_EXCEPTION);
         }
     }
+
+    /**
+     * 获取图片或其缩略图的本地文件，缩略图不存在时先生成。
+     * 缩略图先写入同目录的临时文件再原子移动到位，并发请求不会读到（并长期缓存）写了一半的文件。
+     *
+     * @param adiFile        图片实体类
+     * @param thumbnail      获取的是缩略图
+     * @param thumbnailsPath 缩略图路径
+     * @return 本地文件
+     */
+    public static File getLocalImageFile(AdiFile adiFile, boolean thumbnail, String thumbnailsPath) {
+        if (!thumbnail) {
+            return new File(adiFile.getPath());
+        }
+        File thumbnailFile = new File(thumbnailsPath + adiFile.getUuid() + "." + adiFile.getExt());
+        // 缩略图不存在则创建
+        if (new File(adiFile.getPath()).exists() && !thumbnailFile.exists()) {
+            Path tempFile = null;
+            try {
+                Path dirPath = Paths.get(thumbnailsPath);
+                Files.createDirectories(dirPath);
+                // 保留扩展名，缩放时按扩展名确定输出格式
+                tempFile = Files.createTempFile(dirPath, ".thumb-", "." + adiFile.getExt());
+                ImgUtil.scale(
+                        cn.hutool.core.io.FileUtil.file(adiFile.getPath()),
+                        tempFile.toFile(),
+                        0.2f
+                );
+                moveTo(tempFile, thumbnailFile.getPath());
+            } catch (IOException e) {
+                log.error("create thumbnail error,uuid:{}", adiFile.getUuid(), e);
+                throw new BaseException(B_SAVE_FILE_ERROR);
+            } finally {
+                deleteQuietly(tempFile);
+            }
+        }
+        return thumbnailFile;
+    }
+
     /**
      * 读取文件为字节数组。
      *
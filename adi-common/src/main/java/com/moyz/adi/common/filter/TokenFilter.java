@@ -2,9 +2,8 @@ package com.moyz.adi.common.filter;
 
 import com.moyz.adi.common.base.ThreadContext;
 import com.moyz.adi.common.cosntant.AdiConstant;
-import com.moyz.adi.common.cosntant.RedisKeyConstant;
 import com.moyz.adi.common.entity.User;
-import com.moyz.adi.common.util.JsonUtil;
+import com.moyz.adi.common.helper.UserTokenCache;
 import io.micrometer.common.util.StringUtils;
 import jakarta.annotation.Resource;
 import jakarta.servlet.FilterChain;
@@ -13,12 +12,10 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.text.MessageFormat;
 
 import static org.springframework.http.HttpHeaders.AUTHORIZATION;
 
@@ -45,6 +42,14 @@ public class TokenFilter extends OncePerRequestFilter {
             "/sys/config/public/",
     };
 
+    /**
+     * 仅管理员可访问的接口前缀。
+     */
+    protected static final String[] ADMIN_API = {
+            "/admin/",
+            "/actuator/metrics",
+    };
+
     /**
      * 从请求参数中读取 Token 的接口前缀。
      */
@@ -56,10 +61,10 @@ public class TokenFilter extends OncePerRequestFilter {
     };
 
     /**
-     * Redis 操作模板，用于读取用户会话信息。
+     * 登录 token 本地缓存，用于读取用户会话信息。
      */
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private UserTokenCache userTokenCache;
 
     /**
      * 应用上下文路径。
@@ -86,33 +91,21 @@ public class TokenFilter extends OncePerRequestFilter {
         if (excludePath(requestUri)) {
 
             if (StringUtils.isNotBlank(token)) {
-                String tokenKey = MessageFormat.format(RedisKeyConstant.USER_TOKEN, token);
-                String userJson = stringRedisTemplate.opsForValue().get(tokenKey);
-                if (StringUtils.isNotBlank(userJson)) {
-                    User user = JsonUtil.fromJson(userJson, User.class);
-                    if (null != user) {
-                        ThreadContext.setCurrentUser(user);
-                        ThreadContext.setToken(token);
-                    }
+                User user = userTokenCache.get(token);
+                if (null != user) {
+                    ThreadContext.setCurrentUser(user);
+                    ThreadContext.setToken(token);
                 }
             }
             filterChain.doFilter(request, response);
         } else if (StringUtils.isNotBlank(token)) {
-            String tokenKey = MessageFormat.format(RedisKeyConstant.USER_TOKEN, token);
-            String userJson = stringRedisTemplate.opsForValue().get(tokenKey);
-            if (StringUtils.isBlank(userJson)) {
-                log.warn("未登录:{}", requestUri);
-                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                return;
-            }
-
-            User user = JsonUtil.fromJson(userJson, User.class);
+            User user = userTokenCache.get(token);
             if (null == user) {
-                log.warn("用户不存在:{}", requestUri);
+                log.warn("未登录:{}", requestUri);
                 response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 return;
             }
-            if (Boolean.TRUE.equals(!user.getIsAdmin()) && requestUri.startsWith("/admin/")) {
+            if (Boolean.TRUE.equals(!user.getIsAdmin()) && adminPath(requestUri)) {
                 log.warn("无管理权限:{}", requestUri);
                 response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 return;
@@ -146,6 +139,21 @@ public class TokenFilter extends OncePerRequestFilter {
         return false;
     }
 
+    /**
+     * 判断是否为仅管理员可访问的路径。
+     *
+     * @param requestUri 请求路径
+     * @return 是否仅管理员可访问
+     */
+    private boolean adminPath(String requestUri) {
+        for (String path : ADMIN_API) {
+            if (requestUri.startsWith(path) || requestUri.startsWith(contextPath + path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * 判断是否允许从请求参数读取 Token。
      *
@@ -0,0 +1,161 @@
+package com.moyz.adi.common.helper;
+
+import com.moyz.adi.common.config.AdiProperties;
+import com.moyz.adi.common.enums.ErrorEnum;
+import com.moyz.adi.common.exception.BaseException;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 下游并发限制。
+ * <p>
+ * 主执行器切换为虚拟线程后，线程数不再限制同时访问下游的请求数，改为按下游（每个模型平台、图数据库）分别用信号量限制；
+ * 许可等待超时返回服务繁忙，避免请求无限排队。数据库并发仍由连接池大小限制。
+ * <p>
+ * 每次获取许可时读取当前配置，上限变化后为该下游新建信号量；变化前发出的许可仍归还给旧信号量，
+ * 因此切换后的短时间内实际并发可能超过新上限，直至旧许可全部归还。
+ */
+@Slf4j
+@Component
+public class DownstreamLimiter {
+
+    /**
+     * 大模型下游名称前缀。
+     */
+    public static final String LLM_PREFIX = "llm:";
+
+    /**
+     * 图数据库下游名称。
+     */
+    public static final String GRAPH = "graph";
+
+    /**
+     * 应用配置。
+     */
+    @Resource
+    private AdiProperties adiProperties;
+
+    /**
+     * 下游名称到并发上限及其信号量的映射。
+     */
+    private final Map<String, Limit> permits = new ConcurrentHashMap<>();
+
+    /**
+     * 获取模型平台的调用许可。
+     *
+     * @param platform 模型平台名称
+     * @return 许可，使用完毕后需关闭
+     * @throws BaseException 等待超时时抛出异常
+     */
+    public Permit acquireLlm(String platform) {
+        AdiProperties.Executor config = adiProperties.getExecutor();
+        int limit = config.getLlmPlatformPermits().getOrDefault(platform, config.getLlmPermits());
+        return acquire(LLM_PREFIX + platform, limit);
+    }
+
+    /**
+     * 获取图数据库的检索许可。
+     *
+     * @return 许可，使用完毕后需关闭
+     * @throws BaseException 等待超时时抛出异常
+     */
+    public Permit acquireGraph() {
+        return acquire(GRAPH, adiProperties.getExecutor().getGraphPermits());
+    }
+
+    /**
+     * 获取指定下游的许可。
+     *
+     * @param downstream 下游名称
+     * @param limit      并发上限，小于等于 0 表示不限制
+     * @return 许可
+     * @throws BaseException 等待超时或被中断时抛出异常
+     */
+    private Permit acquire(String downstream, int limit) {
+        if (limit <= 0) {
+            return Permit.NONE;
+        }
+        Limit current = permits.get(downstream);
+        if (null == current || current.limit() != limit) {
+            current = permits.compute(downstream, (key, old) -> {
+                if (null != old && old.limit() == limit) {
+                    return old;
+                }
+                if (null != old) {
+                    log.info("Downstream limit changed,downstream:{},from:{},to:{}", downstream, old.limit(), limit);
+                }
+                return new Limit(limit, new Semaphore(limit, true));
+            });
+        }
+        Semaphore semaphore = current.semaphore();
+        long timeoutMillis = adiProperties.getExecutor().getAcquireTimeoutMillis();
+        try {
+            if (!semaphore.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("Downstream busy,downstream:{},limit:{},timeoutMillis:{}", downstream, limit, timeoutMillis);
+                throw new BaseException(ErrorEnum.B_DOWNSTREAM_BUSY);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BaseException(ErrorEnum.B_DOWNSTREAM_BUSY);
+        }
+        return new Permit(semaphore);
+    }
+
+    /**
+     * 下游的并发上限及对应的信号量。
+     *
+     * @param limit     并发上限
+     * @param semaphore 信号量
+     */
+    private record Limit(int limit, Semaphore semaphore) {
+    }
+
+    /**
+     * 下游许可，重复关闭只释放一次，便于在多个结束回调中兜底释放。
+     */
+    public static final class Permit implements AutoCloseable {
+
+        /**
+         * 不限制时使用的空许可。
+         */
+        static final Permit NONE = new Permit(null);
+
+        /**
+         * 所属信号量。
+         */
+        private final Semaphore semaphore;
+
+        /**
+         * 是否已释放。
+         */
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        /**
+         * 创建许可。
+         *
+         * @param semaphore 所属信号量，为 null 时表示不限制
+         */
+        private Permit(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        /**
+         * 释放许可。
+         *
+         * @return 无
+         */
+        @Override
+        public void close() {
+            if (null != semaphore && released.compareAndSet(false, true)) {
+                semaphore.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,490 @@
+package com.moyz.adi.common.helper;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.moyz.adi.common.config.AdiProperties;
+import com.moyz.adi.common.cosntant.AdiConstant;
+import com.moyz.adi.common.rag.GraphStore;
+import com.moyz.adi.common.util.AdiStringUtil;
+import com.moyz.adi.common.vo.GraphVertex;
+import com.moyz.adi.common.vo.GraphVertexSearch;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 知识库图谱的实体词典。
+ * <p>
+ * 按知识库缓存全部顶点名称并构建 Aho–Corasick 自动机，图谱检索时一次扫描问题即可找出其中出现的已知实体，
+ * 无需为抽取实体单独请求大模型。词典在首次使用时从图谱分页加载，入库新增顶点时增量追加（下次匹配前重建自动机），
+ * 到期后重新加载以同步其他节点写入的实体；加载失败或未能分页加载完整时只短暂缓存，尽快重试。
+ */
+@Slf4j
+@Component
+public class GraphEntityDictionary {
+
+    /**
+     * 从图谱加载顶点名称时的分页大小。
+     */
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    /**
+     * 顶点名称在图谱中保留的最大长度，与图谱存储写入时的截断保持一致。
+     */
+    private static final int MAX_NAME_LENGTH = 20;
+
+    /**
+     * 未完整加载的词典的缓存时间。
+     */
+    private static final Duration PARTIAL_TTL = Duration.ofMinutes(1);
+
+    /**
+     * 应用配置。
+     */
+    @Resource
+    private AdiProperties adiProperties;
+
+    /**
+     * 知识库 UUID 到词典的缓存。
+     */
+    private Cache<String, Dictionary> cache;
+
+    /**
+     * 初始化词典缓存。
+     *
+     * @return 无
+     */
+    @PostConstruct
+    public void init() {
+        AdiProperties.GraphEntity config = adiProperties.getGraphEntity();
+        long ttlNanos = Duration.ofMinutes(config.getTtlMinutes()).toNanos();
+        cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaxKbs())
+                .expireAfter(new Expiry<String, Dictionary>() {
+                    /**
+                     * 完整加载的词典按配置的时间过期，未完整加载的词典短暂缓存。
+                     *
+                     * @param key         知识库 UUID
+                     * @param value       词典
+                     * @param currentTime 当前时间（纳秒）
+                     * @return 存活时间（纳秒）
+                     */
+                    @Override
+                    public long expireAfterCreate(String key, Dictionary value, long currentTime) {
+                        return value.isPartial() ? PARTIAL_TTL.toNanos() : ttlNanos;
+                    }
+
+                    /**
+                     * 替换后按新词典重新计算存活时间。
+                     *
+                     * @param key             知识库 UUID
+                     * @param value           词典
+                     * @param currentTime     当前时间（纳秒）
+                     * @param currentDuration 剩余存活时间（纳秒）
+                     * @return 存活时间（纳秒）
+                     */
+                    @Override
+                    public long expireAfterUpdate(String key, Dictionary value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    /**
+                     * 读取不延长存活时间。
+                     *
+                     * @param key             知识库 UUID
+                     * @param value           词典
+                     * @param currentTime     当前时间（纳秒）
+                     * @param currentDuration 剩余存活时间（纳秒）
+                     * @return 剩余存活时间（纳秒）
+                     */
+                    @Override
+                    public long expireAfterRead(String key, Dictionary value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * 找出文本中出现的知识库已知实体，重叠时优先取较长的实体。
+     *
+     * @param graphStore 图谱存储，词典未加载时从中加载
+     * @param kbUuid     知识库 UUID
+     * @param text       文本（如用户问题）
+     * @return 实体名称（与图谱中的顶点名称一致）
+     */
+    public List<String> match(GraphStore graphStore, String kbUuid, String text) {
+        if (StringUtils.isAnyBlank(kbUuid, text)) {
+            return Collections.emptyList();
+        }
+        Dictionary dictionary = cache.get(kbUuid, key -> load(graphStore, key));
+        return dictionary.match(text, adiProperties.getGraphEntity().getMaxEntities());
+    }
+
+    /**
+     * 向已加载的知识库词典追加实体名称；词典未加载时跳过，下次使用时会从图谱完整加载。
+     *
+     * @param kbUuid 知识库 UUID
+     * @param names  实体名称
+     * @return 无
+     */
+    public void add(String kbUuid, Collection<String> names) {
+        if (StringUtils.isBlank(kbUuid)) {
+            return;
+        }
+        Dictionary dictionary = cache.getIfPresent(kbUuid);
+        if (null != dictionary) {
+            names.forEach(dictionary::add);
+        }
+    }
+
+    /**
+     * 从图谱分页加载知识库的全部顶点名称。
+     * 数字 ID（Apache AGE）按 maxId 分页，非数字 ID（Neo4j 的 elementId）按字符串 maxElementId 分页。
+     * 加载失败或 ID 不再递减（存储不支持分页）时返回已加载的部分并标记为不完整，匹配不到的问题由调用方回退为大模型抽取。
+     *
+     * @param graphStore 图谱存储
+     * @param kbUuid     知识库 UUID
+     * @return 词典
+     */
+    private Dictionary load(GraphStore graphStore, String kbUuid) {
+        AdiProperties.GraphEntity config = adiProperties.getGraphEntity();
+        Dictionary dictionary = new Dictionary(config.getMinNameLength(), config.getMaxNames());
+        long startTime = System.currentTimeMillis();
+        long maxId = Long.MAX_VALUE;
+        String maxElementId = null;
+        try {
+            while (dictionary.size() < config.getMaxNames()) {
+                List<GraphVertex> vertices = graphStore.searchVertices(
+                        GraphVertexSearch.builder()
+                                .metadataFilter(new IsEqualTo(AdiConstant.MetadataKey.KB_UUID, kbUuid))
+                                .maxId(maxId)
+                                .maxElementId(maxElementId)
+                                .limit(LOAD_PAGE_SIZE)
+                                .build()
+                );
+                long pageMinId = maxId;
+                String pageMinElementId = maxElementId;
+                for (GraphVertex vertex : vertices) {
+                    dictionary.add(vertex.getName());
+                    if (NumberUtils.isDigits(vertex.getId())) {
+                        pageMinId = Math.min(pageMinId, Long.parseLong(vertex.getId()));
+                    } else if (null != vertex.getId() && (null == pageMinElementId || vertex.getId().compareTo(pageMinElementId) < 0)) {
+                        pageMinElementId = vertex.getId();
+                    }
+                }
+                if (vertices.size() < LOAD_PAGE_SIZE) {
+                    break;
+                }
+                if (pageMinId >= maxId && Objects.equals(pageMinElementId, maxElementId)) {
+                    // ID 不再递减，存储不支持按 ID 分页
+                    dictionary.markPartial();
+                    break;
+                }
+                maxId = pageMinId;
+                maxElementId = pageMinElementId;
+            }
+        } catch (Exception e) {
+            dictionary.markPartial();
+            log.warn("Load graph entity dictionary error,kbUuid:{},loaded:{},error:{}", kbUuid, dictionary.size(), e.toString());
+        }
+        log.info("Graph entity dictionary loaded,kbUuid:{},names:{},partial:{},costMillis:{}", kbUuid, dictionary.size(), dictionary.isPartial(), System.currentTimeMillis() - startTime);
+        return dictionary;
+    }
+
+    /**
+     * 单个知识库的实体词典。
+     */
+    static class Dictionary {
+
+        /**
+         * 参与匹配的名称最小长度。
+         */
+        private final int minNameLength;
+
+        /**
+         * 最大实体数。
+         */
+        private final int maxNames;
+
+        /**
+         * 大写名称到图谱中顶点名称的映射。
+         */
+        private final Map<String, String> names = new ConcurrentHashMap<>();
+
+        /**
+         * 当前的自动机。
+         */
+        private volatile Automaton automaton = Automaton.build(Set.of());
+
+        /**
+         * 是否有新增名称尚未构建进自动机。
+         */
+        private volatile boolean dirty;
+
+        /**
+         * 是否未完整加载（加载失败或无法分页），此时只短暂缓存。
+         */
+        private volatile boolean partial;
+
+        /**
+         * 创建词典。
+         *
+         * @param minNameLength 参与匹配的名称最小长度
+         * @param maxNames      最大实体数
+         */
+        Dictionary(int minNameLength, int maxNames) {
+            this.minNameLength = minNameLength;
+            this.maxNames = maxNames;
+        }
+
+        /**
+         * 追加实体名称。
+         *
+         * @param name 顶点名称
+         * @return 无
+         */
+        void add(String name) {
+            if (StringUtils.isBlank(name) || names.size() >= maxNames) {
+                return;
+            }
+            String vertexName = AdiStringUtil.tail(name, MAX_NAME_LENGTH);
+            String key = vertexName.toUpperCase(Locale.ROOT);
+            if (key.length() >= minNameLength && null == names.putIfAbsent(key, vertexName)) {
+                dirty = true;
+            }
+        }
+
+        /**
+         * 标记为未完整加载。
+         *
+         * @return 无
+         */
+        void markPartial() {
+            partial = true;
+        }
+
+        /**
+         * 是否未完整加载。
+         *
+         * @return 是否未完整加载
+         */
+        boolean isPartial() {
+            return partial;
+        }
+
+        /**
+         * 实体数量。
+         *
+         * @return 数量
+         */
+        int size() {
+            return names.size();
+        }
+
+        /**
+         * 找出文本中的实体（不区分大小写），有新增名称时先重建自动机。
+         *
+         * @param text       文本
+         * @param maxResults 最多返回的实体数
+         * @return 顶点名称
+         */
+        List<String> match(String text, int maxResults) {
+            if (dirty) {
+                synchronized (this) {
+                    if (dirty) {
+                        dirty = false;
+                        automaton = Automaton.build(names.keySet());
+                    }
+                }
+            }
+            List<String> result = new ArrayList<>();
+            for (String key : automaton.find(text.toUpperCase(Locale.ROOT), maxResults)) {
+                String vertexName = names.get(key);
+                if (null != vertexName) {
+                    result.add(vertexName);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 不可变的 Aho–Corasick 自动机。
+     */
+    static final class Automaton {
+
+        /**
+         * 各状态的转移表。
+         */
+        private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+
+        /**
+         * 各状态的失败指针。
+         */
+        private int[] fail;
+
+        /**
+         * 以该状态结尾的名称，没有时为 null。
+         */
+        private final List<String> words = new ArrayList<>();
+
+        /**
+         * 沿失败指针最近的、有名称结尾的状态，没有时为 0。
+         */
+        private int[] outputLink;
+
+        /**
+         * 私有构造，使用 {@link #build(Collection)} 创建。
+         */
+        private Automaton() {
+            newState();
+        }
+
+        /**
+         * 根据名称集合构建自动机。
+         *
+         * @param keys 大写的名称集合
+         * @return 自动机
+         */
+        static Automaton build(Collection<String> keys) {
+            Automaton automaton = new Automaton();
+            for (String key : keys) {
+                int state = 0;
+                for (int i = 0; i < key.length(); i++) {
+                    Integer next = automaton.transitions.get(state).get(key.charAt(i));
+                    if (null == next) {
+                        next = automaton.newState();
+                        automaton.transitions.get(state).put(key.charAt(i), next);
+                    }
+                    state = next;
+                }
+                automaton.words.set(state, key);
+            }
+            int size = automaton.transitions.size();
+            automaton.fail = new int[size];
+            automaton.outputLink = new int[size];
+            // 按层次遍历计算失败指针
+            Queue<Integer> queue = new ArrayDeque<>(automaton.transitions.get(0).values());
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                for (Map.Entry<Character, Integer> entry : automaton.transitions.get(state).entrySet()) {
+                    int child = entry.getValue();
+                    int failState = automaton.fail[state];
+                    while (failState > 0 && !automaton.transitions.get(failState).containsKey(entry.getKey())) {
+                        failState = automaton.fail[failState];
+                    }
+                    Integer target = automaton.transitions.get(failState).get(entry.getKey());
+                    automaton.fail[child] = null == target || target == child ? 0 : target;
+                    int childFail = automaton.fail[child];
+                    automaton.outputLink[child] = null != automaton.words.get(childFail) ? childFail : automaton.outputLink[childFail];
+                    queue.add(child);
+                }
+            }
+            return automaton;
+        }
+
+        /**
+         * 扫描文本，返回出现的名称；重叠时优先取较长的名称，
+         * 以字母或数字开头（结尾）的名称要求前（后）一个字符不是字母或数字，避免匹配到单词内部。
+         *
+         * @param text       大写的文本
+         * @param maxResults 最多返回的名称数
+         * @return 名称
+         */
+        List<String> find(String text, int maxResults) {
+            List<int[]> hits = new ArrayList<>();
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                while (state > 0 && !transitions.get(state).containsKey(c)) {
+                    state = fail[state];
+                }
+                state = transitions.get(state).getOrDefault(c, 0);
+                for (int out = null != words.get(state) ? state : outputLink[state]; out > 0; out = outputLink[out]) {
+                    int start = i - words.get(out).length() + 1;
+                    if (isWordBoundary(text, start, i)) {
+                        hits.add(new int[]{start, i, out});
+                    }
+                }
+            }
+            hits.sort(Comparator.<int[]>comparingInt(hit -> hit[1] - hit[0]).reversed().thenComparingInt(hit -> hit[0]));
+            boolean[] covered = new boolean[text.length()];
+            List<String> result = new ArrayList<>();
+            for (int[] hit : hits) {
+                if (result.size() >= maxResults) {
+                    break;
+                }
+                boolean overlap = false;
+                for (int i = hit[0]; i <= hit[1] && !overlap; i++) {
+                    overlap = covered[i];
+                }
+                String word = words.get(hit[2]);
+                if (overlap || result.contains(word)) {
+                    continue;
+                }
+                for (int i = hit[0]; i <= hit[1]; i++) {
+                    covered[i] = true;
+                }
+                result.add(word);
+            }
+            return result;
+        }
+
+        /**
+         * 新建状态。
+         *
+         * @return 状态编号
+         */
+        private int newState() {
+            transitions.add(new HashMap<>(4));
+            words.add(null);
+            return transitions.size() - 1;
+        }
+
+        /**
+         * 命中位置两端是否为词边界。
+         *
+         * @param text  文本
+         * @param start 起始位置（含）
+         * @param end   结束位置（含）
+         * @return 是否为词边界
+         */
+        private static boolean isWordBoundary(String text, int start, int end) {
+            if (isAsciiLetterOrDigit(text.charAt(start)) && start > 0 && isAsciiLetterOrDigit(text.charAt(start - 1))) {
+                return false;
+            }
+            return !(isAsciiLetterOrDigit(text.charAt(end)) && end + 1 < text.length() && isAsciiLetterOrDigit(text.charAt(end + 1)));
+        }
+
+        /**
+         * 是否为 ASCII 字母或数字。
+         *
+         * @param c 字符
+         * @return 是否为 ASCII 字母或数字
+         */
+        private static boolean isAsciiLetterOrDigit(char c) {
+            return c < 128 && Character.isLetterOrDigit(c);
+        }
+    }
+}
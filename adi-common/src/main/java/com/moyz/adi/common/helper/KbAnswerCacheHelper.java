@@ -0,0 +1,438 @@
+package com.moyz.adi.common.helper;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.moyz.adi.common.config.AdiProperties;
+import com.moyz.adi.common.cosntant.RedisKeyConstant;
+import com.moyz.adi.common.entity.KnowledgeBase;
+import com.moyz.adi.common.util.JsonUtil;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.CosineSimilarity;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * 知识库语义答案缓存。
+ * <p>
+ * 按知识库缓存已回答问题的向量与答案，新问题与历史问题足够相似且使用同一模型时直接复用答案，跳过召回与 LLM 请求。
+ * 答案依赖会话记忆，调用方只应在会话没有历史消息时读写缓存。
+ * 答案保存在 Redis 的知识库答案列表中，各节点共享且重启后仍可命中；每条答案带有递增序号，
+ * 节点查找时按序号增量拉取新答案到本地近缓存，在本地计算相似度。
+ * 知识库内容变化时递增 Redis 中的版本号并删除答案列表，各节点发现版本变化后丢弃本地缓存。
+ */
+@Slf4j
+@Component
+public class KbAnswerCacheHelper {
+
+    /**
+     * 缓存查找次数指标名称，以 kb_uuid、result（hit/miss）标签区分。
+     */
+    public static final String METRIC_LOOKUP = "adi.kb.answer.cache";
+
+    /**
+     * 缓存命中节省的 token 数指标名称，以 kb_uuid 标签区分。
+     */
+    public static final String METRIC_SAVED_TOKENS = "adi.kb.answer.cache.saved.tokens";
+
+    /**
+     * 追加答案并裁剪列表的脚本，返回新答案的序号。
+     * KEYS: 答案列表、序号；ARGV: 答案 JSON、答案数上限、有效期（毫秒）
+     */
+    private static final RedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>("""
+            local seq = redis.call('INCR', KEYS[2])
+            redis.call('RPUSH', KEYS[1], seq .. '|' .. ARGV[1])
+            redis.call('LTRIM', KEYS[1], -tonumber(ARGV[2]), -1)
+            redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            redis.call('PEXPIRE', KEYS[2], ARGV[3])
+            return seq
+            """, Long.class);
+
+    /**
+     * 应用配置。
+     */
+    @Resource
+    private AdiProperties adiProperties;
+
+    /**
+     * Redis 操作模板。
+     */
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 向量模型，用于问题向量化。
+     */
+    @Resource
+    private EmbeddingModel embeddingModel;
+
+    /**
+     * 指标注册表。
+     */
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 本地近缓存，知识库 UUID 到缓存答案的映射。
+     */
+    private Cache<String, KbAnswers> kbAnswers;
+
+    /**
+     * 初始化本地缓存。
+     *
+     * @return 无
+     */
+    @PostConstruct
+    public void init() {
+        kbAnswers = Caffeine.newBuilder()
+                .maximumSize(adiProperties.getAnswerCache().getMaxKbs())
+                .expireAfterAccess(Duration.ofMinutes(adiProperties.getAnswerCache().getTtlMinutes()))
+                .build();
+    }
+
+    /**
+     * 查找同一模型回答过的、与问题足够相似的历史答案。
+     *
+     * @param knowledgeBase 知识库
+     * @param aiModelId     回答使用的模型 ID
+     * @param question      问题
+     * @return 缓存的答案
+     */
+    public Optional<CachedAnswer> lookup(KnowledgeBase knowledgeBase, Long aiModelId, String question) {
+        String kbUuid = knowledgeBase.getUuid();
+        Embedding embedding = embeddingModel.embed(question).content();
+        long version = currentVersion(kbUuid);
+        KbAnswers answers = kbAnswers.get(kbUuid, key -> new KbAnswers());
+        pull(kbUuid, version, answers);
+        long ttlMillis = Duration.ofMinutes(adiProperties.getAnswerCache().getTtlMinutes()).toMillis();
+        CachedAnswer result = answers.find(version, aiModelId, embedding, minScore(knowledgeBase), ttlMillis);
+        meterRegistry.counter(METRIC_LOOKUP, "kb_uuid", kbUuid, "result", null == result ? "miss" : "hit").increment();
+        return Optional.ofNullable(result);
+    }
+
+    /**
+     * 将 Redis 中本节点尚未拉取的答案同步到本地近缓存。
+     * Redis 中的序号小于已拉取的序号时说明答案列表已过期或被删除，丢弃本地答案后重新拉取。
+     *
+     * @param kbUuid  知识库 UUID
+     * @param version 知识库当前版本
+     * @param answers 本地缓存的答案
+     * @return 无
+     */
+    private void pull(String kbUuid, long version, KbAnswers answers) {
+        String seqValue = stringRedisTemplate.opsForValue().get(seqKey(kbUuid));
+        long seq = StringUtils.isBlank(seqValue) ? 0 : Long.parseLong(seqValue);
+        long pulledSeq = answers.prepare(version, seq);
+        if (seq <= pulledSeq) {
+            return;
+        }
+        long count = Math.min(seq - pulledSeq, adiProperties.getAnswerCache().getMaxEntriesPerKb());
+        List<String> values = stringRedisTemplate.opsForList().range(entriesKey(kbUuid), -count, -1);
+        List<CachedAnswer> pulled = new ArrayList<>();
+        long lastSeq = pulledSeq;
+        for (String value : null == values ? List.<String>of() : values) {
+            int separator = value.indexOf('|');
+            long itemSeq = Long.parseLong(value.substring(0, separator));
+            StoredAnswer stored = JsonUtil.fromJson(value.substring(separator + 1), StoredAnswer.class);
+            if (itemSeq <= pulledSeq || null == stored) {
+                continue;
+            }
+            lastSeq = Math.max(lastSeq, itemSeq);
+            if (stored.getVersion() == version) {
+                pulled.add(new CachedAnswer(stored.getAiModelId(), Embedding.from(stored.getVector()), stored.getQaRecordId(), stored.getAnswer(), stored.getTokens(), stored.getCreateTime()));
+            }
+        }
+        answers.merge(version, pulledSeq, Math.max(lastSeq, seq), pulled, adiProperties.getAnswerCache().getMaxEntriesPerKb());
+    }
+
+    /**
+     * 缓存新的答案。
+     *
+     * @param knowledgeBase 知识库
+     * @param aiModelId     回答使用的模型 ID
+     * @param version       开始回答时的缓存版本，回答期间知识库发生变化时不缓存
+     * @param question      问题
+     * @param qaRecordId    问答记录 ID，命中时用于复制引用
+     * @param answer        答案
+     * @param tokens        本次问答消耗的 token 数
+     * @return 无
+     */
+    public void put(KnowledgeBase knowledgeBase, Long aiModelId, long version, String question, Long qaRecordId, String answer, int tokens) {
+        if (StringUtils.isBlank(answer)) {
+            return;
+        }
+        String kbUuid = knowledgeBase.getUuid();
+        Embedding embedding = embeddingModel.embed(question).content();
+        StoredAnswer stored = new StoredAnswer(version, aiModelId, embedding.vector(), qaRecordId, answer, tokens, System.currentTimeMillis());
+        long ttlMillis = Duration.ofMinutes(adiProperties.getAnswerCache().getTtlMinutes()).toMillis();
+        stringRedisTemplate.execute(ADD_SCRIPT, List.of(entriesKey(kbUuid), seqKey(kbUuid)),
+                JsonUtil.toJson(stored), String.valueOf(adiProperties.getAnswerCache().getMaxEntriesPerKb()), String.valueOf(ttlMillis));
+    }
+
+    /**
+     * 记录命中缓存节省的 token 数。
+     *
+     * @param kbUuid 知识库 UUID
+     * @param tokens token 数
+     * @return 无
+     */
+    public void recordSavedTokens(String kbUuid, int tokens) {
+        meterRegistry.counter(METRIC_SAVED_TOKENS, "kb_uuid", kbUuid).increment(tokens);
+    }
+
+    /**
+     * 失效知识库的答案缓存，知识点重新索引、删除或知识库配置变化时调用。
+     *
+     * @param kbUuid 知识库 UUID
+     * @return 无
+     */
+    public void invalidate(String kbUuid) {
+        stringRedisTemplate.opsForValue().increment(versionKey(kbUuid));
+        stringRedisTemplate.delete(List.of(entriesKey(kbUuid), seqKey(kbUuid)));
+        kbAnswers.invalidate(kbUuid);
+        log.info("kb answer cache invalidated,kbUuid:{}", kbUuid);
+    }
+
+    /**
+     * 获取知识库当前的缓存版本。
+     *
+     * @param kbUuid 知识库 UUID
+     * @return 版本号
+     */
+    public long currentVersion(String kbUuid) {
+        String version = stringRedisTemplate.opsForValue().get(versionKey(kbUuid));
+        return StringUtils.isBlank(version) ? 0 : Long.parseLong(version);
+    }
+
+    /**
+     * 获取命中所需的最低相似度。
+     *
+     * @param knowledgeBase 知识库
+     * @return 最低相似度
+     */
+    private static double minScore(KnowledgeBase knowledgeBase) {
+        Double minScore = knowledgeBase.getAnswerCacheMinScore();
+        return null == minScore || minScore <= 0 ? 0.95 : minScore;
+    }
+
+    /**
+     * 生成版本号的 Redis 键。
+     *
+     * @param kbUuid 知识库 UUID
+     * @return Redis 键
+     */
+    private static String versionKey(String kbUuid) {
+        return MessageFormat.format(RedisKeyConstant.KB_ANSWER_CACHE_VERSION, kbUuid);
+    }
+
+    /**
+     * 生成答案列表的 Redis 键。
+     *
+     * @param kbUuid 知识库 UUID
+     * @return Redis 键
+     */
+    private static String entriesKey(String kbUuid) {
+        return MessageFormat.format(RedisKeyConstant.KB_ANSWER_CACHE_ENTRIES, kbUuid);
+    }
+
+    /**
+     * 生成答案序号的 Redis 键。
+     *
+     * @param kbUuid 知识库 UUID
+     * @return Redis 键
+     */
+    private static String seqKey(String kbUuid) {
+        return MessageFormat.format(RedisKeyConstant.KB_ANSWER_CACHE_SEQ, kbUuid);
+    }
+
+    /**
+     * 缓存的答案。
+     */
+    @Data
+    @AllArgsConstructor
+    public static class CachedAnswer {
+        /**
+         * 回答使用的模型 ID。
+         */
+        private Long aiModelId;
+        /**
+         * 问题向量。
+         */
+        private Embedding embedding;
+        /**
+         * 产生该答案的问答记录 ID。
+         */
+        private Long qaRecordId;
+        /**
+         * 答案。
+         */
+        private String answer;
+        /**
+         * 产生该答案时消耗的 token 数。
+         */
+        private int tokens;
+        /**
+         * 缓存时间（毫秒）。
+         */
+        private long createTime;
+    }
+
+    /**
+     * 保存在 Redis 中的答案。
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StoredAnswer {
+        /**
+         * 产生答案时的知识库版本。
+         */
+        private long version;
+        /**
+         * 回答使用的模型 ID。
+         */
+        private Long aiModelId;
+        /**
+         * 问题向量。
+         */
+        private float[] vector;
+        /**
+         * 产生该答案的问答记录 ID。
+         */
+        private Long qaRecordId;
+        /**
+         * 答案。
+         */
+        private String answer;
+        /**
+         * 产生该答案时消耗的 token 数。
+         */
+        private int tokens;
+        /**
+         * 缓存时间（毫秒）。
+         */
+        private long createTime;
+    }
+
+    /**
+     * 单个知识库的本地缓存答案，按序号先后排列。
+     */
+    private static class KbAnswers {
+
+        /**
+         * 缓存答案对应的知识库版本。
+         */
+        private long version;
+
+        /**
+         * 已从 Redis 拉取的最大答案序号。
+         */
+        private long pulledSeq;
+
+        /**
+         * 缓存的答案。
+         */
+        private final Deque<CachedAnswer> answers = new ArrayDeque<>();
+
+        /**
+         * 查找相似度最高且不低于阈值的答案。
+         *
+         * @param currentVersion 知识库当前版本
+         * @param aiModelId      回答使用的模型 ID
+         * @param embedding      问题向量
+         * @param minScore       最低相似度
+         * @param ttlMillis      答案有效期（毫秒）
+         * @return 答案，未命中时为 null
+         */
+        synchronized CachedAnswer find(long currentVersion, Long aiModelId, Embedding embedding, double minScore, long ttlMillis) {
+            syncVersion(currentVersion);
+            long expireBefore = System.currentTimeMillis() - ttlMillis;
+            answers.removeIf(item -> item.getCreateTime() < expireBefore);
+            CachedAnswer best = null;
+            double bestScore = minScore;
+            for (CachedAnswer item : answers) {
+                if (!Objects.equals(aiModelId, item.getAiModelId())) {
+                    continue;
+                }
+                double score = RelevanceScore.fromCosineSimilarity(CosineSimilarity.between(embedding, item.getEmbedding()));
+                if (score >= bestScore) {
+                    best = item;
+                    bestScore = score;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * 拉取前同步版本，Redis 中的序号回退时丢弃本地答案。
+         *
+         * @param currentVersion 知识库当前版本
+         * @param seq            Redis 中的最新序号
+         * @return 已拉取的最大序号
+         */
+        synchronized long prepare(long currentVersion, long seq) {
+            syncVersion(currentVersion);
+            if (seq < pulledSeq) {
+                answers.clear();
+                pulledSeq = 0;
+            }
+            return pulledSeq;
+        }
+
+        /**
+         * 合并从 Redis 拉取的答案，超出上限时淘汰最早的答案。
+         * 拉取期间其他线程已合并过同一批答案时放弃本次结果。
+         *
+         * @param currentVersion 拉取时的知识库版本
+         * @param fromSeq        拉取时已拉取的最大序号
+         * @param toSeq          本次拉取到的最大序号
+         * @param pulled         拉取到的答案
+         * @param maxEntries     答案数上限
+         * @return 无
+         */
+        synchronized void merge(long currentVersion, long fromSeq, long toSeq, List<CachedAnswer> pulled, int maxEntries) {
+            if (currentVersion != version || fromSeq != pulledSeq) {
+                return;
+            }
+            answers.addAll(pulled);
+            while (answers.size() > maxEntries) {
+                answers.removeFirst();
+            }
+            pulledSeq = toSeq;
+        }
+
+        /**
+         * 版本变化说明知识库内容已变化，丢弃旧答案。
+         *
+         * @param currentVersion 知识库当前版本
+         * @return 无
+         */
+        private void syncVersion(long currentVersion) {
+            if (version != currentVersion) {
+                answers.clear();
+                version = currentVersion;
+                pulledSeq = 0;
+            }
+        }
+    }
+}
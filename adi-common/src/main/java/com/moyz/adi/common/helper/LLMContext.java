@@ -5,6 +5,7 @@ import com.moyz.adi.common.entity.AiModel;
 import com.moyz.adi.common.enums.ErrorEnum;
 import com.moyz.adi.common.exception.BaseException;
 import com.moyz.adi.common.languagemodel.AbstractLLMService;
+import com.moyz.adi.common.rag.TokenEstimatorFactory;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
@@ -34,6 +35,7 @@ public class LLMContext {
      */
     public static void addLLMService(AbstractLLMService llmService) {
         LLM_SERVICES.add(llmService);
+        TokenEstimatorFactory.invalidate();
     }
 
     /**
@@ -51,6 +53,7 @@ public class LLMContext {
             log.info("delete llm model service,modelName:{}", key.getAiModel().getName());
             LLM_SERVICES.remove(key);
         }
+        TokenEstimatorFactory.invalidate();
     }
     /**
      * 移除指定平台与模型名称的服务。
@@ -67,6 +70,7 @@ public class LLMContext {
             log.info("delete llm model service,modelName:{}", key.getAiModel().getName());
             LLM_SERVICES.remove(key);
         }
+        TokenEstimatorFactory.invalidate();
     }
 
     /**
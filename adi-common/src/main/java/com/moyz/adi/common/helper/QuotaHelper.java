@@ -9,6 +9,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 /**
  * 额度辅助类。
+ * 已用额度取自 Redis 中的实时计数，与请求在同一时刻可见；数据库中的日统计最多落后一个落库间隔。
  */
 @Slf4j
 @Service
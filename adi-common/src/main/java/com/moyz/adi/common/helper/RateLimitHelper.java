@@ -1,17 +1,69 @@
 package com.moyz.adi.common.helper;
 
+import com.moyz.adi.common.config.AdiProperties;
+import com.moyz.adi.common.cosntant.RedisKeyConstant;
+import com.moyz.adi.common.entity.User;
 import com.moyz.adi.common.vo.RequestRateLimit;
 import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+
 /**
  * 频率限制辅助类。
+ * <p>
+ * 滑动窗口限流：每个限制对应一个 zset，成员为一次请求，分值为请求时间（毫秒）。
+ * 检查与计数在同一个 Lua 脚本中完成，一次往返、原子执行，并发请求不会超额放行；
+ * 同时适用的多个限制（用户、模型、全局）要么全部计数，要么全部不计数。
+ * 时间取自 Redis 服务端，各节点时钟不一致不影响窗口。
  */
+@Slf4j
 @Service
 public class RateLimitHelper {
+
+    /**
+     * 限流类型：文本请求。
+     */
+    public static final String TYPE_TEXT = "text";
+
+    /**
+     * 限流类型：绘图请求。
+     */
+    public static final String TYPE_IMAGE = "image";
+
+    /**
+     * 滑动窗口限流脚本，返回 0 表示放行，否则为超限的限制序号（从 1 开始）。
+     * KEYS：各限制的 key；ARGV：请求标识、限制1次数、限制1窗口毫秒、限制2次数、限制2窗口毫秒...
+     */
+    private static final RedisScript<Long> SLIDING_WINDOW_SCRIPT = new DefaultRedisScript<>("""
+            -- Redis 5 之前的版本需按效果复制才能在写命令前调用 TIME
+            if redis.replicate_commands then
+                redis.replicate_commands()
+            end
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            for i, key in ipairs(KEYS) do
+                redis.call('ZREMRANGEBYSCORE', key, '-inf', now - tonumber(ARGV[i * 2 + 1]))
+                if redis.call('ZCARD', key) >= tonumber(ARGV[i * 2]) then
+                    return i
+                end
+            end
+            for i, key in ipairs(KEYS) do
+                redis.call('ZADD', key, now, ARGV[1])
+                redis.call('PEXPIRE', key, ARGV[i * 2 + 1])
+            end
+            return 0
+            """, Long.class);
+
     /**
      * Redis 操作模板。
      */
@@ -19,37 +71,97 @@ public class RateLimitHelper {
     private StringRedisTemplate stringRedisTemplate;
 
     /**
-     * 按固定时间窗口判断是否超限。
+     * 应用配置。
+     */
+    @Resource
+    private AdiProperties adiProperties;
+
+    /**
+     * 文本请求限流：用户、模型与全局限制同时检查并计数。
      *
-     * @param requestTimesKey Redis 键
-     * @param rateLimitConfig 请求频率限制配置
+     * @param user            用户
+     * @param modelName       模型名称，为空时不检查模型限制
+     * @param rateLimitConfig 用户请求频率限制配置
      * @return 是否允许继续请求
      */
-    public boolean checkRequestTimes(String requestTimesKey, RequestRateLimit rateLimitConfig) {
-        int requestCountInTimeWindow = 0;
-        String rateLimitVal = stringRedisTemplate.opsForValue().get(requestTimesKey);
-        if (StringUtils.isNotBlank(rateLimitVal)) {
-            requestCountInTimeWindow = Integer.parseInt(rateLimitVal);
+    public boolean tryAcquireText(User user, String modelName, RequestRateLimit rateLimitConfig) {
+        AdiProperties.RateLimit config = adiProperties.getRateLimit();
+        return tryAcquire(TYPE_TEXT, user, modelName, rateLimitConfig, config.getModelTextPerMinute(), config.getGlobalTextPerMinute());
+    }
+
+    /**
+     * 绘图请求限流：用户、模型与全局限制同时检查并计数。
+     *
+     * @param user            用户
+     * @param modelName       模型名称，为空时不检查模型限制
+     * @param rateLimitConfig 用户请求频率限制配置
+     * @return 是否允许继续请求
+     */
+    public boolean tryAcquireImage(User user, String modelName, RequestRateLimit rateLimitConfig) {
+        AdiProperties.RateLimit config = adiProperties.getRateLimit();
+        return tryAcquire(TYPE_IMAGE, user, modelName, rateLimitConfig, config.getModelImagePerMinute(), config.getGlobalImagePerMinute());
+    }
+
+    /**
+     * 原子地检查并计数一组限制，全部未超限时才计数。
+     *
+     * @param limits 限制列表
+     * @return 0 表示放行，否则为超限的限制序号（从 1 开始）
+     */
+    public int tryAcquire(List<Limit> limits) {
+        if (limits.isEmpty()) {
+            return 0;
         }
-        return requestCountInTimeWindow < rateLimitConfig.getTimes();
+        List<String> keys = new ArrayList<>(limits.size());
+        List<String> args = new ArrayList<>(limits.size() * 2 + 1);
+        args.add(UUID.randomUUID().toString());
+        for (Limit limit : limits) {
+            keys.add(limit.key());
+            args.add(String.valueOf(limit.times()));
+            args.add(String.valueOf(limit.windowMillis()));
+        }
+        Long result = stringRedisTemplate.execute(SLIDING_WINDOW_SCRIPT, keys, args.toArray());
+        return null == result ? 0 : result.intValue();
     }
+
     /**
-     * 增加请求次数计数。
+     * 组装用户、模型与全局限制并检查。
      *
-     * @param requestTimesKey Redis 键
-     * @param rateLimitConfig 请求频率限制配置
-     * @return 无
-     */
-    public void increaseRequestTimes(String requestTimesKey, RequestRateLimit rateLimitConfig) {
-        long expireTime = stringRedisTemplate.getExpire(requestTimesKey).longValue();
-        if (expireTime == -1) {
-            // 未设置过期时间时，初始化计数与过期窗口
-            stringRedisTemplate.opsForValue().increment(requestTimesKey);
-            stringRedisTemplate.opsForValue().set(requestTimesKey, String.valueOf(1), rateLimitConfig.getMinutes(), TimeUnit.MINUTES);
-        } else if (expireTime > 3) {
-            // 过期时间太短时不再计数，避免频繁写入
-            stringRedisTemplate.opsForValue().increment(requestTimesKey);
+     * @param type            限流类型
+     * @param user            用户
+     * @param modelName       模型名称
+     * @param rateLimitConfig 用户请求频率限制配置
+     * @param modelPerMinute  单个模型每分钟请求数上限，0 表示不限制
+     * @param globalPerMinute 全站每分钟请求数上限，0 表示不限制
+     * @return 是否允许继续请求
+     */
+    private boolean tryAcquire(String type, User user, String modelName, RequestRateLimit rateLimitConfig, int modelPerMinute, int globalPerMinute) {
+        List<Limit> limits = new ArrayList<>(3);
+        if (null != rateLimitConfig) {
+            limits.add(new Limit(MessageFormat.format(RedisKeyConstant.RATE_LIMIT_USER, type, String.valueOf(user.getId())),
+                    rateLimitConfig.getTimes(), TimeUnit.MINUTES.toMillis(Math.max(1, rateLimitConfig.getMinutes()))));
+        }
+        if (modelPerMinute > 0 && StringUtils.isNotBlank(modelName)) {
+            limits.add(new Limit(MessageFormat.format(RedisKeyConstant.RATE_LIMIT_MODEL, type, modelName), modelPerMinute, TimeUnit.MINUTES.toMillis(1)));
+        }
+        if (globalPerMinute > 0) {
+            limits.add(new Limit(MessageFormat.format(RedisKeyConstant.RATE_LIMIT_GLOBAL, type), globalPerMinute, TimeUnit.MINUTES.toMillis(1)));
+        }
+        int exceeded = tryAcquire(limits);
+        if (exceeded > 0) {
+            log.warn("Rate limit exceeded,type:{},userId:{},model:{},key:{}", type, user.getId(), modelName, limits.get(exceeded - 1).key());
+            return false;
         }
+        return true;
     }
 
+    /**
+     * 单个滑动窗口限制。
+     *
+     * @param key          Redis 键
+     * @param times        窗口内允许的请求数
+     * @param windowMillis 窗口长度（毫秒）
+     */
+    public record Limit(String key, int times, long windowMillis) {
+    }
 }
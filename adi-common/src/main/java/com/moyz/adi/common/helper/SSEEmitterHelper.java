@@ -2,6 +2,7 @@ package com.moyz.adi.common.helper;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.moyz.adi.common.config.AdiProperties;
 import com.moyz.adi.common.cosntant.AdiConstant;
 import com.moyz.adi.common.cosntant.RedisKeyConstant;
 import com.moyz.adi.common.entity.User;
@@ -12,18 +13,29 @@ import com.moyz.adi.common.vo.*;
 import com.theokanning.openai.OpenAiError;
 import com.theokanning.openai.OpenAiHttpException;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 /**
  * SSE 连接生命周期与消息发送的辅助类。
  */
@@ -40,11 +52,91 @@ public class SSEEmitterHelper {
      */
     @Resource
     private RateLimitHelper rateLimitHelper;
+    /**
+     * 应用配置。
+     */
+    @Resource
+    private AdiProperties adiProperties;
+    /**
+     * 指标注册表。
+     */
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 分片数指标名称。
+     */
+    public static final String METRIC_PARTIALS = "adi.sse.partials";
+    /**
+     * 写出帧数指标名称。
+     */
+    public static final String METRIC_FRAMES = "adi.sse.frames";
+    /**
+     * 写出批次数指标名称，分片数与批次数之比即合并效果。
+     */
+    public static final String METRIC_WRITES = "adi.sse.writes";
 
     /**
      * 记录已完成的 SSE 连接，避免重复发送或回收。
      */
     private static final Cache<SseEmitter, Boolean> COMPLETED_SSE = CacheBuilder.newBuilder().expireAfterWrite(10, TimeUnit.MINUTES).build();
+    /**
+     * 各 SSE 连接的分片合并写入器，连接结束时移除。
+     */
+    private static final Cache<SseEmitter, SseFrameWriter> FRAME_WRITERS = CacheBuilder.newBuilder().expireAfterAccess(30, TimeUnit.MINUTES).build();
+    /**
+     * SSE 流式输出配置。
+     */
+    private static AdiProperties.SseStream sseStreamConfig = new AdiProperties.SseStream();
+    /**
+     * 定时写出调度器。
+     * 不注册为 Spring Bean，避免替换 @Scheduled 任务默认使用的调度器。
+     */
+    private static ScheduledExecutorService frameFlushScheduler;
+    /**
+     * 分片数计数器。
+     */
+    private static Counter partialCounter;
+    /**
+     * 写出帧数计数器。
+     */
+    private static Counter frameCounter;
+    /**
+     * 写出批次数计数器。
+     */
+    private static Counter writeCounter;
+
+    /**
+     * 初始化分片合并写出所需的调度器与指标。
+     *
+     * @return 无
+     */
+    @PostConstruct
+    public void init() {
+        sseStreamConfig = adiProperties.getSseStream();
+        AtomicInteger threadIndex = new AtomicInteger();
+        frameFlushScheduler = Executors.newScheduledThreadPool(Math.max(1, sseStreamConfig.getFlushThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "sse-flush-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        partialCounter = meterRegistry.counter(METRIC_PARTIALS);
+        frameCounter = meterRegistry.counter(METRIC_FRAMES);
+        writeCounter = meterRegistry.counter(METRIC_WRITES);
+        log.info("sse stream,flushIntervalMillis:{},maxBufferChars:{},endpoints:{}", sseStreamConfig.getFlushIntervalMillis(), sseStreamConfig.getMaxBufferChars(), sseStreamConfig.getEndpoints().size());
+    }
+
+    /**
+     * 关闭定时写出调度器。
+     *
+     * @return 无
+     */
+    @PreDestroy
+    public void destroy() {
+        if (null != frameFlushScheduler) {
+            frameFlushScheduler.shutdown();
+        }
+    }
     /**
      * 检查请求频率与是否仍处于回答状态。
      *
@@ -53,9 +145,20 @@ public class SSEEmitterHelper {
      * @return 是否允许继续请求
      */
     public boolean checkOrComplete(User user, SseEmitter sseEmitter) {
+        return checkOrComplete(user, null, sseEmitter);
+    }
+
+    /**
+     * 检查请求频率（用户、模型、全站）与是否仍处于回答状态，限流检查通过即计入请求次数。
+     *
+     * @param user       用户信息
+     * @param modelName  模型名称，为空时不检查模型限制
+     * @param sseEmitter SSE 连接
+     * @return 是否允许继续请求
+     */
+    public boolean checkOrComplete(User user, String modelName, SseEmitter sseEmitter) {
         // 先做限流检查，避免并发或恶意刷请求。
-        String requestTimesKey = MessageFormat.format(RedisKeyConstant.USER_REQUEST_TEXT_TIMES, user.getId());
-        if (!rateLimitHelper.checkRequestTimes(requestTimesKey, LocalCache.TEXT_RATE_LIMIT_CONFIG)) {
+        if (!rateLimitHelper.tryAcquireText(user, modelName, LocalCache.TEXT_RATE_LIMIT_CONFIG)) {
             sendErrorAndComplete(user.getId(), sseEmitter, "访问太过频繁");
             return false;
         }
@@ -68,6 +171,8 @@ public class SSEEmitterHelper {
             sendErrorAndComplete(user.getId(), sseEmitter, "正在回复中...");
             return false;
         }
+        // 在请求线程中按接口路径选定分片合并配置
+        FRAME_WRITERS.put(sseEmitter, newFrameWriter(sseEmitter, currentRequestPath()));
         return true;
     }
     /**
@@ -93,9 +198,6 @@ public class SSEEmitterHelper {
         String askingKey = MessageFormat.format(RedisKeyConstant.USER_ASKING, user.getId());
         // 用短 TTL 标记“正在回复”，避免异常时长期占用
         stringRedisTemplate.opsForValue().set(askingKey, "1", 15, TimeUnit.SECONDS);
-
-        String requestTimesKey = MessageFormat.format(RedisKeyConstant.USER_REQUEST_TEXT_TIMES, user.getId());
-        rateLimitHelper.increaseRequestTimes(requestTimesKey, LocalCache.TEXT_RATE_LIMIT_CONFIG);
         try {
             SseEmitter.SseEventBuilder builder = SseEmitter.event().name(AdiConstant.SSEEventName.START);
             if (StringUtils.isNotBlank(data)) {
@@ -105,7 +207,7 @@ public class SSEEmitterHelper {
         } catch (IOException e) {
             log.error("startSse error", e);
             sseEmitter.completeWithError(e);
-            COMPLETED_SSE.put(sseEmitter, Boolean.TRUE);
+            markCompleted(sseEmitter);
             stringRedisTemplate.delete(askingKey);
         }
     }
@@ -130,7 +232,7 @@ public class SSEEmitterHelper {
                 errorAndShutdown(e, sseAskParams.getSseEmitter());
             } finally {
                 // 无论成功或失败都清理占用标记，避免用户被长期锁定
-                COMPLETED_SSE.put(sseAskParams.getSseEmitter(), Boolean.TRUE);
+                markCompleted(sseAskParams.getSseEmitter());
                 stringRedisTemplate.delete(askingKey);
             }
         });
@@ -158,7 +260,7 @@ public class SSEEmitterHelper {
                     } catch (IOException e) {
                         log.error("error", e);
                     } finally {
-                        COMPLETED_SSE.put(sseAskParams.getSseEmitter(), Boolean.TRUE);
+                        markCompleted(sseAskParams.getSseEmitter());
                         stringRedisTemplate.delete(askingKey);
                     }
                 }
@@ -181,13 +283,14 @@ public class SSEEmitterHelper {
             return;
         }
         try {
-            // 按协议发送 DONE 事件，通知前端结束流式渲染
+            // 先写出缓冲中的分片，再按协议发送 DONE 事件，通知前端结束流式渲染
+            flushFrames(sseEmitter);
             sseEmitter.send(SseEmitter.event().name(AdiConstant.SSEEventName.DONE).data(msg));
         } catch (IOException e) {
             throw new RuntimeException(e);
         } finally {
             // 统一在 finally 中完成回收，确保发送异常时也不会残留占用状态
-            COMPLETED_SSE.put(sseEmitter, Boolean.TRUE);
+            markCompleted(sseEmitter);
             delSseRequesting(userId);
             sseEmitter.complete();
         }
@@ -224,12 +327,13 @@ public class SSEEmitterHelper {
             return;
         }
         try {
+            flushFrames(sseEmitter);
             sseEmitter.send(SseEmitter.event().name(AdiConstant.SSEEventName.DONE));
             sseEmitter.complete();
         } catch (Exception e) {
             log.warn("sendComplete error", e);
         } finally {
-            COMPLETED_SSE.put(sseEmitter, Boolean.TRUE);
+            markCompleted(sseEmitter);
             delSseRequesting(userId);
         }
     }
@@ -249,7 +353,7 @@ public class SSEEmitterHelper {
         } catch (IOException e) {
             throw new RuntimeException(e);
         } finally {
-            COMPLETED_SSE.put(sseEmitter, Boolean.TRUE);
+            markCompleted(sseEmitter);
             delSseRequesting(userId);
             sseEmitter.complete();
         }
@@ -270,12 +374,13 @@ public class SSEEmitterHelper {
             return;
         }
         try {
+            flushFrames(sseEmitter);
             sseEmitter.send(SseEmitter.event().name(AdiConstant.SSEEventName.ERROR).data(Objects.toString(errorMsg, "")));
         } catch (IOException e) {
             log.warn("sendErrorAndComplete userId:{},errorMsg:{}", userId, errorMsg);
             throw new RuntimeException(e);
         } finally {
-            COMPLETED_SSE.put(sseEmitter, Boolean.TRUE);
+            markCompleted(sseEmitter);
             delSseRequesting(userId);
             sseEmitter.complete();
         }
@@ -310,6 +415,7 @@ public class SSEEmitterHelper {
      */
     public static void sendAudio(SseEmitter sseEmitter, Object content) {
         try {
+            flushFrames(sseEmitter);
             sseEmitter.send(SseEmitter.event().name(AdiConstant.SSEEventName.AUDIO).data(content));
         } catch (IOException e) {
             log.error("stream onNext error", e);
@@ -326,6 +432,7 @@ public class SSEEmitterHelper {
      */
     public static void sendThinking(SseEmitter sseEmitter, String content) {
         try {
+            flushFrames(sseEmitter);
             sseEmitter.send(SseEmitter.event().name(AdiConstant.SSEEventName.THINKING).data(content));
         } catch (IOException e) {
             log.error("stream onNext error", e);
@@ -341,23 +448,24 @@ public class SSEEmitterHelper {
      * @return 无
      */
     public static void parseAndSendPartialMsg(SseEmitter sseEmitter, String name, String content) {
-        if (Boolean.TRUE.equals(COMPLETED_SSE.getIfPresent(sseEmitter))) {
-            log.warn("sseEmitter already completed,name:{}", name);
-            return;
-        }
-        // 按行拆分并插入换行占位符，保持前端渲染协议一致
-        String[] lines = content.split("[\\r\\n]", -1);
-        if (lines.length > 1) {
-            sendPartial(sseEmitter, name, " " + lines[0]);
-            for (int i = 1; i < lines.length; i++) {
-                sendPartial(sseEmitter, name, "-_wrap_-");
-                sendPartial(sseEmitter, name, " " + lines[i]);
+        SseFrameWriter writer = FRAME_WRITERS.getIfPresent(sseEmitter);
+        if (null == writer) {
+            if (Boolean.TRUE.equals(COMPLETED_SSE.getIfPresent(sseEmitter))) {
+                log.warn("sseEmitter already completed,name:{}", name);
+                return;
             }
-        } else {
-            sendPartial(sseEmitter, name, " " + content);
+            // 未经 checkOrComplete 建立的连接使用默认配置
+            try {
+                writer = FRAME_WRITERS.get(sseEmitter, () -> newFrameWriter(sseEmitter, null));
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        if (null != partialCounter) {
+            partialCounter.increment();
         }
-//            content = content.replaceAll("[\\r\\n]", "\ndata:");
-//            sendPartial(sseEmitter, name, " " + content);
+        // 按行拆分并插入换行占位符，保持前端渲染协议一致；分片在写入器中合并后批量写出
+        writer.append(name, content);
     }
     /**
      * 发送分段消息。
@@ -373,6 +481,7 @@ public class SSEEmitterHelper {
             return;
         }
         try {
+            flushFrames(sseEmitter);
             if (StringUtils.isNotBlank(name)) {
                 sseEmitter.send(SseEmitter.event().name(name).data(msg));
             } else {
@@ -417,6 +526,7 @@ public class SSEEmitterHelper {
         }
         log.error("stream error", error);
         try {
+            flushFrames(sseEmitter);
             String errorMsg = error.getMessage();
             if (error instanceof OpenAiHttpException openAiHttpException) {
                 // 尝试解析 OpenAI 错误体，优先返回更可读的业务错误信息
@@ -431,11 +541,83 @@ public class SSEEmitterHelper {
             log.error("sse error", e);
         } finally {
             // 错误结束也必须标记完成，避免后续分片继续写入已失效连接
-            COMPLETED_SSE.put(sseEmitter, Boolean.TRUE);
+            markCompleted(sseEmitter);
             sseEmitter.complete();
         }
 
     }
+    /**
+     * 写出连接上缓冲中的分片，发送其他事件前调用以保持事件顺序。
+     *
+     * @param sseEmitter SSE 连接
+     * @return 无
+     */
+    public static void flushFrames(SseEmitter sseEmitter) {
+        SseFrameWriter writer = FRAME_WRITERS.getIfPresent(sseEmitter);
+        if (null != writer) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * 标记连接已完成，并关闭其分片合并写入器。
+     *
+     * @param sseEmitter SSE 连接
+     * @return 无
+     */
+    private static void markCompleted(SseEmitter sseEmitter) {
+        COMPLETED_SSE.put(sseEmitter, Boolean.TRUE);
+        SseFrameWriter writer = FRAME_WRITERS.asMap().remove(sseEmitter);
+        if (null != writer) {
+            writer.close();
+        }
+    }
+
+    /**
+     * 按接口路径创建分片合并写入器，路径匹配多个配置时最长前缀优先。
+     *
+     * @param sseEmitter  SSE 连接
+     * @param requestPath 接口路径，为空时使用默认配置
+     * @return 写入器
+     */
+    private static SseFrameWriter newFrameWriter(SseEmitter sseEmitter, String requestPath) {
+        AdiProperties.SseStream config = sseStreamConfig;
+        long flushIntervalMillis = config.getFlushIntervalMillis();
+        int maxBufferChars = config.getMaxBufferChars();
+        if (StringUtils.isNotBlank(requestPath)) {
+            AdiProperties.SseStreamEndpoint matched = null;
+            for (AdiProperties.SseStreamEndpoint endpoint : config.getEndpoints()) {
+                String prefix = endpoint.getPathPrefix();
+                if (StringUtils.isNotBlank(prefix) && requestPath.startsWith(prefix)
+                        && (null == matched || prefix.length() > matched.getPathPrefix().length())) {
+                    matched = endpoint;
+                }
+            }
+            if (null != matched) {
+                flushIntervalMillis = matched.getFlushIntervalMillis();
+                maxBufferChars = matched.getMaxBufferChars();
+            }
+        }
+        // 调度器尚未初始化（非 Spring 环境）时退化为每个分片立即写出
+        if (null == frameFlushScheduler) {
+            flushIntervalMillis = 0;
+        }
+        return new SseFrameWriter(sseEmitter, flushIntervalMillis, maxBufferChars, frameFlushScheduler, frameCounter, writeCounter);
+    }
+
+    /**
+     * 获取当前请求在应用内的路径。
+     *
+     * @return 请求路径，不在请求线程中时返回 null
+     */
+    private static String currentRequestPath() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            HttpServletRequest request = attributes.getRequest();
+            return request.getRequestURI().substring(request.getContextPath().length());
+        }
+        return null;
+    }
+
     /**
      * 删除指定缓存键。
      *
@@ -0,0 +1,264 @@
+package com.moyz.adi.common.helper;
+
+import io.micrometer.core.instrument.Counter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * SSE 分片合并写入器，每个 SSE 连接一个实例。
+ * <p>
+ * 模型每返回一个分片只追加到缓冲区，达到时间窗口或缓冲字符数上限时才写出：
+ * 连续的文本分片合并为一帧，换行仍以独立的 -_wrap_- 帧表示，
+ * 同一批次的所有帧通过一次 send 写入响应、只 flush 一次，前端协议不变。
+ */
+@Slf4j
+public class SseFrameWriter {
+
+    /**
+     * 换行占位符。
+     */
+    public static final String WRAP = "-_wrap_-";
+
+    /**
+     * SSE 连接。
+     */
+    private final SseEmitter sseEmitter;
+
+    /**
+     * 合并分片的时间窗口（毫秒），0 表示每个分片立即写出。
+     */
+    private final long flushIntervalMillis;
+
+    /**
+     * 缓冲字符数上限，达到时立即写出。
+     */
+    private final int maxBufferChars;
+
+    /**
+     * 定时写出调度器。
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 写出的帧数计数器。
+     */
+    private final Counter frameCounter;
+
+    /**
+     * 写出的批次数计数器。
+     */
+    private final Counter writeCounter;
+
+    /**
+     * 写出锁，保证各批次按追加顺序写出。
+     * 持锁期间有网络写入，使用 ReentrantLock 而非 synchronized，虚拟线程阻塞时不会占住载体线程。
+     */
+    private final ReentrantLock sendLock = new ReentrantLock();
+
+    /**
+     * 已成帧、待写出的帧。
+     */
+    private final List<Frame> frames = new ArrayList<>();
+
+    /**
+     * 正在合并的文本。
+     */
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * 正在合并的文本所属的事件名。
+     */
+    private String textName;
+
+    /**
+     * 是否有正在合并的文本。
+     */
+    private boolean textOpen;
+
+    /**
+     * 缓冲的字符数。
+     */
+    private int bufferedChars;
+
+    /**
+     * 是否已安排定时写出。
+     */
+    private boolean flushScheduled;
+
+    /**
+     * 连接是否已关闭，关闭后丢弃后续分片。
+     */
+    private volatile boolean closed;
+
+    /**
+     * 创建写入器。
+     *
+     * @param sseEmitter          SSE 连接
+     * @param flushIntervalMillis 合并分片的时间窗口（毫秒），0 表示每个分片立即写出
+     * @param maxBufferChars      缓冲字符数上限
+     * @param scheduler           定时写出调度器
+     * @param frameCounter        写出的帧数计数器，可为 null
+     * @param writeCounter        写出的批次数计数器，可为 null
+     */
+    public SseFrameWriter(SseEmitter sseEmitter, long flushIntervalMillis, int maxBufferChars, ScheduledExecutorService scheduler, Counter frameCounter, Counter writeCounter) {
+        this.sseEmitter = sseEmitter;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxBufferChars = maxBufferChars;
+        this.scheduler = scheduler;
+        this.frameCounter = frameCounter;
+        this.writeCounter = writeCounter;
+    }
+
+    /**
+     * 追加一个分片，按行拆分并插入换行占位帧。
+     *
+     * @param name    事件名，为空时发送默认事件
+     * @param content 分片内容
+     * @return 无
+     */
+    public void append(String name, String content) {
+        if (closed) {
+            return;
+        }
+        boolean flushNow;
+        synchronized (this) {
+            String[] lines = content.split("[\\r\\n]", -1);
+            appendText(name, lines[0]);
+            for (int i = 1; i < lines.length; i++) {
+                closeText();
+                frames.add(new Frame(name, WRAP));
+                appendText(name, lines[i]);
+            }
+            bufferedChars += content.length();
+            flushNow = flushIntervalMillis <= 0 || bufferedChars >= maxBufferChars;
+            if (!flushNow && !flushScheduled) {
+                flushScheduled = true;
+                try {
+                    scheduler.schedule(this::flush, flushIntervalMillis, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // 应用关闭中，改为立即写出
+                    flushNow = true;
+                }
+            }
+        }
+        if (flushNow) {
+            flush();
+        }
+    }
+
+    /**
+     * 立即写出缓冲区中的全部帧。
+     * 连接上发送其他事件前需先调用，保证事件顺序与产生顺序一致。
+     *
+     * @return 无
+     */
+    public void flush() {
+        sendLock.lock();
+        try {
+            List<Frame> batch;
+            synchronized (this) {
+                flushScheduled = false;
+                closeText();
+                if (frames.isEmpty()) {
+                    return;
+                }
+                batch = new ArrayList<>(frames);
+                frames.clear();
+                bufferedChars = 0;
+            }
+            if (closed) {
+                return;
+            }
+            Set<ResponseBodyEmitter.DataWithMediaType> items = new LinkedHashSet<>();
+            for (Frame frame : batch) {
+                SseEmitter.SseEventBuilder builder = SseEmitter.event();
+                if (StringUtils.isNotBlank(frame.name())) {
+                    builder.name(frame.name());
+                }
+                items.addAll(builder.data(frame.data()).build());
+            }
+            try {
+                sseEmitter.send(items);
+                if (null != frameCounter) {
+                    frameCounter.increment(batch.size());
+                    writeCounter.increment();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // 客户端断开或连接已结束，后续分片直接丢弃
+                closed = true;
+                log.warn("sse frame write error,frames:{},error:{}", batch.size(), e.toString());
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * 关闭写入器并丢弃未写出的帧。
+     *
+     * @return 无
+     */
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            frames.clear();
+            text.setLength(0);
+            textOpen = false;
+            bufferedChars = 0;
+        }
+    }
+
+    /**
+     * 追加文本到正在合并的帧，事件名不同时先结束当前帧。
+     *
+     * @param name 事件名
+     * @param line 不含换行的文本
+     * @return 无
+     */
+    private void appendText(String name, String line) {
+        if (textOpen && !Objects.equals(textName, name)) {
+            closeText();
+        }
+        if (!textOpen) {
+            textOpen = true;
+            textName = name;
+        }
+        text.append(line);
+    }
+
+    /**
+     * 结束正在合并的文本帧，与原协议一致在内容前加一个空格。
+     *
+     * @return 无
+     */
+    private void closeText() {
+        if (!textOpen) {
+            return;
+        }
+        frames.add(new Frame(textName, " " + text));
+        text.setLength(0);
+        textOpen = false;
+    }
+
+    /**
+     * 待写出的帧。
+     *
+     * @param name 事件名
+     * @param data 数据
+     */
+    private record Frame(String name, String data) {
+    }
+}
@@ -0,0 +1,227 @@
+package com.moyz.adi.common.helper;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.moyz.adi.common.config.AdiProperties;
+import com.moyz.adi.common.cosntant.RedisKeyConstant;
+import com.moyz.adi.common.entity.User;
+import com.moyz.adi.common.util.JsonUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * 登录 token 的本地缓存。
+ * <p>
+ * 每个请求都要根据 token 取得登录用户，本地缓存 token 到已解析的用户对象，命中时不再访问 Redis、不再解析 JSON。
+ * 缓存条目存活时间较短且有数量上限；注销或用户信息变更时失效本节点缓存，并通过 Redis 发布订阅通知其他节点失效。
+ * 用户信息变更时由调用方先改写（或删除）Redis 中该用户的登录 token，再调用 {@link #invalidateUser}，失效后重新加载即为新数据。
+ * 未登录（Redis 中不存在）的 token 不缓存。
+ */
+@Slf4j
+@Component
+public class UserTokenCache implements MessageListener {
+
+    /**
+     * 失效通知中节点id与失效对象的分隔符。
+     */
+    private static final String SEPARATOR = "|";
+
+    /**
+     * 按 token 失效的通知前缀。
+     */
+    private static final String TOKEN_PREFIX = "token:";
+
+    /**
+     * 按用户失效的通知前缀。
+     */
+    private static final String USER_PREFIX = "user:";
+
+    /**
+     * 当前节点id，用于忽略自身发出的失效通知。
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 应用配置。
+     */
+    @Resource
+    private AdiProperties adiProperties;
+
+    /**
+     * Redis 操作模板。
+     */
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * Redis 连接工厂。
+     */
+    @Resource
+    private RedisConnectionFactory redisConnectionFactory;
+
+    /**
+     * 本地缓存（token -> 用户）。
+     */
+    private Cache<String, User> cache;
+
+    /**
+     * 失效通知监听容器。
+     */
+    private RedisMessageListenerContainer listenerContainer;
+
+    /**
+     * 初始化本地缓存并订阅失效通知。
+     *
+     * @return 无
+     */
+    @PostConstruct
+    public void init() {
+        AdiProperties.TokenCache config = adiProperties.getTokenCache();
+        cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaxSize())
+                .expireAfterWrite(Duration.ofSeconds(config.getTtlSeconds()))
+                .build();
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(redisConnectionFactory);
+        listenerContainer.addMessageListener(this, new ChannelTopic(RedisKeyConstant.USER_TOKEN_INVALIDATE_CHANNEL));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+        log.info("user token cache started,enable:{},nodeId:{}", config.isEnable(), nodeId);
+    }
+
+    /**
+     * 停止订阅失效通知。
+     *
+     * @return 无
+     */
+    @PreDestroy
+    public void destroy() throws Exception {
+        if (null != listenerContainer) {
+            listenerContainer.destroy();
+        }
+    }
+
+    /**
+     * 根据 token 获取登录用户，本地缓存未命中时从 Redis 加载。
+     * 返回的是缓存对象的副本，调用方修改不会影响其他请求。
+     *
+     * @param token 登录 token
+     * @return 用户，未登录时返回 null
+     */
+    public User get(String token) {
+        if (StringUtils.isBlank(token)) {
+            return null;
+        }
+        User user = adiProperties.getTokenCache().isEnable() ? cache.get(token, this::load) : load(token);
+        if (null == user) {
+            return null;
+        }
+        User copy = new User();
+        BeanUtils.copyProperties(user, copy);
+        return copy;
+    }
+
+    /**
+     * 失效指定 token（如注销），并通知其他节点。
+     *
+     * @param token 登录 token
+     * @return 无
+     */
+    public void invalidateToken(String token) {
+        if (StringUtils.isBlank(token)) {
+            return;
+        }
+        cache.invalidate(token);
+        publish(TOKEN_PREFIX + token);
+    }
+
+    /**
+     * 失效指定用户的全部 token（如用户信息变更），并通知其他节点。
+     * 只失效本地缓存，调用前需已改写 Redis 中的用户信息。
+     *
+     * @param userId 用户 ID
+     * @return 无
+     */
+    public void invalidateUser(Long userId) {
+        if (null == userId) {
+            return;
+        }
+        invalidateLocalUser(userId);
+        publish(USER_PREFIX + userId);
+    }
+
+    /**
+     * 收到其他节点的失效通知时失效本地缓存。
+     *
+     * @param message 通知消息
+     * @param pattern 订阅模式
+     * @return 无
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (nodeId.equals(StringUtils.substringBefore(body, SEPARATOR))) {
+            return;
+        }
+        String target = StringUtils.substringAfter(body, SEPARATOR);
+        if (target.startsWith(TOKEN_PREFIX)) {
+            cache.invalidate(target.substring(TOKEN_PREFIX.length()));
+        } else if (target.startsWith(USER_PREFIX)) {
+            try {
+                invalidateLocalUser(Long.parseLong(target.substring(USER_PREFIX.length())));
+            } catch (NumberFormatException e) {
+                log.warn("illegal user token invalidate message:{}", body);
+            }
+        }
+    }
+
+    /**
+     * 从 Redis 加载并解析 token 对应的用户。
+     *
+     * @param token 登录 token
+     * @return 用户，未登录时返回 null
+     */
+    private User load(String token) {
+        String userJson = stringRedisTemplate.opsForValue().get(MessageFormat.format(RedisKeyConstant.USER_TOKEN, token));
+        if (StringUtils.isBlank(userJson)) {
+            return null;
+        }
+        return JsonUtil.fromJson(userJson, User.class);
+    }
+
+    /**
+     * 失效本节点缓存中属于指定用户的 token。
+     *
+     * @param userId 用户 ID
+     * @return 无
+     */
+    private void invalidateLocalUser(long userId) {
+        cache.asMap().values().removeIf(user -> null != user.getId() && user.getId() == userId);
+    }
+
+    /**
+     * 发布失效通知。
+     *
+     * @param target 失效对象
+     * @return 无
+     */
+    private void publish(String target) {
+        stringRedisTemplate.convertAndSend(RedisKeyConstant.USER_TOKEN_INVALIDATE_CHANNEL, nodeId + SEPARATOR + target);
+    }
+}
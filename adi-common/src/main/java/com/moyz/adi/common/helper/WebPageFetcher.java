@@ -0,0 +1,367 @@
+package com.moyz.adi.common.helper;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.moyz.adi.common.config.AdiProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 网页正文抓取。
+ * <p>
+ * 所有搜索请求共用一个异步 HttpClient（连接复用），同一主机的并发抓取数受限，
+ * 每个网页有硬性期限，正文按字节上限边读边截断后再提取文本，慢网站和超大页面不会拖住回答。
+ * 正文以非阻塞方式接收，期限到达时取消请求或停止接收正文，主机许可在请求真正结束后才释放。
+ */
+@Slf4j
+@Component
+public class WebPageFetcher {
+
+    /**
+     * 抓取耗时指标名称，以 result（ok/empty/error/busy）标签区分。
+     */
+    public static final String METRIC_FETCH = "adi.search.fetch";
+
+    /**
+     * Content-Type 中的字符集。
+     */
+    private static final Pattern CHARSET = Pattern.compile("charset=\\s*\"?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * 应用配置。
+     */
+    @Resource
+    private AdiProperties adiProperties;
+
+    /**
+     * 指标注册表。
+     */
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 共享的 HTTP 客户端。
+     */
+    private HttpClient httpClient;
+
+    /**
+     * 主机到并发许可的映射。
+     */
+    private Cache<String, Semaphore> hostPermits;
+
+    /**
+     * 初始化 HTTP 客户端。
+     *
+     * @return 无
+     */
+    @PostConstruct
+    public void init() {
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(adiProperties.getAiSearch().getConnectTimeoutMillis()))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        hostPermits = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .maximumSize(10000)
+                .build();
+    }
+
+    /**
+     * 异步抓取网页正文。
+     * 地址非法、主机并发已满、超时或出错时返回空串，由调用方改用摘要。
+     *
+     * @param url 网页地址
+     * @return 正文文本
+     */
+    public CompletableFuture<String> fetch(String url) {
+        if (StringUtils.isBlank(url) || !url.startsWith("http")) {
+            return CompletableFuture.completedFuture("");
+        }
+        AdiProperties.AiSearch config = adiProperties.getAiSearch();
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            log.warn("Illegal url:{}", url);
+            return CompletableFuture.completedFuture("");
+        }
+        Semaphore permits = hostPermits.get(StringUtils.defaultString(uri.getHost()), key -> new Semaphore(config.getMaxConnectionsPerHost()));
+        if (!permits.tryAcquire()) {
+            log.info("Too many concurrent fetches to host,url:{}", url);
+            record(0, "busy");
+            return CompletableFuture.completedFuture("");
+        }
+        long start = System.nanoTime();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(config.getPageTimeoutMillis()))
+                .header("User-Agent", "Mozilla/5.0 (compatible; AIDeepin)")
+                .header("Accept", "text/html,application/xhtml+xml,text/plain;q=0.9,*/*;q=0.5")
+                .GET()
+                .build();
+        AtomicBoolean expired = new AtomicBoolean(false);
+        AtomicReference<PageBodySubscriber> bodyRef = new AtomicReference<>();
+        HttpResponse.BodyHandler<byte[]> bodyHandler = responseInfo -> {
+            if (responseInfo.statusCode() >= 400) {
+                return HttpResponse.BodySubscribers.replacing(new byte[0]);
+            }
+            PageBodySubscriber subscriber = new PageBodySubscriber(url, config.getMaxPageBytes());
+            bodyRef.set(subscriber);
+            if (expired.get()) {
+                subscriber.abort();
+            }
+            return subscriber;
+        };
+        CompletableFuture<HttpResponse<byte[]>> exchange = httpClient.sendAsync(request, bodyHandler);
+        // 期限到达：已开始接收正文时停止接收并使用已读部分，否则取消请求
+        CompletableFuture.delayedExecutor(config.getPageTimeoutMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+            expired.set(true);
+            PageBodySubscriber subscriber = bodyRef.get();
+            if (null != subscriber) {
+                subscriber.abort();
+            } else {
+                exchange.cancel(true);
+            }
+        });
+        return exchange
+                .thenApply(response -> extract(url, response))
+                .handle((text, throwable) -> {
+                    permits.release();
+                    if (null != throwable) {
+                        log.warn("Failed to load document from {},error:{}", url, throwable.toString());
+                        record(start, "error");
+                        return "";
+                    }
+                    record(start, text.isEmpty() ? "empty" : "ok");
+                    return text;
+                });
+    }
+
+    /**
+     * 从已接收的正文中提取文本。
+     *
+     * @param url      网页地址
+     * @param response 响应
+     * @return 正文文本
+     */
+    private String extract(String url, HttpResponse<byte[]> response) {
+        AdiProperties.AiSearch config = adiProperties.getAiSearch();
+        if (response.statusCode() >= 400) {
+            log.warn("Failed to load document from {},status:{}", url, response.statusCode());
+            return "";
+        }
+        try {
+            String charset = response.headers().firstValue("Content-Type").map(this::charset).orElse(null);
+            Document doc = Jsoup.parse(new ByteArrayInputStream(response.body()), charset, url);
+            Element main = doc.getElementsByTag("main").isEmpty() ? doc.body() : doc.getElementsByTag("main").get(0);
+            String text = null == main ? "" : main.text();
+            return StringUtils.left(text, config.getMaxPageChars());
+        } catch (IOException e) {
+            log.warn("Failed to read document from {},error:{}", url, e.toString());
+            return "";
+        }
+    }
+
+    /**
+     * 从 Content-Type 中解析字符集，未声明时交由 Jsoup 从 BOM 或 meta 中识别。
+     *
+     * @param contentType Content-Type
+     * @return 字符集
+     */
+    private String charset(String contentType) {
+        Matcher matcher = CHARSET.matcher(contentType);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    /**
+     * 记录抓取耗时。
+     *
+     * @param start  开始时间（System.nanoTime），为 0 时不计耗时
+     * @param result 结果
+     * @return 无
+     */
+    private void record(long start, String result) {
+        Timer.builder(METRIC_FETCH)
+                .tag("result", result)
+                .register(meterRegistry)
+                .record(start == 0 ? 0 : System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 网页正文接收器：按字节上限截断，可在期限到达时中止。
+     * 中止或达到上限时取消订阅（不再从连接读取），以已接收的部分作为正文。
+     */
+    private static class PageBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+
+        /**
+         * 网页地址。
+         */
+        private final String url;
+
+        /**
+         * 正文字节上限。
+         */
+        private final int maxBytes;
+
+        /**
+         * 已接收的正文。
+         */
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        /**
+         * 正文接收结果。
+         */
+        private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+
+        /**
+         * 订阅。
+         */
+        private volatile Flow.Subscription subscription;
+
+        /**
+         * 是否已中止。
+         */
+        private volatile boolean aborted;
+
+        /**
+         * 创建正文接收器。
+         *
+         * @param url      网页地址
+         * @param maxBytes 正文字节上限
+         */
+        PageBodySubscriber(String url, int maxBytes) {
+            this.url = url;
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * 获取正文接收结果。
+         *
+         * @return 正文
+         */
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return body;
+        }
+
+        /**
+         * 开始订阅，已中止时直接取消。
+         *
+         * @param subscription 订阅
+         * @return 无
+         */
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (aborted) {
+                subscription.cancel();
+                return;
+            }
+            subscription.request(1);
+        }
+
+        /**
+         * 接收一批数据，达到字节上限时截断并结束。
+         *
+         * @param items 数据
+         * @return 无
+         */
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (body.isDone()) {
+                return;
+            }
+            synchronized (out) {
+                for (ByteBuffer item : items) {
+                    int length = Math.min(item.remaining(), maxBytes - out.size());
+                    byte[] bytes = new byte[length];
+                    item.get(bytes);
+                    out.write(bytes, 0, length);
+                }
+            }
+            if (out.size() >= maxBytes) {
+                log.info("Truncate document from {},bytes:{}", url, out.size());
+                subscription.cancel();
+                complete();
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        /**
+         * 接收出错。
+         *
+         * @param throwable 异常
+         * @return 无
+         */
+        @Override
+        public void onError(Throwable throwable) {
+            body.completeExceptionally(throwable);
+        }
+
+        /**
+         * 接收完成。
+         *
+         * @return 无
+         */
+        @Override
+        public void onComplete() {
+            complete();
+        }
+
+        /**
+         * 期限到达时中止接收，以已接收的部分作为正文。
+         *
+         * @return 无
+         */
+        void abort() {
+            aborted = true;
+            Flow.Subscription current = subscription;
+            if (null != current) {
+                current.cancel();
+            }
+            if (!body.isDone()) {
+                log.info("Truncate document from {} at deadline,bytes:{}", url, out.size());
+            }
+            complete();
+        }
+
+        /**
+         * 以已接收的数据结束。
+         *
+         * @return 无
+         */
+        private void complete() {
+            synchronized (out) {
+                body.complete(out.toByteArray());
+            }
+        }
+    }
+}
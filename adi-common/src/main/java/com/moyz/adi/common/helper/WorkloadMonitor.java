@@ -0,0 +1,421 @@
+package com.moyz.adi.common.helper;
+
+import com.moyz.adi.common.config.AdiProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 线程池负载监控与后台任务准入控制。
+ * <p>
+ * 各线程池按负载类型隔离：交互任务（对话、检索）、后台任务（索引、长期记忆、图片）、常驻流水线。
+ * 每个线程池暴露排队数、活跃线程数、排队耗时与拒绝次数指标（以 pool 标签区分）。
+ * 交互任务排队超过时延目标或交互线程池出现排队时视为交互时延有风险，此时新提交的后台任务先不进入线程池，
+ * 由调度线程定期复查，风险解除或最长推迟一段时间后再提交，避免后台任务饿死；推迟期间不占用工作线程。
+ */
+@Slf4j
+@Component
+public class WorkloadMonitor {
+
+    /**
+     * 任务排队耗时指标名称。
+     */
+    public static final String METRIC_WAIT = "adi.executor.wait";
+
+    /**
+     * 排队任务数指标名称。
+     */
+    public static final String METRIC_QUEUE = "adi.executor.queue";
+
+    /**
+     * 活跃线程数指标名称。
+     */
+    public static final String METRIC_ACTIVE = "adi.executor.active";
+
+    /**
+     * 拒绝任务数指标名称。
+     */
+    public static final String METRIC_REJECTED = "adi.executor.rejected";
+
+    /**
+     * 后台任务因交互时延风险被推迟的次数指标名称。
+     */
+    public static final String METRIC_DEFERRED = "adi.executor.deferred";
+
+    /**
+     * 推迟期间复查交互负载的间隔（毫秒）。
+     */
+    private static final long DEFER_CHECK_MILLIS = 100;
+
+    /**
+     * 应用配置。
+     */
+    @Resource
+    private AdiProperties adiProperties;
+
+    /**
+     * 指标注册表。
+     */
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 交互线程池，用于判断是否出现排队。
+     */
+    private final List<ThreadPoolTaskExecutor> interactivePools = new CopyOnWriteArrayList<>();
+
+    /**
+     * 交互时延风险持续到的时间（毫秒）。
+     */
+    private volatile long interactiveAtRiskUntil;
+
+    /**
+     * 复查被推迟后台任务的调度线程。
+     */
+    private final ScheduledExecutorService deferScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "workload-defer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 创建线程池：后台任务线程池在提交时进行准入控制，其余为普通线程池。
+     *
+     * @param workload 负载类型
+     * @return 线程池（尚未初始化）
+     */
+    public ThreadPoolTaskExecutor newExecutor(Workload workload) {
+        return workload == Workload.BACKGROUND ? new DeferringExecutor() : new ThreadPoolTaskExecutor();
+    }
+
+    /**
+     * 为线程池设置排队耗时记录、拒绝计数、准入控制并注册指标。
+     *
+     * @param pool     线程池名称
+     * @param executor 线程池
+     * @param workload 负载类型
+     * @return 无
+     */
+    public void instrument(String pool, ThreadPoolTaskExecutor executor, Workload workload) {
+        executor.setTaskDecorator(decorator(pool, workload));
+        if (executor instanceof DeferringExecutor deferringExecutor) {
+            deferringExecutor.pool = pool;
+            deferringExecutor.deferredCounter = Counter.builder(METRIC_DEFERRED).tag("pool", pool).register(meterRegistry);
+        }
+        Counter rejected = Counter.builder(METRIC_REJECTED).tag("pool", pool).register(meterRegistry);
+        executor.setRejectedExecutionHandler(rejectionHandler(pool, rejected));
+        Gauge.builder(METRIC_QUEUE, executor, ThreadPoolTaskExecutor::getQueueSize).tag("pool", pool).register(meterRegistry);
+        Gauge.builder(METRIC_ACTIVE, executor, ThreadPoolTaskExecutor::getActiveCount).tag("pool", pool).register(meterRegistry);
+        if (workload == Workload.INTERACTIVE) {
+            interactivePools.add(executor);
+        }
+    }
+
+    /**
+     * 创建记录排队耗时的任务装饰器，交互任务的排队耗时同时用于判断交互时延风险。
+     *
+     * @param pool     线程池名称
+     * @param workload 负载类型
+     * @return 任务装饰器
+     */
+    public TaskDecorator decorator(String pool, Workload workload) {
+        Timer waitTimer = Timer.builder(METRIC_WAIT).tag("pool", pool).register(meterRegistry);
+        return runnable -> {
+            long submitNanos = System.nanoTime();
+            return () -> {
+                long waitNanos = System.nanoTime() - submitNanos;
+                waitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+                if (workload == Workload.INTERACTIVE) {
+                    onInteractiveWait(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+                }
+                runnable.run();
+            };
+        };
+    }
+
+    /**
+     * 交互时延是否有风险。
+     *
+     * @return 是否有风险
+     */
+    public boolean isInteractiveAtRisk() {
+        if (System.currentTimeMillis() < interactiveAtRiskUntil) {
+            return true;
+        }
+        for (ThreadPoolTaskExecutor executor : interactivePools) {
+            if (executor.getQueueSize() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 记录交互任务排队耗时，超过时延目标时标记一段时间内交互时延有风险。
+     *
+     * @param waitMillis 排队耗时（毫秒）
+     * @return 无
+     */
+    private void onInteractiveWait(long waitMillis) {
+        AdiProperties.Executor config = adiProperties.getExecutor();
+        if (waitMillis > config.getInteractiveWaitSloMillis()) {
+            interactiveAtRiskUntil = System.currentTimeMillis() + config.getRiskCooldownMillis();
+        }
+    }
+
+    /**
+     * 关闭推迟任务调度线程。
+     *
+     * @return 无
+     */
+    @PreDestroy
+    public void destroy() {
+        deferScheduler.shutdownNow();
+    }
+
+    /**
+     * 创建计数后拒绝的处理器，拒绝时抛出 RejectedExecutionException，由调用方或全局异常处理返回服务繁忙。
+     *
+     * @param pool     线程池名称
+     * @param rejected 拒绝次数计数器
+     * @return 拒绝处理器
+     */
+    private RejectedExecutionHandler rejectionHandler(String pool, Counter rejected) {
+        return (runnable, threadPoolExecutor) -> {
+            rejected.increment();
+            log.warn("Task rejected,pool:{},active:{},queue:{}", pool, threadPoolExecutor.getActiveCount(), threadPoolExecutor.getQueue().size());
+            throw new RejectedExecutionException("Task rejected from " + pool);
+        };
+    }
+
+    /**
+     * 在提交时进行准入控制的后台任务线程池。
+     * <p>
+     * 交互时延有风险时任务暂存在调度线程中，每隔 DEFER_CHECK_MILLIS 复查一次，风险解除或达到 backgroundMaxDeferMillis 后再提交到线程池。
+     * 暂存的任务数不超过队列容量，超过时按队列已满拒绝；推迟后提交仍被拒绝时同样交给拒绝处理器计数，
+     * 并以 RejectedExecutionException 结束对应的 Future，提交方（如返回 CompletableFuture 的 @Async 方法的调用方）据此处理失败。
+     */
+    private class DeferringExecutor extends ThreadPoolTaskExecutor {
+
+        /**
+         * 线程池名称。
+         */
+        private String pool;
+
+        /**
+         * 推迟次数计数器。
+         */
+        private Counter deferredCounter;
+
+        /**
+         * 当前暂存（已推迟、尚未提交）的任务数。
+         */
+        private final AtomicInteger deferredTasks = new AtomicInteger();
+
+        /**
+         * 提交任务，交互时延有风险时推迟提交。
+         *
+         * @param task 任务
+         * @return 无
+         */
+        @Override
+        public void execute(Runnable task) {
+            if (null == deferredCounter || !isInteractiveAtRisk()) {
+                super.execute(task);
+                return;
+            }
+            if (deferredTasks.incrementAndGet() > Math.max(1, getQueueCapacity())) {
+                deferredTasks.decrementAndGet();
+                // 与队列已满时一样交给拒绝处理器（计数并抛出 RejectedExecutionException）
+                ThreadPoolExecutor threadPoolExecutor = getThreadPoolExecutor();
+                threadPoolExecutor.getRejectedExecutionHandler().rejectedExecution(task, threadPoolExecutor);
+                return;
+            }
+            deferredCounter.increment();
+            long deadline = System.currentTimeMillis() + adiProperties.getExecutor().getBackgroundMaxDeferMillis();
+            deferScheduler.schedule(() -> recheck(task, deadline), DEFER_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * 提交任务，经过 {@link #execute(Runnable)} 的准入控制。
+         *
+         * @param task 任务
+         * @return 任务结果
+         */
+        @Override
+        public Future<?> submit(Runnable task) {
+            DeferredFuture<Object> future = new DeferredFuture<>(Executors.callable(task, null));
+            execute(future);
+            return future;
+        }
+
+        /**
+         * 提交任务，经过 {@link #execute(Runnable)} 的准入控制。
+         *
+         * @param task 任务
+         * @param <T>  结果类型
+         * @return 任务结果
+         */
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            DeferredFuture<T> future = new DeferredFuture<>(task);
+            execute(future);
+            return future;
+        }
+
+        /**
+         * 提交任务，经过 {@link #execute(Runnable)} 的准入控制，推迟后提交被拒绝时返回的 Future 异常结束。
+         *
+         * @param task 任务
+         * @param <T>  结果类型
+         * @return 任务结果
+         */
+        @Override
+        public <T> CompletableFuture<T> submitCompletable(Callable<T> task) {
+            DeferredFuture<T> future = new DeferredFuture<>(task);
+            execute(future);
+            return future.completion;
+        }
+
+        /**
+         * 提交任务，经过 {@link #execute(Runnable)} 的准入控制，推迟后提交被拒绝时返回的 Future 异常结束。
+         *
+         * @param task 任务
+         * @return 任务结果
+         */
+        @Override
+        public CompletableFuture<Void> submitCompletable(Runnable task) {
+            DeferredFuture<Void> future = new DeferredFuture<>(Executors.callable(task, null));
+            execute(future);
+            return future.completion;
+        }
+
+        /**
+         * 复查被推迟的任务：风险仍在且未到最长推迟时间时继续推迟，否则提交到线程池。
+         *
+         * @param task     任务
+         * @param deadline 最长推迟到的时间（毫秒）
+         * @return 无
+         */
+        private void recheck(Runnable task, long deadline) {
+            boolean expired = System.currentTimeMillis() >= deadline;
+            if (!expired && isInteractiveAtRisk()) {
+                deferScheduler.schedule(() -> recheck(task, deadline), DEFER_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            }
+            deferredTasks.decrementAndGet();
+            if (expired) {
+                log.info("Background task deferred to max,pool:{}", pool);
+            }
+            try {
+                super.execute(task);
+            } catch (RejectedExecutionException e) {
+                log.error("Deferred task rejected,pool:{}", pool);
+                RejectedExecutionException rejected = e;
+                try {
+                    ThreadPoolExecutor threadPoolExecutor = getThreadPoolExecutor();
+                    threadPoolExecutor.getRejectedExecutionHandler().rejectedExecution(task, threadPoolExecutor);
+                } catch (RejectedExecutionException handlerException) {
+                    rejected = handlerException;
+                }
+                if (task instanceof DeferredFuture<?> future) {
+                    future.reject(rejected);
+                } else if (task instanceof Future<?> future) {
+                    future.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * 经过准入控制提交的任务，结束（含推迟后被拒绝）时同步结束 {@link #completion}。
+     *
+     * @param <T> 结果类型
+     */
+    private static class DeferredFuture<T> extends FutureTask<T> {
+
+        /**
+         * 与任务同时结束的 CompletableFuture。
+         */
+        private final CompletableFuture<T> completion = new CompletableFuture<>();
+
+        /**
+         * 创建任务。
+         *
+         * @param callable 任务
+         */
+        DeferredFuture(Callable<T> callable) {
+            super(callable);
+        }
+
+        /**
+         * 任务被线程池拒绝，以拒绝异常结束。
+         *
+         * @param e 拒绝异常
+         * @return 无
+         */
+        void reject(RejectedExecutionException e) {
+            setException(e);
+        }
+
+        /**
+         * 任务结束时同步结束 {@link #completion}。
+         *
+         * @return 无
+         */
+        @Override
+        protected void done() {
+            try {
+                completion.complete(get());
+            } catch (ExecutionException e) {
+                completion.completeExceptionally(e.getCause());
+            } catch (CancellationException e) {
+                completion.completeExceptionally(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                completion.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * 负载类型。
+     */
+    public enum Workload {
+        /**
+         * 交互任务，排队耗时决定用户可感知的时延。
+         */
+        INTERACTIVE,
+        /**
+         * 后台任务，交互时延有风险时推迟提交。
+         */
+        BACKGROUND,
+        /**
+         * 常驻流水线线程或已在上游经过准入控制的任务，只记录指标。
+         */
+        PIPELINE
+    }
+}
@@ -7,13 +7,15 @@ import com.moyz.adi.common.entity.AiModel;
 import com.moyz.adi.common.entity.ModelPlatform;
 import com.moyz.adi.common.enums.ErrorEnum;
 import com.moyz.adi.common.exception.BaseException;
+import com.moyz.adi.common.helper.DownstreamLimiter;
 import com.moyz.adi.common.helper.SSEEmitterHelper;
 import com.moyz.adi.common.helper.TtsModelContext;
 import com.moyz.adi.common.interfaces.TriConsumer;
 import com.moyz.adi.common.languagemodel.data.InnerStreamChatParams;
 import com.moyz.adi.common.languagemodel.data.LLMException;
 import com.moyz.adi.common.languagemodel.data.LLMResponseContent;
-import com.moyz.adi.common.memory.shortterm.MapDBChatMemoryStore;
+import com.moyz.adi.common.memory.shortterm.ChatMemoryStoreFactory;
+import com.moyz.adi.common.rag.MemoizingTokenCountEstimator;
 import com.moyz.adi.common.rag.TokenEstimatorFactory;
 import com.moyz.adi.common.rag.TokenEstimatorThreadLocal;
 import com.moyz.adi.common.util.*;
@@ -225,6 +227,12 @@ public abstract class AbstractLLMService extends CommonModelService {
         StreamingChatModel streamingChatModel = buildStreamingChatModel(modelProperties);
 
         ChatRequest chatRequest = createChatRequest(httpRequestParams);
+        // 按模型平台限制并发，许可持有到模型返回最终结果（含工具调用递归）或出错
+        DownstreamLimiter.Permit permit = SpringUtil.getBean(DownstreamLimiter.class).acquireLlm(platform.getName());
+        if (null != params.getSseEmitter()) {
+            // 客户端断开或超时时兜底释放
+            params.getSseEmitter().onCompletion(permit::close);
+        }
         InnerStreamChatParams innerStreamChatParams = InnerStreamChatParams.builder()
                 .uuid(params.getUuid())
                 .user(params.getUser())
@@ -234,6 +242,7 @@ public abstract class AbstractLLMService extends CommonModelService {
                 .mcpClients(httpRequestParams.getMcpClients())
                 .answerContentType(params.getAnswerContentType())
                 .consumer(consumer)
+                .permit(permit)
                 .build();
         try {
 
@@ -257,6 +266,7 @@ public abstract class AbstractLLMService extends CommonModelService {
             // 无论是否返回音频，都需要走流式聊天主流程
             innerStreamingChat(innerStreamChatParams);
         } catch (Exception e) {
+            permit.close();
             ttsJobCache.invalidate(params.getUser().getUuid());
             closeMcpClients(params.getHttpRequestParams().getMcpClients());
             throw e;
@@ -306,6 +316,8 @@ public abstract class AbstractLLMService extends CommonModelService {
                     // 使用工具调用结果递归继续对话
                     innerStreamingChat(params);
                 } else {
+                    // 模型已返回最终结果，后续持久化不再占用平台许可
+                    params.getPermit().close();
                     TtsJobInfo jobInfo = ttsOnComplete(params);
                     String filePath = null != jobInfo ? jobInfo.getFilePath() : null;
                     // 结束整个对话任务
@@ -319,6 +331,7 @@ public abstract class AbstractLLMService extends CommonModelService {
 
             @Override
             public void onError(Throwable error) {
+                params.getPermit().close();
                 // 错误分支同样要释放 MCP 资源，防止后续请求复用到脏连接
                 SSEEmitterHelper.errorAndShutdown(error, params.getSseEmitter());
                 closeMcpClients(params.getMcpClients());
@@ -348,13 +361,15 @@ public abstract class AbstractLLMService extends CommonModelService {
         ChatModel chatModel = buildChatLLM(modelProperties);
         ChatRequest chatRequest = createChatRequest(chatModelRequestParams);
 
-        ChatResponse chatResponse = chatModel.chat(chatRequest);
-        if (chatResponse.aiMessage().hasToolExecutionRequests()) {
-            return innerChat(params.getUuid(), chatModel, chatModelRequestParams, chatRequest);
-        }
+        try (DownstreamLimiter.Permit ignored = SpringUtil.getBean(DownstreamLimiter.class).acquireLlm(platform.getName())) {
+            ChatResponse chatResponse = chatModel.chat(chatRequest);
+            if (chatResponse.aiMessage().hasToolExecutionRequests()) {
+                return innerChat(params.getUuid(), chatModel, chatModelRequestParams, chatRequest);
+            }
 
-        cacheTokenUsage(params.getUuid(), chatResponse);
-        return chatResponse;
+            cacheTokenUsage(params.getUuid(), chatResponse);
+            return chatResponse;
+        }
     }
 
     /**
@@ -420,55 +435,60 @@ public abstract class AbstractLLMService extends CommonModelService {
         userContents.add(TextContent.from(chatModelRequestParams.getUserMessage()));
         List<ChatMessage> chatMessages = new ArrayList<>();
         if (StringUtils.isNotBlank(memoryId)) {
-
-            TokenCountEstimator tokenCountEstimator;
-            String tokenEstimatorName = TokenEstimatorThreadLocal.getTokenEstimator();
-            if (StringUtils.isBlank(tokenEstimatorName) && null != getTokenEstimator()) {
-                // 优先使用模型自带估算器，保证与服务一致
-                tokenCountEstimator = getTokenEstimator();
-            } else {
-                // 使用线程上下文指定的估算器，确保与知识库一致
-                tokenCountEstimator = TokenEstimatorFactory.create(tokenEstimatorName);
-            }
-
-            // 滑动窗口算法限制消息长度
-            TokenWindowChatMemory memory = TokenWindowChatMemory.builder()
-                    .chatMemoryStore(MapDBChatMemoryStore.getSingleton())
-                    .id(memoryId)
-                    .maxTokens(aiModel.getMaxInputTokens(), tokenCountEstimator)
-                    .build();
-            if (StringUtils.isNotBlank(chatModelRequestParams.getSystemMessage())) {
-                memory.add(SystemMessage.from(chatModelRequestParams.getSystemMessage()));
-            }
-
-            // 处理重复的 UserMessage，避免用户消息被重复计入
-            if (!memory.messages().isEmpty()) {
-                ChatMessage lastMessage = memory.messages().get(memory.messages().size() - 1);
-                if (lastMessage instanceof UserMessage) {
-                    List<ChatMessage> list = memory.messages().subList(0, memory.messages().size() - 1);
-                    memory.clear();
-                    list.forEach(memory::add);
+            // 滑动窗口每次读写记忆都会重新估算全部历史消息，在本方法内记忆估算结果，同一消息只分词一次
+            boolean memoOpened = TokenEstimatorThreadLocal.openMemoScope();
+            try {
+                TokenCountEstimator tokenCountEstimator;
+                String tokenEstimatorName = TokenEstimatorThreadLocal.getTokenEstimator();
+                if (StringUtils.isBlank(tokenEstimatorName) && null != getTokenEstimator()) {
+                    // 优先使用模型自带估算器，保证与服务一致
+                    tokenCountEstimator = MemoizingTokenCountEstimator.of(aiModel.getPlatform() + ":" + aiModel.getName(), getTokenEstimator());
+                } else {
+                    // 使用线程上下文指定的估算器，确保与知识库一致
+                    tokenCountEstimator = TokenEstimatorFactory.create(tokenEstimatorName);
                 }
-            }
 
-            memory.add(UserMessage.from(userContents));
+                // 滑动窗口算法限制消息长度
+                TokenWindowChatMemory memory = TokenWindowChatMemory.builder()
+                        .chatMemoryStore(ChatMemoryStoreFactory.get())
+                        .id(memoryId)
+                        .maxTokens(aiModel.getMaxInputTokens(), tokenCountEstimator)
+                        .build();
+                if (StringUtils.isNotBlank(chatModelRequestParams.getSystemMessage())) {
+                    memory.add(SystemMessage.from(chatModelRequestParams.getSystemMessage()));
+                }
 
-            // 得到截断后符合 maxTokens 的文本消息
-            chatMessages.addAll(memory.messages());
+                // 处理重复的 UserMessage，避免用户消息被重复计入
+                if (!memory.messages().isEmpty()) {
+                    ChatMessage lastMessage = memory.messages().get(memory.messages().size() - 1);
+                    if (lastMessage instanceof UserMessage) {
+                        List<ChatMessage> list = memory.messages().subList(0, memory.messages().size() - 1);
+                        memory.clear();
+                        list.forEach(memory::add);
+                    }
+                }
 
-            // AI Services 暂不支持多模态，使用低层 API 处理：https://docs.langchain4j.dev/tutorials/ai-services#multimodality
-            // 重新组装用户消息并追加图片内容
-            List<Content> imageContents = ImageUtil.urlsToImageContent(chatModelRequestParams.getImageUrls());
-            if (CollectionUtils.isNotEmpty(imageContents)) {
-                int lastIndex = chatMessages.size() - 1;
-                UserMessage lastMessage = (UserMessage) chatMessages.get(lastIndex);
-                chatMessages.remove(lastIndex);
-                List<Content> userMessage = new ArrayList<>();
-                userMessage.addAll(lastMessage.contents());
-                userMessage.addAll(imageContents);
-                chatMessages.add(UserMessage.from(userMessage));
+                memory.add(UserMessage.from(userContents));
+
+                // 得到截断后符合 maxTokens 的文本消息
+                chatMessages.addAll(memory.messages());
+
+                // AI Services 暂不支持多模态，使用低层 API 处理：https://docs.langchain4j.dev/tutorials/ai-services#multimodality
+                // 重新组装用户消息并追加图片内容
+                List<Content> imageContents = ImageUtil.urlsToImageContent(chatModelRequestParams.getImageUrls());
+                if (CollectionUtils.isNotEmpty(imageContents)) {
+                    int lastIndex = chatMessages.size() - 1;
+                    UserMessage lastMessage = (UserMessage) chatMessages.get(lastIndex);
+                    chatMessages.remove(lastIndex);
+                    List<Content> userMessage = new ArrayList<>();
+                    userMessage.addAll(lastMessage.contents());
+                    userMessage.addAll(imageContents);
+                    chatMessages.add(UserMessage.from(userMessage));
+                }
+                return chatMessages;
+            } finally {
+                TokenEstimatorThreadLocal.closeMemoScope(memoOpened);
             }
-            return chatMessages;
         } else {
             if (StringUtils.isNotBlank(chatModelRequestParams.getSystemMessage())) {
                 chatMessages.add(SystemMessage.from(chatModelRequestParams.getSystemMessage()));
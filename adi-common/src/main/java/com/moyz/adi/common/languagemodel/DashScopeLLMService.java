@@ -37,6 +37,11 @@ import static com.moyz.adi.common.enums.ErrorEnum.B_LLM_SECRET_KEY_NOT_SET;
 @Slf4j
 public class DashScopeLLMService extends AbstractLLMService {
 
+    /**
+     * 共享的 token 估算器，首次使用时创建
+     */
+    private volatile TokenCountEstimator tokenEstimator;
+
     public DashScopeLLMService(AiModel aiModel, ModelPlatform modelPlatform) {
         super(aiModel, modelPlatform);
     }
@@ -110,11 +115,14 @@ public class DashScopeLLMService extends AbstractLLMService {
 
     @Override
     public TokenCountEstimator getTokenEstimator() {
-        if (aiModel.getName().contains("qwen-turbo") || aiModel.getName().contains("qwen-plus")) {
-            return new QwenTokenCountEstimator(platform.getApiKey(), aiModel.getName());
-        } else {
-            return new OpenAiTokenCountEstimator(OpenAiChatModelName.GPT_3_5_TURBO);
+        if (null == tokenEstimator) {
+            if (aiModel.getName().contains("qwen-turbo") || aiModel.getName().contains("qwen-plus")) {
+                tokenEstimator = new QwenTokenCountEstimator(platform.getApiKey(), aiModel.getName());
+            } else {
+                tokenEstimator = new OpenAiTokenCountEstimator(OpenAiChatModelName.GPT_3_5_TURBO);
+            }
         }
+        return tokenEstimator;
     }
 
     @Override
@@ -35,6 +35,11 @@ import java.util.Map;
 @Accessors(chain = true)
 public class OpenAiLLMService extends AbstractLLMService {
 
+    /**
+     * 共享的 token 估算器，首次使用时创建
+     */
+    private volatile TokenCountEstimator tokenEstimator;
+
     public OpenAiLLMService(AiModel model, ModelPlatform modelPlatform) {
         super(model, modelPlatform);
     }
@@ -100,10 +105,14 @@ public class OpenAiLLMService extends AbstractLLMService {
 
     @Override
     public TokenCountEstimator getTokenEstimator() {
-        if (aiModel.getPlatform().equals(AdiConstant.ModelPlatform.OPENAI)) {
-            return new OpenAiTokenCountEstimator(aiModel.getName());
+        if (null == tokenEstimator) {
+            if (aiModel.getPlatform().equals(AdiConstant.ModelPlatform.OPENAI)) {
+                tokenEstimator = new OpenAiTokenCountEstimator(aiModel.getName());
+            } else {
+                tokenEstimator = new OpenAiTokenCountEstimator(ModelType.GPT_3_5_TURBO.getName());
+            }
         }
-        return new OpenAiTokenCountEstimator(ModelType.GPT_3_5_TURBO.getName());
+        return tokenEstimator;
     }
 
     @Override
@@ -1,6 +1,7 @@
 package com.moyz.adi.common.languagemodel.data;
 
 import com.moyz.adi.common.entity.User;
+import com.moyz.adi.common.helper.DownstreamLimiter;
 import com.moyz.adi.common.interfaces.TriConsumer;
 import com.moyz.adi.common.languagemodel.data.LLMResponseContent;
 import com.moyz.adi.common.vo.AnswerMeta;
@@ -25,4 +26,5 @@ public class InnerStreamChatParams {
     private Integer answerContentType;
     private TriConsumer<LLMResponseContent, PromptMeta, AnswerMeta> consumer;
     private User user;
+    private DownstreamLimiter.Permit permit;
 }
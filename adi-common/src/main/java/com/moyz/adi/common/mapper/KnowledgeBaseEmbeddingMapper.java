@@ -13,7 +13,11 @@ public interface KnowledgeBaseEmbeddingMapper extends BaseMapper<KnowledgeBaseEm
 
     Page<KnowledgeBaseEmbedding> selectByItemUuid(Page<KnowledgeBaseEmbedding> page, @Param("kbItemUuid") String uuid, @Param("tableSuffix") String tableSuffix);
 
-    boolean deleteByItemUuid(@Param("kbItemUuid") String uuid, @Param("tableSuffix") String tableSuffix);
+    List<KnowledgeBaseEmbedding> selectSegmentHashByItemUuid(@Param("kbUuid") String kbUuid, @Param("kbItemUuid") String uuid, @Param("tableSuffix") String tableSuffix, @Param("partitioned") boolean partitioned);
 
-    Integer countByKbUuid(@Param("kbUuid") String kbUuid, @Param("tableSuffix") String tableSuffix);
+    boolean deleteByIds(@Param("kbUuid") String kbUuid, @Param("ids") List<String> ids, @Param("tableSuffix") String tableSuffix, @Param("partitioned") boolean partitioned);
+
+    boolean deleteByItemUuid(@Param("kbUuid") String kbUuid, @Param("kbItemUuid") String uuid, @Param("tableSuffix") String tableSuffix, @Param("partitioned") boolean partitioned);
+
+    Integer countByKbUuid(@Param("kbUuid") String kbUuid, @Param("tableSuffix") String tableSuffix, @Param("partitioned") boolean partitioned);
 }
@@ -5,9 +5,19 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.List;
+
 @Mapper
 public interface UserDayCostMapper extends BaseMapper<UserDayCost> {
     Long sumCostByDay(@Param("day") Integer day);
 
     Long sumCostByDayPeriod(@Param("beginDate") Integer beginDate, @Param("endDate") Integer endDate);
+
+    /**
+     * 批量写入用户日统计，同一用户同一天已有记录时取较大的累计值。
+     *
+     * @param list 日统计列表
+     * @return 影响行数
+     */
+    int batchUpsert(@Param("list") List<UserDayCost> list);
 }
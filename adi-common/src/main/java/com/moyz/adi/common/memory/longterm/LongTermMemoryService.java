@@ -1,19 +1,19 @@
 package com.moyz.adi.common.memory.longterm;
 
 import com.moyz.adi.common.base.ThreadContext;
+import com.moyz.adi.common.config.AdiProperties;
 import com.moyz.adi.common.cosntant.AdiConstant;
+import com.moyz.adi.common.entity.User;
 import com.moyz.adi.common.helper.LLMContext;
 import com.moyz.adi.common.memory.vo.ActionMemories;
 import com.moyz.adi.common.memory.vo.ExtractedFact;
-import com.moyz.adi.common.rag.EmbeddingRagContext;
 import com.moyz.adi.common.languagemodel.AbstractLLMService;
+import com.moyz.adi.common.rag.pgvector.AdiPgVectorEmbeddingStore;
 import com.moyz.adi.common.util.AdiStringUtil;
 import com.moyz.adi.common.util.JsonUtil;
 import com.moyz.adi.common.util.UuidUtil;
 import com.moyz.adi.common.vo.ChatModelRequestParams;
 import com.moyz.adi.common.vo.SseAskParams;
-import dev.langchain4j.data.document.DefaultDocument;
-import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
@@ -28,20 +28,31 @@ import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.scheduling.annotation.Async;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.moyz.adi.common.cosntant.AdiConstant.MetadataKey.CONVERSATION_ID;
 import static com.moyz.adi.common.cosntant.AdiConstant.RESPONSE_FORMAT_TYPE_JSON_OBJECT;
 
 /**
  * 长期记忆<br/>
- * 目前只支持角色的长期记忆
+ * 目前只支持角色的长期记忆<br/>
+ * 同一会话短时间内的多轮对话合并为一次整理：一次抽取事实、一次批量向量化、一次更新判断，
+ * 整理在独立的有界线程池中执行，不占用主线程池
  */
 @Slf4j
 @Service
@@ -57,9 +68,26 @@ public class LongTermMemoryService {
      */
     @Resource
     private EmbeddingModel embeddingModel;
+    /**
+     * 应用配置。
+     */
+    @Resource
+    private AdiProperties adiProperties;
+    /**
+     * 长期记忆整理线程池，线程数即跨会话的整理并发上限。
+     */
+    @Resource(name = "longTermMemoryExecutor")
+    private AsyncTaskExecutor longTermMemoryExecutor;
+
+    /**
+     * 待整理的会话，会话 ID 到缓冲的对话轮次。
+     * 会话在排队或整理期间一直保留在此，新的对话轮次只追加不再重复提交，同一会话的整理串行执行。
+     */
+    private final Map<Long, PendingTurns> pendingTurns = new ConcurrentHashMap<>();
 
     /**
      * 异步抽取事实并写入长期记忆。
+     * 对话轮次先缓冲，等待一小段时间后与同一会话的后续轮次合并为一次整理。
      *
      * @param convId           会话 ID
      * @param modelPlatform    模型平台
@@ -67,15 +95,227 @@ public class LongTermMemoryService {
      * @param userMessage      用户消息
      * @param assistantMessage 助手消息
      * @return 无
-     * @throws @BaseException 模型不可用或配置异常时抛出异常
      */
-    @Async
     public void asyncAdd(Long convId, String modelPlatform, String modelName, String userMessage, String assistantMessage) {
         log.info("将信息转为记忆，convId: {}", convId);
         // 将对话拼装为结构化输入，便于事实抽取
         String inputMessage = toInputMessage(userMessage, assistantMessage);
+        User user = ThreadContext.getCurrentUser();
+        int maxTurns = Math.max(1, adiProperties.getLongTermMemory().getMaxBufferedTurns());
+        AtomicBoolean submit = new AtomicBoolean(false);
+        pendingTurns.compute(convId, (key, pending) -> {
+            if (null == pending) {
+                pending = new PendingTurns();
+                submit.set(true);
+            }
+            pending.messages.add(inputMessage);
+            if (pending.messages.size() > maxTurns) {
+                pending.messages.remove(0);
+            }
+            // 使用最近一轮的模型
+            pending.modelPlatform = modelPlatform;
+            pending.modelName = modelName;
+            pending.user = user;
+            return pending;
+        });
+        if (submit.get()) {
+            schedule(convId);
+        }
+    }
+
+    /**
+     * 延迟提交会话的整理任务，延迟期间到达的对话轮次会合并进同一次整理。
+     *
+     * @param convId 会话 ID
+     * @return 无
+     */
+    private void schedule(Long convId) {
+        long delay = adiProperties.getLongTermMemory().getCoalesceMillis();
+        // 延迟到期后才提交到线程池，线程池队列已满时任务被拒绝且不会回调 exceptionally，需在提交处清理缓冲
+        Executor executor = task -> {
+            try {
+                longTermMemoryExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                log.warn("长期记忆整理任务被拒绝，convId: {}", convId);
+                pendingTurns.remove(convId);
+            }
+        };
+        CompletableFuture.runAsync(() -> consolidate(convId), CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executor))
+                .exceptionally(throwable -> {
+                    log.error("长期记忆整理失败，convId: {}", convId, throwable);
+                    pendingTurns.remove(convId);
+                    return null;
+                });
+    }
+
+    /**
+     * 取出会话缓冲的全部对话轮次并整理为长期记忆；整理期间又有新的对话轮次时重新提交。
+     *
+     * @param convId 会话 ID
+     * @return 无
+     */
+    private void consolidate(Long convId) {
+        PendingTurns batch = new PendingTurns();
+        pendingTurns.computeIfPresent(convId, (key, pending) -> {
+            batch.messages.addAll(pending.messages);
+            batch.modelPlatform = pending.modelPlatform;
+            batch.modelName = pending.modelName;
+            batch.user = pending.user;
+            pending.messages.clear();
+            return pending;
+        });
+        try {
+            if (!batch.messages.isEmpty()) {
+                long start = System.currentTimeMillis();
+                consolidate(convId, batch);
+                log.info("长期记忆整理完成，convId: {}, turns: {}, cost: {}ms", convId, batch.messages.size(), System.currentTimeMillis() - start);
+            }
+        } catch (Exception e) {
+            log.error("长期记忆整理失败，convId: {}", convId, e);
+        } finally {
+            AtomicBoolean resubmit = new AtomicBoolean(false);
+            pendingTurns.computeIfPresent(convId, (key, pending) -> {
+                if (pending.messages.isEmpty()) {
+                    return null;
+                }
+                resubmit.set(true);
+                return pending;
+            });
+            if (resubmit.get()) {
+                schedule(convId);
+            }
+        }
+    }
+
+    /**
+     * 整理一批对话轮次：
+     * 1. 一次模型调用抽取全部轮次的事实并去重
+     * 2. 批量向量化事实，一次检索全部事实的旧记忆，按向量 ID 合并为一份
+     * 3. 一次模型调用对比新事实与旧记忆，得出新增/更新/删除动作
+     * 4. 新增与更新的文本批量向量化后写入
+     *
+     * @param convId 会话 ID
+     * @param batch  对话轮次
+     * @return 无
+     * @throws @BaseException 模型不可用或配置异常时抛出异常
+     */
+    private void consolidate(Long convId, PendingTurns batch) {
+        AdiProperties.LongTermMemory config = adiProperties.getLongTermMemory();
+        AbstractLLMService llmService = LLMContext.getServiceOrDefault(batch.modelPlatform, batch.modelName);
+        List<String> facts = extractFacts(llmService, batch);
+        if (facts.isEmpty()) {
+            return;
+        }
+
+        // 先检索旧记忆，便于判断新增/更新/删除
+        List<TextSegment> factSegments = facts.stream().map(TextSegment::from).toList();
+        List<Embedding> factEmbeddings = embeddingModel.embedAll(factSegments).content();
+        Map<String, Embedding> textToEmbedding = new HashMap<>();
+        Map<String, EmbeddingMatch<TextSegment>> oldMemoryEmbeddingToContent = new LinkedHashMap<>();
+        for (int i = 0; i < facts.size(); i++) {
+            textToEmbedding.put(facts.get(i), factEmbeddings.get(i));
+        }
+        for (EmbeddingSearchResult<TextSegment> searchResult : searchOldMemories(convId, factEmbeddings, config)) {
+            searchResult.matches().forEach(item -> oldMemoryEmbeddingToContent.putIfAbsent(item.embeddingId(), item));
+        }
+
+        // 将 UUID 映射为整数，降低模型对 UUID 幻觉导致的解析失败
+        Map<Integer, String> tmpIdToEmbeddingId = new HashMap<>();
+        List<Map<String, String>> retrievedOldMemory = new ArrayList<>();
+        int i = 0;
+        for (Map.Entry<String, EmbeddingMatch<TextSegment>> entry : oldMemoryEmbeddingToContent.entrySet()) {
+            retrievedOldMemory.add(Map.of("id", String.valueOf(i), "text", entry.getValue().embedded().text()));
+            tmpIdToEmbeddingId.put(i, entry.getKey());
+            i++;
+        }
+
+        // 交给模型判断是否需要新增/更新/删除，避免规则硬编码
+        String analyzePrompt = getUpdateMemoryMessages(retrievedOldMemory, facts);
+        String resp = llmService.chat(SseAskParams.builder()
+                .uuid(UuidUtil.createShort())
+                .httpRequestParams(
+                        ChatModelRequestParams.builder()
+                                .userMessage(analyzePrompt)
+                                .responseFormat(RESPONSE_FORMAT_TYPE_JSON_OBJECT)
+                                .build()
+                )
+                .modelName(batch.modelName)
+                .user(batch.user)
+                .build()
+        ).aiMessage().text();
+        log.info("Memory analysis response: {}", resp);
+        String analyzedMsg = AdiStringUtil.removeCodeBlock(resp);
+        ActionMemories actionMemories = JsonUtil.fromJson(analyzedMsg, ActionMemories.class);
+        if (null == actionMemories || null == actionMemories.getMemory() || actionMemories.getMemory().isEmpty()) {
+            // 无可执行动作时直接退出，避免误写入
+            return;
+        }
+        List<String> removeIds = new ArrayList<>();
+        List<String> writeIds = new ArrayList<>();
+        List<TextSegment> writeSegments = new ArrayList<>();
+        for (ActionMemories.ActionMemory actionMemory : actionMemories.getMemory()) {
+            String event = actionMemory.getEvent();
+            String embeddingId = tmpIdToEmbeddingId.get(NumberUtils.toInt(actionMemory.getId(), -1));
+            Metadata metadata = new Metadata(Map.of(CONVERSATION_ID, convId));
+            if ("NONE".equalsIgnoreCase(event)) {
+                log.info(" No changes required for memory id: {}", actionMemory.getId());
+            } else if (AdiConstant.MemoryEvent.DELETE.equalsIgnoreCase(event) && null != embeddingId) {
+                // 删除旧记忆，确保过期事实不再被召回
+                removeIds.add(embeddingId);
+            } else if (AdiConstant.MemoryEvent.UPDATE.equalsIgnoreCase(event) && null != embeddingId && StringUtils.isNotBlank(actionMemory.getText())) {
+                // 复用旧向量 ID 写入新文本，保证引用关系稳定
+                removeIds.add(embeddingId);
+                writeIds.add(embeddingId);
+                writeSegments.add(TextSegment.from(actionMemory.getText(), metadata));
+            } else if (AdiConstant.MemoryEvent.ADD.equalsIgnoreCase(event) && StringUtils.isNotBlank(actionMemory.getText())) {
+                writeIds.add(UUID.randomUUID().toString());
+                writeSegments.add(TextSegment.from(actionMemory.getText(), metadata));
+            }
+        }
+        if (!removeIds.isEmpty()) {
+            convMemoryEmbeddingStore.removeAll(removeIds);
+        }
+        if (!writeSegments.isEmpty()) {
+            convMemoryEmbeddingStore.addAll(writeIds, embed(writeSegments, textToEmbedding), writeSegments);
+        }
+        log.info("长期记忆已更新，convId: {}, facts: {}, oldMemories: {}, removed: {}, written: {}", convId, facts.size(), retrievedOldMemory.size(), removeIds.size(), writeSegments.size());
+    }
+
+    /**
+     * 按全部事实的向量检索会话的旧记忆：pgvector 存储用一条 SQL 完成全部事实的检索，其他存储逐个事实检索。
+     *
+     * @param convId         会话 ID
+     * @param factEmbeddings 事实向量
+     * @param config         长期记忆配置
+     * @return 与事实顺序对应的检索结果
+     */
+    private List<EmbeddingSearchResult<TextSegment>> searchOldMemories(Long convId, List<Embedding> factEmbeddings, AdiProperties.LongTermMemory config) {
+        IsEqualTo filter = new IsEqualTo(CONVERSATION_ID, convId);
+        if (convMemoryEmbeddingStore instanceof AdiPgVectorEmbeddingStore pgVectorStore) {
+            return pgVectorStore.searchAll(factEmbeddings, filter, config.getSearchMaxResults(), config.getSearchMinScore());
+        }
+        List<EmbeddingSearchResult<TextSegment>> results = new ArrayList<>();
+        for (Embedding factEmbedding : factEmbeddings) {
+            results.add(convMemoryEmbeddingStore.search(EmbeddingSearchRequest.builder()
+                    .queryEmbedding(factEmbedding)
+                    .maxResults(config.getSearchMaxResults())
+                    .minScore(config.getSearchMinScore())
+                    .filter(filter)
+                    .build()));
+        }
+        return results;
+    }
+
+    /**
+     * 一次模型调用从全部缓冲的对话轮次中抽取事实，去除空白与重复的事实。
+     *
+     * @param llmService 模型服务
+     * @param batch      对话轮次
+     * @return 事实列表
+     */
+    private List<String> extractFacts(AbstractLLMService llmService, PendingTurns batch) {
+        String inputMessage = String.join("\n", batch.messages);
         log.info("inputMessage: {}", inputMessage);
-        AbstractLLMService llmService = LLMContext.getServiceOrDefault(modelPlatform, modelName);
         SseAskParams sseAskParams = new SseAskParams();
         sseAskParams.setUuid(UuidUtil.createShort());
         sseAskParams.setHttpRequestParams(
@@ -85,8 +325,8 @@ public class LongTermMemoryService {
                         .responseFormat(RESPONSE_FORMAT_TYPE_JSON_OBJECT)
                         .build()
         );
-        sseAskParams.setModelName(modelName);
-        sseAskParams.setUser(ThreadContext.getCurrentUser());
+        sseAskParams.setModelName(batch.modelName);
+        sseAskParams.setUser(batch.user);
         log.info("request:{}", sseAskParams);
         ChatResponse response = llmService.chat(sseAskParams);
         log.info("Fact extraction response: {}", response.aiMessage().text());
@@ -94,7 +334,7 @@ public class LongTermMemoryService {
         String factResponse = AdiStringUtil.removeCodeBlock(response.aiMessage().text());
         if (StringUtils.isBlank(factResponse)) {
             log.warn("无法针对本次内容整理出事实性信息");
-            return;
+            return List.of();
         }
         // 虽然指定了返回结构，但模型仍可能输出非标准内容，需要兼容数组形式
         List<String> facts;
@@ -104,89 +344,42 @@ public class LongTermMemoryService {
             ExtractedFact extractedFact = JsonUtil.fromJson(factResponse, ExtractedFact.class);
             if (null == extractedFact || CollectionUtils.isEmpty(extractedFact.getFacts())) {
                 log.warn("内容无法解析为ExtractedFact对象，原始内容：{}", factResponse);
-                return;
+                return List.of();
             }
-            facts = new ArrayList<>(extractedFact.getFacts());
+            facts = extractedFact.getFacts();
         }
         if (null == facts) {
             log.warn("内容无法解析为事实性信息，原始内容：{}", factResponse);
-            return;
+            return List.of();
         }
-
-        // 先检索旧记忆，便于判断新增/更新/删除
+        // 多轮对话合并后同一事实可能出现多次，忽略大小写与首尾空白去重
+        Map<String, String> distinct = new LinkedHashMap<>();
         for (String fact : facts) {
-            if (StringUtils.isBlank(fact)) {
-                continue;
-            }
-            Embedding embedding = embeddingModel.embed(fact).content();
-            EmbeddingSearchRequest searchRequest = EmbeddingSearchRequest.builder()
-                    .queryEmbedding(embedding)
-                    .maxResults(5)
-                    .minScore(0.7)
-                    .filter(new IsEqualTo(CONVERSATION_ID, convId))
-                    .build();
-            Map<String, EmbeddingMatch<TextSegment>> oldMemoryEmbeddingToContent = new HashMap<>();
-            EmbeddingSearchResult<TextSegment> searchResult = convMemoryEmbeddingStore.search(searchRequest);
-            searchResult.matches().forEach(item -> oldMemoryEmbeddingToContent.put(item.embeddingId(), item));
-
-            // 将 UUID 映射为整数，降低模型对 UUID 幻觉导致的解析失败
-            Map<Integer, String> tmpIdToEmbeddingId = new HashMap<>();
-            List<Map<String, String>> retrievedOldMemory = new ArrayList<>();
-            int i = 0;
-            for (Map.Entry<String, EmbeddingMatch<TextSegment>> entry : oldMemoryEmbeddingToContent.entrySet()) {
-                retrievedOldMemory.add(Map.of("id", String.valueOf(i), "text", entry.getValue().embedded().text()));
-                tmpIdToEmbeddingId.put(i, entry.getKey());
-                i++;
+            if (StringUtils.isNotBlank(fact)) {
+                distinct.putIfAbsent(fact.trim().toLowerCase(), fact.trim());
             }
+        }
+        return new ArrayList<>(distinct.values());
+    }
 
-            // 交给模型判断是否需要新增/更新/删除，避免规则硬编码
-            String analyzePrompt = getUpdateMemoryMessages(retrievedOldMemory, facts);
-            String resp = llmService.chat(SseAskParams.builder()
-                    .uuid(UuidUtil.createShort())
-                    .httpRequestParams(
-                            ChatModelRequestParams.builder()
-                                    .userMessage(analyzePrompt)
-                                    .responseFormat(RESPONSE_FORMAT_TYPE_JSON_OBJECT)
-                                    .build()
-                    )
-                    .modelName(modelName)
-                    .user(ThreadContext.getCurrentUser())
-                    .build()
-            ).aiMessage().text();
-            log.info("Memory analysis response: {}", resp);
-            String analyzedMsg = AdiStringUtil.removeCodeBlock(resp);
-            ActionMemories actionMemories = JsonUtil.fromJson(analyzedMsg, ActionMemories.class);
-            if (null == actionMemories || null == actionMemories.getMemory() || actionMemories.getMemory().isEmpty()) {
-                // 无可执行动作时直接退出，避免误写入
-                return;
-            }
-            for (ActionMemories.ActionMemory actionMemory : actionMemories.getMemory()) {
-                if ("NONE".equalsIgnoreCase(actionMemory.getEvent())) {
-                    log.info(" No changes required for memory id: {}", actionMemory.getId());
-                } else if (AdiConstant.MemoryEvent.DELETE.equalsIgnoreCase(actionMemory.getEvent())) {
-                    // 删除旧记忆，确保过期事实不再被召回
-                    String embeddingId = tmpIdToEmbeddingId.get(Integer.parseInt(actionMemory.getId()));
-                    convMemoryEmbeddingStore.remove(embeddingId);
-                } else if (AdiConstant.MemoryEvent.UPDATE.equalsIgnoreCase(actionMemory.getEvent())) {
-
-                    // 先删除再重建，避免重复向量导致召回噪声
-                    String oldEmbeddingId = tmpIdToEmbeddingId.get(Integer.parseInt(actionMemory.getId()));
-                    convMemoryEmbeddingStore.remove(oldEmbeddingId);
-
-                    EmbeddingMatch<TextSegment> match = oldMemoryEmbeddingToContent.get(oldEmbeddingId);
-                    Metadata metadata = new Metadata(Map.of(CONVERSATION_ID, convId));
-                    TextSegment newSegment = TextSegment.from(actionMemory.getText(), metadata);
-                    // 复用旧向量 ID 写入新文本，保证引用关系稳定
-                    convMemoryEmbeddingStore.addAll(List.of(oldEmbeddingId), List.of(match.embedding()), List.of(newSegment));
-
-                } else if (AdiConstant.MemoryEvent.ADD.equalsIgnoreCase(actionMemory.getEvent())) {
-                    // 走统一 ingest 流程，复用分段与索引策略
-                    Metadata metadata = new Metadata(Map.of(CONVERSATION_ID, convId));
-                    Document document = new DefaultDocument(actionMemory.getText(), metadata);
-                    EmbeddingRagContext.get(AdiConstant.RetrieveContentFrom.CONV_MEMORY).ingest(document, 20, null, null);
-                }
+    /**
+     * 批量向量化待写入的文本，与抽取出的事实相同的文本直接复用已有向量。
+     *
+     * @param segments        文本段
+     * @param textToEmbedding 事实文本到向量的映射
+     * @return 与文本段一一对应的向量
+     */
+    private List<Embedding> embed(List<TextSegment> segments, Map<String, Embedding> textToEmbedding) {
+        List<TextSegment> missing = segments.stream()
+                .filter(segment -> !textToEmbedding.containsKey(segment.text()))
+                .toList();
+        if (!missing.isEmpty()) {
+            List<Embedding> embeddings = embeddingModel.embedAll(missing).content();
+            for (int i = 0; i < missing.size(); i++) {
+                textToEmbedding.put(missing.get(i).text(), embeddings.get(i));
             }
         }
+        return segments.stream().map(segment -> textToEmbedding.get(segment.text())).toList();
     }
 
     /**
@@ -276,5 +469,25 @@ public class LongTermMemoryService {
                 """.formatted(LongTermMemoryPrompt.UPDATE_MEMORY_PROMPT, currentMemoryPart, JsonUtil.toJson(newFacts));
     }
 
-
+    /**
+     * 会话缓冲的对话轮次。
+     */
+    private static class PendingTurns {
+        /**
+         * 拼装后的对话轮次。
+         */
+        private final List<String> messages = new ArrayList<>();
+        /**
+         * 模型平台。
+         */
+        private String modelPlatform;
+        /**
+         * 模型名称。
+         */
+        private String modelName;
+        /**
+         * 用户。
+         */
+        private User user;
+    }
 }
@@ -0,0 +1,63 @@
+package com.moyz.adi.common.memory.shortterm;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 短期记忆存储的公共实现。
+ */
+public abstract class AbstractChatMemoryStore implements ChatMemoryStore {
+
+    /**
+     * 向指定会话追加一条消息。
+     * <p>
+     * 默认实现为读取全部消息后整体更新，支持增量写入的实现应覆盖此方法。
+     *
+     * @param memoryId 会话标识
+     * @param message  消息
+     * @return 无
+     */
+    public void appendMessage(Object memoryId, ChatMessage message) {
+        List<ChatMessage> newMessages = new ArrayList<>(getMessages(memoryId));
+        newMessages.add(message);
+        updateMessages(memoryId, newMessages);
+    }
+
+    /**
+     * 过滤出可用于上下文的消息。
+     * <p>
+     * 首条消息不能为 AiMessage，系统消息只保留位于首位的一条。
+     *
+     * @param messages 消息列表
+     * @return 可用消息列表
+     */
+    protected static List<ChatMessage> filterAvailableMessages(List<ChatMessage> messages) {
+        // 首条消息不能为 AiMessage，避免上下文顺序被模型误解
+        int start = 0;
+        if (!messages.isEmpty() && messages.get(0) instanceof AiMessage) {
+            start = 1;
+        }
+        List<ChatMessage> availableMessage = new ArrayList<>();
+        if (start >= messages.size()) {
+            return availableMessage;
+        }
+        // 只保留可用于上下文的消息类型，避免系统消息散落引发提示词污染
+        int index = start;
+        if (messages.get(start) instanceof SystemMessage) {
+            availableMessage.add(messages.get(start));
+            index = start + 1;
+        }
+        for (int i = index; i < messages.size(); i++) {
+            ChatMessage chatMessage = messages.get(i);
+            if (!(chatMessage instanceof SystemMessage)) {
+                availableMessage.add(chatMessage);
+            }
+        }
+        return availableMessage;
+    }
+}
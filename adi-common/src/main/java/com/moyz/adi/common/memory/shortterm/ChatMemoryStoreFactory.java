@@ -0,0 +1,57 @@
+package com.moyz.adi.common.memory.shortterm;
+
+import com.moyz.adi.common.config.AdiProperties;
+import com.moyz.adi.common.cosntant.AdiConstant;
+import com.moyz.adi.common.util.SpringUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 短期记忆存储工厂，根据 adi.chat-memory.store 配置选择实现。
+ */
+@Slf4j
+public class ChatMemoryStoreFactory {
+
+    /**
+     * 当前使用的存储实例。
+     */
+    private static volatile AbstractChatMemoryStore store;
+
+    /**
+     * 私有构造函数，禁止实例化。
+     */
+    private ChatMemoryStoreFactory() {
+    }
+
+    /**
+     * 获取短期记忆存储。
+     *
+     * @return 存储实例
+     */
+    public static AbstractChatMemoryStore get() {
+        if (null == store) {
+            synchronized (ChatMemoryStoreFactory.class) {
+                if (null == store) {
+                    store = create();
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * 按配置创建存储实例。
+     *
+     * @return 存储实例
+     */
+    private static AbstractChatMemoryStore create() {
+        AdiProperties.ChatMemory config = SpringUtil.getBean(AdiProperties.class).getChatMemory();
+        log.info("chat memory store:{}", config.getStore());
+        if (AdiConstant.ChatMemoryStore.REDIS.equalsIgnoreCase(config.getStore())) {
+            return SpringUtil.getBean(RedisChatMemoryStore.class);
+        }
+        if (AdiConstant.ChatMemoryStore.SHARDED.equalsIgnoreCase(config.getStore())) {
+            return new ShardedChatMemoryStore(SpringUtil.getProperty("local.chat-memory"), config);
+        }
+        return MapDBChatMemoryStore.getSingleton();
+    }
+}
@@ -1,15 +1,11 @@
 package com.moyz.adi.common.memory.shortterm;
 
 import com.moyz.adi.common.util.SpringUtil;
-import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
-import dev.langchain4j.data.message.SystemMessage;
-import dev.langchain4j.store.memory.chat.ChatMemoryStore;
 import lombok.extern.slf4j.Slf4j;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -21,12 +17,7 @@ import static org.mapdb.Serializer.STRING;
  * 基于 MapDB 的短期记忆存储实现。
  */
 @Slf4j
-public class MapDBChatMemoryStore implements ChatMemoryStore {
-
-    /**
-     * 单例对象。
-     */
-    public static MapDBChatMemoryStore singleton;
+public class MapDBChatMemoryStore extends AbstractChatMemoryStore {
 
     /**
      * MapDB 数据库实例。
@@ -69,26 +60,10 @@ public class MapDBChatMemoryStore implements ChatMemoryStore {
      */
     @Override
     public void updateMessages(Object memoryId, List<ChatMessage> messages) {
-        // 首条消息不能为 AiMessage，避免上下文顺序被模型误解
-        if (!messages.isEmpty() && messages.get(0) instanceof AiMessage) {
-            messages.remove(0);
-        }
-        if (messages.isEmpty()) {
+        List<ChatMessage> availableMessage = filterAvailableMessages(messages);
+        if (availableMessage.isEmpty()) {
             return;
         }
-        // 只保留可用于上下文的消息类型，避免系统消息散落引发提示词污染
-        List<ChatMessage> availableMessage = new ArrayList<>();
-        int index = 0;
-        if (messages.get(0) instanceof SystemMessage) {
-            availableMessage.add(messages.get(0));
-            index = 1;
-        }
-        for (int i = index; i < messages.size(); i++) {
-            ChatMessage chatMessage = messages.get(i);
-            if (!(chatMessage instanceof SystemMessage)) {
-                availableMessage.add(chatMessage);
-            }
-        }
         String json = messagesToJson(availableMessage);
         map.put((String) memoryId, json);
         db.commit();
@@ -112,14 +87,16 @@ public class MapDBChatMemoryStore implements ChatMemoryStore {
      * @return 单例对象
      */
     public static MapDBChatMemoryStore getSingleton() {
-        if (null == singleton) {
-            synchronized (MapDBChatMemoryStore.class) {
-                // 双重检查锁降低同步开销，同时保证线程安全
-                if (null == singleton) {
-                    singleton = new MapDBChatMemoryStore();
-                }
-            }
-        }
-        return singleton;
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * 延迟初始化的单例持有类，由类加载保证只初始化一次且对所有线程可见，获取时无需加锁。
+     */
+    private static class Holder {
+        /**
+         * 单例对象。
+         */
+        private static final MapDBChatMemoryStore INSTANCE = new MapDBChatMemoryStore();
     }
 }
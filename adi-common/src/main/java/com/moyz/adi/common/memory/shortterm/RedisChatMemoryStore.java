@@ -0,0 +1,373 @@
+package com.moyz.adi.common.memory.shortterm;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.moyz.adi.common.config.AdiProperties;
+import com.moyz.adi.common.cosntant.RedisKeyConstant;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static dev.langchain4j.data.message.ChatMessageDeserializer.messageFromJson;
+
+/**
+ * 基于 Redis 的短期记忆存储实现，多个节点共享同一份会话记录。
+ * <p>
+ * 每个会话对应一个 Redis 列表，每个元素为一条消息，追加消息只需 RPUSH；写入、截断与顺延过期时间在一个 Lua 脚本中完成，
+ * 追加前在脚本中校验列表长度，与本地缓存不一致时改为整体替换，超出长度时从用户消息处截断并保留首条系统消息。
+ * 各节点在本地缓存最近使用的会话，写入后通过 Redis 发布订阅通知其他节点失效对应缓存。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "adi.chat-memory.store", havingValue = "redis")
+public class RedisChatMemoryStore extends AbstractChatMemoryStore implements MessageListener {
+
+    /**
+     * 失效通知中节点id与memoryId的分隔符。
+     */
+    private static final String SEPARATOR = "|";
+
+    /**
+     * 写入会话消息的脚本。
+     * <p>
+     * KEYS[1] 为会话列表；ARGV[1] 为写入模式（append/replace），ARGV[2] 为追加时期望的列表长度，
+     * ARGV[3] 为最多保留的消息数，ARGV[4] 为过期秒数，其后为消息 JSON。
+     * 追加时列表长度与期望不一致返回 -1 且不写入；超出长度时截断到不多于上限的最近消息，
+     * 保留的部分从用户消息开始（避免留下没有提问的回答或工具结果），首条为系统消息时保留系统消息，截断过返回 1，否则返回 0。
+     * 消息 JSON 中字符串内的引号均已转义，按 "type":"..." 判断消息类型不会误判。
+     */
+    private static final RedisScript<Long> WRITE_SCRIPT = new DefaultRedisScript<>("""
+            local key = KEYS[1]
+            if ARGV[1] == 'append' and redis.call('LLEN', key) ~= tonumber(ARGV[2]) then
+                return -1
+            end
+            if ARGV[1] == 'replace' then
+                redis.call('DEL', key)
+            end
+            for i = 5, #ARGV do
+                redis.call('RPUSH', key, ARGV[i])
+            end
+            local trimmed = 0
+            local len = redis.call('LLEN', key)
+            local max = tonumber(ARGV[3])
+            if len > max then
+                trimmed = 1
+                local first = redis.call('LINDEX', key, 0)
+                local system = nil
+                if string.find(first, '"type":"SYSTEM"', 1, true) then
+                    system = first
+                end
+                local start = len - max
+                if system then
+                    start = start + 1
+                end
+                local from = start
+                while from < len and not string.find(redis.call('LINDEX', key, from), '"type":"USER"', 1, true) do
+                    from = from + 1
+                end
+                if from < len then
+                    start = from
+                end
+                redis.call('LTRIM', key, start, -1)
+                if system then
+                    redis.call('LPUSH', key, system)
+                end
+            end
+            redis.call('EXPIRE', key, ARGV[4])
+            return trimmed
+            """, Long.class);
+
+    /**
+     * 脚本返回值：追加时列表长度与期望不一致。
+     */
+    private static final long WRITE_CONFLICT = -1;
+
+    /**
+     * 脚本返回值：写入后列表被截断。
+     */
+    private static final long WRITE_TRIMMED = 1;
+
+    /**
+     * 追加消息时与 Redis 不一致的最大重试次数。
+     */
+    private static final int APPEND_MAX_ATTEMPTS = 3;
+
+    /**
+     * 当前节点id，用于忽略自身发出的失效通知。
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 应用配置。
+     */
+    @Resource
+    private AdiProperties adiProperties;
+
+    /**
+     * Redis 操作模板。
+     */
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * Redis 连接工厂。
+     */
+    @Resource
+    private RedisConnectionFactory redisConnectionFactory;
+
+    /**
+     * 本地缓存（memoryId -> 消息列表）。
+     */
+    private Cache<String, List<ChatMessage>> nearCache;
+
+    /**
+     * 失效通知监听容器。
+     */
+    private RedisMessageListenerContainer listenerContainer;
+
+    /**
+     * 初始化本地缓存并订阅失效通知。
+     *
+     * @return 无
+     */
+    @PostConstruct
+    public void init() {
+        AdiProperties.ChatMemory config = adiProperties.getChatMemory();
+        nearCache = Caffeine.newBuilder()
+                .maximumSize(config.getCacheSize())
+                .expireAfterWrite(Duration.ofSeconds(config.getNearCacheTtlSeconds()))
+                .build();
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(redisConnectionFactory);
+        listenerContainer.addMessageListener(this, new ChannelTopic(RedisKeyConstant.CHAT_MEMORY_INVALIDATE_CHANNEL));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+        log.info("redis chat memory store started,nodeId:{}", nodeId);
+    }
+
+    /**
+     * 停止订阅失效通知。
+     *
+     * @return 无
+     */
+    @PreDestroy
+    public void destroy() throws Exception {
+        if (null != listenerContainer) {
+            listenerContainer.destroy();
+        }
+    }
+
+    /**
+     * 获取指定会话的消息列表，优先使用本地缓存。
+     *
+     * @param memoryId 会话标识
+     * @return 消息列表
+     */
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        return new ArrayList<>(load((String) memoryId));
+    }
+
+    /**
+     * 更新指定会话的消息列表。
+     * <p>
+     * 新列表以已存储列表为前缀时只追加新增部分，否则整体替换；本地缓存落后于 Redis 导致追加被拒绝时也整体替换。
+     *
+     * @param memoryId 会话标识
+     * @param messages 消息列表
+     * @return 无
+     */
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        List<ChatMessage> availableMessage = filterAvailableMessages(messages);
+        if (availableMessage.isEmpty()) {
+            return;
+        }
+        String id = (String) memoryId;
+        List<ChatMessage> oldMessages = load(id);
+        boolean isAppend = availableMessage.size() >= oldMessages.size()
+                && availableMessage.subList(0, oldMessages.size()).equals(oldMessages);
+        long result;
+        if (isAppend) {
+            List<ChatMessage> tail = availableMessage.subList(oldMessages.size(), availableMessage.size());
+            if (tail.isEmpty()) {
+                return;
+            }
+            result = write(id, false, oldMessages.size(), tail);
+            if (result == WRITE_CONFLICT) {
+                result = write(id, true, 0, availableMessage);
+            }
+        } else {
+            result = write(id, true, 0, availableMessage);
+        }
+        cacheAndNotify(id, availableMessage, result == WRITE_TRIMMED);
+    }
+
+    /**
+     * 向指定会话追加一条消息，本地缓存落后于 Redis 时重新加载后重试。
+     *
+     * @param memoryId 会话标识
+     * @param message  消息
+     * @return 无
+     */
+    @Override
+    public void appendMessage(Object memoryId, ChatMessage message) {
+        String id = (String) memoryId;
+        for (int attempt = 0; attempt < APPEND_MAX_ATTEMPTS; attempt++) {
+            List<ChatMessage> oldMessages = load(id);
+            // 与 filterAvailableMessages 保持一致：首条不能为 AiMessage，系统消息只能位于首位
+            if (oldMessages.isEmpty() && message instanceof AiMessage) {
+                return;
+            }
+            if (!oldMessages.isEmpty() && message instanceof SystemMessage) {
+                return;
+            }
+            long result = write(id, false, oldMessages.size(), List.of(message));
+            if (result != WRITE_CONFLICT) {
+                List<ChatMessage> newMessages = new ArrayList<>(oldMessages.size() + 1);
+                newMessages.addAll(oldMessages);
+                newMessages.add(message);
+                cacheAndNotify(id, newMessages, result == WRITE_TRIMMED);
+                return;
+            }
+            nearCache.invalidate(id);
+        }
+        log.warn("Append chat memory conflict,memoryId:{}", id);
+    }
+
+    /**
+     * 删除指定会话的消息列表。
+     *
+     * @param memoryId 会话标识
+     * @return 无
+     */
+    @Override
+    public void deleteMessages(Object memoryId) {
+        String id = (String) memoryId;
+        stringRedisTemplate.delete(key(id));
+        nearCache.invalidate(id);
+        publish(id);
+    }
+
+    /**
+     * 收到其他节点的变更通知时失效本地缓存。
+     *
+     * @param message 通知消息
+     * @param pattern 订阅模式
+     * @return 无
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String sourceNodeId = StringUtils.substringBefore(body, SEPARATOR);
+        if (nodeId.equals(sourceNodeId)) {
+            return;
+        }
+        nearCache.invalidate(StringUtils.substringAfter(body, SEPARATOR));
+    }
+
+    /**
+     * 读取会话消息，本地缓存未命中时从 Redis 加载。
+     *
+     * @param memoryId 会话标识
+     * @return 不可修改的消息列表
+     */
+    private List<ChatMessage> load(String memoryId) {
+        return nearCache.get(memoryId, id -> {
+            List<String> jsonList = stringRedisTemplate.opsForList().range(key(id), 0, -1);
+            if (null == jsonList || jsonList.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<ChatMessage> messages = new ArrayList<>(jsonList.size());
+            for (String json : jsonList) {
+                messages.add(messageFromJson(json));
+            }
+            return Collections.unmodifiableList(messages);
+        });
+    }
+
+    /**
+     * 通过脚本原子地写入消息、截断列表并顺延过期时间。
+     *
+     * @param memoryId     会话标识
+     * @param replace      是否先清空已有消息
+     * @param expectedSize 追加时期望的已有消息数
+     * @param messages     待写入的消息
+     * @return 脚本返回值（WRITE_CONFLICT/WRITE_TRIMMED/0）
+     */
+    private long write(String memoryId, boolean replace, int expectedSize, List<ChatMessage> messages) {
+        AdiProperties.ChatMemory config = adiProperties.getChatMemory();
+        List<String> args = new ArrayList<>(messages.size() + 4);
+        args.add(replace ? "replace" : "append");
+        args.add(String.valueOf(expectedSize));
+        args.add(String.valueOf(config.getRedisMaxMessages()));
+        args.add(String.valueOf(TimeUnit.DAYS.toSeconds(config.getRedisTtlDays())));
+        for (ChatMessage message : messages) {
+            args.add(ChatMessageSerializer.messageToJson(message));
+        }
+        Long result = stringRedisTemplate.execute(WRITE_SCRIPT, List.of(key(memoryId)), args.toArray());
+        return null == result ? 0 : result;
+    }
+
+    /**
+     * 更新本地缓存并通知其他节点失效。
+     *
+     * @param memoryId 会话标识
+     * @param messages 写入后的消息列表
+     * @param trimmed  Redis 中的列表是否被截断，截断时本地缓存失效，下次从 Redis 加载
+     * @return 无
+     */
+    private void cacheAndNotify(String memoryId, List<ChatMessage> messages, boolean trimmed) {
+        if (trimmed) {
+            nearCache.invalidate(memoryId);
+        } else {
+            nearCache.put(memoryId, List.copyOf(messages));
+        }
+        publish(memoryId);
+    }
+
+    /**
+     * 发布会话变更通知。
+     *
+     * @param memoryId 会话标识
+     * @return 无
+     */
+    private void publish(String memoryId) {
+        stringRedisTemplate.convertAndSend(RedisKeyConstant.CHAT_MEMORY_INVALIDATE_CHANNEL, nodeId + SEPARATOR + memoryId);
+    }
+
+    /**
+     * 生成会话的 Redis 键。
+     *
+     * @param memoryId 会话标识
+     * @return Redis 键
+     */
+    private static String key(String memoryId) {
+        return MessageFormat.format(RedisKeyConstant.CHAT_MEMORY, memoryId);
+    }
+}
@@ -0,0 +1,395 @@
+package com.moyz.adi.common.memory.shortterm;
+
+import com.moyz.adi.common.config.AdiProperties;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.mapdb.Atomic;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import static dev.langchain4j.data.message.ChatMessageDeserializer.messageFromJson;
+import static dev.langchain4j.data.message.ChatMessageSerializer.messageToJson;
+import static org.mapdb.Serializer.LONG;
+import static org.mapdb.Serializer.STRING;
+
+/**
+ * 分片的短期记忆存储实现。
+ * <p>
+ * 按 memoryId 散列到多个独立的 MapDB 文件，不同分片的读写互不阻塞；
+ * 每条消息单独存储，更新时只写入新增的消息、删除被淘汰的消息，不再整体重写会话；
+ * 写入先进入 MapDB 事务，由后台线程按固定间隔批量提交，进程崩溃时最多丢失一个提交间隔内的写入；
+ * 每个分片在内存中保留最近使用的会话，命中时无需反序列化。
+ */
+@Slf4j
+public class ShardedChatMemoryStore extends AbstractChatMemoryStore implements AutoCloseable {
+
+    /**
+     * 分片列表。
+     */
+    private final List<Shard> shards;
+
+    /**
+     * 定时批量提交线程。
+     */
+    private final ScheduledExecutorService flushScheduler;
+
+    /**
+     * 构造分片存储并启动定时提交。
+     *
+     * @param memoryDir 存储目录
+     * @param config    短期记忆配置
+     */
+    public ShardedChatMemoryStore(String memoryDir, AdiProperties.ChatMemory config) {
+        int shardCount = Math.max(1, config.getShards());
+        int cacheSizePerShard = Math.max(1, config.getCacheSize() / shardCount);
+        log.info("sharded chat memory path:{},shards:{},flushIntervalMillis:{}", memoryDir, shardCount, config.getFlushIntervalMillis());
+        List<Shard> list = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            list.add(new Shard(memoryDir + "chat-memory-shard-" + i + ".db", cacheSizePerShard));
+        }
+        this.shards = Collections.unmodifiableList(list);
+        this.flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-memory-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, config.getFlushIntervalMillis());
+        flushScheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "chat-memory-close"));
+    }
+
+    /**
+     * 获取指定会话的消息列表。
+     *
+     * @param memoryId 会话标识
+     * @return 消息列表
+     */
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        String id = (String) memoryId;
+        Shard shard = shardOf(id);
+        shard.lock.lock();
+        try {
+            return toMessages(shard.load(id));
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * 更新指定会话的消息列表，仅写入与已存储内容不同的消息。
+     *
+     * @param memoryId 会话标识
+     * @param messages 消息列表
+     * @return 无
+     */
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        List<ChatMessage> availableMessage = filterAvailableMessages(messages);
+        if (availableMessage.isEmpty()) {
+            return;
+        }
+        String id = (String) memoryId;
+        Shard shard = shardOf(id);
+        shard.lock.lock();
+        try {
+            List<Entry> oldEntries = shard.load(id);
+            List<Entry> newEntries = new ArrayList<>(availableMessage.size());
+            Set<Long> reused = new HashSet<>();
+            // 按顺序匹配已存储的消息，相同的消息沿用原有序号，无需重新序列化
+            int cursor = 0;
+            for (ChatMessage message : availableMessage) {
+                int matched = -1;
+                for (int i = cursor; i < oldEntries.size(); i++) {
+                    if (oldEntries.get(i).message().equals(message)) {
+                        matched = i;
+                        break;
+                    }
+                }
+                if (matched >= 0) {
+                    newEntries.add(oldEntries.get(matched));
+                    reused.add(oldEntries.get(matched).seq());
+                    cursor = matched + 1;
+                } else {
+                    newEntries.add(shard.write(message));
+                }
+            }
+            for (Entry entry : oldEntries) {
+                if (!reused.contains(entry.seq())) {
+                    shard.messages.remove(entry.seq());
+                }
+            }
+            shard.save(id, newEntries);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * 向指定会话追加一条消息，只写入该消息与会话索引。
+     *
+     * @param memoryId 会话标识
+     * @param message  消息
+     * @return 无
+     */
+    @Override
+    public void appendMessage(Object memoryId, ChatMessage message) {
+        String id = (String) memoryId;
+        Shard shard = shardOf(id);
+        shard.lock.lock();
+        try {
+            List<Entry> oldEntries = shard.load(id);
+            // 与 filterAvailableMessages 保持一致：首条不能为 AiMessage，系统消息只能位于首位
+            if (oldEntries.isEmpty() && message instanceof AiMessage) {
+                return;
+            }
+            if (!oldEntries.isEmpty() && message instanceof SystemMessage) {
+                return;
+            }
+            List<Entry> newEntries = new ArrayList<>(oldEntries.size() + 1);
+            newEntries.addAll(oldEntries);
+            newEntries.add(shard.write(message));
+            shard.save(id, newEntries);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * 删除指定会话的消息列表。
+     *
+     * @param memoryId 会话标识
+     * @return 无
+     */
+    @Override
+    public void deleteMessages(Object memoryId) {
+        String id = (String) memoryId;
+        Shard shard = shardOf(id);
+        shard.lock.lock();
+        try {
+            for (Entry entry : shard.load(id)) {
+                shard.messages.remove(entry.seq());
+            }
+            shard.index.remove(id);
+            shard.cache.remove(id);
+            shard.dirty = true;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * 提交所有分片中尚未提交的写入。
+     *
+     * @return 无
+     */
+    public void flush() {
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                if (shard.dirty && !shard.db.isClosed()) {
+                    shard.db.commit();
+                    shard.dirty = false;
+                }
+            } catch (Exception e) {
+                log.error("chat memory flush error,file:{}", shard.file, e);
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 停止定时提交，提交剩余写入后关闭所有分片。
+     *
+     * @return 无
+     */
+    @Override
+    public void close() {
+        if (flushScheduler.isShutdown()) {
+            return;
+        }
+        flushScheduler.shutdown();
+        flush();
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                if (!shard.db.isClosed()) {
+                    shard.db.close();
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        log.info("sharded chat memory closed");
+    }
+
+    /**
+     * 根据会话标识定位分片。
+     *
+     * @param memoryId 会话标识
+     * @return 分片
+     */
+    private Shard shardOf(String memoryId) {
+        return shards.get(Math.floorMod(memoryId.hashCode(), shards.size()));
+    }
+
+    /**
+     * 提取消息列表，返回可修改的副本。
+     *
+     * @param entries 消息条目
+     * @return 消息列表
+     */
+    private static List<ChatMessage> toMessages(List<Entry> entries) {
+        List<ChatMessage> result = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            result.add(entry.message());
+        }
+        return result;
+    }
+
+    /**
+     * 已存储的消息条目。
+     *
+     * @param seq     消息序号
+     * @param message 消息
+     */
+    private record Entry(long seq, ChatMessage message) {
+    }
+
+    /**
+     * 单个分片，所有字段的访问都需持有 {@link #lock}。
+     */
+    private static class Shard {
+
+        /**
+         * 分片文件路径。
+         */
+        private final String file;
+
+        /**
+         * MapDB 数据库实例。
+         */
+        private final DB db;
+
+        /**
+         * 会话索引（memoryId -> 以逗号分隔的消息序号）。
+         */
+        private final Map<String, String> index;
+
+        /**
+         * 消息内容（消息序号 -> 单条消息 JSON）。
+         */
+        private final Map<Long, String> messages;
+
+        /**
+         * 消息序号生成器。
+         */
+        private final Atomic.Long sequence;
+
+        /**
+         * 最近使用的会话缓存（memoryId -> 消息条目）。
+         */
+        private final Map<String, List<Entry>> cache;
+
+        /**
+         * 分片锁。
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * 是否存在未提交的写入。
+         */
+        private boolean dirty;
+
+        /**
+         * 打开分片文件。
+         *
+         * @param file      分片文件路径
+         * @param cacheSize 缓存的会话数上限
+         */
+        Shard(String file, int cacheSize) {
+            this.file = file;
+            this.db = DBMaker.fileDB(file).transactionEnable().make();
+            this.index = db.hashMap("index", STRING, STRING).createOrOpen();
+            this.messages = db.hashMap("messages", LONG, STRING).createOrOpen();
+            this.sequence = db.atomicLong("sequence").createOrOpen();
+            this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<Entry>> eldest) {
+                    return size() > cacheSize;
+                }
+            };
+        }
+
+        /**
+         * 读取会话的消息条目，优先使用缓存。
+         *
+         * @param memoryId 会话标识
+         * @return 不可修改的消息条目列表
+         */
+        List<Entry> load(String memoryId) {
+            List<Entry> entries = cache.get(memoryId);
+            if (null != entries) {
+                return entries;
+            }
+            String seqs = index.get(memoryId);
+            if (StringUtils.isBlank(seqs)) {
+                return Collections.emptyList();
+            }
+            List<Entry> loaded = new ArrayList<>();
+            for (String item : seqs.split(",")) {
+                long seq = Long.parseLong(item);
+                String json = messages.get(seq);
+                if (null != json) {
+                    loaded.add(new Entry(seq, messageFromJson(json)));
+                }
+            }
+            entries = Collections.unmodifiableList(loaded);
+            cache.put(memoryId, entries);
+            return entries;
+        }
+
+        /**
+         * 写入一条新消息。
+         *
+         * @param message 消息
+         * @return 消息条目
+         */
+        Entry write(ChatMessage message) {
+            long seq = sequence.incrementAndGet();
+            messages.put(seq, messageToJson(message));
+            dirty = true;
+            return new Entry(seq, message);
+        }
+
+        /**
+         * 保存会话索引并更新缓存。
+         *
+         * @param memoryId 会话标识
+         * @param entries  消息条目
+         * @return 无
+         */
+        void save(String memoryId, List<Entry> entries) {
+            index.put(memoryId, entries.stream().map(entry -> String.valueOf(entry.seq())).collect(Collectors.joining(",")));
+            cache.put(memoryId, Collections.unmodifiableList(entries));
+            dirty = true;
+        }
+    }
+}
@@ -6,17 +6,26 @@ import com.moyz.adi.common.util.AdiStringUtil;
 import com.moyz.adi.common.util.GraphStoreUtil;
 import com.moyz.adi.common.util.JsonUtil;
 import com.moyz.adi.common.vo.*;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import dev.langchain4j.store.embedding.filter.Filter;
 import lombok.Builder;
 import org.apache.age.jdbc.base.Agtype;
 import org.apache.age.jdbc.base.type.AgtypeMap;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 import org.postgresql.jdbc.PgConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.sql.*;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,8 +36,11 @@ import static dev.langchain4j.internal.ValidationUtils.*;
 
 /**
  * 基于 Apache AGE 的图谱存储实现。
+ * <p>
+ * 使用独立的连接池，AGE 会话初始化（LOAD 'age' 及 search_path）在物理连接建立时只执行一次；
+ * cypher 语句通过 pgjdbc 的服务端预编译缓存复用执行计划。
  */
-public class ApacheAgeGraphStore implements GraphStore {
+public class ApacheAgeGraphStore implements GraphStore, AutoCloseable {
 
     /**
      * 日志记录器。
@@ -59,6 +71,10 @@ public class ApacheAgeGraphStore implements GraphStore {
      * 图谱名称。
      */
     private final String graph;
+    /**
+     * AGE 专用连接池，与业务数据源隔离，避免 search_path 影响其他查询。
+     */
+    private final HikariDataSource dataSource;
 
     /**
      * 构建 Apache AGE 图谱存储。
@@ -71,6 +87,9 @@ public class ApacheAgeGraphStore implements GraphStore {
      * @param graphName 图谱名称
      * @param createGraph 是否创建图谱
      * @param dropGraphFirst 是否先删除旧图谱
+     * @param maxPoolSize 连接池最大连接数
+     * @param minIdle 连接池最小空闲连接数
+     * @param preparedStatementCacheSize 每个连接缓存的预编译语句数量
      */
     @Builder
     public ApacheAgeGraphStore(String host,
@@ -80,7 +99,10 @@ public class ApacheAgeGraphStore implements GraphStore {
                                String database,
                                String graphName,
                                Boolean createGraph,
-                               Boolean dropGraphFirst) {
+                               Boolean dropGraphFirst,
+                               Integer maxPoolSize,
+                               Integer minIdle,
+                               Integer preparedStatementCacheSize) {
         this.host = ensureNotBlank(host, "host");
         this.port = ensureGreaterThanZero(port, "port");
         this.user = ensureNotBlank(user, "user");
@@ -90,6 +112,11 @@ public class ApacheAgeGraphStore implements GraphStore {
 
         createGraph = getOrDefault(createGraph, true);
         dropGraphFirst = getOrDefault(dropGraphFirst, false);
+        this.dataSource = createDataSource(
+                getOrDefault(maxPoolSize, 10),
+                getOrDefault(minIdle, 2),
+                getOrDefault(preparedStatementCacheSize, 256)
+        );
 
         try (Connection connection = setupConnection();
              Statement stmt = connection.createStatement()) {
@@ -109,7 +136,7 @@ public class ApacheAgeGraphStore implements GraphStore {
     }
 
     /**
-     * 批量新增顶点。
+     * 新增多个顶点，在同一连接、同一事务中逐条执行 create 语句。
      *
      * @param vertexes 顶点列表
      * @return 是否新增成功
@@ -117,7 +144,7 @@ public class ApacheAgeGraphStore implements GraphStore {
     @Override
     public boolean addVertexes(List<GraphVertex> vertexes) {
         ensureNotEmpty(vertexes, vertexes.toString());
-        try (Connection connection = setupConnection()) {
+        return executeInTransaction("addVertexes", connection -> {
             for (GraphVertex vertex : vertexes) {
                 // 限制名称长度，避免图谱存储超长字段导致异常
                 vertex.setName(AdiStringUtil.tail(vertex.getName(), 20));
@@ -136,11 +163,8 @@ public class ApacheAgeGraphStore implements GraphStore {
                     upsertStmt.execute();
                 }
             }
-        } catch (SQLException e) {
-            log.error("addVertex error", e);
-            throw new BaseException(B_DB_ERROR);
-        }
-        return true;
+            return true;
+        });
     }
 
     /**
@@ -165,31 +189,64 @@ public class ApacheAgeGraphStore implements GraphStore {
      */
     @Override
     public GraphVertex updateVertex(GraphVertexUpdateInfo updateInfo) {
+        try (Connection connection = setupConnection()) {
+            return updateVertex(connection, updateInfo);
+        } catch (SQLException e) {
+            log.error("updateVertex error", e);
+            throw new BaseException(B_DB_ERROR);
+        }
+    }
+
+    /**
+     * 更新多个顶点，在同一连接、同一事务中逐条执行。
+     *
+     * @param updateInfos 更新信息列表
+     * @return 更新后的顶点列表
+     */
+    @Override
+    public List<GraphVertex> updateVertexes(List<GraphVertexUpdateInfo> updateInfos) {
+        ensureNotEmpty(updateInfos, "Vertex update infos");
+        return executeInTransaction("updateVertexes", connection -> {
+            List<GraphVertex> result = new ArrayList<>();
+            for (GraphVertexUpdateInfo updateInfo : updateInfos) {
+                result.add(updateVertex(connection, updateInfo));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 使用指定连接更新顶点。
+     *
+     * @param connection 数据库连接
+     * @param updateInfo 更新信息
+     * @return 更新后的顶点
+     * @throws SQLException SQL 异常
+     */
+    private GraphVertex updateVertex(Connection connection, GraphVertexUpdateInfo updateInfo) throws SQLException {
         log.info("Update vertex:{}", updateInfo.getNewData());
         ensureNotNull(updateInfo.getMetadataFilter(), "Metadata filter");
         GraphVertex newData = updateInfo.getNewData();
-        ensureNotNull(newData, newData.toString());
-
-        try (Connection connection = setupConnection()) {
-
-            GraphSearchCondition whereCondition = GraphSearchCondition.builder()
-                    .names(List.of(updateInfo.getName()))
-                    .metadataFilter(updateInfo.getMetadataFilter())
-                    .build();
-            String whereClause = GraphStoreUtil.buildWhereClause(whereCondition, "v");
-            String setClause = GraphStoreUtil.buildSetClause(updateInfo.getNewData().getMetadata());
-            String prepareSql = """
-                    select * from cypher('%s', $$
-                       match (v)
-                       where %s
-                       set v.text_segment_id=$new_text_segment_id,v.description=$new_description%s
-                       return v
-                       limit 1
-                    $$, ?) as (v agtype);
-                    """.formatted(graph, whereClause, setClause);
-            log.info("updateVertex prepareSql:{}", prepareSql);
-            PreparedStatement stmt = connection.prepareStatement(prepareSql);
+        ensureNotNull(newData, "Vertex new data");
 
+        GraphSearchCondition whereCondition = GraphSearchCondition.builder()
+                .names(List.of(updateInfo.getName()))
+                .metadataFilter(updateInfo.getMetadataFilter())
+                .build();
+        String whereClause = GraphStoreUtil.buildWhereClause(whereCondition, "v");
+        String setClause = GraphStoreUtil.buildSetClause(updateInfo.getNewData().getMetadata());
+        String label = updateInfo.getLabel();
+        String prepareSql = """
+                select * from cypher('%s', $$
+                   match (%s)
+                   where %s
+                   set v.text_segment_id=$new_text_segment_id,v.description=$new_description%s
+                   return v
+                   limit 1
+                $$, ?) as (v agtype);
+                """.formatted(graph, StringUtils.isNotBlank(label) ? "v:" + label : "v", whereClause, setClause);
+        log.info("updateVertex prepareSql:{}", prepareSql);
+        try (PreparedStatement stmt = connection.prepareStatement(prepareSql)) {
             Map<String, Object> whereArgs = GraphStoreUtil.buildWhereArgs(whereCondition, "v");
             Map<String, Object> setArgs = GraphStoreUtil.buildSetArgs(updateInfo.getNewData().getMetadata());
             whereArgs.putAll(setArgs);
@@ -201,9 +258,6 @@ public class ApacheAgeGraphStore implements GraphStore {
             stmt.setObject(1, agtype);
             stmt.execute();
             return getVertexFromResultSet(stmt.getResultSet());
-        } catch (SQLException e) {
-            log.error("updateVertex error", e);
-            throw new BaseException(B_DB_ERROR);
         }
     }
 
@@ -267,18 +321,21 @@ public class ApacheAgeGraphStore implements GraphStore {
                         match (%s)
                         with v
                         order by id(v) desc
-                        where %s and id(v) < %d
+                        where %s and id(v) < $max_id
                         return v
-                        limit %d
-                    $$,?) as (v agtype);
-                    """.formatted(graph, StringUtils.isNotBlank(label) ? "v:" + label : "v", whereClause, search.getMaxId(), search.getLimit());
+                    $$,?) as (v agtype)
+                    limit ?;
+                    """.formatted(graph, StringUtils.isNotBlank(label) ? "v:" + label : "v", whereClause);
             log.info("SearchVertices prepareSql:{}", query);
             try (PreparedStatement selectStmt = connection.prepareStatement(query)) {
-                Map<String, Object> whereArgs = GraphStoreUtil.buildWhereArgs(search, "v");
+                // 分页条件与过滤条件一样作为参数传入，保证语句文本不变，可复用预编译语句
+                Map<String, Object> whereArgs = new HashMap<>(GraphStoreUtil.buildWhereArgs(search, "v"));
+                whereArgs.put("max_id", search.getMaxId());
                 log.info("getVertex args:{}", whereArgs);
                 Agtype agtype = new Agtype();
                 agtype.setValue(JsonUtil.toJson(whereArgs));
                 selectStmt.setObject(1, agtype);
+                selectStmt.setInt(2, search.getLimit());
                 ResultSet resultSet = selectStmt.executeQuery();
                 return getVerticesFromResultSet(resultSet);
             }
@@ -340,22 +397,23 @@ public class ApacheAgeGraphStore implements GraphStore {
                         match (v1)-[e]-(v2)
                         with v1,e,v2
                         order by id(e) desc
-                        where %s and id(e) < %d
+                        where %s and id(e) < $max_id
                         return v1,e,v2
-                        limit %d
-                    $$,?) as (v1 agtype,e agtype,v2 agtype);
-                    """.formatted(graph, filterClause, search.getMaxId(), search.getLimit());
+                    $$,?) as (v1 agtype,e agtype,v2 agtype)
+                    limit ?;
+                    """.formatted(graph, filterClause);
             log.info("Search edges prepareSql:\n{}", query);
             try (PreparedStatement selectStmt = connection.prepareStatement(query)) {
-                Map<String, Object> whereArgs1 = GraphStoreUtil.buildWhereArgs(search.getSource(), "v1");
-                Map<String, Object> whereArgs2 = GraphStoreUtil.buildWhereArgs(search.getTarget(), "v2");
-                Map<String, Object> whereArgs3 = GraphStoreUtil.buildWhereArgs(search.getEdge(), "e");
-                whereArgs1.putAll(whereArgs2);
-                whereArgs1.putAll(whereArgs3);
+                // 分页条件与过滤条件一样作为参数传入，保证语句文本不变，可复用预编译语句
+                Map<String, Object> whereArgs1 = new HashMap<>(GraphStoreUtil.buildWhereArgs(search.getSource(), "v1"));
+                whereArgs1.putAll(GraphStoreUtil.buildWhereArgs(search.getTarget(), "v2"));
+                whereArgs1.putAll(GraphStoreUtil.buildWhereArgs(search.getEdge(), "e"));
+                whereArgs1.put("max_id", search.getMaxId());
                 Agtype agtype = new Agtype();
                 agtype.setValue(JsonUtil.toJson(whereArgs1));
                 selectStmt.setObject(1, agtype);
-                log.info("Search edges args:{}", agtype);
+                selectStmt.setInt(2, search.getLimit());
+                log.info("Search edges args:{},limit:{}", agtype, search.getLimit());
                 ResultSet resultSet = selectStmt.executeQuery();
                 return getEdgesFromResultSet(resultSet);
             }
@@ -365,6 +423,49 @@ public class ApacheAgeGraphStore implements GraphStore {
         }
     }
 
+    /**
+     * 按起点/终点名称对精确查询边及两端顶点。
+     *
+     * @param pairs 起点与终点名称对
+     * @param metadataFilter 两端顶点的元数据过滤条件
+     * @return 边与顶点三元组列表
+     */
+    @Override
+    public List<Triple<GraphVertex, GraphEdge, GraphVertex>> searchEdgesByPairs(List<Pair<String, String>> pairs, Filter metadataFilter) {
+        ensureNotEmpty(pairs, "Edge pairs");
+        try (Connection connection = setupConnection()) {
+            // 名称对之间为 or 关系，两端顶点的元数据过滤条件与之叠加
+            GraphSearchCondition metadataCondition = GraphSearchCondition.builder().metadataFilter(metadataFilter).build();
+            String filterClause = GraphStoreUtil.buildPairsWhereClause(pairs, "v1", "v2");
+            String filterClause1 = GraphStoreUtil.buildWhereClause(metadataCondition, "v1");
+            String filterClause2 = GraphStoreUtil.buildWhereClause(metadataCondition, "v2");
+            if (StringUtils.isNotBlank(filterClause1)) {
+                filterClause += " and " + filterClause1;
+            }
+            if (StringUtils.isNotBlank(filterClause2)) {
+                filterClause += " and " + filterClause2;
+            }
+            String query = """
+                    select * from cypher('%s', $$
+                        match (v1)-[e]-(v2)
+                        where %s
+                        return v1,e,v2
+                    $$,?) as (v1 agtype,e agtype,v2 agtype);
+                    """.formatted(graph, filterClause);
+            log.info("Search edges by pairs prepareSql:\n{}", query);
+            try (PreparedStatement selectStmt = connection.prepareStatement(query)) {
+                Agtype agtype = new Agtype();
+                agtype.setValue(JsonUtil.toJson(GraphStoreUtil.buildPairsWhereArgs(pairs)));
+                selectStmt.setObject(1, agtype);
+                ResultSet resultSet = selectStmt.executeQuery();
+                return getEdgesFromResultSet(resultSet);
+            }
+        } catch (SQLException e) {
+            log.error("searchEdgesByPairs error", e);
+            throw new BaseException(B_DB_ERROR);
+        }
+    }
+
     /**
      * 获取单条边及两端顶点。
      *
@@ -388,36 +489,66 @@ public class ApacheAgeGraphStore implements GraphStore {
      */
     @Override
     public Triple<GraphVertex, GraphEdge, GraphVertex> addEdge(GraphEdgeAddInfo addInfo) {
-        ensureNotNull(addInfo.getEdge(), "Grahp edge");
         try (Connection connection = setupConnection()) {
-            String whereClause1 = GraphStoreUtil.buildWhereClause(addInfo.getSourceFilter(), "v1");
-            String whereClause2 = GraphStoreUtil.buildWhereClause(addInfo.getTargetFilter(), "v2");
-            String prepareSql = """
-                    select * from cypher('%s', $$
-                      match (v1), (v2)
-                      where %s
-                      create (v1)-[e:RELTYPE {text_segment_id:$text_segment_id,weight:$weight,description:$description,metadata:$metadata}]->(v2)
-                      return v1,e,v2
-                    $$, ?) as (v1 agtype,e agtype,v2 agtype);
-                    """.formatted(graph, whereClause1 + " and " + whereClause2);
-            log.info("Add edge prepareSql:{}", prepareSql);
-            try (PreparedStatement preparedStatement = connection.prepareStatement(prepareSql)) {
-                Map<String, Object> whereArgs1 = GraphStoreUtil.buildWhereArgs(addInfo.getSourceFilter(), "v1");
-                Map<String, Object> whereArgs2 = GraphStoreUtil.buildWhereArgs(addInfo.getTargetFilter(), "v2");
-                whereArgs1.putAll(whereArgs2);
-                whereArgs1.putAll(JsonUtil.toMap(addInfo.getEdge()));
-                Agtype agtype = new Agtype();
-                agtype.setValue(JsonUtil.toJson(whereArgs1));
-                preparedStatement.setObject(1, agtype);
-                preparedStatement.execute();
-                return getEdgeFromResultSet(preparedStatement.getResultSet());
-            }
+            return addEdge(connection, addInfo);
         } catch (SQLException e) {
             log.error("addEdge error", e);
             throw new BaseException(B_DB_ERROR);
         }
     }
 
+    /**
+     * 新增多条边，在同一连接、同一事务中逐条执行。
+     *
+     * @param addInfos 新增信息列表
+     * @return 边与顶点三元组列表
+     */
+    @Override
+    public List<Triple<GraphVertex, GraphEdge, GraphVertex>> addEdges(List<GraphEdgeAddInfo> addInfos) {
+        ensureNotEmpty(addInfos, "Edge add infos");
+        return executeInTransaction("addEdges", connection -> {
+            List<Triple<GraphVertex, GraphEdge, GraphVertex>> result = new ArrayList<>();
+            for (GraphEdgeAddInfo addInfo : addInfos) {
+                result.add(addEdge(connection, addInfo));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 使用指定连接新增边。
+     *
+     * @param connection 数据库连接
+     * @param addInfo 新增信息
+     * @return 边与顶点三元组
+     * @throws SQLException SQL 异常
+     */
+    private Triple<GraphVertex, GraphEdge, GraphVertex> addEdge(Connection connection, GraphEdgeAddInfo addInfo) throws SQLException {
+        ensureNotNull(addInfo.getEdge(), "Grahp edge");
+        String whereClause1 = GraphStoreUtil.buildWhereClause(addInfo.getSourceFilter(), "v1");
+        String whereClause2 = GraphStoreUtil.buildWhereClause(addInfo.getTargetFilter(), "v2");
+        String prepareSql = """
+                select * from cypher('%s', $$
+                  match (v1), (v2)
+                  where %s
+                  create (v1)-[e:RELTYPE {text_segment_id:$text_segment_id,weight:$weight,description:$description,metadata:$metadata}]->(v2)
+                  return v1,e,v2
+                $$, ?) as (v1 agtype,e agtype,v2 agtype);
+                """.formatted(graph, whereClause1 + " and " + whereClause2);
+        log.info("Add edge prepareSql:{}", prepareSql);
+        try (PreparedStatement preparedStatement = connection.prepareStatement(prepareSql)) {
+            Map<String, Object> whereArgs1 = GraphStoreUtil.buildWhereArgs(addInfo.getSourceFilter(), "v1");
+            Map<String, Object> whereArgs2 = GraphStoreUtil.buildWhereArgs(addInfo.getTargetFilter(), "v2");
+            whereArgs1.putAll(whereArgs2);
+            whereArgs1.putAll(JsonUtil.toMap(addInfo.getEdge()));
+            Agtype agtype = new Agtype();
+            agtype.setValue(JsonUtil.toJson(whereArgs1));
+            preparedStatement.setObject(1, agtype);
+            preparedStatement.execute();
+            return getEdgeFromResultSet(preparedStatement.getResultSet());
+        }
+    }
+
     /**
      * 更新边并返回完整信息。
      *
@@ -426,47 +557,183 @@ public class ApacheAgeGraphStore implements GraphStore {
      */
     @Override
     public Triple<GraphVertex, GraphEdge, GraphVertex> updateEdge(GraphEdgeEditInfo edgeEditInfo) {
-        log.info("Update edge:{}", edgeEditInfo);
-        ensureNotNull(edgeEditInfo.getEdge(), "Graph edit info");
-        GraphEdge newData = edgeEditInfo.getEdge();
         try (Connection connection = setupConnection()) {
-            String whereClause1 = GraphStoreUtil.buildWhereClause(edgeEditInfo.getSourceFilter(), "v1");
-            String whereClause2 = GraphStoreUtil.buildWhereClause(edgeEditInfo.getTargetFilter(), "v2");
-            String setClause = GraphStoreUtil.buildSetClause(edgeEditInfo.getEdge().getMetadata());
-            String prepareSql = """
-                    select * from cypher('%s', $$
-                       match (v1)-[e]->(v2)
-                       where %s
-                       set e.weight=$new_weight,e.text_segment_id=$new_text_segment_id,e.description=$new_description %s
-                       return v1,e,v2
-                    $$, ?) as (v1 agtype,e agtype,v2 agtype);
-                    """.formatted(graph, whereClause1 + " and " + whereClause2, setClause);
-            log.info("updateEdge prepareSql:{}", prepareSql);
-            try (PreparedStatement upsertStmt = connection.prepareStatement(prepareSql)) {
-                Map<String, Object> whereArgs1 = GraphStoreUtil.buildWhereArgs(edgeEditInfo.getSourceFilter(), "v1");
-                Map<String, Object> whereArgs2 = GraphStoreUtil.buildWhereArgs(edgeEditInfo.getTargetFilter(), "v2");
-                Map<String, Object> setArgs = GraphStoreUtil.buildSetArgs(edgeEditInfo.getEdge().getMetadata());
-                whereArgs1.putAll(whereArgs2);
-                whereArgs1.putAll(setArgs);
-                whereArgs1.putAll(
-                        Map.of(
-                                "new_text_segment_id", newData.getTextSegmentId(),
-                                "new_weight", newData.getWeight(),
-                                "new_description", newData.getDescription()
-                        )
-                );
-                Agtype agtype = new Agtype();
-                agtype.setValue(JsonUtil.toJson(whereArgs1));
-                upsertStmt.setObject(1, agtype);
-                upsertStmt.execute();
-                return getEdgeFromResultSet(upsertStmt.getResultSet());
-            }
+            return updateEdge(connection, edgeEditInfo);
         } catch (SQLException e) {
             log.error("updateEdge error", e);
             throw new BaseException(B_DB_ERROR);
         }
     }
 
+    /**
+     * 更新多条边，在同一连接、同一事务中逐条执行。
+     *
+     * @param edgeEditInfos 编辑信息列表
+     * @return 边与顶点三元组列表
+     */
+    @Override
+    public List<Triple<GraphVertex, GraphEdge, GraphVertex>> updateEdges(List<GraphEdgeEditInfo> edgeEditInfos) {
+        ensureNotEmpty(edgeEditInfos, "Edge edit infos");
+        return executeInTransaction("updateEdges", connection -> {
+            List<Triple<GraphVertex, GraphEdge, GraphVertex>> result = new ArrayList<>();
+            for (GraphEdgeEditInfo edgeEditInfo : edgeEditInfos) {
+                result.add(updateEdge(connection, edgeEditInfo));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 使用指定连接更新边。
+     *
+     * @param connection 数据库连接
+     * @param edgeEditInfo 编辑信息
+     * @return 边与顶点三元组
+     * @throws SQLException SQL 异常
+     */
+    private Triple<GraphVertex, GraphEdge, GraphVertex> updateEdge(Connection connection, GraphEdgeEditInfo edgeEditInfo) throws SQLException {
+        log.info("Update edge:{}", edgeEditInfo);
+        ensureNotNull(edgeEditInfo.getEdge(), "Graph edit info");
+        GraphEdge newData = edgeEditInfo.getEdge();
+        String whereClause1 = GraphStoreUtil.buildWhereClause(edgeEditInfo.getSourceFilter(), "v1");
+        String whereClause2 = GraphStoreUtil.buildWhereClause(edgeEditInfo.getTargetFilter(), "v2");
+        String setClause = GraphStoreUtil.buildSetClause(edgeEditInfo.getEdge().getMetadata());
+        String prepareSql = """
+                select * from cypher('%s', $$
+                   match (v1)-[e]->(v2)
+                   where %s
+                   set e.weight=$new_weight,e.text_segment_id=$new_text_segment_id,e.description=$new_description %s
+                   return v1,e,v2
+                $$, ?) as (v1 agtype,e agtype,v2 agtype);
+                """.formatted(graph, whereClause1 + " and " + whereClause2, setClause);
+        log.info("updateEdge prepareSql:{}", prepareSql);
+        try (PreparedStatement upsertStmt = connection.prepareStatement(prepareSql)) {
+            Map<String, Object> whereArgs1 = GraphStoreUtil.buildWhereArgs(edgeEditInfo.getSourceFilter(), "v1");
+            Map<String, Object> whereArgs2 = GraphStoreUtil.buildWhereArgs(edgeEditInfo.getTargetFilter(), "v2");
+            Map<String, Object> setArgs = GraphStoreUtil.buildSetArgs(edgeEditInfo.getEdge().getMetadata());
+            whereArgs1.putAll(whereArgs2);
+            whereArgs1.putAll(setArgs);
+            whereArgs1.putAll(
+                    Map.of(
+                            "new_text_segment_id", newData.getTextSegmentId(),
+                            "new_weight", newData.getWeight(),
+                            "new_description", newData.getDescription()
+                    )
+            );
+            Agtype agtype = new Agtype();
+            agtype.setValue(JsonUtil.toJson(whereArgs1));
+            upsertStmt.setObject(1, agtype);
+            upsertStmt.execute();
+            return getEdgeFromResultSet(upsertStmt.getResultSet());
+        }
+    }
+
+    /**
+     * 从顶点与边上摘除已失效的分段，所有修改在同一事务中完成。
+     *
+     * @param metadataFilter 元数据过滤条件，限定知识库范围
+     * @param segmentIds     失效的分段 ID
+     * @return 无
+     */
+    @Override
+    public void detachSegments(Filter metadataFilter, Collection<String> segmentIds) {
+        if (segmentIds.isEmpty()) {
+            return;
+        }
+        GraphSearchCondition condition = GraphSearchCondition.builder().metadataFilter(metadataFilter).build();
+        String edgeFilter = GraphStoreUtil.buildWhereClause(condition, "e");
+        String vertexFilter = GraphStoreUtil.buildWhereClause(condition, "v");
+        String edgeQuery = """
+                select * from cypher('%s', $$
+                    match (v1)-[e]->(v2)
+                    where %s e.text_segment_id contains $segment_id
+                    return v1,e,v2
+                $$,?) as (v1 agtype,e agtype,v2 agtype);
+                """.formatted(graph, StringUtils.isNotBlank(edgeFilter) ? edgeFilter + " and" : "");
+        String vertexQuery = """
+                select * from cypher('%s', $$
+                    match (v)
+                    where %s v.text_segment_id contains $segment_id
+                    return v
+                $$,?) as (v agtype);
+                """.formatted(graph, StringUtils.isNotBlank(vertexFilter) ? vertexFilter + " and" : "");
+        String updateEdge = """
+                select * from cypher('%s', $$
+                    match ()-[e]->()
+                    where id(e) = $id
+                    set e.text_segment_id = $text_segment_id
+                $$,?) as (e agtype);
+                """.formatted(graph);
+        String deleteEdge = """
+                select * from cypher('%s', $$
+                    match ()-[e]->()
+                    where id(e) = $id
+                    delete e
+                $$,?) as (e agtype);
+                """.formatted(graph);
+        String updateVertex = """
+                select * from cypher('%s', $$
+                    match (v)
+                    where id(v) = $id
+                    set v.text_segment_id = $text_segment_id
+                $$,?) as (v agtype);
+                """.formatted(graph);
+        String deleteVertex = """
+                select * from cypher('%s', $$
+                    match (v)
+                    where id(v) = $id
+                    detach delete v
+                $$,?) as (v agtype);
+                """.formatted(graph);
+        log.info("detachSegments,segments:{}", segmentIds.size());
+        executeInTransaction("detachSegments", connection -> {
+            for (String segmentId : segmentIds) {
+                Map<String, Object> args = Map.of("segment_id", segmentId);
+                List<Triple<GraphVertex, GraphEdge, GraphVertex>> edges;
+                try (PreparedStatement stmt = prepare(connection, edgeQuery, args)) {
+                    edges = getEdgesFromResultSet(stmt.executeQuery());
+                }
+                for (Triple<GraphVertex, GraphEdge, GraphVertex> triple : edges) {
+                    GraphEdge edge = triple.getMiddle();
+                    String remaining = GraphStoreUtil.removeSegmentIds(edge.getTextSegmentId(), segmentIds);
+                    try (PreparedStatement stmt = prepare(connection, remaining.isEmpty() ? deleteEdge : updateEdge,
+                            Map.of("id", Long.parseLong(edge.getId()), "text_segment_id", remaining))) {
+                        stmt.execute();
+                    }
+                }
+                List<GraphVertex> vertices;
+                try (PreparedStatement stmt = prepare(connection, vertexQuery, args)) {
+                    vertices = getVerticesFromResultSet(stmt.executeQuery());
+                }
+                for (GraphVertex vertex : vertices) {
+                    String remaining = GraphStoreUtil.removeSegmentIds(vertex.getTextSegmentId(), segmentIds);
+                    try (PreparedStatement stmt = prepare(connection, remaining.isEmpty() ? deleteVertex : updateVertex,
+                            Map.of("id", Long.parseLong(vertex.getId()), "text_segment_id", remaining))) {
+                        stmt.execute();
+                    }
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * 创建以 agtype 作为唯一参数的预编译语句。
+     *
+     * @param connection 数据库连接
+     * @param prepareSql 语句
+     * @param args       参数
+     * @return 预编译语句
+     * @throws SQLException SQL 异常
+     */
+    private PreparedStatement prepare(Connection connection, String prepareSql, Map<String, Object> args) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(prepareSql);
+        Agtype agtype = new Agtype();
+        agtype.setValue(JsonUtil.toJson(args));
+        stmt.setObject(1, agtype);
+        return stmt;
+    }
+
     /**
      * 删除顶点（可选删除关联边）。
      *
@@ -656,23 +923,102 @@ public class ApacheAgeGraphStore implements GraphStore {
                 .build();
     }
 
-    @SuppressWarnings("java:S2095")
     /**
-     * 创建数据库连接并完成必要初始化。
+     * 在同一连接的单个事务中执行一组图谱操作，失败时整体回滚。
+     *
+     * @param action 操作名称，用于日志
+     * @param callback 需在事务中执行的操作
+     * @param <T> 返回值类型
+     * @return 操作结果
+     */
+    private <T> T executeInTransaction(String action, ConnectionCallback<T> callback) {
+        try (Connection connection = setupConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                T result = callback.doInConnection(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            log.error("{} error", action, e);
+            throw new BaseException(B_DB_ERROR);
+        }
+    }
+
+    /**
+     * 使用数据库连接执行操作的回调。
+     *
+     * @param <T> 返回值类型
+     */
+    @FunctionalInterface
+    private interface ConnectionCallback<T> {
+        /**
+         * 执行操作。
+         *
+         * @param connection 数据库连接
+         * @return 操作结果
+         * @throws SQLException SQL 异常
+         */
+        T doInConnection(Connection connection) throws SQLException;
+    }
+
+    /**
+     * 关闭连接池。
+     */
+    @Override
+    public void close() {
+        if (!dataSource.isClosed()) {
+            dataSource.close();
+        }
+    }
+
+    /**
+     * 创建 AGE 专用连接池。
+     * <p>
+     * connectionInitSql 仅在物理连接建立时执行一次；prepareThreshold=1 使 cypher 语句首次执行即走服务端预编译，
+     * 相同的语句文本在同一连接上会命中 pgjdbc 的预编译语句缓存。
+     *
+     * @param maxPoolSize 最大连接数
+     * @param minIdle 最小空闲连接数
+     * @param preparedStatementCacheSize 每个连接缓存的预编译语句数量
+     * @return 连接池
+     */
+    private HikariDataSource createDataSource(int maxPoolSize, int minIdle, int preparedStatementCacheSize) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("age-graph-store-pool");
+        config.setJdbcUrl(String.format("jdbc:postgresql://%s:%s/%s", host, port, database));
+        config.setUsername(user);
+        config.setPassword(password);
+        config.setMaximumPoolSize(maxPoolSize);
+        config.setMinimumIdle(Math.min(minIdle, maxPoolSize));
+        config.setConnectionInitSql("LOAD 'age'; SET search_path = ag_catalog, \"$user\", public;");
+        config.addDataSourceProperty("prepareThreshold", "1");
+        config.addDataSourceProperty("preparedStatementCacheQueries", String.valueOf(preparedStatementCacheSize));
+        config.addDataSourceProperty("preparedStatementCacheSizeMiB", "8");
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * 从连接池获取连接，并注册 agtype 类型。
+     * <p>
+     * 返回的是连接池代理对象，调用方 close 时归还连接而非断开。
      *
      * @return 数据库连接
      * @throws SQLException SQL 异常
      */
     private Connection setupConnection() throws SQLException {
-        PgConnection connection = DriverManager.getConnection(
-                String.format("jdbc:postgresql://%s:%s/%s", host, port, database),
-                user,
-                password
-        ).unwrap(PgConnection.class);
-        try (Statement stmt = connection.createStatement()) {
-            connection.addDataType("agtype", Agtype.class);
-            stmt.execute("LOAD 'age'");
-            stmt.execute("SET search_path = ag_catalog, \"$user\", public;");
+        Connection connection = dataSource.getConnection();
+        try {
+            // 类型注册仅更新驱动内存中的映射，开销可忽略
+            connection.unwrap(PgConnection.class).addDataType("agtype", Agtype.class);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
         }
         return connection;
     }
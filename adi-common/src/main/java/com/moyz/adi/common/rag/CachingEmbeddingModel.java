@@ -0,0 +1,145 @@
+package com.moyz.adi.common.rag;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.moyz.adi.common.config.AdiProperties;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.commons.lang3.StringUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * 带查询向量缓存的向量模型。
+ * <p>
+ * 单条文本的向量化（检索时的查询、长期记忆中的事实）按“模型标识 + 规整后的文本”缓存，
+ * 同一问题被会话记忆、多个知识库检索器同时使用时只计算一次；
+ * 批量向量化（文档入库）直接交给被包装的模型，不进入缓存。
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    /**
+     * 缓存指标名称，命中、未命中等统计以 cache 标签区分。
+     */
+    public static final String CACHE_NAME = "adi.embedding.query";
+
+    /**
+     * 连续空白字符。
+     */
+    private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+
+    /**
+     * 被包装的向量模型。
+     */
+    private final EmbeddingModel delegate;
+
+    /**
+     * 向量模型标识，作为缓存键的一部分，切换模型后不会命中旧向量。
+     */
+    private final String modelId;
+
+    /**
+     * 超过该长度的文本不缓存。
+     */
+    private final int maxTextLength;
+
+    /**
+     * 缓存（模型标识 + 文本 -> 向量）。
+     */
+    private final Cache<String, Embedding> cache;
+
+    /**
+     * 构建带缓存的向量模型。
+     *
+     * @param delegate      被包装的向量模型
+     * @param modelId       向量模型标识
+     * @param config        缓存配置
+     * @param meterRegistry 指标注册表
+     */
+    public CachingEmbeddingModel(EmbeddingModel delegate, String modelId, AdiProperties.EmbeddingCache config, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.modelId = modelId;
+        this.maxTextLength = config.getMaxTextLength();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaxSize())
+                .expireAfterWrite(Duration.ofMinutes(config.getTtlMinutes()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * 向量化单条文本，优先使用缓存。
+     *
+     * @param text 文本
+     * @return 向量
+     */
+    @Override
+    public Response<Embedding> embed(String text) {
+        return embed(TextSegment.from(text));
+    }
+
+    /**
+     * 向量化单个文本段，优先使用缓存。
+     * 未命中时原样返回被包装模型的响应（含 token 用量），命中时 token 用量为 0。
+     *
+     * @param textSegment 文本段
+     * @return 向量
+     */
+    @Override
+    public Response<Embedding> embed(TextSegment textSegment) {
+        String text = normalize(textSegment.text());
+        if (text.length() > maxTextLength) {
+            return delegate.embed(textSegment);
+        }
+        AtomicReference<Response<Embedding>> computed = new AtomicReference<>();
+        Embedding embedding = cache.get(modelId + "\n" + text, key -> {
+            Response<Embedding> response = delegate.embed(textSegment);
+            computed.set(response);
+            return response.content();
+        });
+        if (null != computed.get()) {
+            return computed.get();
+        }
+        return Response.from(embedding, new TokenUsage(0, 0, 0));
+    }
+
+    /**
+     * 批量向量化，不经过缓存。
+     *
+     * @param textSegments 文本段列表
+     * @return 向量列表
+     */
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        return delegate.embedAll(textSegments);
+    }
+
+    /**
+     * 向量维度。
+     *
+     * @return 维度
+     */
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    /**
+     * 规整文本：去除首尾空白并合并连续空白，使仅有空白差异的问题共用缓存。
+     *
+     * @param text 文本
+     * @return 规整后的文本
+     */
+    private static String normalize(String text) {
+        return WHITESPACES.matcher(StringUtils.trimToEmpty(text)).replaceAll(" ");
+    }
+}
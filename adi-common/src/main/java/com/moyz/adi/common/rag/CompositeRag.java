@@ -1,5 +1,6 @@
 package com.moyz.adi.common.rag;
 
+import com.moyz.adi.common.config.AdiProperties;
 import com.moyz.adi.common.entity.User;
 import com.moyz.adi.common.exception.BaseException;
 import com.moyz.adi.common.helper.LLMContext;
@@ -7,27 +8,29 @@ import com.moyz.adi.common.helper.SSEEmitterHelper;
 import com.moyz.adi.common.interfaces.IStreamingChatAssistant;
 import com.moyz.adi.common.interfaces.ITempStreamingChatAssistant;
 import com.moyz.adi.common.interfaces.TriConsumer;
-import com.moyz.adi.common.memory.shortterm.MapDBChatMemoryStore;
+import com.moyz.adi.common.memory.shortterm.ChatMemoryStoreFactory;
 import com.moyz.adi.common.languagemodel.AbstractLLMService;
 import com.moyz.adi.common.util.SpringUtil;
 import com.moyz.adi.common.vo.*;
+import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.memory.chat.ChatMemoryProvider;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.rag.DefaultRetrievalAugmentor;
 import dev.langchain4j.rag.RetrievalAugmentor;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
-import dev.langchain4j.rag.query.router.DefaultQueryRouter;
-import dev.langchain4j.rag.query.router.QueryRouter;
 import dev.langchain4j.rag.query.transformer.CompressingQueryTransformer;
 import dev.langchain4j.rag.query.transformer.QueryTransformer;
 import dev.langchain4j.service.AiServices;
 import dev.langchain4j.service.TokenStream;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.core.task.AsyncTaskExecutor;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import static com.moyz.adi.common.enums.ErrorEnum.B_BREAK_SEARCH;
 import static com.moyz.adi.common.enums.ErrorEnum.B_LLM_SERVICE_DISABLED;
@@ -47,6 +50,11 @@ public class CompositeRag {
      */
     private final GraphRag graphRag;
 
+    /**
+     * 本次请求使用的检索路由，用于查询迟到的检索器。
+     */
+    private volatile DeadlineQueryRouter queryRouter;
+
     /**
      * 构建组合 RAG 实例。
      *
@@ -83,6 +91,40 @@ public class CompositeRag {
         return retrievers;
     }
 
+    /**
+     * 构建 RAG 请求使用的会话记忆。
+     *
+     * @param memoryId 记忆 ID
+     * @return 会话记忆
+     */
+    public static ChatMemory buildChatMemory(Object memoryId) {
+        return MessageWindowChatMemory.builder()
+                .id(memoryId)
+                .maxMessages(2)
+                .chatMemoryStore(ChatMemoryStoreFactory.get())
+                .build();
+    }
+
+    /**
+     * 获取本次请求中未在期限内返回的检索器，其结果未用于回答，不应写入引用。
+     *
+     * @return 迟到的检索器
+     */
+    public Set<ContentRetriever> getLateRetrievers() {
+        DeadlineQueryRouter router = queryRouter;
+        return null == router ? Set.of() : router.getLateRetrievers();
+    }
+
+    /**
+     * 获取本次请求中被检索线程池拒绝的检索器。
+     *
+     * @return 被拒绝的检索器
+     */
+    public Set<ContentRetriever> getRejectedRetrievers() {
+        DeadlineQueryRouter router = queryRouter;
+        return null == router ? Set.of() : router.getRejectedRetrievers();
+    }
+
     /**
      * 使用 RAG 处理提问。
      *
@@ -136,20 +178,22 @@ public class CompositeRag {
             throw new BaseException(B_LLM_SERVICE_DISABLED);
         }
 
-        QueryRouter queryRouter = new DefaultQueryRouter(retrievers);
+        // 检索器在路由时按总期限并发执行，增强器拿到的都是已完成的检索器，无需再为其创建线程池
+        DeadlineQueryRouter queryRouter = new DeadlineQueryRouter(retrievers,
+                SpringUtil.getBean("retrievalExecutor", AsyncTaskExecutor.class),
+                SpringUtil.getBean(AdiProperties.class).getRetrieval().getDeadlineMillis(),
+                SpringUtil.getBean(MeterRegistry.class));
+        this.queryRouter = queryRouter;
         TokenStream tokenStream;
         ChatModelRequestParams chatModelRequestParams = params.getHttpRequestParams();
         if (StringUtils.isNotBlank(chatModelRequestParams.getMemoryId())) {
             // 需要记忆的场景使用 ChatMemoryProvider，保证上下文连续
-            ChatMemoryProvider chatMemoryProvider = memoryId -> MessageWindowChatMemory.builder()
-                    .id(memoryId)
-                    .maxMessages(2)
-                    .chatMemoryStore(MapDBChatMemoryStore.getSingleton())
-                    .build();
+            ChatMemoryProvider chatMemoryProvider = CompositeRag::buildChatMemory;
             QueryTransformer queryTransformer = new CompressingQueryTransformer(llmService.buildChatLLM(params.getModelProperties()));
             RetrievalAugmentor retrievalAugmentor = DefaultRetrievalAugmentor.builder()
                     .queryTransformer(queryTransformer)
                     .queryRouter(queryRouter)
+                    .executor(Runnable::run)
                     .build();
             IStreamingChatAssistant assistant = AiServices.builder(IStreamingChatAssistant.class)
                     .streamingChatModel(llmService.buildStreamingChatModel(params.getModelProperties()))
@@ -165,7 +209,7 @@ public class CompositeRag {
             // 无记忆场景使用临时助手，减少状态开销
             ITempStreamingChatAssistant assistant = AiServices.builder(ITempStreamingChatAssistant.class)
                     .streamingChatModel(llmService.buildStreamingChatModel(params.getModelProperties()))
-                    .retrievalAugmentor(DefaultRetrievalAugmentor.builder().queryRouter(queryRouter).build())
+                    .retrievalAugmentor(DefaultRetrievalAugmentor.builder().queryRouter(queryRouter).executor(Runnable::run).build())
                     .build();
             if (StringUtils.isNotBlank(chatModelRequestParams.getSystemMessage())) {
                 tokenStream = assistant.chatWithSystem(chatModelRequestParams.getSystemMessage(), chatModelRequestParams.getUserMessage(), new ArrayList<>());
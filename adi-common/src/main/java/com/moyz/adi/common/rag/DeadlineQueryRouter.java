@@ -0,0 +1,245 @@
+package com.moyz.adi.common.rag;
+
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.rag.query.router.QueryRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 带总期限的并发检索路由。
+ * <p>
+ * 路由时即在检索线程池中并发执行全部检索器，所有检索器共用一个期限：
+ * 期限内返回的检索器以其结果参与增强，到期仍未返回的检索器记为迟到并被跳过，
+ * 回答的首字时延不再受最慢的检索器（如需先调用大模型抽取实体的图谱检索）限制。
+ * 迟到的检索任务会被取消（中断检索线程），检索器可通过 {@link #isDeadlinePassed()} 在发起昂贵调用前自行放弃；
+ * 被线程池拒绝的检索器单独记录，不计入迟到。
+ * 检索器抛出的异常按原样抛出，保持严格模式下未命中即中断的行为。
+ */
+@Slf4j
+public class DeadlineQueryRouter implements QueryRouter {
+
+    /**
+     * 迟到检索器次数指标名称。
+     */
+    public static final String METRIC_LATE = "adi.rag.retriever.late";
+
+    /**
+     * 被线程池拒绝的检索器次数指标名称。
+     */
+    public static final String METRIC_REJECTED = "adi.rag.retriever.rejected";
+
+    /**
+     * 当前检索线程的期限（System.nanoTime），由检索任务在执行期间设置。
+     */
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    /**
+     * 参与路由的检索器。
+     */
+    private final List<ContentRetriever> retrievers;
+
+    /**
+     * 执行检索的线程池。
+     */
+    private final Executor executor;
+
+    /**
+     * 总期限（毫秒），小于等于 0 表示不限制。
+     */
+    private final long deadlineMillis;
+
+    /**
+     * 指标注册表，可为 null。
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 迟到的检索器。
+     */
+    private final Set<ContentRetriever> lateRetrievers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 被线程池拒绝的检索器。
+     */
+    private final Set<ContentRetriever> rejectedRetrievers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 创建路由。
+     *
+     * @param retrievers     检索器列表
+     * @param executor       执行检索的线程池
+     * @param deadlineMillis 总期限（毫秒），小于等于 0 表示不限制
+     * @param meterRegistry  指标注册表，可为 null
+     */
+    public DeadlineQueryRouter(List<ContentRetriever> retrievers, Executor executor, long deadlineMillis, MeterRegistry meterRegistry) {
+        this.retrievers = retrievers;
+        this.executor = executor;
+        this.deadlineMillis = deadlineMillis;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 并发执行全部检索器并等待至期限，返回按时完成的检索器（已持有检索结果，再次调用不会重复检索）。
+     *
+     * @param query 查询
+     * @return 按时完成的检索器
+     */
+    @Override
+    public Collection<ContentRetriever> route(Query query) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        List<FutureTask<List<Content>>> futures = new ArrayList<>(retrievers.size());
+        for (ContentRetriever retriever : retrievers) {
+            FutureTask<List<Content>> future = new FutureTask<>(() -> {
+                if (deadlineMillis > 0) {
+                    DEADLINE.set(deadline);
+                }
+                try {
+                    return retriever.retrieve(query);
+                } finally {
+                    DEADLINE.remove();
+                }
+            });
+            try {
+                executor.execute(future);
+            } catch (RejectedExecutionException e) {
+                markRejected(retriever);
+                future = null;
+            }
+            futures.add(future);
+        }
+        List<ContentRetriever> completed = new ArrayList<>(retrievers.size());
+        for (int i = 0; i < retrievers.size(); i++) {
+            ContentRetriever retriever = retrievers.get(i);
+            FutureTask<List<Content>> future = futures.get(i);
+            if (null == future) {
+                continue;
+            }
+            try {
+                List<Content> contents = deadlineMillis > 0
+                        ? future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                        : future.get();
+                completed.add(new CompletedRetriever(contents));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                markLate(retriever);
+            } catch (ExecutionException e) {
+                cancelAll(futures);
+                throw new CompletionException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                markLate(retriever);
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * 当前检索线程的期限是否已过，检索器可据此跳过昂贵的调用（如大模型抽取实体）。
+     * 不在路由的检索任务中调用时恒为 false。
+     *
+     * @return 是否已过期限
+     */
+    public static boolean isDeadlinePassed() {
+        Long deadline = DEADLINE.get();
+        return null != deadline && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * 获取迟到的检索器，其结果未用于本次回答。
+     *
+     * @return 迟到的检索器
+     */
+    public Set<ContentRetriever> getLateRetrievers() {
+        return lateRetrievers;
+    }
+
+    /**
+     * 获取被线程池拒绝的检索器，其结果同样未用于本次回答。
+     *
+     * @return 被拒绝的检索器
+     */
+    public Set<ContentRetriever> getRejectedRetrievers() {
+        return rejectedRetrievers;
+    }
+
+    /**
+     * 取消尚未结束的检索任务。
+     *
+     * @param futures 检索任务，被拒绝的为 null
+     * @return 无
+     */
+    private void cancelAll(List<FutureTask<List<Content>>> futures) {
+        for (Future<List<Content>> future : futures) {
+            if (null != future) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * 记录迟到的检索器。
+     *
+     * @param retriever 检索器
+     * @return 无
+     */
+    private void markLate(ContentRetriever retriever) {
+        String name = retriever.getClass().getSimpleName();
+        log.warn("Retriever missed deadline,retriever:{},deadlineMillis:{}", name, deadlineMillis);
+        lateRetrievers.add(retriever);
+        if (null != meterRegistry) {
+            Counter.builder(METRIC_LATE).tag("retriever", name).register(meterRegistry).increment();
+        }
+    }
+
+    /**
+     * 记录被线程池拒绝的检索器。
+     *
+     * @param retriever 检索器
+     * @return 无
+     */
+    private void markRejected(ContentRetriever retriever) {
+        String name = retriever.getClass().getSimpleName();
+        log.warn("Retriever rejected by executor,retriever:{}", name);
+        rejectedRetrievers.add(retriever);
+        if (null != meterRegistry) {
+            Counter.builder(METRIC_REJECTED).tag("retriever", name).register(meterRegistry).increment();
+        }
+    }
+
+    /**
+     * 持有已完成检索结果的检索器。
+     *
+     * @param contents 检索结果
+     */
+    private record CompletedRetriever(List<Content> contents) implements ContentRetriever {
+
+        /**
+         * 返回已完成的检索结果。
+         *
+         * @param query 查询
+         * @return 检索结果
+         */
+        @Override
+        public List<Content> retrieve(Query query) {
+            return contents;
+        }
+    }
+}
@@ -0,0 +1,768 @@
+package com.moyz.adi.common.rag;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.moyz.adi.common.config.AdiProperties;
+import com.moyz.adi.common.cosntant.AdiConstant;
+import com.moyz.adi.common.dto.KbIndexingProgressResp;
+import com.moyz.adi.common.enums.ErrorEnum;
+import com.moyz.adi.common.exception.BaseException;
+import com.moyz.adi.common.service.embedding.IEmbeddingService;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static com.moyz.adi.common.cosntant.AdiConstant.RetrieveContentFrom.KNOWLEDGE_BASE;
+
+/**
+ * 知识库向量化入库流水线。
+ * <p>
+ * 入库分为切分、向量化、写入三个阶段，各阶段由固定数量的常驻线程处理，阶段之间以有界队列衔接：
+ * <ul>
+ *     <li>切分：从知识点队列取出文档，切分为文本段；</li>
+ *     <li>向量化：将多个知识点的文本段凑成一批，一次请求向量模型；</li>
+ *     <li>写入：将向量凑成一批，一次写入向量库。</li>
+ * </ul>
+ * 任一队列已满时上一阶段阻塞，知识点队列已满时提交方阻塞，因此整个知识库重建索引时内存与并发均有上限，
+ * 也不会占用处理聊天请求的主线程池。
+ * <p>
+ * 切分后为每个文本段计算 {@link SegmentFingerprint 指纹} 并写入 metadata，
+ * 与知识点已有向量的指纹相同的文本段直接沿用原向量，只有新增或变化的文本段进入向量化阶段。
+ * <p>
+ * 一批文本段可能来自多个知识点，整批向量化或写入失败时按知识点拆开重试，只有重试仍失败的知识点被标记失败；
+ * 知识点失败时删除本轮已为其写入的向量。
+ */
+@Slf4j
+@Component
+public class EmbeddingIngestPipeline {
+
+    /**
+     * 文本段处理数指标名称，以 stage（split/reuse/embed/store）标签区分阶段。
+     */
+    public static final String METRIC_SEGMENTS = "adi.embedding.ingest.segments";
+
+    /**
+     * 批处理耗时指标名称，以 stage（embed/store）标签区分阶段。
+     */
+    public static final String METRIC_BATCH = "adi.embedding.ingest.batch";
+
+    /**
+     * 队列长度指标名称，以 queue（item/embed/store）标签区分队列。
+     */
+    public static final String METRIC_QUEUE = "adi.embedding.ingest.queue";
+
+    /**
+     * 应用配置。
+     */
+    @Resource
+    private AdiProperties adiProperties;
+
+    /**
+     * 入库流水线专用线程池。
+     */
+    @Resource(name = "embeddingIngestExecutor")
+    private AsyncTaskExecutor embeddingIngestExecutor;
+
+    /**
+     * 指标注册表。
+     */
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 向量索引服务，用于删除失败知识点已写入的向量。
+     */
+    @Resource
+    private IEmbeddingService iEmbeddingService;
+
+    /**
+     * 等待切分的知识点。
+     */
+    private BlockingQueue<IngestTask> itemQueue;
+
+    /**
+     * 等待向量化的文本段。
+     */
+    private BlockingQueue<PendingSegment> embedQueue;
+
+    /**
+     * 等待写入的文本段及向量。
+     */
+    private BlockingQueue<EmbeddedSegment> storeQueue;
+
+    /**
+     * 知识库 UUID 到入库进度的映射。
+     */
+    private final Cache<String, KbProgress> progresses = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofDays(1))
+            .build();
+
+    /**
+     * 创建队列并启动各阶段的常驻线程。
+     *
+     * @return 无
+     */
+    @PostConstruct
+    public void init() {
+        AdiProperties.EmbeddingIngest config = adiProperties.getEmbeddingIngest();
+        itemQueue = new ArrayBlockingQueue<>(Math.max(1, config.getMaxPendingItems()));
+        embedQueue = new ArrayBlockingQueue<>(Math.max(1, config.getSegmentQueueCapacity()));
+        storeQueue = new ArrayBlockingQueue<>(Math.max(1, config.getSegmentQueueCapacity()));
+        meterRegistry.gauge(METRIC_QUEUE, Tags.of("queue", "item"), itemQueue, BlockingQueue::size);
+        meterRegistry.gauge(METRIC_QUEUE, Tags.of("queue", "embed"), embedQueue, BlockingQueue::size);
+        meterRegistry.gauge(METRIC_QUEUE, Tags.of("queue", "store"), storeQueue, BlockingQueue::size);
+        for (int i = 0; i < Math.max(1, config.getSplitWorkers()); i++) {
+            embeddingIngestExecutor.execute(() -> loop("split", this::split));
+        }
+        for (int i = 0; i < Math.max(1, config.getEmbedWorkers()); i++) {
+            embeddingIngestExecutor.execute(() -> loop("embed", this::embed));
+        }
+        for (int i = 0; i < Math.max(1, config.getStoreWorkers()); i++) {
+            embeddingIngestExecutor.execute(() -> loop("store", this::store));
+        }
+        log.info("embedding ingest pipeline started,config:{}", config);
+    }
+
+    /**
+     * 提交知识点文档，流水线已满时阻塞直到有空位。
+     *
+     * @param kbUuid                知识库 UUID
+     * @param document              知识点文档
+     * @param overlap               重叠 token 数
+     * @param tokenEstimator        token 估算器名称
+     * @param existingSegmentHashes 知识点已有向量的 ID 到文本段指纹的映射
+     * @return 知识点新增或变化的文本段写入向量库后完成，任一阶段失败时异常完成
+     */
+    public CompletableFuture<IngestResult> submit(String kbUuid, Document document, int overlap, String tokenEstimator, Map<String, String> existingSegmentHashes) {
+        KbProgress progress = progresses.get(kbUuid, key -> new KbProgress());
+        progress.onSubmit();
+        IngestTask task = new IngestTask(kbUuid, document, overlap, tokenEstimator, existingSegmentHashes, progress);
+        try {
+            itemQueue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(task, e);
+        }
+        return task.future;
+    }
+
+    /**
+     * 获取知识库最近一轮向量化的进度，仅包含本节点处理的知识点。
+     *
+     * @param kbUuid 知识库 UUID
+     * @return 进度
+     */
+    public Optional<KbIndexingProgressResp> getProgress(String kbUuid) {
+        return Optional.ofNullable(progresses.getIfPresent(kbUuid)).map(item -> item.toResp(kbUuid));
+    }
+
+    /**
+     * 常驻线程的处理循环，单次处理出错不影响后续处理，线程池关闭（中断）时退出。
+     *
+     * @param stage 阶段名称
+     * @param step  单次处理
+     * @return 无
+     */
+    private void loop(String stage, Step step) {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                step.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("embedding ingest {} error", stage, e);
+            }
+        }
+        log.info("embedding ingest {} worker stopped", stage);
+    }
+
+    /**
+     * 切分阶段：切分一个知识点并将文本段放入向量化队列。
+     *
+     * @return 无
+     * @throws InterruptedException 线程被中断
+     */
+    private void split() throws InterruptedException {
+        IngestTask task = itemQueue.take();
+        if (task.future.isDone()) {
+            return;
+        }
+        List<TextSegment> segments;
+        try {
+            segments = rag().split(task.document, task.overlap, task.tokenEstimator);
+        } catch (Exception e) {
+            fail(task, e);
+            return;
+        }
+        task.progress.splitSegments.addAndGet(segments.size());
+        meterRegistry.counter(METRIC_SEGMENTS, "stage", "split").increment(segments.size());
+        String modelName = adiProperties.getEmbeddingModel();
+        for (TextSegment segment : segments) {
+            String hash = SegmentFingerprint.of(segment, task.overlap, task.tokenEstimator, modelName);
+            segment.metadata().put(AdiConstant.MetadataKey.SEGMENT_HASH, hash);
+            if (task.reuse(hash)) {
+                continue;
+            }
+            task.pending.incrementAndGet();
+            try {
+                embedQueue.put(new PendingSegment(task, segment));
+            } catch (InterruptedException e) {
+                // 流水线关闭，已入队的文本段随后被丢弃，知识点不会再完成
+                fail(task, e);
+                throw e;
+            }
+        }
+        task.progress.reusedSegments.addAndGet(task.reusedSegments);
+        meterRegistry.counter(METRIC_SEGMENTS, "stage", "reuse").increment(task.reusedSegments);
+        // 释放提交时占用的计数，所有文本段均已写入时知识点完成
+        task.release();
+    }
+
+    /**
+     * 向量化阶段：取出一批文本段（可来自多个知识点），一次请求向量模型。
+     *
+     * @return 无
+     * @throws InterruptedException 线程被中断
+     */
+    private void embed() throws InterruptedException {
+        AdiProperties.EmbeddingIngest config = adiProperties.getEmbeddingIngest();
+        List<PendingSegment> batch = takeBatch(embedQueue, config.getEmbedBatchSize(), config.getBatchWaitMillis());
+        batch.removeIf(item -> item.task.future.isDone());
+        if (batch.isEmpty()) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        try {
+            embedBatch(batch);
+        } catch (Exception e) {
+            Map<IngestTask, List<PendingSegment>> byTask = groupByTask(batch, PendingSegment::task);
+            if (byTask.size() == 1) {
+                log.error("embedding ingest embed batch error,size:{}", batch.size(), e);
+                fail(batch.get(0).task, e);
+                return;
+            }
+            // 批次混有多个知识点，按知识点拆开重试，只让失败的知识点失败
+            log.warn("embedding ingest embed batch error,retry per item,size:{},items:{}", batch.size(), byTask.size(), e);
+            for (Map.Entry<IngestTask, List<PendingSegment>> entry : byTask.entrySet()) {
+                try {
+                    embedBatch(entry.getValue());
+                } catch (InterruptedException ie) {
+                    throw ie;
+                } catch (Exception retryError) {
+                    log.error("embedding ingest embed item error,size:{}", entry.getValue().size(), retryError);
+                    fail(entry.getKey(), retryError);
+                }
+            }
+        }
+        meterRegistry.timer(METRIC_BATCH, "stage", "embed").record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 向量化一批文本段并放入写入队列。
+     *
+     * @param batch 文本段
+     * @return 无
+     * @throws InterruptedException 线程被中断
+     */
+    private void embedBatch(List<PendingSegment> batch) throws InterruptedException {
+        List<Embedding> embeddings = rag().embedAll(batch.stream().map(PendingSegment::segment).toList());
+        if (embeddings.size() != batch.size()) {
+            throw new BaseException(ErrorEnum.B_COMMON_ERROR);
+        }
+        meterRegistry.counter(METRIC_SEGMENTS, "stage", "embed").increment(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            PendingSegment item = batch.get(i);
+            item.task.progress.embeddedSegments.incrementAndGet();
+            storeQueue.put(new EmbeddedSegment(item.task, item.segment, embeddings.get(i)));
+        }
+    }
+
+    /**
+     * 写入阶段：取出一批向量，一次写入向量库。
+     *
+     * @return 无
+     * @throws InterruptedException 线程被中断
+     */
+    private void store() throws InterruptedException {
+        AdiProperties.EmbeddingIngest config = adiProperties.getEmbeddingIngest();
+        List<EmbeddedSegment> batch = takeBatch(storeQueue, config.getStoreBatchSize(), config.getBatchWaitMillis());
+        batch.removeIf(item -> item.task.future.isDone());
+        if (batch.isEmpty()) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        try {
+            storeBatch(batch);
+        } catch (Exception e) {
+            Map<IngestTask, List<EmbeddedSegment>> byTask = groupByTask(batch, EmbeddedSegment::task);
+            if (byTask.size() == 1) {
+                log.error("embedding ingest store batch error,size:{}", batch.size(), e);
+                fail(batch.get(0).task, e);
+                return;
+            }
+            // 批次混有多个知识点，按知识点拆开重试，只让失败的知识点失败
+            log.warn("embedding ingest store batch error,retry per item,size:{},items:{}", batch.size(), byTask.size(), e);
+            for (Map.Entry<IngestTask, List<EmbeddedSegment>> entry : byTask.entrySet()) {
+                try {
+                    storeBatch(entry.getValue());
+                } catch (Exception retryError) {
+                    log.error("embedding ingest store item error,size:{}", entry.getValue().size(), retryError);
+                    fail(entry.getKey(), retryError);
+                }
+            }
+        }
+        meterRegistry.timer(METRIC_BATCH, "stage", "store").record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 写入一批向量并记录各知识点已写入的向量 ID。
+     * 知识点在写入期间已失败时，立即删除刚写入的向量。
+     *
+     * @param batch 文本段及向量
+     * @return 无
+     */
+    private void storeBatch(List<EmbeddedSegment> batch) {
+        List<String> embeddingIds = rag().addAll(batch.stream().map(EmbeddedSegment::embedding).toList(), batch.stream().map(EmbeddedSegment::segment).toList());
+        if (embeddingIds.size() != batch.size()) {
+            throw new BaseException(ErrorEnum.B_COMMON_ERROR);
+        }
+        meterRegistry.counter(METRIC_SEGMENTS, "stage", "store").increment(batch.size());
+        Map<IngestTask, List<String>> idsByTask = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            idsByTask.computeIfAbsent(batch.get(i).task, key -> new ArrayList<>()).add(embeddingIds.get(i));
+        }
+        idsByTask.forEach((task, ids) -> {
+            if (!task.addStored(ids)) {
+                rollback(task, ids);
+                return;
+            }
+            for (int i = 0; i < ids.size(); i++) {
+                task.progress.onStored();
+                task.stored();
+            }
+        });
+    }
+
+    /**
+     * 标记知识点失败，并删除本轮已为其写入的向量。
+     *
+     * @param task  入库任务
+     * @param cause 失败原因
+     * @return 无
+     */
+    private void fail(IngestTask task, Throwable cause) {
+        List<String> storedEmbeddingIds = task.fail(cause);
+        if (null != storedEmbeddingIds) {
+            rollback(task, storedEmbeddingIds);
+        }
+    }
+
+    /**
+     * 删除失败知识点已写入的向量。
+     *
+     * @param task         入库任务
+     * @param embeddingIds 向量 ID
+     * @return 无
+     */
+    private void rollback(IngestTask task, List<String> embeddingIds) {
+        if (embeddingIds.isEmpty()) {
+            return;
+        }
+        try {
+            iEmbeddingService.deleteByEmbeddingIds(task.kbUuid, embeddingIds);
+            log.info("embedding ingest rollback,kbUuid:{},deleted:{}", task.kbUuid, embeddingIds.size());
+        } catch (Exception e) {
+            log.error("embedding ingest rollback error,kbUuid:{},embeddingIds:{}", task.kbUuid, embeddingIds, e);
+        }
+    }
+
+    /**
+     * 按所属知识点分组，保持原有顺序。
+     *
+     * @param batch  批次
+     * @param taskOf 取所属知识点的方法
+     * @param <T>    元素类型
+     * @return 知识点到元素列表的映射
+     */
+    private static <T> Map<IngestTask, List<T>> groupByTask(List<T> batch, Function<T, IngestTask> taskOf) {
+        Map<IngestTask, List<T>> byTask = new LinkedHashMap<>();
+        for (T item : batch) {
+            byTask.computeIfAbsent(taskOf.apply(item), key -> new ArrayList<>()).add(item);
+        }
+        return byTask;
+    }
+
+    /**
+     * 知识库的向量 RAG 实例。
+     *
+     * @return RAG 实例
+     */
+    private static EmbeddingRag rag() {
+        return EmbeddingRagContext.get(KNOWLEDGE_BASE);
+    }
+
+    /**
+     * 从队列中取出一批元素：阻塞等待第一个元素，之后在等待时间内尽量凑满一批。
+     *
+     * @param queue      队列
+     * @param batchSize  批大小
+     * @param waitMillis 凑批的最长等待时间（毫秒）
+     * @param <T>        元素类型
+     * @return 元素列表，至少包含一个元素
+     * @throws InterruptedException 线程被中断
+     */
+    private static <T> List<T> takeBatch(BlockingQueue<T> queue, int batchSize, long waitMillis) throws InterruptedException {
+        int size = Math.max(1, batchSize);
+        List<T> batch = new ArrayList<>(size);
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        while (batch.size() < size) {
+            queue.drainTo(batch, size - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= size || remaining <= 0) {
+                break;
+            }
+            T next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (null == next) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    /**
+     * 知识点入库结果。
+     */
+    @Data
+    @AllArgsConstructor
+    public static class IngestResult {
+        /**
+         * 未被沿用的已有向量 ID，调用方应在确认入库成功后删除。
+         */
+        private List<String> staleEmbeddingIds;
+        /**
+         * 沿用已有向量的文本段数。
+         */
+        private int reusedSegments;
+        /**
+         * 新写入的文本段数。
+         */
+        private int storedSegments;
+    }
+
+    /**
+     * 流水线阶段的单次处理。
+     */
+    @FunctionalInterface
+    private interface Step {
+        /**
+         * 执行一次处理。
+         *
+         * @return 无
+         * @throws InterruptedException 线程被中断
+         */
+        void run() throws InterruptedException;
+    }
+
+    /**
+     * 等待向量化的文本段。
+     *
+     * @param task    所属知识点
+     * @param segment 文本段
+     */
+    private record PendingSegment(IngestTask task, TextSegment segment) {
+    }
+
+    /**
+     * 等待写入的文本段及向量。
+     *
+     * @param task      所属知识点
+     * @param segment   文本段
+     * @param embedding 向量
+     */
+    private record EmbeddedSegment(IngestTask task, TextSegment segment, Embedding embedding) {
+    }
+
+    /**
+     * 单个知识点的入库任务。
+     */
+    private static class IngestTask {
+
+        /**
+         * 知识库 UUID。
+         */
+        private final String kbUuid;
+
+        /**
+         * 知识点文档。
+         */
+        private final Document document;
+
+        /**
+         * 重叠 token 数。
+         */
+        private final int overlap;
+
+        /**
+         * token 估算器名称。
+         */
+        private final String tokenEstimator;
+
+        /**
+         * 所属知识库的进度。
+         */
+        private final KbProgress progress;
+
+        /**
+         * 可沿用的已有向量（文本段指纹 -> 向量 ID），仅由切分线程访问。
+         */
+        private final Map<String, Deque<String>> reusable = new HashMap<>();
+
+        /**
+         * 沿用的文本段数，切分结束后不再变化。
+         */
+        private int reusedSegments;
+
+        /**
+         * 尚未写入的文本段数，另加 1 表示切分尚未结束。
+         */
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        /**
+         * 已写入的文本段数。
+         */
+        private final AtomicInteger storedSegments = new AtomicInteger();
+
+        /**
+         * 本轮已写入的向量 ID，失败时据此删除，访问时需持有任务锁。
+         */
+        private final List<String> storedEmbeddingIds = new ArrayList<>();
+
+        /**
+         * 完成通知。
+         */
+        private final CompletableFuture<IngestResult> future = new CompletableFuture<>();
+
+        /**
+         * 创建入库任务。
+         *
+         * @param kbUuid                知识库 UUID
+         * @param document              知识点文档
+         * @param overlap               重叠 token 数
+         * @param tokenEstimator        token 估算器名称
+         * @param existingSegmentHashes 已有向量的 ID 到文本段指纹的映射
+         * @param progress              所属知识库的进度
+         */
+        IngestTask(String kbUuid, Document document, int overlap, String tokenEstimator, Map<String, String> existingSegmentHashes, KbProgress progress) {
+            this.kbUuid = kbUuid;
+            this.document = document;
+            this.overlap = overlap;
+            this.tokenEstimator = tokenEstimator;
+            this.progress = progress;
+            existingSegmentHashes.forEach((embeddingId, hash) -> reusable.computeIfAbsent(hash, key -> new ArrayDeque<>()).add(embeddingId));
+        }
+
+        /**
+         * 尝试沿用指纹相同的已有向量。
+         *
+         * @param hash 文本段指纹
+         * @return 是否沿用
+         */
+        boolean reuse(String hash) {
+            Deque<String> embeddingIds = reusable.get(hash);
+            if (null == embeddingIds || embeddingIds.isEmpty()) {
+                return false;
+            }
+            embeddingIds.poll();
+            reusedSegments++;
+            return true;
+        }
+
+        /**
+         * 记录一个文本段写入完成。
+         *
+         * @return 无
+         */
+        void stored() {
+            storedSegments.incrementAndGet();
+            release();
+        }
+
+        /**
+         * 释放一个计数，计数归零时任务完成，未被沿用的已有向量作为过期向量返回。
+         *
+         * @return 无
+         */
+        void release() {
+            if (pending.decrementAndGet() != 0) {
+                return;
+            }
+            List<String> staleEmbeddingIds = new ArrayList<>();
+            reusable.values().forEach(staleEmbeddingIds::addAll);
+            if (future.complete(new IngestResult(staleEmbeddingIds, reusedSegments, storedSegments.get()))) {
+                progress.doneItems.incrementAndGet();
+            }
+        }
+
+        /**
+         * 记录已写入的向量 ID。
+         *
+         * @param embeddingIds 向量 ID
+         * @return 任务已结束（失败）时返回 false，由调用方删除这些向量
+         */
+        synchronized boolean addStored(List<String> embeddingIds) {
+            if (future.isDone()) {
+                return false;
+            }
+            storedEmbeddingIds.addAll(embeddingIds);
+            return true;
+        }
+
+        /**
+         * 标记任务失败，尚在队列中的文本段随后被丢弃。
+         *
+         * @param cause 失败原因
+         * @return 本轮已写入、需要删除的向量 ID，任务此前已结束时为 null
+         */
+        synchronized List<String> fail(Throwable cause) {
+            if (!future.completeExceptionally(cause)) {
+                return null;
+            }
+            progress.failedItems.incrementAndGet();
+            return new ArrayList<>(storedEmbeddingIds);
+        }
+    }
+
+    /**
+     * 单个知识库的入库进度，上一轮的知识点全部结束后再提交时重新计数。
+     */
+    private static class KbProgress {
+
+        /**
+         * 本轮已提交的知识点数。
+         */
+        private final AtomicLong submittedItems = new AtomicLong();
+
+        /**
+         * 已完成的知识点数。
+         */
+        private final AtomicLong doneItems = new AtomicLong();
+
+        /**
+         * 失败的知识点数。
+         */
+        private final AtomicLong failedItems = new AtomicLong();
+
+        /**
+         * 已切分的文本段数。
+         */
+        private final AtomicLong splitSegments = new AtomicLong();
+
+        /**
+         * 沿用已有向量的文本段数。
+         */
+        private final AtomicLong reusedSegments = new AtomicLong();
+
+        /**
+         * 已向量化的文本段数。
+         */
+        private final AtomicLong embeddedSegments = new AtomicLong();
+
+        /**
+         * 已写入的文本段数。
+         */
+        private final AtomicLong storedSegments = new AtomicLong();
+
+        /**
+         * 本轮开始时间（毫秒）。
+         */
+        private volatile long startMillis = System.currentTimeMillis();
+
+        /**
+         * 最近一次写入时间（毫秒）。
+         */
+        private volatile long lastStoreMillis;
+
+        /**
+         * 记录一次提交。
+         *
+         * @return 无
+         */
+        synchronized void onSubmit() {
+            if (submittedItems.get() == doneItems.get() + failedItems.get()) {
+                submittedItems.set(0);
+                doneItems.set(0);
+                failedItems.set(0);
+                splitSegments.set(0);
+                reusedSegments.set(0);
+                embeddedSegments.set(0);
+                storedSegments.set(0);
+                startMillis = System.currentTimeMillis();
+                lastStoreMillis = 0;
+            }
+            submittedItems.incrementAndGet();
+        }
+
+        /**
+         * 记录一个文本段写入完成。
+         *
+         * @return 无
+         */
+        void onStored() {
+            storedSegments.incrementAndGet();
+            lastStoreMillis = System.currentTimeMillis();
+        }
+
+        /**
+         * 转换为响应对象。
+         *
+         * @param kbUuid 知识库 UUID
+         * @return 进度响应
+         */
+        KbIndexingProgressResp toResp(String kbUuid) {
+            KbIndexingProgressResp resp = new KbIndexingProgressResp();
+            resp.setKbUuid(kbUuid);
+            resp.setSubmittedItems(submittedItems.get());
+            resp.setDoneItems(doneItems.get());
+            resp.setFailedItems(failedItems.get());
+            resp.setSplitSegments(splitSegments.get());
+            resp.setReusedSegments(reusedSegments.get());
+            resp.setEmbeddedSegments(embeddedSegments.get());
+            resp.setStoredSegments(storedSegments.get());
+            resp.setStartTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(startMillis), ZoneId.systemDefault()));
+            long elapsedMillis = lastStoreMillis - startMillis;
+            resp.setSegmentsPerSecond(elapsedMillis > 0 ? storedSegments.get() * 1000.0 / elapsedMillis : 0);
+            return resp;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.moyz.adi.common.vo.RetrieverCreateParam;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.DocumentSplitter;
 import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.embedding.EmbeddingModel;
@@ -15,6 +16,8 @@ import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.List;
+
 import static com.moyz.adi.common.cosntant.AdiConstant.*;
 import static com.moyz.adi.common.vo.InputAdaptorMsg.TOKEN_TOO_MUCH_QUESTION;
 
@@ -76,6 +79,49 @@ public class EmbeddingRag implements IRAGService {
         embeddingStoreIngestor.ingest(document);
     }
 
+    /**
+     * 将文档切分为文本段，切分规则与 {@link #ingest} 一致。
+     *
+     * @param document 知识库文档
+     * @param overlap 重叠 token 数
+     * @param tokenEstimator token 估算器名称
+     * @return 文本段列表
+     */
+    public List<TextSegment> split(Document document, int overlap, String tokenEstimator) {
+        return DocumentSplitters.recursive(RAG_MAX_SEGMENT_SIZE_IN_TOKENS, overlap, TokenEstimatorFactory.create(tokenEstimator)).split(document);
+    }
+
+    /**
+     * 批量向量化文本段。
+     *
+     * @param segments 文本段列表
+     * @return 与文本段一一对应的向量列表
+     */
+    public List<Embedding> embedAll(List<TextSegment> segments) {
+        return embeddingModel.embedAll(segments).content();
+    }
+
+    /**
+     * 批量写入向量及对应的文本段。
+     *
+     * @param embeddings 向量列表
+     * @param segments 文本段列表
+     * @return 写入后的向量 ID 列表
+     */
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> segments) {
+        return embeddingStore.addAll(embeddings, segments);
+    }
+
+    /**
+     * 基于同一向量模型、使用另一个向量库创建 RAG 实例，如请求级的内存向量库。
+     *
+     * @param store 向量库
+     * @return 新的 RAG 实例
+     */
+    public EmbeddingRag withEmbeddingStore(EmbeddingStore<TextSegment> store) {
+        return new EmbeddingRag(name, embeddingModel, store);
+    }
+
     /**
      * 创建召回器。
      *
@@ -0,0 +1,268 @@
+package com.moyz.adi.common.rag;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * 请求级的内存向量库。
+ * <p>
+ * AI 搜索抓取的网页只在本次回答中使用一次，写入数据库再查回来只会增加延迟和表膨胀。
+ * 此存储把归一化后的向量连续存放在一个 float 数组中，检索时逐行计算点积（即余弦相似度）并取 TopN。
+ * 实例随请求创建、随请求丢弃。
+ */
+public class EphemeralEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    /**
+     * 初始可容纳的向量数。
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * 向量 ID。
+     */
+    private final List<String> ids = new ArrayList<>();
+
+    /**
+     * 原始向量，用于返回结果及持久化。
+     */
+    private final List<Embedding> embeddings = new ArrayList<>();
+
+    /**
+     * 文本段。
+     */
+    private final List<TextSegment> segments = new ArrayList<>();
+
+    /**
+     * 归一化后的向量，按行连续存放。
+     */
+    private float[] vectors;
+
+    /**
+     * 向量维度，写入第一个向量时确定。
+     */
+    private int dimension;
+
+    /**
+     * 写入向量并返回 ID。
+     *
+     * @param embedding 向量
+     * @return ID
+     */
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding, null);
+        return id;
+    }
+
+    /**
+     * 写入指定 ID 的向量。
+     *
+     * @param id        ID
+     * @param embedding 向量
+     */
+    @Override
+    public void add(String id, Embedding embedding) {
+        add(id, embedding, null);
+    }
+
+    /**
+     * 写入向量与分段。
+     *
+     * @param embedding   向量
+     * @param textSegment 分段
+     * @return ID
+     */
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding, textSegment);
+        return id;
+    }
+
+    /**
+     * 批量写入向量。
+     *
+     * @param embeddings 向量列表
+     * @return ID 列表
+     */
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> result = generateIds(embeddings.size());
+        addAll(result, embeddings, null);
+        return result;
+    }
+
+    /**
+     * 批量写入向量与分段。
+     *
+     * @param embeddings 向量列表
+     * @param embedded   分段列表
+     * @return ID 列表
+     */
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        List<String> result = generateIds(embeddings.size());
+        addAll(result, embeddings, embedded);
+        return result;
+    }
+
+    /**
+     * 批量写入指定 ID 的向量与分段。
+     *
+     * @param ids        ID 列表
+     * @param embeddings 向量列表
+     * @param embedded   分段列表，可为 null
+     */
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        for (int i = 0; i < ids.size(); i++) {
+            add(ids.get(i), embeddings.get(i), null == embedded ? null : embedded.get(i));
+        }
+    }
+
+    /**
+     * 按余弦相似度检索 TopN，过滤条件作用于文本段元数据。
+     *
+     * @param request 检索请求
+     * @return 检索结果
+     */
+    @Override
+    public synchronized EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        int size = ids.size();
+        if (size == 0 || request.maxResults() <= 0) {
+            return new EmbeddingSearchResult<>(new ArrayList<>());
+        }
+        float[] query = normalize(request.queryEmbedding().vector());
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("dimension mismatch,expected:" + dimension + ",actual:" + query.length);
+        }
+        Filter filter = request.filter();
+        PriorityQueue<EmbeddingMatch<TextSegment>> top = new PriorityQueue<>(Comparator.comparingDouble(EmbeddingMatch::score));
+        for (int row = 0; row < size; row++) {
+            TextSegment segment = segments.get(row);
+            if (null != filter && (null == segment || !filter.test(segment.metadata()))) {
+                continue;
+            }
+            double score = RelevanceScore.fromCosineSimilarity(dot(vectors, row * dimension, query));
+            if (score < request.minScore()) {
+                continue;
+            }
+            if (top.size() < request.maxResults()) {
+                top.add(new EmbeddingMatch<>(score, ids.get(row), embeddings.get(row), segment));
+            } else if (score > top.peek().score()) {
+                top.poll();
+                top.add(new EmbeddingMatch<>(score, ids.get(row), embeddings.get(row), segment));
+            }
+        }
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(top);
+        matches.sort(Comparator.comparingDouble((EmbeddingMatch<TextSegment> item) -> item.score()).reversed());
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    /**
+     * 把全部向量写入另一个向量库（ID 保持不变）。
+     *
+     * @param target 目标向量库
+     * @return 写入的向量数
+     */
+    public int copyTo(EmbeddingStore<TextSegment> target) {
+        List<String> idCopy;
+        List<Embedding> embeddingCopy;
+        List<TextSegment> segmentCopy;
+        synchronized (this) {
+            idCopy = new ArrayList<>(ids);
+            embeddingCopy = new ArrayList<>(embeddings);
+            segmentCopy = new ArrayList<>(segments);
+        }
+        if (!idCopy.isEmpty()) {
+            target.addAll(idCopy, embeddingCopy, segmentCopy);
+        }
+        return idCopy.size();
+    }
+
+    /**
+     * 已写入的向量数。
+     *
+     * @return 向量数
+     */
+    public synchronized int size() {
+        return ids.size();
+    }
+
+    /**
+     * 写入单个向量，抓取网页的多个线程会并发写入。
+     *
+     * @param id        ID
+     * @param embedding 向量
+     * @param segment   文本段，可为 null
+     * @return 无
+     */
+    private synchronized void add(String id, Embedding embedding, TextSegment segment) {
+        float[] vector = normalize(embedding.vector());
+        if (null == vectors) {
+            dimension = vector.length;
+            vectors = new float[INITIAL_CAPACITY * dimension];
+        } else if (vector.length != dimension) {
+            throw new IllegalArgumentException("dimension mismatch,expected:" + dimension + ",actual:" + vector.length);
+        }
+        int row = ids.size();
+        if ((row + 1) * dimension > vectors.length) {
+            vectors = Arrays.copyOf(vectors, vectors.length * 2);
+        }
+        System.arraycopy(vector, 0, vectors, row * dimension, dimension);
+        ids.add(id);
+        embeddings.add(embedding);
+        segments.add(segment);
+    }
+
+    /**
+     * 计算某一行与查询向量的点积。
+     *
+     * @param vectors 向量数组
+     * @param offset  行起始位置
+     * @param query   查询向量
+     * @return 点积
+     */
+    private static float dot(float[] vectors, int offset, float[] query) {
+        float sum = 0;
+        for (int i = 0; i < query.length; i++) {
+            sum += vectors[offset + i] * query[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 归一化向量，归一化后点积即余弦相似度。
+     *
+     * @param vector 向量
+     * @return 归一化后的新数组
+     */
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float[] result = Arrays.copyOf(vector, vector.length);
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < result.length; i++) {
+                result[i] *= scale;
+            }
+        }
+        return result;
+    }
+}
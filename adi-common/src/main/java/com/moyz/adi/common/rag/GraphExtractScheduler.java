@@ -0,0 +1,241 @@
+package com.moyz.adi.common.rag;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.moyz.adi.common.config.AdiProperties;
+import com.moyz.adi.common.enums.ErrorEnum;
+import com.moyz.adi.common.exception.BaseException;
+import dev.langchain4j.exception.RetriableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 知识图谱抽取调度器。
+ * <p>
+ * 按模型、按知识库分别限制同时进行的 LLM 抽取请求数，瞬时失败时按指数退避重试，
+ * 结果按完成顺序流式返回，调用方可以边抽取边写入图谱。
+ */
+@Slf4j
+@Component
+public class GraphExtractScheduler {
+
+    /**
+     * LLM 抽取请求耗时指标名称。
+     */
+    public static final String METRIC_LLM_CALL = "adi.graph.extract.llm.call";
+
+    /**
+     * 单次图谱入库（抽取+写入）总耗时指标名称。
+     */
+    public static final String METRIC_INGEST = "adi.graph.extract.ingest";
+
+    /**
+     * 应用配置。
+     */
+    @Resource
+    private AdiProperties adiProperties;
+
+    /**
+     * 图谱抽取专用线程池。
+     */
+    @Resource(name = "graphExtractExecutor")
+    private AsyncTaskExecutor graphExtractExecutor;
+
+    /**
+     * 指标注册表。
+     */
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 模型名称到并发许可的映射。
+     * 每次提交任务时都会访问，仍在抽取的模型不会过期；长期不用的模型自动清理。
+     */
+    private final Cache<String, Semaphore> modelPermits = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    /**
+     * 知识库 UUID 到并发许可的映射。
+     * 每次提交任务时都会访问，仍在入库的知识库不会过期；入库结束的知识库自动清理。
+     */
+    private final Cache<String, Semaphore> kbPermits = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    /**
+     * 并发执行抽取任务，按完成顺序返回结果。
+     * <p>
+     * 任务的提交由迭代器的消费方驱动：每次取结果前尽可能多地提交新任务（不超过模型与知识库的许可数），
+     * 因此不会因为某个知识库的大量分段占满线程池。
+     * 重试后仍失败的任务返回的结果为 null。
+     *
+     * @param modelName 模型名称
+     * @param kbUuid 知识库 UUID
+     * @param tasks 抽取任务
+     * @param <T> 结果类型
+     * @return 任务下标与结果的迭代器
+     */
+    public <T> Iterator<Pair<Integer, T>> stream(String modelName, String kbUuid, List<Supplier<T>> tasks) {
+        AdiProperties.GraphExtract config = adiProperties.getGraphExtract();
+        return new Iterator<>() {
+
+            private final BlockingQueue<Pair<Integer, T>> completed = new LinkedBlockingQueue<>();
+            private int submitted;
+            private int inFlight;
+            private int consumed;
+
+            @Override
+            public boolean hasNext() {
+                return consumed < tasks.size();
+            }
+
+            @Override
+            public Pair<Integer, T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    dispatch(false);
+                    if (inFlight == 0) {
+                        // 许可均被其他入库任务占用，阻塞等待至少提交一个任务
+                        dispatch(true);
+                    }
+                    Pair<Integer, T> result = completed.take();
+                    inFlight--;
+                    consumed++;
+                    return result;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new BaseException(ErrorEnum.B_COMMON_ERROR);
+                }
+            }
+
+            private void dispatch(boolean blocking) throws InterruptedException {
+                boolean block = blocking;
+                while (submitted < tasks.size()) {
+                    // 每次提交都重新取许可，既刷新访问时间，也保证释放的是同一个信号量
+                    Semaphore kbPermit = kbPermits.get(kbUuid, key -> new Semaphore(config.getKbConcurrency(), true));
+                    Semaphore modelPermit = modelPermits.get(modelName, key -> new Semaphore(config.getModelConcurrency(), true));
+                    if (!acquire(kbPermit, block)) {
+                        return;
+                    }
+                    if (!acquire(modelPermit, block)) {
+                        kbPermit.release();
+                        return;
+                    }
+                    int index = submitted;
+                    try {
+                        graphExtractExecutor.execute(() -> {
+                            T result = null;
+                            try {
+                                result = callWithRetry(modelName, tasks.get(index));
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            } catch (Exception e) {
+                                log.error("Graph extract failed after retries,model:{},kbUuid:{},index:{}", modelName, kbUuid, index, e);
+                            } finally {
+                                modelPermit.release();
+                                kbPermit.release();
+                                completed.add(Pair.of(index, result));
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        modelPermit.release();
+                        kbPermit.release();
+                        throw e;
+                    }
+                    submitted++;
+                    inFlight++;
+                    block = false;
+                }
+            }
+        };
+    }
+
+    /**
+     * 记录一次图谱入库的总耗时。
+     *
+     * @param startNanos 开始时间（System.nanoTime）
+     */
+    public void recordIngest(long startNanos) {
+        meterRegistry.timer(METRIC_INGEST).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 执行任务，瞬时失败时按指数退避重试。
+     *
+     * @param modelName 模型名称
+     * @param task 任务
+     * @param <T> 结果类型
+     * @return 结果
+     * @throws InterruptedException 退避等待被中断
+     */
+    private <T> T callWithRetry(String modelName, Supplier<T> task) throws InterruptedException {
+        AdiProperties.GraphExtract config = adiProperties.getGraphExtract();
+        Timer timer = meterRegistry.timer(METRIC_LLM_CALL, "model", modelName);
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return timer.record(task);
+            } catch (RuntimeException e) {
+                if (attempt >= config.getMaxRetries() || !isTransient(e)) {
+                    throw e;
+                }
+                long backoff = config.getRetryBackoffMillis() << attempt;
+                log.warn("Graph extract transient failure,model:{},attempt:{},retry after {}ms,error:{}", modelName, attempt + 1, backoff, e.getMessage());
+                Thread.sleep(backoff);
+            }
+        }
+    }
+
+    /**
+     * 是否为可重试的瞬时失败。
+     *
+     * @param e 异常
+     * @return 是否可重试
+     */
+    private static boolean isTransient(Throwable e) {
+        Throwable cause = e;
+        while (null != cause) {
+            if (cause instanceof RetriableException || cause instanceof IOException || cause instanceof UncheckedIOException) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * 获取或阻塞等待许可。
+     *
+     * @param semaphore 信号量
+     * @param blocking 是否阻塞
+     * @return 是否获取成功
+     * @throws InterruptedException 等待被中断
+     */
+    private static boolean acquire(Semaphore semaphore, boolean blocking) throws InterruptedException {
+        if (blocking) {
+            semaphore.acquire();
+            return true;
+        }
+        return semaphore.tryAcquire();
+    }
+}
@@ -16,13 +16,23 @@ import dev.langchain4j.data.document.splitter.DocumentSplitters;
 import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import static com.moyz.adi.common.cosntant.AdiConstant.RAG_MAX_SEGMENT_SIZE_IN_TOKENS;
 
@@ -48,6 +58,11 @@ public class GraphRag {
      */
     private KnowledgeBaseGraphSegmentService knowledgeBaseGraphSegmentService;
 
+    /**
+     * 图谱抽取调度器，使用时延迟获取。
+     */
+    private GraphExtractScheduler graphExtractScheduler;
+
     /**
      * 创建图谱 RAG 实例。
      *
@@ -59,6 +74,18 @@ public class GraphRag {
         this.graphStore = kbGraphStore;
     }
 
+    /**
+     * 获取图谱抽取调度器，采用懒加载。
+     *
+     * @return 图谱抽取调度器
+     */
+    public GraphExtractScheduler getGraphExtractScheduler() {
+        if (null == graphExtractScheduler) {
+            graphExtractScheduler = SpringUtil.getBean(GraphExtractScheduler.class);
+        }
+        return graphExtractScheduler;
+    }
+
     /**
      * 获取图谱分段服务，采用懒加载。
      *
@@ -79,54 +106,136 @@ public class GraphRag {
      */
     public void ingest(GraphIngestParams graphIngestParams) {
         log.info("GraphRag ingest");
-        User user = graphIngestParams.getUser();
         // 使用统一分块与 token 估算策略，保证后续抽取不会超限
         DocumentSplitter documentSplitter = DocumentSplitters.recursive(RAG_MAX_SEGMENT_SIZE_IN_TOKENS, graphIngestParams.getOverlap(), TokenEstimatorFactory.create(graphIngestParams.getTokenEstimator()));
         GraphStoreIngestor ingestor = GraphStoreIngestor.builder()
                 .documentSplitter(documentSplitter)
-                .segmentsFunction(segments -> {
-                    List<Triple<TextSegment, String, String>> segmentIdToExtractContent = new ArrayList<>();
-                    for (TextSegment segment : segments) {
-
-                        String segmentId = UuidUtil.createShort();
-                        log.info("Save segment to graph_segment,segmentId:{}", segmentId);
-                        // 先持久化分段信息，便于抽取失败时仍可追溯
-                        KnowledgeBaseGraphSegment graphSegment = new KnowledgeBaseGraphSegment();
-                        graphSegment.setUuid(segmentId);
-                        graphSegment.setRemark(segment.text());
-                        graphSegment.setKbUuid(segment.metadata().getString(AdiConstant.MetadataKey.KB_UUID));
-                        graphSegment.setKbItemUuid(segment.metadata().getString(AdiConstant.MetadataKey.KB_ITEM_UUID));
-                        graphSegment.setUserId(user.getId());
-                        getKnowledgeBaseGraphSegmentService().save(graphSegment);
-
-                        String response = "";
-                        if (StringUtils.isNotBlank(segment.text())) {
-                            if (!graphIngestParams.isFreeToken()) {
-                                // 额度不足时直接跳过抽取，避免继续扣费。
-                                ErrorEnum errorMsg = SpringUtil.getBean(QuotaHelper.class).checkTextQuota(user);
-                                if (null != errorMsg) {
-                                    log.warn("抽取知识图谱时发现额度已超过限制,user:{},errorInfo:{}", user.getName(), errorMsg.getInfo());
-                                    continue;
-                                }
-                            }
-                            // 调用模型抽取实体关系，并记录返回内容
-                            log.info("请求LLM从文本中抽取实体及关系,segmentId:{}", segmentId);
-                            ChatResponse aiMessageResponse = graphIngestParams.getChatModel().chat(UserMessage.from(GraphExtractPrompt.GRAPH_EXTRACTION_PROMPT.replace("{input_text}", segment.text())));
-                            response = aiMessageResponse.aiMessage().text();
-
-                            // 记录 token 消耗，便于成本统计
-                            SpringUtil.getBean(UserDayCostService.class).appendCostToUser(user, aiMessageResponse.tokenUsage().totalTokenCount(), graphIngestParams.isFreeToken());
-                        }
-                        // 将分段与抽取结果打包返回给入库流程
-                        segmentIdToExtractContent.add(Triple.of(segment, segmentId, response));
-                    }
-                    return segmentIdToExtractContent;
-                })
+                .segmentsFunction(segments -> extract(graphIngestParams, segments))
                 .identifyColumns(graphIngestParams.getIdentifyColumns())
                 .appendColumns(graphIngestParams.getAppendColumns())
+                .batchMode(graphIngestParams.isBatchMode())
                 .graphStore(graphStore)
                 .build();
-        ingestor.ingest(graphIngestParams.getDocument());
+        long startNanos = System.nanoTime();
+        try {
+            ingestor.ingest(graphIngestParams.getDocument());
+        } finally {
+            // 失败的入库同样计入耗时
+            getGraphExtractScheduler().recordIngest(startNanos);
+        }
+    }
+
+    /**
+     * 并发调用模型从分段中抽取实体关系，结果按完成顺序返回。
+     * 并发度受模型与知识库两级限制，瞬时失败会自动重试，见 {@link GraphExtractScheduler}。
+     * <p>
+     * 知识点中指纹与上次成功抽取时相同的分段不再请求模型；其余旧分段从图谱中摘除（见 {@link GraphStore#detachSegments}）后标记为删除。
+     *
+     * @param graphIngestParams 抽取与入库参数
+     * @param segments 分段列表
+     * @return 分段、分段 ID 与抽取结果的迭代器
+     */
+    private Iterator<Triple<TextSegment, String, String>> extract(GraphIngestParams graphIngestParams, List<TextSegment> segments) {
+        User user = graphIngestParams.getUser();
+        List<TextSegment> extractSegments = new ArrayList<>();
+        List<String> segmentIds = new ArrayList<>();
+        List<String> segmentHashes = new ArrayList<>();
+        List<Supplier<ChatResponse>> tasks = new ArrayList<>();
+        Map<String, Deque<String>> reusable = loadExtractedSegments(segments);
+        Set<String> staleSegmentIds = new HashSet<>();
+        reusable.values().forEach(staleSegmentIds::addAll);
+        int reused = 0;
+        for (TextSegment segment : segments) {
+            String segmentHash = SegmentFingerprint.of(segment, graphIngestParams.getOverlap(), graphIngestParams.getTokenEstimator(), graphIngestParams.getModelName());
+            Deque<String> extractedIds = reusable.get(segmentHash);
+            if (null != extractedIds && !extractedIds.isEmpty()) {
+                // 内容未变且已成功抽取过，沿用图谱中已有的实体关系
+                staleSegmentIds.remove(extractedIds.poll());
+                reused++;
+                continue;
+            }
+            String segmentId = UuidUtil.createShort();
+            log.info("Save segment to graph_segment,segmentId:{}", segmentId);
+            // 先持久化分段信息，便于抽取失败时仍可追溯；抽取成功后再记录指纹
+            KnowledgeBaseGraphSegment graphSegment = new KnowledgeBaseGraphSegment();
+            graphSegment.setUuid(segmentId);
+            graphSegment.setRemark(segment.text());
+            graphSegment.setKbUuid(segment.metadata().getString(AdiConstant.MetadataKey.KB_UUID));
+            graphSegment.setKbItemUuid(segment.metadata().getString(AdiConstant.MetadataKey.KB_ITEM_UUID));
+            graphSegment.setUserId(user.getId());
+            if (StringUtils.isBlank(segment.text())) {
+                graphSegment.setSegmentHash(segmentHash);
+            }
+            getKnowledgeBaseGraphSegmentService().save(graphSegment);
+
+            if (StringUtils.isBlank(segment.text())) {
+                continue;
+            }
+            extractSegments.add(segment);
+            segmentIds.add(segmentId);
+            segmentHashes.add(segmentHash);
+            tasks.add(() -> {
+                // 每次请求模型前检查额度，入库过程中超出额度时后续分段不再抽取（分段未记录指纹，下次索引时重新抽取）
+                if (!graphIngestParams.isFreeToken()) {
+                    ErrorEnum errorMsg = SpringUtil.getBean(QuotaHelper.class).checkTextQuota(user);
+                    if (null != errorMsg) {
+                        log.warn("抽取知识图谱时发现额度已超过限制,user:{},segmentId:{},errorInfo:{}", user.getName(), segmentId, errorMsg.getInfo());
+                        return null;
+                    }
+                }
+                // 调用模型抽取实体关系
+                log.info("请求LLM从文本中抽取实体及关系,segmentId:{}", segmentId);
+                return graphIngestParams.getChatModel().chat(UserMessage.from(GraphExtractPrompt.GRAPH_EXTRACTION_PROMPT.replace("{input_text}", segment.text())));
+            });
+        }
+        String kbUuid = segments.isEmpty() ? "" : segments.get(0).metadata().getString(AdiConstant.MetadataKey.KB_UUID);
+        if (!staleSegmentIds.isEmpty()) {
+            // 先从图谱中摘除旧分段抽取出的实体关系，成功后再删除分段记录，失败时下次索引仍可识别为旧分段
+            graphStore.detachSegments(new IsEqualTo(AdiConstant.MetadataKey.KB_UUID, kbUuid), staleSegmentIds);
+            getKnowledgeBaseGraphSegmentService().softDeleteByUuids(staleSegmentIds);
+        }
+        log.info("Graph segments to extract:{},reused:{},stale:{}", tasks.size(), reused, staleSegmentIds.size());
+        Iterator<Pair<Integer, ChatResponse>> responses = getGraphExtractScheduler().stream(graphIngestParams.getModelName(), kbUuid, tasks);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return responses.hasNext();
+            }
+
+            @Override
+            public Triple<TextSegment, String, String> next() {
+                Pair<Integer, ChatResponse> indexToResponse = responses.next();
+                int index = indexToResponse.getLeft();
+                ChatResponse aiMessageResponse = indexToResponse.getRight();
+                String response = "";
+                if (null != aiMessageResponse) {
+                    response = aiMessageResponse.aiMessage().text();
+                    // 记录 token 消耗，便于成本统计
+                    SpringUtil.getBean(UserDayCostService.class).appendCostToUser(user, aiMessageResponse.tokenUsage().totalTokenCount(), graphIngestParams.isFreeToken());
+                    getKnowledgeBaseGraphSegmentService().updateSegmentHash(segmentIds.get(index), segmentHashes.get(index));
+                }
+                // 将分段与抽取结果打包返回给入库流程
+                return Triple.of(extractSegments.get(index), segmentIds.get(index), response);
+            }
+        };
+    }
+
+    /**
+     * 加载分段所属知识点中已成功抽取的分段。
+     *
+     * @param segments 分段列表
+     * @return 分段指纹到分段 UUID 的映射，未抽取成功的分段以空串为键
+     */
+    private Map<String, Deque<String>> loadExtractedSegments(List<TextSegment> segments) {
+        Map<String, Deque<String>> result = new HashMap<>();
+        String kbItemUuid = segments.isEmpty() ? null : segments.get(0).metadata().getString(AdiConstant.MetadataKey.KB_ITEM_UUID);
+        if (StringUtils.isBlank(kbItemUuid)) {
+            return result;
+        }
+        for (KnowledgeBaseGraphSegment graphSegment : getKnowledgeBaseGraphSegmentService().listHashByItemUuid(kbItemUuid)) {
+            result.computeIfAbsent(StringUtils.defaultString(graphSegment.getSegmentHash()), key -> new ArrayDeque<>()).add(graphSegment.getUuid());
+        }
+        return result;
     }
 
     /**
@@ -1,8 +1,11 @@
 package com.moyz.adi.common.rag;
 
 import com.moyz.adi.common.vo.*;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -33,6 +36,14 @@ public interface GraphStore {
      */
     GraphVertex updateVertex(GraphVertexUpdateInfo updateInfo);
 
+    /**
+     * 更新多个顶点，同一批次在一次写事务中逐条执行。
+     *
+     * @param updateInfos 更新信息列表
+     * @return 更新后的顶点列表
+     */
+    List<GraphVertex> updateVertexes(List<GraphVertexUpdateInfo> updateInfos);
+
     /**
      * 获取单个顶点。
      *
@@ -73,6 +84,15 @@ public interface GraphStore {
      */
     List<Triple<GraphVertex, GraphEdge, GraphVertex>> searchEdges(GraphEdgeSearch search);
 
+    /**
+     * 按起点/终点名称对精确查询边及其两端顶点，不限制返回条数。
+     *
+     * @param pairs 起点与终点名称对
+     * @param metadataFilter 两端顶点的元数据过滤条件
+     * @return 边与顶点三元组列表，三元组左侧为名称对的起点
+     */
+    List<Triple<GraphVertex, GraphEdge, GraphVertex>> searchEdgesByPairs(List<Pair<String, String>> pairs, Filter metadataFilter);
+
     /**
      * 获取单条边及其两端顶点。
      *
@@ -89,6 +109,14 @@ public interface GraphStore {
      */
     Triple<GraphVertex, GraphEdge, GraphVertex> addEdge(GraphEdgeAddInfo addInfo);
 
+    /**
+     * 新增多条边，同一批次在一次写事务中逐条执行。
+     *
+     * @param addInfos 边新增信息列表
+     * @return 边与顶点三元组列表
+     */
+    List<Triple<GraphVertex, GraphEdge, GraphVertex>> addEdges(List<GraphEdgeAddInfo> addInfos);
+
     /**
      * 更新边信息并返回完整信息。
      *
@@ -97,6 +125,14 @@ public interface GraphStore {
      */
     Triple<GraphVertex, GraphEdge, GraphVertex> updateEdge(GraphEdgeEditInfo edgeEditInfo);
 
+    /**
+     * 更新多条边，同一批次在一次写事务中逐条执行。
+     *
+     * @param edgeEditInfos 边编辑信息列表
+     * @return 边与顶点三元组列表
+     */
+    List<Triple<GraphVertex, GraphEdge, GraphVertex>> updateEdges(List<GraphEdgeEditInfo> edgeEditInfos);
+
     /**
      * 删除符合条件的顶点。
      *
@@ -113,4 +149,15 @@ public interface GraphStore {
      * @return 无
      */
     void deleteEdges(GraphSearchCondition filter);
+
+    /**
+     * 从顶点与边上摘除已失效的分段：分段 ID 从 text_segment_id 中移除，
+     * 不再关联任何分段的边被删除，不再关联任何分段的顶点连同其边一并删除。
+     * 描述是多个分段抽取结果的拼接，无法按分段拆分，仍关联其他分段的元素保留原描述。
+     *
+     * @param metadataFilter 元数据过滤条件，限定知识库范围
+     * @param segmentIds     失效的分段 ID
+     * @return 无
+     */
+    void detachSegments(Filter metadataFilter, Collection<String> segmentIds);
 }
@@ -1,15 +1,20 @@
 package com.moyz.adi.common.rag;
 
+import com.moyz.adi.common.config.AdiProperties;
 import com.moyz.adi.common.cosntant.AdiConstant;
 import com.moyz.adi.common.dto.RefGraphDto;
 import com.moyz.adi.common.exception.BaseException;
+import com.moyz.adi.common.helper.DownstreamLimiter;
+import com.moyz.adi.common.helper.GraphEntityDictionary;
 import com.moyz.adi.common.util.AdiStringUtil;
+import com.moyz.adi.common.util.SpringUtil;
 import com.moyz.adi.common.vo.*;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.rag.content.Content;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.rag.query.Query;
 import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -123,30 +128,26 @@ public class GraphStoreContentRetriever implements ContentRetriever {
     @Override
     public List<Content> retrieve(Query query) {
         log.info("Graph retrieve,query:{}", query);
-        String response = "";
-        try {
-            // 先调用模型从问题中抽取实体与关系
-            response = chatModel.chat(GraphExtractPrompt.GRAPH_EXTRACTION_PROMPT.replace("{input_text}", query.text()));
-        } catch (Exception e) {
-            log.error("Graph retrieve. extract graph error", e);
-        }
-        if (StringUtils.isBlank(response)) {
-            // 抽取为空时直接返回，避免无意义查询
-            return Collections.emptyList();
-        }
+        // 先用本地实体词典匹配问题中的已知实体，未匹配到时再按配置调用模型抽取
+        AdiProperties.GraphEntity config = SpringUtil.getBean(AdiProperties.class).getGraphEntity();
+        String kbUuid = getKbUuid(filterProvider.apply(query));
         Set<String> entities = new HashSet<>();
-        String[] records = response.split(AdiConstant.GRAPH_RECORD_DELIMITER);
-        for (String record : records) {
-            String newRecord = record.replaceAll("^\\(|\\)$", "");
-            String[] recordAttributes = newRecord.split(AdiConstant.GRAPH_TUPLE_DELIMITER);
-            if (recordAttributes.length >= 4 && (recordAttributes[0].contains("\"entity\"") || recordAttributes[0].contains("\"实体\""))) {
-                entities.add(AdiStringUtil.clearStr(recordAttributes[1].toUpperCase()));
-            } else if (recordAttributes.length >= 4 && (recordAttributes[0].contains("\"relationship\"") || recordAttributes[0].contains("\"关系\""))) {
-                String sourceName = AdiStringUtil.clearStr(recordAttributes[1].toUpperCase());
-                String targetName = AdiStringUtil.clearStr(recordAttributes[2].toUpperCase());
-                entities.add(AdiStringUtil.clearStr(sourceName));
-                entities.add(AdiStringUtil.clearStr(targetName));
+        if (config.isDictionaryEnable() && null != kbUuid) {
+            entities.addAll(SpringUtil.getBean(GraphEntityDictionary.class).match(graphStore, kbUuid, query.text()));
+            log.info("Graph retrieve,entities from dictionary:{}", entities);
+        }
+        if (entities.isEmpty() && (config.isLlmFallback() || null == kbUuid || !config.isDictionaryEnable())) {
+            // 检索已迟到（结果不会被使用）时不再调用模型抽取
+            if (DeadlineQueryRouter.isDeadlinePassed() || Thread.currentThread().isInterrupted()) {
+                log.info("Graph retrieve,deadline passed,skip llm extraction");
+                return Collections.emptyList();
+            }
+            Set<String> extracted = extractEntities(query);
+            if (null == extracted) {
+                // 抽取为空时直接返回，避免无意义查询
+                return Collections.emptyList();
             }
+            entities.addAll(extracted);
         }
         // 未命中时直接中断流程，避免继续调用下游模型。
         if (breakIfSearchMissed && entities.isEmpty()) {
@@ -160,21 +161,26 @@ public class GraphStoreContentRetriever implements ContentRetriever {
         }
 
         List<String> entityNames = entities.stream().toList();
-        // 先检索与实体相关的顶点
-        List<GraphVertex> vertices = graphStore.searchVertices(
-                GraphVertexSearch.builder()
-                        .names(entityNames)
-                        .metadataFilter(filterProvider.apply(query))
-                        .limit(maxResultsProvider.apply(query))
-                        .build()
-        );
-        // 再补充边关系，形成更完整的图谱上下文
-        List<Triple<GraphVertex, GraphEdge, GraphVertex>> edgeWithVerticeList = graphStore.searchEdges(
-                GraphEdgeSearch.builder()
-                        .edge(GraphSearchCondition.builder().metadataFilter(filterProvider.apply(query)).build())
-                        .limit(maxResultsProvider.apply(query))
-                        .build()
-        );
+        List<GraphVertex> vertices;
+        List<Triple<GraphVertex, GraphEdge, GraphVertex>> edgeWithVerticeList;
+        // 图数据库检索受并发许可限制
+        try (DownstreamLimiter.Permit ignored = SpringUtil.getBean(DownstreamLimiter.class).acquireGraph()) {
+            // 先检索与实体相关的顶点
+            vertices = graphStore.searchVertices(
+                    GraphVertexSearch.builder()
+                            .names(entityNames)
+                            .metadataFilter(filterProvider.apply(query))
+                            .limit(maxResultsProvider.apply(query))
+                            .build()
+            );
+            // 再补充边关系，形成更完整的图谱上下文
+            edgeWithVerticeList = graphStore.searchEdges(
+                    GraphEdgeSearch.builder()
+                            .edge(GraphSearchCondition.builder().metadataFilter(filterProvider.apply(query)).build())
+                            .limit(maxResultsProvider.apply(query))
+                            .build()
+            );
+        }
 
         Map<String, GraphVertex> allVertices = new HashMap<>();
         List<GraphEdge> allEdges = new ArrayList<>();
@@ -196,6 +202,52 @@ public class GraphStoreContentRetriever implements ContentRetriever {
         return vertexContents;
     }
 
+    /**
+     * 调用模型从问题中抽取实体与关系两端的实体名称。
+     *
+     * @param query 查询参数
+     * @return 实体名称，模型未返回内容时为 null
+     */
+    private Set<String> extractEntities(Query query) {
+        String response = "";
+        try {
+            response = chatModel.chat(GraphExtractPrompt.GRAPH_EXTRACTION_PROMPT.replace("{input_text}", query.text()));
+        } catch (Exception e) {
+            log.error("Graph retrieve. extract graph error", e);
+        }
+        if (StringUtils.isBlank(response)) {
+            return null;
+        }
+        Set<String> entities = new HashSet<>();
+        String[] records = response.split(AdiConstant.GRAPH_RECORD_DELIMITER);
+        for (String record : records) {
+            String newRecord = record.replaceAll("^\\(|\\)$", "");
+            String[] recordAttributes = newRecord.split(AdiConstant.GRAPH_TUPLE_DELIMITER);
+            if (recordAttributes.length >= 4 && (recordAttributes[0].contains("\"entity\"") || recordAttributes[0].contains("\"实体\""))) {
+                entities.add(AdiStringUtil.clearStr(recordAttributes[1].toUpperCase()));
+            } else if (recordAttributes.length >= 4 && (recordAttributes[0].contains("\"relationship\"") || recordAttributes[0].contains("\"关系\""))) {
+                String sourceName = AdiStringUtil.clearStr(recordAttributes[1].toUpperCase());
+                String targetName = AdiStringUtil.clearStr(recordAttributes[2].toUpperCase());
+                entities.add(AdiStringUtil.clearStr(sourceName));
+                entities.add(AdiStringUtil.clearStr(targetName));
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * 从检索过滤条件中取出知识库 UUID，仅支持按知识库 UUID 相等过滤（知识库问答）。
+     *
+     * @param filter 过滤条件
+     * @return 知识库 UUID，无法确定时为 null
+     */
+    private static String getKbUuid(Filter filter) {
+        if (filter instanceof IsEqualTo isEqualTo && AdiConstant.MetadataKey.KB_UUID.equals(isEqualTo.key())) {
+            return String.valueOf(isEqualTo.comparisonValue());
+        }
+        return null;
+    }
+
     /**
      * 获取本次检索的图谱引用信息。
      *
@@ -3,7 +3,9 @@ package com.moyz.adi.common.rag;
 import com.moyz.adi.common.cosntant.AdiConstant;
 import com.moyz.adi.common.enums.ErrorEnum;
 import com.moyz.adi.common.exception.BaseException;
+import com.moyz.adi.common.helper.GraphEntityDictionary;
 import com.moyz.adi.common.util.AdiStringUtil;
+import com.moyz.adi.common.util.SpringUtil;
 import com.moyz.adi.common.vo.*;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.DocumentSplitter;
@@ -17,14 +19,13 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.function.Function;
 
 import static com.moyz.adi.common.cosntant.AdiConstant.MAX_METADATA_VALUE_LENGTH;
@@ -58,9 +59,9 @@ public class GraphStoreIngestor {
      */
     private final DocumentSplitter documentSplitter;
     /**
-     * 分段抽取函数，返回分段、分段 ID 与抽取结果。
+     * 分段抽取函数，按抽取完成的顺序返回分段、分段 ID 与抽取结果。
      */
-    private final Function<List<TextSegment>, List<Triple<TextSegment, String, String>>> segmentsFunction;
+    private final Function<List<TextSegment>, Iterator<Triple<TextSegment, String, String>>> segmentsFunction;
 
     /**
      * 查询时 where 语句的条件字段名。
@@ -73,6 +74,21 @@ public class GraphStoreIngestor {
      */
     private final List<String> appendColumns;
 
+    /**
+     * 是否使用批量模式：先在内存中合并全部分段的实体与关系，再按批次写入图谱存储。
+     */
+    private final boolean batchMode;
+
+    /**
+     * 批量模式下单次查询或写入的最大记录数。
+     */
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * 批量模式下每累积多少个分段的抽取结果写入一次图谱。
+     */
+    private static final int STREAM_FLUSH_SEGMENTS = 20;
+
     /**
      * 构建图谱入库器。
      *
@@ -83,14 +99,16 @@ public class GraphStoreIngestor {
      * @param segmentsFunction 分段抽取函数
      * @param identifyColumns 用于定位记录的字段名集合（逗号分隔）
      * @param appendColumns 追加字段名集合（逗号分隔）
+     * @param batchMode 是否使用批量模式
      */
     public GraphStoreIngestor(DocumentTransformer documentTransformer,
                               DocumentSplitter documentSplitter,
                               GraphStore graphStore,
                               TextSegmentTransformer textSegmentTransformer,
-                              Function<List<TextSegment>, List<Triple<TextSegment, String, String>>> segmentsFunction,
+                              Function<List<TextSegment>, Iterator<Triple<TextSegment, String, String>>> segmentsFunction,
                               String identifyColumns,
-                              String appendColumns) {
+                              String appendColumns,
+                              boolean batchMode) {
         this.graphStore = ensureNotNull(graphStore, "graphStore");
         this.documentTransformer = documentTransformer;
         this.documentSplitter = getOrDefault(documentSplitter, GraphStoreIngestor::loadDocumentSplitter);
@@ -98,6 +116,7 @@ public class GraphStoreIngestor {
         this.segmentsFunction = segmentsFunction;
         this.identifyColumns = Arrays.asList(identifyColumns.split(","));
         this.appendColumns = Arrays.asList(appendColumns.split(","));
+        this.batchMode = batchMode;
     }
 
     /**
@@ -163,204 +182,673 @@ public class GraphStoreIngestor {
             log.info("Text segments were transformed into {} text segments", documents.size());
         }
 
-        // 待办：失败重试与并行化优化。
         log.info("Starting to extract {} text segments", segments.size());
-        // 交由业务侧抽取实体/关系并返回结构化结果
-        List<Triple<TextSegment, String, String>> segmentIdToAiResponse = segmentsFunction.apply(segments);
-        for (Triple<TextSegment, String, String> triple : segmentIdToAiResponse) {
-            TextSegment segment = triple.getLeft();
-            String textSegmentId = triple.getMiddle();
-            String response = triple.getRight();
-            Map<String, Object> metadata = segment.metadata().toMap();
-            log.info("Finished extract {} text segments", segments.size());
-            log.info("graph response:{}", response);
-            // 待办：失败重试与并行化优化。
-            log.info("Starting to store {} text segments into the graph store", segments.size());
-            if (StringUtils.isBlank(response)) {
-                // 抽取结果为空直接结束，避免写入无效图谱数据
-                log.warn("Response is empty");
-                log.info("Finished storing {} text segments into the graph store", segments.size());
-                return;
+        // 交由业务侧抽取实体/关系，结果按抽取完成的顺序流式返回，边抽取边写入
+        Iterator<Triple<TextSegment, String, String>> segmentIdToAiResponse = segmentsFunction.apply(segments);
+        List<Triple<TextSegment, String, String>> buffer = new ArrayList<>();
+        while (segmentIdToAiResponse.hasNext()) {
+            Triple<TextSegment, String, String> triple = segmentIdToAiResponse.next();
+            if (!batchMode) {
+                storeExtractResult(triple);
+                continue;
             }
-
-            Filter filter = null;
-            for (Map.Entry<String, Object> entry : metadata.entrySet()) {
-                // 仅使用标识列构建过滤条件，避免跨知识库污染
-                boolean contain = identifyColumns.contains(entry.getKey());
-                if (contain) {
-                    if (null == filter) {
-                        filter = new IsEqualTo(entry.getKey(), entry.getValue());
-                    } else {
-                        filter = filter.and(new IsEqualTo(entry.getKey(), entry.getValue()));
-                    }
-                }
-            }
-            if (null == filter) {
-                // 无过滤条件时无法定位图谱范围，直接拒绝写入
-                throw new BaseException(ErrorEnum.B_GRAPH_FILTER_NOT_FOUND);
+            buffer.add(triple);
+            if (buffer.size() >= STREAM_FLUSH_SEGMENTS) {
+                ingestInBatch(buffer);
+                buffer.clear();
             }
+        }
+        if (!buffer.isEmpty()) {
+            ingestInBatch(buffer);
+        }
+        log.info("Finished storing {} text segments into the graph store", segments.size());
+    }
 
-            // 抽取结果为多行记录，需逐条解析后写入图谱。
-            String[] rows = StringUtils.split(response, AdiConstant.GRAPH_RECORD_DELIMITER);
-            for (String row : rows) {
-                String graphRow = row;
-                // 清理首尾括号，兼容模型输出格式
-                graphRow = graphRow.replaceAll("^\\(|\\)$", "");
-                String[] recordAttributes = StringUtils.split(graphRow, AdiConstant.GRAPH_TUPLE_DELIMITER);
-                if (recordAttributes.length >= 4 && (recordAttributes[0].contains("\"entity\"") || recordAttributes[0].contains("\"实体\""))) {
-                    // 实体记录：名称/类型/描述
-                    String entityName = AdiStringUtil.clearStr(recordAttributes[1].toUpperCase());
-                    String entityType = AdiStringUtil.clearStr(recordAttributes[2].toUpperCase()).replaceAll("[^a-zA-Z0-9\\s\\u4E00-\\u9FA5]+", "").replace(" ", "");
-                    String entityDescription = AdiStringUtil.clearStr(recordAttributes[3]);
-                    log.info("entityName:{},entityType:{},entityDescription:{}", entityName, entityType, entityDescription);
-                    // 实体不存在则新增，存在则追加分段与描述等信息。
-                    List<GraphVertex> existVertices = graphStore.searchVertices(
-                            GraphVertexSearch.builder()
-                                    .label(entityType)
-                                    .limit(1)
-                                    .names(List.of(entityName))
+    /**
+     * 将单个分段的抽取结果逐行写入图谱。
+     *
+     * @param triple 分段、分段 ID 与抽取结果
+     */
+    private void storeExtractResult(Triple<TextSegment, String, String> triple) {
+        TextSegment segment = triple.getLeft();
+        String textSegmentId = triple.getMiddle();
+        String response = triple.getRight();
+        Map<String, Object> metadata = segment.metadata().toMap();
+        log.info("graph response:{}", response);
+        if (StringUtils.isBlank(response)) {
+            // 抽取结果为空时跳过该分段，避免写入无效图谱数据
+            log.warn("Response is empty,textSegmentId:{}", textSegmentId);
+            return;
+        }
+
+        Filter filter = buildFilter(getIdentifyValues(metadata));
+
+        // 抽取结果为多行记录，需逐条解析后写入图谱。
+        String[] rows = StringUtils.split(response, AdiConstant.GRAPH_RECORD_DELIMITER);
+        for (String row : rows) {
+            String[] recordAttributes = splitRecordAttributes(row);
+            if (isEntityRecord(recordAttributes)) {
+                // 实体记录：名称/类型/描述
+                String entityName = AdiStringUtil.clearStr(recordAttributes[1].toUpperCase());
+                String entityType = AdiStringUtil.clearStr(recordAttributes[2].toUpperCase()).replaceAll("[^a-zA-Z0-9\\s\\u4E00-\\u9FA5]+", "").replace(" ", "");
+                String entityDescription = AdiStringUtil.clearStr(recordAttributes[3]);
+                log.info("entityName:{},entityType:{},entityDescription:{}", entityName, entityType, entityDescription);
+                // 实体不存在则新增，存在则追加分段与描述等信息。
+                List<GraphVertex> existVertices = graphStore.searchVertices(
+                        GraphVertexSearch.builder()
+                                .label(entityType)
+                                .limit(1)
+                                .names(List.of(entityName))
+                                .metadataFilter(filter)
+                                .build()
+                );
+                if (CollectionUtils.isNotEmpty(existVertices)) {
+                    GraphVertex existVertex = existVertices.get(0);
+                    // 追加分段与描述，保留历史信息
+                    String newTextSegmentId = existVertex.getTextSegmentId() + "," + textSegmentId;
+                    String newDesc = existVertex.getDescription() + "\n" + entityDescription;
+
+                    // 合并可追加的元数据字段，保持可追溯
+                    appendExistsToNewOne(existVertex.getMetadata(), metadata);
+                    GraphVertex newData = GraphVertex.builder().textSegmentId(newTextSegmentId).description(newDesc).metadata(metadata).build();
+                    graphStore.updateVertex(
+                            GraphVertexUpdateInfo.builder()
+                                    .name(entityName)
+                                    .label(existVertex.getLabel())
                                     .metadataFilter(filter)
+                                    .newData(newData)
                                     .build()
                     );
-                    if (CollectionUtils.isNotEmpty(existVertices)) {
-                        GraphVertex existVertex = existVertices.get(0);
-                        // 追加分段与描述，保留历史信息
-                        String newTextSegmentId = existVertex.getTextSegmentId() + "," + textSegmentId;
-                        String newDesc = existVertex.getDescription() + "\n" + entityDescription;
-
-                        // 合并可追加的元数据字段，保持可追溯
-                        appendExistsToNewOne(existVertex.getMetadata(), metadata);
-                        GraphVertex newData = GraphVertex.builder().textSegmentId(newTextSegmentId).description(newDesc).metadata(metadata).build();
-                        graphStore.updateVertex(
-                                GraphVertexUpdateInfo.builder()
-                                        .name(entityName)
-                                        .metadataFilter(filter)
-                                        .newData(newData)
-                                        .build()
-                        );
-                    } else {
-                        // 新实体直接写入
-                        graphStore.addVertex(
-                                GraphVertex.builder()
-                                        .label(entityType)
-                                        .name(entityName)
-                                        .textSegmentId(textSegmentId)
-                                        .description(entityDescription)
-                                        .metadata(metadata)
-                                        .build()
-                        );
-                    }
-                } else if (recordAttributes.length >= 4 && (recordAttributes[0].contains("\"relationship\"") || recordAttributes[0].contains("\"关系\""))) {
-                    // 关系记录：起点/终点/描述/权重
-                    String sourceName = AdiStringUtil.clearStr(recordAttributes[1].toUpperCase());
-                    String targetName = AdiStringUtil.clearStr(recordAttributes[2].toUpperCase());
-                    String edgeDescription = AdiStringUtil.clearStr(recordAttributes[3]);
-                    log.info("Relationship sourceName:{},targetName:{},edgeDescription:{}", sourceName, targetName, edgeDescription);
-                    String chunkId = AdiStringUtil.clearStr(textSegmentId);
+                } else {
+                    // 新实体直接写入
+                    addVertex(
+                            GraphVertex.builder()
+                                    .label(entityType)
+                                    .name(entityName)
+                                    .textSegmentId(textSegmentId)
+                                    .description(entityDescription)
+                                    .metadata(metadata)
+                                    .build()
+                    );
+                }
+            } else if (isRelationshipRecord(recordAttributes)) {
+                // 关系记录：起点/终点/描述/权重
+                String sourceName = AdiStringUtil.clearStr(recordAttributes[1].toUpperCase());
+                String targetName = AdiStringUtil.clearStr(recordAttributes[2].toUpperCase());
+                String edgeDescription = AdiStringUtil.clearStr(recordAttributes[3]);
+                log.info("Relationship sourceName:{},targetName:{},edgeDescription:{}", sourceName, targetName, edgeDescription);
+                String chunkId = AdiStringUtil.clearStr(textSegmentId);
 
-                    double weight = 1.0;
-                    if (recordAttributes.length > 4) {
-                        // 提取权重字段，默认权重为 1
-                        String tailRecord = recordAttributes[recordAttributes.length - 1];
-                        weight = NumberUtils.toDouble(tailRecord, 1.0);
-                    }
+                double weight = 1.0;
+                if (recordAttributes.length > 4) {
+                    // 提取权重字段，默认权重为 1
+                    String tailRecord = recordAttributes[recordAttributes.length - 1];
+                    weight = NumberUtils.toDouble(tailRecord, 1.0);
+                }
 
-                    // 源节点
-                    GraphVertex source = graphStore.getVertex(
-                            GraphVertexSearch.builder()
-                                    .names(List.of(sourceName))
-                                    .metadataFilter(filter)
+                // 源节点
+                GraphVertex source = graphStore.getVertex(
+                        GraphVertexSearch.builder()
+                                .names(List.of(sourceName))
+                                .metadataFilter(filter)
+                                .build()
+                );
+                if (null == source) {
+                    // 源节点不存在则创建，确保边关系可用
+                    addVertex(
+                            GraphVertex.builder()
+                                    .name(sourceName)
+                                    .textSegmentId(chunkId)
+                                    .metadata(metadata)
                                     .build()
                     );
-                    if (null == source) {
-                        // 源节点不存在则创建，确保边关系可用
-                        graphStore.addVertex(
-                                GraphVertex.builder()
-                                        .name(sourceName)
-                                        .textSegmentId(chunkId)
-                                        .metadata(metadata)
-                                        .build()
-                        );
-                    }
-                    // 目标节点
-                    GraphVertex target = graphStore.getVertex(
-                            GraphVertexSearch.builder()
-                                    .names(List.of(targetName))
-                                    .metadataFilter(filter)
+                }
+                // 目标节点
+                GraphVertex target = graphStore.getVertex(
+                        GraphVertexSearch.builder()
+                                .names(List.of(targetName))
+                                .metadataFilter(filter)
+                                .build()
+                );
+                if (null == target) {
+                    // 目标节点不存在则创建，确保边关系可用
+                    addVertex(
+                            GraphVertex.builder()
+                                    .name(targetName)
+                                    .textSegmentId(chunkId)
+                                    .metadata(metadata)
                                     .build()
                     );
-                    if (null == target) {
-                        // 目标节点不存在则创建，确保边关系可用
-                        graphStore.addVertex(
-                                GraphVertex.builder()
-                                        .name(targetName)
-                                        .textSegmentId(chunkId)
-                                        .metadata(metadata)
-                                        .build()
-                        );
-                    }
-                    // 边关系
-                    GraphEdgeSearch search = new GraphEdgeSearch();
-                    search.setSource(GraphSearchCondition.builder()
+                }
+                // 边关系
+                GraphEdgeSearch search = new GraphEdgeSearch();
+                search.setSource(GraphSearchCondition.builder()
+                        .names(List.of(sourceName))
+                        .metadataFilter(filter)
+                        .build());
+                search.setTarget(GraphSearchCondition.builder()
+                        .names(List.of(targetName))
+                        .metadataFilter(filter)
+                        .build());
+                Triple<GraphVertex, GraphEdge, GraphVertex> graphEdgeWithVertices = graphStore.getEdge(search);
+                if (null != graphEdgeWithVertices) {
+                    // 已存在边则累加权重并追加描述
+                    GraphEdge existGraphEdge = graphEdgeWithVertices.getMiddle();
+                    weight += existGraphEdge.getWeight();
+                    GraphEdgeEditInfo graphEdgeEditInfo = new GraphEdgeEditInfo();
+                    graphEdgeEditInfo.setSourceFilter(GraphSearchCondition.builder()
                             .names(List.of(sourceName))
                             .metadataFilter(filter)
                             .build());
-                    search.setTarget(GraphSearchCondition.builder()
+                    graphEdgeEditInfo.setTargetFilter(GraphSearchCondition.builder()
                             .names(List.of(targetName))
                             .metadataFilter(filter)
                             .build());
-                    Triple<GraphVertex, GraphEdge, GraphVertex> graphEdgeWithVertices = graphStore.getEdge(search);
-                    if (null != graphEdgeWithVertices) {
-                        // 已存在边则累加权重并追加描述
-                        GraphEdge existGraphEdge = graphEdgeWithVertices.getMiddle();
-                        weight += existGraphEdge.getWeight();
-                        GraphEdgeEditInfo graphEdgeEditInfo = new GraphEdgeEditInfo();
-                        graphEdgeEditInfo.setSourceFilter(GraphSearchCondition.builder()
-                                .names(List.of(sourceName))
-                                .metadataFilter(filter)
-                                .build());
-                        graphEdgeEditInfo.setTargetFilter(GraphSearchCondition.builder()
-                                .names(List.of(targetName))
-                                .metadataFilter(filter)
-                                .build());
-                        graphEdgeEditInfo.setEdge(GraphEdge.builder()
-                                .textSegmentId(existGraphEdge.getTextSegmentId() + "," + chunkId)
-                                .description(existGraphEdge.getDescription() + "\n" + edgeDescription)
-                                .weight(weight)
-                                .build());
-                        graphStore.updateEdge(graphEdgeEditInfo);
-
-                        // 合并可追加的元数据字段
-                        appendExistsToNewOne(existGraphEdge.getMetadata(), metadata);
-                    } else {
-                        // 检查节点是否存在，不存在则创建。
-                        checkOrCreateVertex("", sourceName, chunkId, filter, metadata);
-                        checkOrCreateVertex("", targetName, chunkId, filter, metadata);
-                        // 新增边关系
-                        GraphEdgeAddInfo addInfo = new GraphEdgeAddInfo();
-                        addInfo.setEdge(GraphEdge.builder()
-                                .sourceName(sourceName)
-                                .targetName(targetName)
-                                .weight(weight)
-                                .metadata(metadata)
-                                .textSegmentId(chunkId)
-                                .description(edgeDescription)
-                                .build());
-                        addInfo.setSourceFilter(GraphSearchCondition.builder()
-                                .names(List.of(sourceName))
-                                .metadataFilter(filter)
-                                .build());
-                        addInfo.setTargetFilter(GraphSearchCondition.builder()
-                                .names(List.of(targetName))
-                                .metadataFilter(filter)
-                                .build());
-                        graphStore.addEdge(addInfo);
+                    graphEdgeEditInfo.setEdge(GraphEdge.builder()
+                            .textSegmentId(existGraphEdge.getTextSegmentId() + "," + chunkId)
+                            .description(existGraphEdge.getDescription() + "\n" + edgeDescription)
+                            .weight(weight)
+                            .build());
+                    graphStore.updateEdge(graphEdgeEditInfo);
+
+                    // 合并可追加的元数据字段
+                    appendExistsToNewOne(existGraphEdge.getMetadata(), metadata);
+                } else {
+                    // 检查节点是否存在，不存在则创建。
+                    checkOrCreateVertex("", sourceName, chunkId, filter, metadata);
+                    checkOrCreateVertex("", targetName, chunkId, filter, metadata);
+                    // 新增边关系
+                    GraphEdgeAddInfo addInfo = new GraphEdgeAddInfo();
+                    addInfo.setEdge(GraphEdge.builder()
+                            .sourceName(sourceName)
+                            .targetName(targetName)
+                            .weight(weight)
+                            .metadata(metadata)
+                            .textSegmentId(chunkId)
+                            .description(edgeDescription)
+                            .build());
+                    addInfo.setSourceFilter(GraphSearchCondition.builder()
+                            .names(List.of(sourceName))
+                            .metadataFilter(filter)
+                            .build());
+                    addInfo.setTargetFilter(GraphSearchCondition.builder()
+                            .names(List.of(targetName))
+                            .metadataFilter(filter)
+                            .build());
+                    graphStore.addEdge(addInfo);
+                }
+            }
+        }
+    }
+
+    /**
+     * 批量模式入库：先解析一批分段的抽取结果，在内存中合并标签与名称均相同的实体、同一对实体间的关系
+     * （描述、分段 ID、权重在本地累加），再按批次查询已有数据，并在每批一个事务中逐条写入，
+     * 同一实体在一批内只写一次，查询往返按批次合并，事务提交次数也按批次减少。
+     *
+     * @param segmentIdToAiResponse 分段、分段 ID 与抽取结果
+     */
+    private void ingestInBatch(List<Triple<TextSegment, String, String>> segmentIdToAiResponse) {
+        Map<Map<String, Object>, BatchGroup> groups = new LinkedHashMap<>();
+        for (Triple<TextSegment, String, String> triple : segmentIdToAiResponse) {
+            TextSegment segment = triple.getLeft();
+            String textSegmentId = AdiStringUtil.clearStr(triple.getMiddle());
+            String response = triple.getRight();
+            if (StringUtils.isBlank(response)) {
+                log.warn("Response is empty,textSegmentId:{}", textSegmentId);
+                continue;
+            }
+            Map<String, Object> metadata = segment.metadata().toMap();
+            Map<String, Object> identifyValues = getIdentifyValues(metadata);
+            BatchGroup group = groups.computeIfAbsent(identifyValues, key -> new BatchGroup(buildFilter(key)));
+
+            String[] rows = StringUtils.split(response, AdiConstant.GRAPH_RECORD_DELIMITER);
+            for (String row : rows) {
+                String[] recordAttributes = splitRecordAttributes(row);
+                if (isEntityRecord(recordAttributes)) {
+                    String entityName = normalizeVertexName(recordAttributes[1]);
+                    String entityType = AdiStringUtil.clearStr(recordAttributes[2].toUpperCase()).replaceAll("[^a-zA-Z0-9\\s\\u4E00-\\u9FA5]+", "").replace(" ", "");
+                    String entityDescription = AdiStringUtil.clearStr(recordAttributes[3]);
+                    BatchVertex vertex = group.vertices.computeIfAbsent(Pair.of(entityType, entityName), key -> new BatchVertex(entityType));
+                    vertex.merge(textSegmentId, entityDescription, metadata);
+                } else if (isRelationshipRecord(recordAttributes)) {
+                    String sourceName = normalizeVertexName(recordAttributes[1]);
+                    String targetName = normalizeVertexName(recordAttributes[2]);
+                    String edgeDescription = AdiStringUtil.clearStr(recordAttributes[3]);
+                    double weight = 1.0;
+                    if (recordAttributes.length > 4) {
+                        weight = NumberUtils.toDouble(recordAttributes[recordAttributes.length - 1], 1.0);
                     }
+                    BatchEdge edge = group.edges.computeIfAbsent(Pair.of(sourceName, targetName), key -> new BatchEdge());
+                    edge.merge(textSegmentId, edgeDescription, weight, metadata);
                 }
             }
         }
+        for (BatchGroup group : groups.values()) {
+            log.info("Batch store graph data,vertices:{},edges:{}", group.vertices.size(), group.edges.size());
+            storeVertices(group);
+            storeEdges(group);
+        }
+    }
 
-        log.info("Finished storing {} text segments into the graph store", segments.size());
+    /**
+     * 写入顶点：按批次查出已存在的顶点（标签与名称均相同视为同一顶点），已存在的更新，不存在的新增。
+     * 关系两端未作为实体出现且不存在的顶点也一并新增。
+     *
+     * @param group 批次数据
+     */
+    private void storeVertices(BatchGroup group) {
+        Set<String> entityNames = new LinkedHashSet<>();
+        group.vertices.keySet().forEach(key -> entityNames.add(key.getRight()));
+        Set<String> allNames = new LinkedHashSet<>(entityNames);
+        Map<String, BatchVertex> endpointVertices = new LinkedHashMap<>();
+        for (Map.Entry<Pair<String, String>, BatchEdge> entry : group.edges.entrySet()) {
+            BatchEdge edge = entry.getValue();
+            for (String name : List.of(entry.getKey().getLeft(), entry.getKey().getRight())) {
+                allNames.add(name);
+                endpointVertices.computeIfAbsent(name, key -> new BatchVertex(""))
+                        .merge(edge.textSegmentIds.iterator().next(), null, edge.metadata);
+            }
+        }
+        Map<String, List<GraphVertex>> existVertices = searchExistVertices(allNames, group.filter);
+
+        List<GraphVertex> newVertices = new ArrayList<>();
+        List<GraphVertexUpdateInfo> updateInfos = new ArrayList<>();
+        for (Map.Entry<Pair<String, String>, BatchVertex> entry : group.vertices.entrySet()) {
+            String name = entry.getKey().getRight();
+            BatchVertex vertex = entry.getValue();
+            GraphVertex existVertex = existVertices.getOrDefault(name, Collections.emptyList())
+                    .stream()
+                    .filter(item -> vertex.label.equalsIgnoreCase(item.getLabel()))
+                    .findFirst()
+                    .orElse(null);
+            if (null == existVertex) {
+                newVertices.add(vertex.toGraphVertex(name));
+                continue;
+            }
+            appendExistsToNewOne(existVertex.getMetadata(), vertex.metadata);
+            GraphVertex newData = GraphVertex.builder()
+                    .textSegmentId(existVertex.getTextSegmentId() + "," + String.join(",", vertex.textSegmentIds))
+                    .description(existVertex.getDescription() + "\n" + String.join("\n", vertex.descriptions))
+                    .metadata(vertex.metadata)
+                    .build();
+            updateInfos.add(
+                    GraphVertexUpdateInfo.builder()
+                            .name(name)
+                            .label(existVertex.getLabel())
+                            .metadataFilter(group.filter)
+                            .newData(newData)
+                            .build()
+            );
+        }
+        for (Map.Entry<String, BatchVertex> entry : endpointVertices.entrySet()) {
+            String name = entry.getKey();
+            if (!entityNames.contains(name) && !existVertices.containsKey(name)) {
+                newVertices.add(entry.getValue().toGraphVertex(name));
+            }
+        }
+        for (List<GraphVertex> partition : ListUtils.partition(newVertices, BATCH_SIZE)) {
+            graphStore.addVertexes(partition);
+            addToEntityDictionary(partition);
+        }
+        for (List<GraphVertexUpdateInfo> partition : ListUtils.partition(updateInfos, BATCH_SIZE)) {
+            graphStore.updateVertexes(partition);
+        }
+    }
+
+    /**
+     * 写入边：按批次查出已存在的边，已存在的累加权重并追加描述，不存在的新增。
+     *
+     * @param group 批次数据
+     */
+    private void storeEdges(BatchGroup group) {
+        if (group.edges.isEmpty()) {
+            return;
+        }
+        Map<Pair<String, String>, GraphEdge> existEdges = searchExistEdges(group.edges.keySet(), group.filter);
+        List<GraphEdgeAddInfo> addInfos = new ArrayList<>();
+        List<GraphEdgeEditInfo> editInfos = new ArrayList<>();
+        for (Map.Entry<Pair<String, String>, BatchEdge> entry : group.edges.entrySet()) {
+            String sourceName = entry.getKey().getLeft();
+            String targetName = entry.getKey().getRight();
+            BatchEdge edge = entry.getValue();
+            GraphSearchCondition sourceFilter = GraphSearchCondition.builder()
+                    .names(List.of(sourceName))
+                    .metadataFilter(group.filter)
+                    .build();
+            GraphSearchCondition targetFilter = GraphSearchCondition.builder()
+                    .names(List.of(targetName))
+                    .metadataFilter(group.filter)
+                    .build();
+            GraphEdge existEdge = existEdges.get(entry.getKey());
+            if (null != existEdge) {
+                GraphEdgeEditInfo editInfo = new GraphEdgeEditInfo();
+                editInfo.setSourceFilter(sourceFilter);
+                editInfo.setTargetFilter(targetFilter);
+                editInfo.setEdge(GraphEdge.builder()
+                        .textSegmentId(existEdge.getTextSegmentId() + "," + String.join(",", edge.textSegmentIds))
+                        .description(existEdge.getDescription() + "\n" + String.join("\n", edge.descriptions))
+                        .weight(existEdge.getWeight() + edge.weight)
+                        .build());
+                editInfos.add(editInfo);
+            } else {
+                GraphEdgeAddInfo addInfo = new GraphEdgeAddInfo();
+                addInfo.setSourceFilter(sourceFilter);
+                addInfo.setTargetFilter(targetFilter);
+                addInfo.setEdge(GraphEdge.builder()
+                        .sourceName(sourceName)
+                        .targetName(targetName)
+                        .weight(edge.weight)
+                        .metadata(edge.metadata)
+                        .textSegmentId(String.join(",", edge.textSegmentIds))
+                        .description(String.join("\n", edge.descriptions))
+                        .build());
+                addInfos.add(addInfo);
+            }
+        }
+        for (List<GraphEdgeEditInfo> partition : ListUtils.partition(editInfos, BATCH_SIZE)) {
+            graphStore.updateEdges(partition);
+        }
+        for (List<GraphEdgeAddInfo> partition : ListUtils.partition(addInfos, BATCH_SIZE)) {
+            graphStore.addEdges(partition);
+        }
+    }
+
+    /**
+     * 按名称分批查询已存在的顶点。
+     *
+     * @param names 顶点名称集合
+     * @param filter 元数据过滤条件
+     * @return 名称到顶点列表的映射（同名顶点可能有不同标签）
+     */
+    private Map<String, List<GraphVertex>> searchExistVertices(Collection<String> names, Filter filter) {
+        Map<String, List<GraphVertex>> result = new HashMap<>();
+        for (List<String> partition : ListUtils.partition(new ArrayList<>(names), BATCH_SIZE)) {
+            List<GraphVertex> vertices = graphStore.searchVertices(
+                    GraphVertexSearch.builder()
+                            .names(partition)
+                            .metadataFilter(filter)
+                            .limit(partition.size() * 10)
+                            .build()
+            );
+            for (GraphVertex vertex : vertices) {
+                result.computeIfAbsent(vertex.getName(), key -> new ArrayList<>()).add(vertex);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按起点/终点名称对分批精确查询已存在的边。
+     *
+     * @param pairs 起点与终点名称对
+     * @param filter 元数据过滤条件
+     * @return 实体对到边的映射
+     */
+    private Map<Pair<String, String>, GraphEdge> searchExistEdges(Collection<Pair<String, String>> pairs, Filter filter) {
+        Map<Pair<String, String>, GraphEdge> result = new HashMap<>();
+        for (List<Pair<String, String>> partition : ListUtils.partition(new ArrayList<>(pairs), BATCH_SIZE)) {
+            Set<Pair<String, String>> wanted = new HashSet<>(partition);
+            for (Triple<GraphVertex, GraphEdge, GraphVertex> triple : graphStore.searchEdgesByPairs(partition, filter)) {
+                Pair<String, String> key = Pair.of(triple.getLeft().getName(), triple.getRight().getName());
+                if (wanted.contains(key)) {
+                    result.putIfAbsent(key, triple.getMiddle());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 提取标识列的值。
+     *
+     * @param metadata 分段元数据
+     * @return 标识列名到值的映射
+     */
+    private Map<String, Object> getIdentifyValues(Map<String, Object> metadata) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+            // 仅使用标识列构建过滤条件，避免跨知识库污染
+            if (identifyColumns.contains(entry.getKey())) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 根据标识列的值构建过滤条件。
+     *
+     * @param identifyValues 标识列名到值的映射
+     * @return 过滤条件
+     */
+    private Filter buildFilter(Map<String, Object> identifyValues) {
+        Filter filter = null;
+        for (Map.Entry<String, Object> entry : identifyValues.entrySet()) {
+            if (null == filter) {
+                filter = new IsEqualTo(entry.getKey(), entry.getValue());
+            } else {
+                filter = filter.and(new IsEqualTo(entry.getKey(), entry.getValue()));
+            }
+        }
+        if (null == filter) {
+            // 无过滤条件时无法定位图谱范围，直接拒绝写入
+            throw new BaseException(ErrorEnum.B_GRAPH_FILTER_NOT_FOUND);
+        }
+        return filter;
+    }
+
+    /**
+     * 将单行抽取结果拆分为字段。
+     *
+     * @param row 单行记录
+     * @return 字段数组
+     */
+    private static String[] splitRecordAttributes(String row) {
+        // 清理首尾括号，兼容模型输出格式
+        String graphRow = row.replaceAll("^\\(|\\)$", "");
+        return StringUtils.split(graphRow, AdiConstant.GRAPH_TUPLE_DELIMITER);
+    }
+
+    /**
+     * 是否为实体记录：名称/类型/描述。
+     *
+     * @param recordAttributes 字段数组
+     * @return 是否为实体记录
+     */
+    private static boolean isEntityRecord(String[] recordAttributes) {
+        return recordAttributes.length >= 4 && (recordAttributes[0].contains("\"entity\"") || recordAttributes[0].contains("\"实体\""));
+    }
+
+    /**
+     * 是否为关系记录：起点/终点/描述/权重。
+     *
+     * @param recordAttributes 字段数组
+     * @return 是否为关系记录
+     */
+    private static boolean isRelationshipRecord(String[] recordAttributes) {
+        return recordAttributes.length >= 4 && (recordAttributes[0].contains("\"relationship\"") || recordAttributes[0].contains("\"关系\""));
+    }
+
+    /**
+     * 规范化顶点名称，与图谱存储写入时的长度限制保持一致，保证本地合并与后续查询使用相同的键。
+     *
+     * @param rawName 原始名称
+     * @return 规范化后的名称
+     */
+    private static String normalizeVertexName(String rawName) {
+        return AdiStringUtil.tail(AdiStringUtil.clearStr(rawName.toUpperCase()), 20);
+    }
+
+    /**
+     * 批量模式下同一组标识列（如同一知识库）的待写入数据。
+     */
+    private static class BatchGroup {
+        /**
+         * 元数据过滤条件。
+         */
+        private final Filter filter;
+        /**
+         * 顶点标签与名称到合并后顶点的映射。
+         */
+        private final Map<Pair<String, String>, BatchVertex> vertices = new LinkedHashMap<>();
+        /**
+         * 起点/终点名称到合并后边的映射。
+         */
+        private final Map<Pair<String, String>, BatchEdge> edges = new LinkedHashMap<>();
+
+        /**
+         * 构建批次数据。
+         *
+         * @param filter 元数据过滤条件
+         */
+        BatchGroup(Filter filter) {
+            this.filter = filter;
+        }
+    }
+
+    /**
+     * 本地合并中的顶点。
+     */
+    private class BatchVertex {
+        /**
+         * 顶点标签。
+         */
+        private final String label;
+        /**
+         * 分段 ID，保持出现顺序并去重。
+         */
+        private final Set<String> textSegmentIds = new LinkedHashSet<>();
+        /**
+         * 描述列表。
+         */
+        private final List<String> descriptions = new ArrayList<>();
+        /**
+         * 合并后的元数据。
+         */
+        private Map<String, Object> metadata;
+
+        /**
+         * 构建待合并顶点。
+         *
+         * @param label 顶点标签
+         */
+        BatchVertex(String label) {
+            this.label = label;
+        }
+
+        /**
+         * 合并一次出现的顶点信息。
+         *
+         * @param textSegmentId 分段 ID
+         * @param description 描述，可为空
+         * @param newMetadata 分段元数据
+         */
+        void merge(String textSegmentId, String description, Map<String, Object> newMetadata) {
+            textSegmentIds.add(textSegmentId);
+            if (StringUtils.isNotBlank(description)) {
+                descriptions.add(description);
+            }
+            metadata = mergeMetadata(metadata, newMetadata);
+        }
+
+        /**
+         * 转换为待新增的顶点。
+         *
+         * @param name 顶点名称
+         * @return 顶点
+         */
+        GraphVertex toGraphVertex(String name) {
+            return GraphVertex.builder()
+                    .label(label)
+                    .name(name)
+                    .textSegmentId(String.join(",", textSegmentIds))
+                    .description(descriptions.isEmpty() ? null : String.join("\n", descriptions))
+                    .metadata(metadata)
+                    .build();
+        }
+    }
+
+    /**
+     * 本地合并中的边。
+     */
+    private class BatchEdge {
+        /**
+         * 分段 ID，保持出现顺序并去重。
+         */
+        private final Set<String> textSegmentIds = new LinkedHashSet<>();
+        /**
+         * 描述列表。
+         */
+        private final List<String> descriptions = new ArrayList<>();
+        /**
+         * 累加后的权重。
+         */
+        private double weight;
+        /**
+         * 合并后的元数据。
+         */
+        private Map<String, Object> metadata;
+
+        /**
+         * 合并一次出现的关系信息。
+         *
+         * @param textSegmentId 分段 ID
+         * @param description 描述
+         * @param newWeight 权重
+         * @param newMetadata 分段元数据
+         */
+        void merge(String textSegmentId, String description, double newWeight, Map<String, Object> newMetadata) {
+            textSegmentIds.add(textSegmentId);
+            descriptions.add(description);
+            weight += newWeight;
+            metadata = mergeMetadata(metadata, newMetadata);
+        }
+    }
+
+    /**
+     * 合并本地累积的元数据与新分段的元数据，追加字段按 {@link #appendExistsToNewOne} 的规则合并。
+     *
+     * @param existMetadata 已累积的元数据，可为空
+     * @param newMetadata 新分段的元数据
+     * @return 合并后的元数据
+     */
+    private Map<String, Object> mergeMetadata(Map<String, Object> existMetadata, Map<String, Object> newMetadata) {
+        Map<String, Object> result = new HashMap<>(newMetadata);
+        if (null != existMetadata) {
+            appendExistsToNewOne(existMetadata, result);
+        }
+        return result;
+    }
+
+    /**
+     * 新增顶点，并把顶点名称追加到所属知识库的实体词典。
+     *
+     * @param vertex 顶点
+     */
+    private void addVertex(GraphVertex vertex) {
+        graphStore.addVertex(vertex);
+        addToEntityDictionary(List.of(vertex));
+    }
+
+    /**
+     * 把新增顶点的名称按所属知识库追加到实体词典，供图谱检索时匹配问题中的实体。
+     *
+     * @param vertices 新增的顶点
+     * @return 无
+     */
+    private static void addToEntityDictionary(List<GraphVertex> vertices) {
+        Map<String, List<String>> kbUuidToNames = new HashMap<>();
+        for (GraphVertex vertex : vertices) {
+            Object kbUuid = null == vertex.getMetadata() ? null : vertex.getMetadata().get(AdiConstant.MetadataKey.KB_UUID);
+            if (null != kbUuid) {
+                kbUuidToNames.computeIfAbsent(kbUuid.toString(), key -> new ArrayList<>()).add(vertex.getName());
+            }
+        }
+        if (!kbUuidToNames.isEmpty()) {
+            GraphEntityDictionary dictionary = SpringUtil.getBean(GraphEntityDictionary.class);
+            kbUuidToNames.forEach(dictionary::add);
+        }
     }
 
     /**
@@ -425,7 +913,7 @@ public class GraphStoreIngestor {
                         .build()
         );
         if (CollectionUtils.isEmpty(existVertices)) {
-            graphStore.addVertex(
+            addVertex(
                     GraphVertex.builder()
                             .label(label)
                             .name(name)
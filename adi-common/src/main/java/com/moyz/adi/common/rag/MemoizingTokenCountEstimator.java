@@ -0,0 +1,95 @@
+package com.moyz.adi.common.rag;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.openai.OpenAiTokenCountEstimator;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 带请求级记忆的 token 估算器。
+ * <p>
+ * 包装共享的估算器实例，在 {@link TokenEstimatorThreadLocal} 开启的请求范围内，
+ * 同一文本、同一消息只分词一次，避免滑动窗口记忆、文档裁剪等环节重复估算。
+ * OpenAI 估算器的消息列表 token 数为固定开销加各消息 token 数之和，按消息逐条记忆，
+ * 滑动窗口增删消息后重新估算整个列表时只需对新消息分词。
+ */
+public class MemoizingTokenCountEstimator implements TokenCountEstimator {
+
+    /**
+     * 估算器名称，作为记忆键的一部分，区分不同估算器的结果。
+     */
+    private final String name;
+
+    /**
+     * 被包装的估算器。
+     */
+    private final TokenCountEstimator delegate;
+
+    /**
+     * 消息列表的固定开销 token 数，为 -1 时表示被包装的估算器不能按消息累加。
+     */
+    private final int messagesOverhead;
+
+    /**
+     * 构造带记忆的估算器。
+     *
+     * @param name     估算器名称
+     * @param delegate 被包装的估算器
+     */
+    public MemoizingTokenCountEstimator(String name, TokenCountEstimator delegate) {
+        this.name = name;
+        this.delegate = delegate;
+        this.messagesOverhead = delegate instanceof OpenAiTokenCountEstimator ? delegate.estimateTokenCountInMessages(List.of()) : -1;
+    }
+
+    /**
+     * 为估算器加上请求级记忆，已带记忆的估算器原样返回。
+     *
+     * @param name      估算器名称，需能区分不同的估算器
+     * @param estimator 估算器，可为 null
+     * @return 带记忆的估算器，入参为 null 时返回 null
+     */
+    public static TokenCountEstimator of(String name, TokenCountEstimator estimator) {
+        if (null == estimator || estimator instanceof MemoizingTokenCountEstimator) {
+            return estimator;
+        }
+        return new MemoizingTokenCountEstimator(name, estimator);
+    }
+
+    /**
+     * 获取被包装的估算器。
+     *
+     * @return 估算器
+     */
+    public TokenCountEstimator getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public int estimateTokenCountInText(String text) {
+        return TokenEstimatorThreadLocal.memoize(Pair.of(name, text), () -> delegate.estimateTokenCountInText(text));
+    }
+
+    @Override
+    public int estimateTokenCountInMessage(ChatMessage message) {
+        return TokenEstimatorThreadLocal.memoize(Pair.of(name, message), () -> delegate.estimateTokenCountInMessage(message));
+    }
+
+    @Override
+    public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+        if (messagesOverhead >= 0) {
+            int count = messagesOverhead;
+            for (ChatMessage message : messages) {
+                count += estimateTokenCountInMessage(message);
+            }
+            return count;
+        }
+        // 复制一份作为记忆键，避免调用方后续修改列表影响已缓存的结果
+        List<ChatMessage> snapshot = new ArrayList<>();
+        messages.forEach(snapshot::add);
+        return TokenEstimatorThreadLocal.memoize(Pair.of(name, snapshot), () -> delegate.estimateTokenCountInMessages(snapshot));
+    }
+}
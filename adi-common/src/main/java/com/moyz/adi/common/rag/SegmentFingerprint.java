@@ -0,0 +1,43 @@
+package com.moyz.adi.common.rag;
+
+import com.moyz.adi.common.util.HashUtil;
+import dev.langchain4j.data.segment.TextSegment;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.regex.Pattern;
+
+import static com.moyz.adi.common.cosntant.AdiConstant.RAG_MAX_SEGMENT_SIZE_IN_TOKENS;
+
+/**
+ * 文本段指纹，用于增量索引。
+ * <p>
+ * 指纹由规整后的文本、切分参数与处理该文本段的模型共同决定，
+ * 重新索引时指纹不变的文本段可直接沿用上次的向量或图谱抽取结果。
+ */
+public class SegmentFingerprint {
+
+    /**
+     * 连续空白字符。
+     */
+    private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+
+    /**
+     * 禁止实例化。
+     */
+    private SegmentFingerprint() {
+    }
+
+    /**
+     * 计算文本段指纹。
+     *
+     * @param segment        文本段
+     * @param overlap        切分时的重叠 token 数
+     * @param tokenEstimator 切分时使用的 token 估算器名称
+     * @param modelName      处理该文本段的模型（向量模型或抽取图谱的 LLM）
+     * @return 十六进制 SHA-256 串
+     */
+    public static String of(TextSegment segment, int overlap, String tokenEstimator, String modelName) {
+        String text = WHITESPACES.matcher(StringUtils.trimToEmpty(segment.text())).replaceAll(" ");
+        return HashUtil.sha256(RAG_MAX_SEGMENT_SIZE_IN_TOKENS + "|" + overlap + "|" + StringUtils.defaultString(tokenEstimator) + "|" + StringUtils.defaultString(modelName) + "\n" + text);
+    }
+}
@@ -9,29 +9,74 @@ import dev.langchain4j.model.embedding.onnx.HuggingFaceTokenCountEstimator;
 import dev.langchain4j.model.openai.OpenAiChatModelName;
 import dev.langchain4j.model.openai.OpenAiTokenCountEstimator;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Token 估算器工厂，根据配置选择合适实现。
+ * <p>
+ * 估算器实例是线程安全的，按名称懒加载后共享复用；模型重新加载时通过 {@link #invalidate()} 清空。
  */
 @Slf4j
 public class TokenEstimatorFactory {
 
     /**
-     * 创建 token 估算器。
+     * 估算器名称到共享实例的映射。
+     */
+    private static final Map<String, TokenCountEstimator> ESTIMATORS = new ConcurrentHashMap<>();
+
+    /**
+     * 私有构造函数，禁止实例化。
+     */
+    private TokenEstimatorFactory() {
+    }
+
+    /**
+     * 获取 token 估算器，同名估算器只创建一次。
      *
      * @param tokenEstimator 估算器名称
      * @return 估算器实现
      */
     public static TokenCountEstimator create(String tokenEstimator) {
-        if (StringUtils.isBlank(tokenEstimator)) {
-            // 未指定估算器时，使用默认 OpenAI 估算器保证可用性
-            return new OpenAiTokenCountEstimator(OpenAiChatModelName.GPT_3_5_TURBO);
+        String name = normalize(tokenEstimator);
+        return ESTIMATORS.computeIfAbsent(name, key -> new MemoizingTokenCountEstimator(key, build(key)));
+    }
+
+    /**
+     * 清空已缓存的估算器，模型新增、删除或重新加载后调用。
+     *
+     * @return 无
+     */
+    public static void invalidate() {
+        if (!ESTIMATORS.isEmpty()) {
+            log.info("invalidate token estimators,size:{}", ESTIMATORS.size());
         }
-        if (AdiConstant.TokenEstimator.OPENAI.equals(tokenEstimator)) {
-            // 显式指定 OpenAI 时直接使用官方估算器
-            return new OpenAiTokenCountEstimator(OpenAiChatModelName.GPT_3_5_TURBO);
-        } else if (AdiConstant.TokenEstimator.HUGGING_FACE.equals(tokenEstimator)) {
+        ESTIMATORS.clear();
+    }
+
+    /**
+     * 规整估算器名称，未指定或未知的名称统一归为 OpenAI，避免缓存键无限增长。
+     *
+     * @param tokenEstimator 估算器名称
+     * @return 规整后的名称
+     */
+    private static String normalize(String tokenEstimator) {
+        if (AdiConstant.TokenEstimator.HUGGING_FACE.equals(tokenEstimator) || AdiConstant.TokenEstimator.QWEN.equals(tokenEstimator)) {
+            return tokenEstimator;
+        }
+        // 未指定估算器时，使用默认 OpenAI 估算器保证可用性
+        return AdiConstant.TokenEstimator.OPENAI;
+    }
+
+    /**
+     * 创建 token 估算器。
+     *
+     * @param tokenEstimator 规整后的估算器名称
+     * @return 估算器实现
+     */
+    private static TokenCountEstimator build(String tokenEstimator) {
+        if (AdiConstant.TokenEstimator.HUGGING_FACE.equals(tokenEstimator)) {
             // HuggingFace 使用通用分词估算器
             return new HuggingFaceTokenCountEstimator();
         } else if (AdiConstant.TokenEstimator.QWEN.equals(tokenEstimator)) {
@@ -48,7 +93,6 @@ public class TokenEstimatorFactory {
             } else {
                 // 未找到 Qwen 估算器时回退到 OpenAI 估算器
                 log.warn("没有找到Qwen模型的tokenizer，使用默认的OpenAiTokenizer");
-                return new OpenAiTokenCountEstimator(OpenAiChatModelName.GPT_3_5_TURBO);
             }
         }
         // 兜底使用 OpenAI 估算器，确保流程不中断
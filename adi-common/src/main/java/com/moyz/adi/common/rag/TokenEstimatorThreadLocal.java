@@ -2,15 +2,33 @@ package com.moyz.adi.common.rag;
 
 import com.aliyun.core.utils.StringUtils;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
 /**
  * 线程级别的 token 估算器名称存取。
+ * <p>
+ * 设置估算器名称即开启一次请求范围，范围内的 token 估算结果会被记忆，清理时一并释放。
+ * 未指定估算器名称的场景（如普通对话）可通过 {@link #openMemoScope()} 单独开启记忆范围。
  */
 public class TokenEstimatorThreadLocal {
+
+    /**
+     * 单个请求范围内最多记忆的估算结果数，超出后清空重新记忆，防止清理遗漏时无限增长。
+     */
+    private static final int MAX_MEMO_ENTRIES = 512;
+
     /**
      * 当前线程使用的估算器名称。
      */
     private static final ThreadLocal<String> tokenEstimator = new ThreadLocal<>();
 
+    /**
+     * 当前线程请求范围内的估算结果记忆。
+     */
+    private static final ThreadLocal<Map<Object, Integer>> tokenCountMemo = new ThreadLocal<>();
+
     /**
      * 设置当前线程的估算器名称。
      *
@@ -20,6 +38,7 @@ public class TokenEstimatorThreadLocal {
     public static void setTokenEstimator(String value) {
         // 空值统一设为空字符串，避免下游 NPE
         tokenEstimator.set(StringUtils.isBlank(value) ? "" : value);
+        tokenCountMemo.set(new HashMap<>());
     }
 
     /**
@@ -31,6 +50,55 @@ public class TokenEstimatorThreadLocal {
         return tokenEstimator.get();
     }
 
+    /**
+     * 在当前请求范围内记忆估算结果；未开启请求范围时直接计算。
+     *
+     * @param key        记忆键
+     * @param estimation 估算逻辑
+     * @return token 数
+     */
+    public static int memoize(Object key, IntSupplier estimation) {
+        Map<Object, Integer> memo = tokenCountMemo.get();
+        if (null == memo) {
+            return estimation.getAsInt();
+        }
+        Integer cached = memo.get(key);
+        if (null != cached) {
+            return cached;
+        }
+        if (memo.size() >= MAX_MEMO_ENTRIES) {
+            memo.clear();
+        }
+        int count = estimation.getAsInt();
+        memo.put(key, count);
+        return count;
+    }
+
+    /**
+     * 在当前线程开启估算结果记忆范围，已处于请求范围内时沿用外层范围。
+     *
+     * @return 是否由本次调用开启，需将其传给 {@link #closeMemoScope(boolean)}
+     */
+    public static boolean openMemoScope() {
+        if (null != tokenCountMemo.get()) {
+            return false;
+        }
+        tokenCountMemo.set(new HashMap<>());
+        return true;
+    }
+
+    /**
+     * 关闭由 {@link #openMemoScope()} 开启的记忆范围，外层范围保持不变。
+     *
+     * @param opened openMemoScope 的返回值
+     * @return 无
+     */
+    public static void closeMemoScope(boolean opened) {
+        if (opened) {
+            tokenCountMemo.remove();
+        }
+    }
+
     /**
      * 清理当前线程的估算器名称。
      *
@@ -39,5 +107,6 @@ public class TokenEstimatorThreadLocal {
     public static void clearTokenEstimator() {
         // 使用 remove 释放线程变量，避免线程复用污染
         tokenEstimator.remove();
+        tokenCountMemo.remove();
     }
 }
@@ -3,8 +3,10 @@ package com.moyz.adi.common.rag.neo4j;
 import com.google.common.base.Joiner;
 import com.moyz.adi.common.rag.GraphStore;
 import com.moyz.adi.common.util.AdiStringUtil;
+import com.moyz.adi.common.util.GraphStoreUtil;
 import com.moyz.adi.common.vo.*;
 import dev.langchain4j.community.rag.content.retriever.neo4j.Neo4jGraph;
+import dev.langchain4j.store.embedding.filter.Filter;
 import lombok.Builder;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -29,6 +31,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -177,49 +180,72 @@ public class Neo4jGraphStore implements GraphStore {
      */
     @Override
     public GraphVertex updateVertex(GraphVertexUpdateInfo updateInfo) {
-        log.info("Update vertex:{}", updateInfo.getNewData());
-        ensureNotNull(updateInfo.getMetadataFilter(), "Metadata filter");
-        GraphVertex newData = updateInfo.getNewData();
-        ensureNotNull(newData, newData.toString());
         try (Session session = driver.session()) {
-            List<Record> records = session.executeWrite(tx -> {
-                org.neo4j.cypherdsl.core.Node node = node(this.graphName).named("v");
-                AdiNeo4jFilterMapper neo4jFilterMapper = new AdiNeo4jFilterMapper(node);
-//                    prepareSql = """
-//                               match (v:%1$s)
-//                               where %2$s
-//                               set v.text_segment_id=$new_text_segment_id,v.description=$new_description,%3$s
-//                               return v
-//                               limit 1
-//                            """.formatted(graphName, whereClause.getLeft(), causeToArgs.getLeft());
-
-                Condition condition = node.property("name")
-                        .eq(Cypher.literalOf(updateInfo.getName()))
-                        .and(neo4jFilterMapper.getCondition(updateInfo.getMetadataFilter()));
-
-                List<Expression> updateColumns = new ArrayList<>();
-                updateColumns.add(node.property("text_segment_id"));
-                updateColumns.add(Cypher.literalOf(newData.getTextSegmentId()));
-                updateColumns.add(node.property("description"));
-                updateColumns.add(Cypher.literalOf(newData.getDescription()));
-                for (Map.Entry<String, Object> entry : newData.getMetadata().entrySet()) {
-                    updateColumns.add(node.property(entry.getKey()));
-                    updateColumns.add(Cypher.literalOf(entry.getValue()));
+            List<Record> records = session.executeWrite(tx -> updateVertex(tx, updateInfo));
+            return getVertexFromResultSet(records);
+        }
+    }
+
+    /**
+     * 更新多个顶点，在同一个写事务中逐条执行。
+     *
+     * @param updateInfos 更新信息列表
+     * @return 更新后的顶点列表
+     */
+    @Override
+    public List<GraphVertex> updateVertexes(List<GraphVertexUpdateInfo> updateInfos) {
+        ensureNotEmpty(updateInfos, "Vertex update infos");
+        try (Session session = driver.session()) {
+            return session.executeWrite(tx -> {
+                List<GraphVertex> result = new ArrayList<>();
+                for (GraphVertexUpdateInfo updateInfo : updateInfos) {
+                    result.add(getVertexFromResultSet(updateVertex(tx, updateInfo)));
                 }
-                Statement statement = match(node)
-                        .where(condition)
-                        .set(updateColumns)
-                        .returning(node)
-                        .limit(1)
-                        .build();
-                String prepareSql = Renderer.getDefaultRenderer().render(statement);
-                log.info("updateVertex prepareSql:{}", prepareSql);
-                return tx.run(prepareSql).list();
+                return result;
             });
-            return getVertexFromResultSet(records);
         }
     }
 
+    /**
+     * 在指定事务中更新顶点。
+     *
+     * @param tx 事务上下文
+     * @param updateInfo 更新信息
+     * @return 结果记录
+     */
+    private List<Record> updateVertex(TransactionContext tx, GraphVertexUpdateInfo updateInfo) {
+        log.info("Update vertex:{}", updateInfo.getNewData());
+        ensureNotNull(updateInfo.getMetadataFilter(), "Metadata filter");
+        GraphVertex newData = updateInfo.getNewData();
+        ensureNotNull(newData, "Vertex new data");
+        org.neo4j.cypherdsl.core.Node node = StringUtils.isNotBlank(updateInfo.getLabel())
+                ? node(this.graphName, updateInfo.getLabel()).named("v")
+                : node(this.graphName).named("v");
+        AdiNeo4jFilterMapper neo4jFilterMapper = new AdiNeo4jFilterMapper(node);
+        Condition condition = node.property("name")
+                .eq(Cypher.literalOf(updateInfo.getName()))
+                .and(neo4jFilterMapper.getCondition(updateInfo.getMetadataFilter()));
+
+        List<Expression> updateColumns = new ArrayList<>();
+        updateColumns.add(node.property("text_segment_id"));
+        updateColumns.add(Cypher.literalOf(newData.getTextSegmentId()));
+        updateColumns.add(node.property("description"));
+        updateColumns.add(Cypher.literalOf(newData.getDescription()));
+        for (Map.Entry<String, Object> entry : newData.getMetadata().entrySet()) {
+            updateColumns.add(node.property(entry.getKey()));
+            updateColumns.add(Cypher.literalOf(entry.getValue()));
+        }
+        Statement statement = match(node)
+                .where(condition)
+                .set(updateColumns)
+                .returning(node)
+                .limit(1)
+                .build();
+        String prepareSql = Renderer.getDefaultRenderer().render(statement);
+        log.info("updateVertex prepareSql:{}", prepareSql);
+        return tx.run(prepareSql).list();
+    }
+
     /**
      * 获取单个顶点。
      *
@@ -271,13 +297,21 @@ public class Neo4jGraphStore implements GraphStore {
             }
             AdiNeo4jFilterMapper neo4jFilterMapper = new AdiNeo4jFilterMapper(node);
             // 使用 DSL 组装条件，避免拼接字符串带来的注入风险
-            Condition condition = node.property("name")
-                    .in(Cypher.literalOf(search.getNames()))
-                    .and(neo4jFilterMapper.getCondition(search.getMetadataFilter()));
+            Condition condition = Cypher.noCondition();
+            if (CollectionUtils.isNotEmpty(search.getNames())) {
+                condition = condition.and(node.property("name").in(Cypher.literalOf(search.getNames())));
+            }
+            if (null != search.getMetadataFilter()) {
+                condition = condition.and(neo4jFilterMapper.getCondition(search.getMetadataFilter()));
+            }
+            // elementId 为字符串，按字符串顺序分页
+            if (StringUtils.isNotBlank(search.getMaxElementId())) {
+                condition = condition.and(Cypher.elementId(node).lt(Cypher.literalOf(search.getMaxElementId())));
+            }
             Statement statement = match(node)
                     .where(condition)
                     .with(node)
-                    .orderBy(node.property("elementId").descending())
+                    .orderBy(Cypher.elementId(node).descending())
                     .returning(node)
                     .limit(search.getLimit())
                     .build();
@@ -389,6 +423,43 @@ public class Neo4jGraphStore implements GraphStore {
         }
     }
 
+    /**
+     * 按起点/终点名称对精确查询边及两端顶点。
+     *
+     * @param pairs 起点与终点名称对
+     * @param metadataFilter 两端顶点的元数据过滤条件
+     * @return 边与顶点三元组列表
+     */
+    @Override
+    public List<Triple<GraphVertex, GraphEdge, GraphVertex>> searchEdgesByPairs(List<Pair<String, String>> pairs, Filter metadataFilter) {
+        ensureNotEmpty(pairs, "Edge pairs");
+        try (Session session = driver.session()) {
+            org.neo4j.cypherdsl.core.Node sourceNode = Cypher.node(this.graphName).named("v1");
+            org.neo4j.cypherdsl.core.Node targetNode = Cypher.node(this.graphName).named("v2");
+            org.neo4j.cypherdsl.core.Relationship edge = sourceNode.relationshipBetween(targetNode).named("e");
+            // 名称对之间为 or 关系，两端顶点的元数据过滤条件与之叠加
+            Condition condition = null;
+            for (Pair<String, String> pair : pairs) {
+                Condition pairCondition = sourceNode.property("name").eq(Cypher.literalOf(pair.getLeft()))
+                        .and(targetNode.property("name").eq(Cypher.literalOf(pair.getRight())));
+                condition = null == condition ? pairCondition : condition.or(pairCondition);
+            }
+            if (null != metadataFilter) {
+                condition = condition
+                        .and(new AdiNeo4jFilterMapper(sourceNode).getCondition(metadataFilter))
+                        .and(new AdiNeo4jFilterMapper(targetNode).getCondition(metadataFilter));
+            }
+            Statement statement = match(sourceNode, targetNode, edge)
+                    .where(condition)
+                    .returning(sourceNode, targetNode, edge)
+                    .build();
+            String cypherQuery = Renderer.getDefaultRenderer().render(statement);
+            log.info("Search edges by pairs prepareSql:\n{}", cypherQuery);
+            List<Record> records = session.executeRead(tx -> tx.run(cypherQuery).list());
+            return getEdgesFromResultSet(records);
+        }
+    }
+
     /**
      * 获取单条边及两端顶点。
      *
@@ -410,50 +481,74 @@ public class Neo4jGraphStore implements GraphStore {
      * @return 边与顶点三元组
      */
     public Triple<GraphVertex, GraphEdge, GraphVertex> addEdge(GraphEdgeAddInfo addInfo) {
-        ensureNotNull(addInfo.getEdge(), "Grahp edge");
         try (Session session = driver.session()) {
-//            String query = """
-//                      match (v1:%1$s), (v2:%1$s)
-//                      where %2$s
-//                      create (v1)-[e:%1$s {text_segment_id:$text_segment_id,weight:$weight,description:$description,%3$s}]->(v2)
-//                      return v1,e,v2
-//                    """.formatted(graphName, filterClause.toString(), clauseToArgs.getLeft());
-            org.neo4j.cypherdsl.core.Node sourceNode = Cypher.node(this.graphName).named("v1");
-            org.neo4j.cypherdsl.core.Node targetNode = Cypher.node(this.graphName).named("v2");
-            org.neo4j.cypherdsl.core.Relationship newEdge = sourceNode.relationshipTo(targetNode, this.graphName).named("e");
-            AdiNeo4jFilterMapper sourceFilerMapper = new AdiNeo4jFilterMapper(sourceNode);
-            AdiNeo4jFilterMapper targetFilerMapper = new AdiNeo4jFilterMapper(targetNode);
-            Condition sourceCondition = sourceNode.property("name")
-                    .in(Cypher.literalOf(addInfo.getSourceFilter().getNames()))
-                    .and(sourceFilerMapper.getCondition(addInfo.getSourceFilter().getMetadataFilter()));
-            Condition targetCondition = targetNode.property("name")
-                    .in(Cypher.literalOf(addInfo.getTargetFilter().getNames()))
-                    .and(targetFilerMapper.getCondition(addInfo.getTargetFilter().getMetadataFilter()));
-
-            GraphEdge graphEdgeInfo = addInfo.getEdge();
-            List<Expression> updateColumns = new ArrayList<>();
-            updateColumns.add(newEdge.property("text_segment_id"));
-            updateColumns.add(Cypher.literalOf(graphEdgeInfo.getTextSegmentId()));
-            updateColumns.add(newEdge.property("description"));
-            updateColumns.add(Cypher.literalOf(graphEdgeInfo.getDescription()));
-            for (Map.Entry<String, Object> entry : graphEdgeInfo.getMetadata().entrySet()) {
-                updateColumns.add(newEdge.property(entry.getKey()));
-                updateColumns.add(Cypher.literalOf(entry.getValue()));
-            }
-            Statement statement = match(sourceNode, targetNode)
-                    .where(sourceCondition.and(targetCondition))
-                    .create(newEdge)
-                    .set(updateColumns)
-                    .returning(sourceNode, targetNode, newEdge)
-                    .build();
-            String cypherQuery = Renderer.getDefaultRenderer().render(statement);
-            log.info("Add edge prepareSql:{}", cypherQuery);
-            List<Record> records = session.executeWrite(tx -> tx.run(cypherQuery).list());
-
+            List<Record> records = session.executeWrite(tx -> addEdge(tx, addInfo));
             return getEdgeFromResultSet(records);
         }
     }
 
+    /**
+     * 新增多条边，在同一个写事务中逐条执行。
+     *
+     * @param addInfos 新增信息列表
+     * @return 边与顶点三元组列表
+     */
+    @Override
+    public List<Triple<GraphVertex, GraphEdge, GraphVertex>> addEdges(List<GraphEdgeAddInfo> addInfos) {
+        ensureNotEmpty(addInfos, "Edge add infos");
+        try (Session session = driver.session()) {
+            return session.executeWrite(tx -> {
+                List<Triple<GraphVertex, GraphEdge, GraphVertex>> result = new ArrayList<>();
+                for (GraphEdgeAddInfo addInfo : addInfos) {
+                    result.add(getEdgeFromResultSet(addEdge(tx, addInfo)));
+                }
+                return result;
+            });
+        }
+    }
+
+    /**
+     * 在指定事务中新增边。
+     *
+     * @param tx 事务上下文
+     * @param addInfo 新增信息
+     * @return 结果记录
+     */
+    private List<Record> addEdge(TransactionContext tx, GraphEdgeAddInfo addInfo) {
+        ensureNotNull(addInfo.getEdge(), "Grahp edge");
+        org.neo4j.cypherdsl.core.Node sourceNode = Cypher.node(this.graphName).named("v1");
+        org.neo4j.cypherdsl.core.Node targetNode = Cypher.node(this.graphName).named("v2");
+        org.neo4j.cypherdsl.core.Relationship newEdge = sourceNode.relationshipTo(targetNode, this.graphName).named("e");
+        AdiNeo4jFilterMapper sourceFilerMapper = new AdiNeo4jFilterMapper(sourceNode);
+        AdiNeo4jFilterMapper targetFilerMapper = new AdiNeo4jFilterMapper(targetNode);
+        Condition sourceCondition = sourceNode.property("name")
+                .in(Cypher.literalOf(addInfo.getSourceFilter().getNames()))
+                .and(sourceFilerMapper.getCondition(addInfo.getSourceFilter().getMetadataFilter()));
+        Condition targetCondition = targetNode.property("name")
+                .in(Cypher.literalOf(addInfo.getTargetFilter().getNames()))
+                .and(targetFilerMapper.getCondition(addInfo.getTargetFilter().getMetadataFilter()));
+
+        GraphEdge graphEdgeInfo = addInfo.getEdge();
+        List<Expression> updateColumns = new ArrayList<>();
+        updateColumns.add(newEdge.property("text_segment_id"));
+        updateColumns.add(Cypher.literalOf(graphEdgeInfo.getTextSegmentId()));
+        updateColumns.add(newEdge.property("description"));
+        updateColumns.add(Cypher.literalOf(graphEdgeInfo.getDescription()));
+        for (Map.Entry<String, Object> entry : graphEdgeInfo.getMetadata().entrySet()) {
+            updateColumns.add(newEdge.property(entry.getKey()));
+            updateColumns.add(Cypher.literalOf(entry.getValue()));
+        }
+        Statement statement = match(sourceNode, targetNode)
+                .where(sourceCondition.and(targetCondition))
+                .create(newEdge)
+                .set(updateColumns)
+                .returning(sourceNode, targetNode, newEdge)
+                .build();
+        String cypherQuery = Renderer.getDefaultRenderer().render(statement);
+        log.info("Add edge prepareSql:{}", cypherQuery);
+        return tx.run(cypherQuery).list();
+    }
+
     /**
      * 更新边并返回完整信息。
      *
@@ -461,50 +556,80 @@ public class Neo4jGraphStore implements GraphStore {
      * @return 边与顶点三元组
      */
     public Triple<GraphVertex, GraphEdge, GraphVertex> updateEdge(GraphEdgeEditInfo edgeEditInfo) {
-        log.info("Update edge:{}", edgeEditInfo);
-        GraphEdge newData = edgeEditInfo.getEdge();
-        ensureNotNull(newData, "Graph edit info");
         try (Session session = driver.session()) {
-//            String prepareSql = """
-//                       match (v1:%1$s)-[e:%1$s]->(v2:%1$s)
-//                       where %2$s
-//                       set e.weight=$new_weight,e.text_segment_id=$new_text_segment_id,e.description=$new_description %3$s
-//                       return v1,e,v2
-//                    """.formatted(graphName, filterClause, causeToArgs.getLeft());
+            List<Record> records = session.executeWrite(tx -> updateEdge(tx, edgeEditInfo));
+            return getEdgeFromResultSet(records);
+        }
+    }
 
-            org.neo4j.cypherdsl.core.Node sourceNode = Cypher.node(this.graphName).named("v1");
-            org.neo4j.cypherdsl.core.Node targetNode = Cypher.node(this.graphName).named("v2");
-            org.neo4j.cypherdsl.core.Relationship edge = sourceNode.relationshipBetween(targetNode).named("e");
-            AdiNeo4jFilterMapper sourceFilerMapper = new AdiNeo4jFilterMapper(sourceNode);
-            AdiNeo4jFilterMapper targetFilerMapper = new AdiNeo4jFilterMapper(targetNode);
-            Condition sourceCondition = sourceNode.property("name")
-                    .in(Cypher.literalOf(edgeEditInfo.getSourceFilter().getNames()))
-                    .and(sourceFilerMapper.getCondition(edgeEditInfo.getSourceFilter().getMetadataFilter()));
-            Condition targetCondition = targetNode.property("name")
-                    .in(Cypher.literalOf(edgeEditInfo.getTargetFilter().getNames()))
-                    .and(targetFilerMapper.getCondition(edgeEditInfo.getTargetFilter().getMetadataFilter()));
-            List<Condition> updateConditions = new ArrayList<>();
-            if (null != newData.getMetadata()) {
-                for (Map.Entry<String, Object> entry : newData.getMetadata().entrySet()) {
-                    updateConditions.add(edge.property(entry.getKey()).eq(Cypher.literalOf(entry.getValue())));
+    /**
+     * 更新多条边，在同一个写事务中逐条执行。
+     *
+     * @param edgeEditInfos 编辑信息列表
+     * @return 边与顶点三元组列表
+     */
+    @Override
+    public List<Triple<GraphVertex, GraphEdge, GraphVertex>> updateEdges(List<GraphEdgeEditInfo> edgeEditInfos) {
+        ensureNotEmpty(edgeEditInfos, "Edge edit infos");
+        try (Session session = driver.session()) {
+            return session.executeWrite(tx -> {
+                List<Triple<GraphVertex, GraphEdge, GraphVertex>> result = new ArrayList<>();
+                for (GraphEdgeEditInfo edgeEditInfo : edgeEditInfos) {
+                    result.add(getEdgeFromResultSet(updateEdge(tx, edgeEditInfo)));
                 }
+                return result;
+            });
+        }
+    }
+
+    /**
+     * 在指定事务中更新边。
+     *
+     * @param tx 事务上下文
+     * @param edgeEditInfo 编辑信息
+     * @return 结果记录
+     */
+    private List<Record> updateEdge(TransactionContext tx, GraphEdgeEditInfo edgeEditInfo) {
+        log.info("Update edge:{}", edgeEditInfo);
+        GraphEdge newData = edgeEditInfo.getEdge();
+        ensureNotNull(newData, "Graph edit info");
+        org.neo4j.cypherdsl.core.Node sourceNode = Cypher.node(this.graphName).named("v1");
+        org.neo4j.cypherdsl.core.Node targetNode = Cypher.node(this.graphName).named("v2");
+        org.neo4j.cypherdsl.core.Relationship edge = sourceNode.relationshipBetween(targetNode).named("e");
+        AdiNeo4jFilterMapper sourceFilerMapper = new AdiNeo4jFilterMapper(sourceNode);
+        AdiNeo4jFilterMapper targetFilerMapper = new AdiNeo4jFilterMapper(targetNode);
+        Condition sourceCondition = sourceNode.property("name")
+                .in(Cypher.literalOf(edgeEditInfo.getSourceFilter().getNames()))
+                .and(sourceFilerMapper.getCondition(edgeEditInfo.getSourceFilter().getMetadataFilter()));
+        Condition targetCondition = targetNode.property("name")
+                .in(Cypher.literalOf(edgeEditInfo.getTargetFilter().getNames()))
+                .and(targetFilerMapper.getCondition(edgeEditInfo.getTargetFilter().getMetadataFilter()));
+        List<Expression> updateColumns = new ArrayList<>();
+        updateColumns.add(edge.property("weight"));
+        updateColumns.add(Cypher.parameter("weight"));
+        updateColumns.add(edge.property("text_segment_id"));
+        updateColumns.add(Cypher.parameter("text_segment_id"));
+        updateColumns.add(edge.property("description"));
+        updateColumns.add(Cypher.parameter("description"));
+        if (null != newData.getMetadata()) {
+            for (Map.Entry<String, Object> entry : newData.getMetadata().entrySet()) {
+                updateColumns.add(edge.property(entry.getKey()));
+                updateColumns.add(Cypher.literalOf(entry.getValue()));
             }
-            Statement statement = match(sourceNode, targetNode, edge)
-                    .with(sourceNode, targetNode, edge)
-                    .where(sourceCondition.and(targetCondition))
-                    .set(edge.property("weight"), edge.property("text_segment_id"), edge.property("description"))
-                    .set(updateConditions)
-                    .returning(sourceNode, targetNode, edge)
-                    .build();
-            String cypherQuery = Renderer.getDefaultRenderer().render(statement);
-            log.info("updateEdge prepareSql:{}", cypherQuery);
-            Map<String, Object> params = new HashMap<>();
-            params.put("weight", newData.getTextSegmentId());
-            params.put("text_segment_id", newData.getTextSegmentId());
-            params.put("description", newData.getDescription());
-            List<Record> records = session.executeWrite(tx -> tx.run(cypherQuery, params).list());
-            return getEdgeFromResultSet(records);
         }
+        Statement statement = match(sourceNode, targetNode, edge)
+                .with(sourceNode, targetNode, edge)
+                .where(sourceCondition.and(targetCondition))
+                .set(updateColumns)
+                .returning(sourceNode, targetNode, edge)
+                .build();
+        String cypherQuery = Renderer.getDefaultRenderer().render(statement);
+        log.info("updateEdge prepareSql:{}", cypherQuery);
+        Map<String, Object> params = new HashMap<>();
+        params.put("weight", newData.getWeight());
+        params.put("text_segment_id", newData.getTextSegmentId());
+        params.put("description", newData.getDescription());
+        return tx.run(cypherQuery, params).list();
     }
 
     /**
@@ -579,6 +704,57 @@ public class Neo4jGraphStore implements GraphStore {
         }
     }
 
+    /**
+     * 从顶点与边上摘除已失效的分段，所有修改在同一写事务中完成。
+     *
+     * @param metadataFilter 元数据过滤条件，限定知识库范围
+     * @param segmentIds     失效的分段 ID
+     * @return 无
+     */
+    @Override
+    public void detachSegments(Filter metadataFilter, Collection<String> segmentIds) {
+        if (segmentIds.isEmpty()) {
+            return;
+        }
+        org.neo4j.cypherdsl.core.Node sourceNode = Cypher.node(this.graphName).named("v1");
+        org.neo4j.cypherdsl.core.Node targetNode = Cypher.node(this.graphName).named("v2");
+        org.neo4j.cypherdsl.core.Node edgeNode = Cypher.node(this.graphName).named("e");
+        org.neo4j.cypherdsl.core.Relationship edge = sourceNode.relationshipTo(targetNode).named("e");
+        org.neo4j.cypherdsl.core.Node vertexNode = Cypher.node(this.graphName).named("v");
+        Condition edgeCondition = edge.property("text_segment_id").contains(Cypher.parameter("segment_id"));
+        Condition vertexCondition = vertexNode.property("text_segment_id").contains(Cypher.parameter("segment_id"));
+        if (null != metadataFilter) {
+            edgeCondition = edgeCondition.and(new AdiNeo4jFilterMapper(edgeNode).getCondition(metadataFilter));
+            vertexCondition = vertexCondition.and(new AdiNeo4jFilterMapper(vertexNode).getCondition(metadataFilter));
+        }
+        String edgeQuery = Renderer.getDefaultRenderer().render(match(edge).where(edgeCondition).returning(sourceNode, targetNode, edge).build());
+        String vertexQuery = Renderer.getDefaultRenderer().render(match(vertexNode).where(vertexCondition).returning(vertexNode).build());
+        log.info("detachSegments,segments:{},edgeQuery:{},vertexQuery:{}", segmentIds.size(), edgeQuery, vertexQuery);
+        try (Session session = driver.session()) {
+            session.executeWrite(tx -> {
+                for (String segmentId : segmentIds) {
+                    Map<String, Object> args = Map.of("segment_id", segmentId);
+                    for (Triple<GraphVertex, GraphEdge, GraphVertex> triple : getEdgesFromResultSet(tx.run(edgeQuery, args).list())) {
+                        GraphEdge graphEdge = triple.getMiddle();
+                        String remaining = GraphStoreUtil.removeSegmentIds(graphEdge.getTextSegmentId(), segmentIds);
+                        String query = remaining.isEmpty()
+                                ? "match ()-[e]->() where elementId(e) = $id delete e"
+                                : "match ()-[e]->() where elementId(e) = $id set e.text_segment_id = $text_segment_id";
+                        tx.run(query, Map.of("id", graphEdge.getId(), "text_segment_id", remaining)).consume();
+                    }
+                    for (GraphVertex vertex : getVerticesFromResultSet(tx.run(vertexQuery, args).list())) {
+                        String remaining = GraphStoreUtil.removeSegmentIds(vertex.getTextSegmentId(), segmentIds);
+                        String query = remaining.isEmpty()
+                                ? "match (v) where elementId(v) = $id detach delete v"
+                                : "match (v) where elementId(v) = $id set v.text_segment_id = $text_segment_id";
+                        tx.run(query, Map.of("id", vertex.getId(), "text_segment_id", remaining)).consume();
+                    }
+                }
+                return null;
+            });
+        }
+    }
+
     /**
      * 将结果集转换为边与顶点三元组列表。
      *
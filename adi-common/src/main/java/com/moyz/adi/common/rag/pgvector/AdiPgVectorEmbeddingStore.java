@@ -0,0 +1,713 @@
+package com.moyz.adi.common.rag.pgvector;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.moyz.adi.common.config.AdiProperties;
+import com.moyz.adi.common.util.JsonUtil;
+import com.pgvector.PGvector;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 对 PgVectorEmbeddingStore 的包装，按过滤条件的选择度选择检索计划。
+ * <p>
+ * 向量检索几乎总是带有 kb_uuid、conv_id、search_uuid 等过滤条件，
+ * 直接走 ANN 索引再后置过滤时，命中比例低的过滤条件会把结果过滤殆尽，不走索引又会全表计算距离。
+ * 因此检索前先估算过滤条件命中的行数：
+ * <ul>
+ *     <li>命中行数较少时，先按元数据索引取出候选行，再精确计算距离排序（结果精确）</li>
+ *     <li>命中行数较多时，走向量索引并按命中比例放大 ef_search / probes，减少后置过滤造成的结果缺失；
+ *     pgvector 0.8 及以上同时开启迭代扫描（iterative_scan），过滤后不足 LIMIT 条时索引继续扫描</li>
+ *     <li>pgvector 低于 0.8 且命中比例低到放大后的搜索宽度仍超过上限时，近似检索会漏结果，改用精确检索</li>
+ * </ul>
+ * 写入、删除以及无法转换为 SQL 的过滤条件仍交给原始存储处理。
+ */
+@Slf4j
+public class AdiPgVectorEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    /**
+     * 检索耗时指标名称，以 table、plan（exact/ann/delegate）标签区分。
+     */
+    public static final String METRIC_SEARCH = "adi.pgvector.search";
+
+    /**
+     * 检索计划：先过滤再精确计算距离。
+     */
+    private static final String PLAN_EXACT = "exact";
+
+    /**
+     * 检索计划：向量索引近似检索后过滤。
+     */
+    private static final String PLAN_ANN = "ann";
+
+    /**
+     * 检索计划：交给原始存储处理。
+     */
+    private static final String PLAN_DELEGATE = "delegate";
+
+    /**
+     * 原始 PgVectorEmbeddingStore。
+     */
+    protected final EmbeddingStore<TextSegment> delegate;
+
+    /**
+     * 数据源，检索时单独取连接，以便用 SET LOCAL 设置检索参数而不影响外部事务。
+     */
+    protected final DataSource dataSource;
+
+    /**
+     * 表名。
+     */
+    protected final String tableName;
+
+    /**
+     * 索引配置。
+     */
+    private final AdiProperties.PgVectorIndex config;
+
+    /**
+     * 向量索引类型。
+     */
+    private final String indexType;
+
+    /**
+     * 指标注册表。
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 过滤条件命中行数预估值缓存（过滤 SQL + 参数 -> 行数）。
+     */
+    private final Cache<String, Long> estimates;
+
+    /**
+     * pgvector 是否支持迭代索引扫描（0.8 及以上），首次近似检索前探测，探测失败时下次重试。
+     */
+    private volatile Boolean iterativeScan;
+
+    /**
+     * 构建包装存储。
+     *
+     * @param delegate      原始存储
+     * @param dataSource    数据源
+     * @param tableName     表名
+     * @param config        索引配置
+     * @param indexType     向量索引类型
+     * @param meterRegistry 指标注册表
+     */
+    public AdiPgVectorEmbeddingStore(EmbeddingStore<TextSegment> delegate, DataSource dataSource, String tableName,
+                                     AdiProperties.PgVectorIndex config, String indexType, MeterRegistry meterRegistry) {
+        PgVectorIndexManager.checkIdentifier(tableName);
+        this.delegate = delegate;
+        this.dataSource = dataSource;
+        this.tableName = tableName;
+        this.config = config;
+        this.indexType = indexType;
+        this.meterRegistry = meterRegistry;
+        this.estimates = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(Duration.ofSeconds(config.getEstimateCacheSeconds()))
+                .build();
+    }
+
+    /**
+     * 执行向量检索，按过滤条件的预估命中行数选择检索计划。
+     *
+     * @param request 检索请求
+     * @return 检索结果
+     */
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        List<Object> params = new ArrayList<>();
+        String where = null == request.filter() ? "TRUE" : toSql(request.filter(), params);
+        if (null == where) {
+            return timer(PLAN_DELEGATE).record(() -> delegate.search(request));
+        }
+        SearchPlan plan = plan(request.filter(), where, params);
+        return timer(plan.name()).record(() -> {
+            try {
+                return PLAN_EXACT.equals(plan.name()) ? exactSearch(request, where, params) : annSearch(request, where, params, plan.selectivity());
+            } catch (SQLException e) {
+                log.error("pgvector search error,table:{},plan:{}", tableName, plan.name(), e);
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * 用同一过滤条件一次检索多个查询向量，各查询分别取 TopN，一条 SQL 完成（unnest 查询向量后 LATERAL 检索）。
+     * 过滤条件无法转换为 SQL 时逐个交给原始存储检索。
+     *
+     * @param queryEmbeddings 查询向量
+     * @param filter          过滤条件，可为 null
+     * @param maxResults      每个查询的返回条数
+     * @param minScore        最低分
+     * @return 与查询向量顺序对应的检索结果
+     */
+    public List<EmbeddingSearchResult<TextSegment>> searchAll(List<Embedding> queryEmbeddings, Filter filter, int maxResults, double minScore) {
+        List<Object> params = new ArrayList<>();
+        String where = null == filter ? "TRUE" : toSql(filter, params);
+        if (queryEmbeddings.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (null == where) {
+            return timer(PLAN_DELEGATE).record(() -> queryEmbeddings.stream()
+                    .map(queryEmbedding -> delegate.search(EmbeddingSearchRequest.builder()
+                            .queryEmbedding(queryEmbedding)
+                            .filter(filter)
+                            .maxResults(maxResults)
+                            .minScore(minScore)
+                            .build()))
+                    .toList());
+        }
+        SearchPlan plan = plan(filter, where, params);
+        boolean exact = PLAN_EXACT.equals(plan.name());
+        String columns = "SELECT q.idx, c.embedding_id, c.embedding::text AS embedding_text, c.text, c.metadata::text AS metadata_text, c.distance "
+                + "FROM unnest(?::text[]) WITH ORDINALITY AS q(vec, idx) CROSS JOIN LATERAL ";
+        String sql = exact
+                ? "WITH candidates AS MATERIALIZED (SELECT embedding_id, embedding, text, metadata FROM " + tableName + " WHERE " + where + ") "
+                + columns + "(SELECT embedding_id, embedding, text, metadata, embedding <=> q.vec::vector AS distance FROM candidates ORDER BY distance LIMIT ?) AS c "
+                + "ORDER BY q.idx, c.distance"
+                : columns + "(SELECT embedding_id, embedding, text, metadata, embedding <=> q.vec::vector AS distance FROM " + tableName + " WHERE " + where
+                + " ORDER BY distance LIMIT ?) AS c ORDER BY q.idx, c.distance";
+        List<String> settings = exact ? List.of() : annSettings(maxResults, plan.selectivity());
+        return timer(plan.name()).record(() -> {
+            try (Connection connection = dataSource.getConnection()) {
+                return withSettings(connection, settings, () -> {
+                    List<List<EmbeddingMatch<TextSegment>>> matches = new ArrayList<>();
+                    for (int i = 0; i < queryEmbeddings.size(); i++) {
+                        matches.add(new ArrayList<>());
+                    }
+                    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                        int index = 1;
+                        if (exact) {
+                            index = bind(statement, index, params);
+                        }
+                        String[] vectors = queryEmbeddings.stream().map(item -> Arrays.toString(item.vector())).toArray(String[]::new);
+                        statement.setArray(index++, connection.createArrayOf("text", vectors));
+                        if (!exact) {
+                            index = bind(statement, index, params);
+                        }
+                        statement.setInt(index, maxResults);
+                        try (ResultSet rs = statement.executeQuery()) {
+                            while (rs.next()) {
+                                EmbeddingMatch<TextSegment> match = toMatch(rs);
+                                if (match.score() >= minScore) {
+                                    matches.get(rs.getInt("idx") - 1).add(match);
+                                }
+                            }
+                        }
+                    }
+                    return matches.stream().map(EmbeddingSearchResult::new).toList();
+                });
+            } catch (SQLException e) {
+                log.error("pgvector batch search error,table:{},plan:{},queries:{}", tableName, plan.name(), queryEmbeddings.size(), e);
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * 按过滤条件的预估命中行数选择检索计划。
+     *
+     * @param filter 过滤条件，可为 null
+     * @param where  过滤 SQL
+     * @param params 过滤参数
+     * @return 检索计划
+     */
+    private SearchPlan plan(Filter filter, String where, List<Object> params) {
+        if (PgVectorIndexManager.TYPE_NONE.equals(indexType)) {
+            return new SearchPlan(PLAN_EXACT, 1);
+        }
+        if (null == filter) {
+            return new SearchPlan(PLAN_ANN, 1);
+        }
+        long rows = estimateRows(where, params);
+        if (rows <= config.getExactSearchMaxRows()) {
+            return new SearchPlan(PLAN_EXACT, 1);
+        }
+        double selectivity = Math.min(1, (double) rows / Math.max(rows, scopeRows(filter)));
+        if (!supportsIterativeScan() && config.getSearchBreadth() / Math.max(selectivity, 1e-6) > config.getMaxSearchBreadth()) {
+            return new SearchPlan(PLAN_EXACT, selectivity);
+        }
+        return new SearchPlan(PLAN_ANN, selectivity);
+    }
+
+    /**
+     * 先按过滤条件取出候选行，再精确计算距离排序。
+     * <p>
+     * MATERIALIZED 阻止优化器把过滤条件下推后改走向量索引。
+     *
+     * @param request 检索请求
+     * @param where   过滤 SQL
+     * @param params  过滤参数
+     * @return 检索结果
+     * @throws SQLException 数据库异常
+     */
+    private EmbeddingSearchResult<TextSegment> exactSearch(EmbeddingSearchRequest request, String where, List<Object> params) throws SQLException {
+        String sql = "WITH candidates AS MATERIALIZED (SELECT embedding_id, embedding, text, metadata FROM " + tableName + " WHERE " + where + ") "
+                + "SELECT embedding_id, embedding::text AS embedding_text, text, metadata::text AS metadata_text, embedding <=> ?::vector AS distance "
+                + "FROM candidates ORDER BY distance LIMIT ?";
+        try (Connection connection = dataSource.getConnection()) {
+            return query(connection, sql, params, request, true);
+        }
+    }
+
+    /**
+     * 走向量索引近似检索，过滤条件命中比例越低，搜索宽度放大越多。
+     * 支持迭代扫描时开启 iterative_scan；IVFFlat 只支持 relaxed_order，结果在外层按距离重新排序。
+     *
+     * @param request     检索请求
+     * @param where       过滤 SQL
+     * @param params      过滤参数
+     * @param selectivity 过滤条件命中比例
+     * @return 检索结果
+     * @throws SQLException 数据库异常
+     */
+    private EmbeddingSearchResult<TextSegment> annSearch(EmbeddingSearchRequest request, String where, List<Object> params, double selectivity) throws SQLException {
+        String sql = "SELECT * FROM (SELECT embedding_id, embedding::text AS embedding_text, text, metadata::text AS metadata_text, embedding <=> ?::vector AS distance "
+                + "FROM " + tableName + " WHERE " + where + " ORDER BY distance LIMIT ?) AS ann ORDER BY distance";
+        try (Connection connection = dataSource.getConnection()) {
+            return withSettings(connection, annSettings(request.maxResults(), selectivity), () -> query(connection, sql, params, request, false));
+        }
+    }
+
+    /**
+     * 近似检索的会话参数：按命中比例放大的 ef_search / probes，支持时开启迭代扫描。
+     *
+     * @param maxResults  返回条数
+     * @param selectivity 过滤条件命中比例
+     * @return SET LOCAL 参数列表
+     */
+    private List<String> annSettings(int maxResults, double selectivity) {
+        int breadth = (int) Math.min(config.getMaxSearchBreadth(), Math.ceil(config.getSearchBreadth() / Math.max(selectivity, 1e-6)));
+        List<String> settings = new ArrayList<>();
+        boolean iterative = supportsIterativeScan();
+        if (PgVectorIndexManager.TYPE_HNSW.equals(indexType)) {
+            // hnsw 最多返回 ef_search 条结果
+            breadth = Math.max(breadth, maxResults);
+            settings.add("hnsw.ef_search = " + Math.max(1, breadth));
+            if (iterative) {
+                settings.add("hnsw.iterative_scan = strict_order");
+            }
+        } else {
+            breadth = Math.min(breadth, config.getIvfflatLists());
+            settings.add("ivfflat.probes = " + Math.max(1, breadth));
+            if (iterative) {
+                settings.add("ivfflat.iterative_scan = relaxed_order");
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * 在事务内用 SET LOCAL 设置检索参数后执行查询，参数随事务结束失效；无参数时直接执行。
+     *
+     * @param connection 数据库连接
+     * @param settings   SET LOCAL 参数列表
+     * @param query      查询
+     * @param <T>        结果类型
+     * @return 查询结果
+     * @throws SQLException 数据库异常
+     */
+    private static <T> T withSettings(Connection connection, List<String> settings, SqlQuery<T> query) throws SQLException {
+        if (settings.isEmpty()) {
+            return query.execute();
+        }
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            try (Statement statement = connection.createStatement()) {
+                for (String setting : settings) {
+                    statement.execute("SET LOCAL " + setting);
+                }
+            }
+            T result = query.execute();
+            connection.commit();
+            return result;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * 执行检索语句并转换为检索结果，低于最低分的结果被过滤。
+     *
+     * @param connection  数据库连接
+     * @param sql         检索语句，最后一个参数为返回条数
+     * @param params      过滤参数
+     * @param request     检索请求
+     * @param filterFirst 过滤参数是否位于查询向量之前（exact 计划中过滤条件在 CTE 内）
+     * @return 检索结果
+     * @throws SQLException 数据库异常
+     */
+    private EmbeddingSearchResult<TextSegment> query(Connection connection, String sql, List<Object> params, EmbeddingSearchRequest request, boolean filterFirst) throws SQLException {
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            if (filterFirst) {
+                index = bind(statement, index, params);
+            }
+            statement.setString(index++, Arrays.toString(request.queryEmbedding().vector()));
+            if (!filterFirst) {
+                index = bind(statement, index, params);
+            }
+            statement.setInt(index, request.maxResults());
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    EmbeddingMatch<TextSegment> match = toMatch(rs);
+                    if (match.score() >= request.minScore()) {
+                        matches.add(match);
+                    }
+                }
+            }
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    /**
+     * 把检索结果的当前行转换为匹配项，分数由余弦距离换算。
+     *
+     * @param rs 检索结果
+     * @return 匹配项
+     * @throws SQLException 数据库异常
+     */
+    private static EmbeddingMatch<TextSegment> toMatch(ResultSet rs) throws SQLException {
+        double score = (2 - rs.getDouble("distance")) / 2;
+        Embedding embedding = new Embedding(new PGvector(rs.getString("embedding_text")).toArray());
+        String text = rs.getString("text");
+        TextSegment segment = null;
+        if (StringUtils.isNotBlank(text)) {
+            String metadata = rs.getString("metadata_text");
+            segment = TextSegment.from(text, StringUtils.isBlank(metadata) ? new Metadata() : Metadata.from(JsonUtil.toMap(metadata)));
+        }
+        return new EmbeddingMatch<>(score, rs.getString("embedding_id"), embedding, segment);
+    }
+
+    /**
+     * 绑定过滤参数。
+     *
+     * @param statement 语句
+     * @param index     起始参数位置
+     * @param params    过滤参数
+     * @return 下一个参数位置
+     * @throws SQLException 数据库异常
+     */
+    protected static int bind(PreparedStatement statement, int index, List<Object> params) throws SQLException {
+        for (Object param : params) {
+            statement.setString(index++, String.valueOf(param));
+        }
+        return index;
+    }
+
+    /**
+     * 用 EXPLAIN 估算过滤条件命中的行数，结果短暂缓存；估算失败时返回 0 且不缓存。
+     *
+     * @param where  过滤 SQL
+     * @param params 过滤参数
+     * @return 预估行数
+     */
+    protected long estimateRows(String where, List<Object> params) {
+        String sql = "EXPLAIN (FORMAT JSON) SELECT 1 FROM " + tableName + " WHERE " + where;
+        String key = sql + params;
+        Long cached = estimates.getIfPresent(key);
+        if (null != cached) {
+            return cached;
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            bind(statement, 1, params);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                JsonNode plan = JsonUtil.toJsonNode(rs.getString(1));
+                long rows = plan.get(0).get("Plan").get("Plan Rows").asLong();
+                estimates.put(key, rows);
+                return rows;
+            }
+        } catch (SQLException e) {
+            log.warn("estimate rows error,table:{},where:{}", tableName, where, e);
+            return 0L;
+        }
+    }
+
+    /**
+     * 已安装的 pgvector 是否支持迭代索引扫描（0.8 及以上）。
+     *
+     * @return 是否支持
+     */
+    private boolean supportsIterativeScan() {
+        Boolean supported = iterativeScan;
+        if (null != supported) {
+            return supported;
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT extversion FROM pg_extension WHERE extname = 'vector'");
+             ResultSet rs = statement.executeQuery()) {
+            String version = rs.next() ? rs.getString(1) : "";
+            String[] parts = StringUtils.split(version, '.');
+            supported = parts.length >= 2
+                    && (NumberUtils.toInt(parts[0]) > 0 || NumberUtils.toInt(parts[1]) >= 8);
+            iterativeScan = supported;
+            log.info("pgvector version:{},iterative scan:{}", version, supported);
+            return supported;
+        } catch (SQLException e) {
+            log.warn("read pgvector version error,table:{}", tableName, e);
+            return false;
+        }
+    }
+
+    /**
+     * 检索范围内的总行数，用于计算过滤条件的命中比例。
+     *
+     * @param filter 过滤条件
+     * @return 总行数
+     */
+    protected long scopeRows(Filter filter) {
+        return totalRows();
+    }
+
+    /**
+     * 从统计信息读取表（含各分区）的总行数，表尚未分析时返回 0，读取失败时不缓存。
+     *
+     * @return 总行数
+     */
+    private long totalRows() {
+        Long cached = estimates.getIfPresent(tableName);
+        if (null != cached) {
+            return cached;
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT COALESCE(sum(GREATEST(reltuples, 0)), 0)::bigint FROM pg_class "
+                     + "WHERE oid = ?::regclass OR oid IN (SELECT inhrelid FROM pg_inherits WHERE inhparent = ?::regclass)")) {
+            statement.setString(1, tableName);
+            statement.setString(2, tableName);
+            try (ResultSet rs = statement.executeQuery()) {
+                long rows = rs.next() ? rs.getLong(1) : 0L;
+                estimates.put(tableName, rows);
+                return rows;
+            }
+        } catch (SQLException e) {
+            log.warn("read total rows error,table:{}", tableName, e);
+            return 0L;
+        }
+    }
+
+    /**
+     * 把过滤条件转换为 SQL，仅支持等值、IN 与 AND 组合，其他条件返回 null。
+     *
+     * @param filter 过滤条件
+     * @param params 收集绑定参数
+     * @return 过滤 SQL
+     */
+    protected String toSql(Filter filter, List<Object> params) {
+        if (filter instanceof IsEqualTo isEqualTo && PgVectorIndexManager.isIdentifier(isEqualTo.key())) {
+            params.add(isEqualTo.comparisonValue());
+            return column(isEqualTo.key()) + " = ?";
+        } else if (filter instanceof IsIn isIn && PgVectorIndexManager.isIdentifier(isIn.key()) && !isIn.comparisonValues().isEmpty()) {
+            params.addAll(isIn.comparisonValues());
+            return column(isIn.key()) + " IN (" + isIn.comparisonValues().stream().map(item -> "?").collect(Collectors.joining(",")) + ")";
+        } else if (filter instanceof And and) {
+            String left = toSql(and.left(), params);
+            String right = null == left ? null : toSql(and.right(), params);
+            return null == right ? null : "(" + left + " AND " + right + ")";
+        }
+        return null;
+    }
+
+    /**
+     * 元数据键对应的 SQL 表达式。
+     *
+     * @param key 元数据键
+     * @return SQL 表达式
+     */
+    protected String column(String key) {
+        return "(metadata ->> '" + key + "')";
+    }
+
+    /**
+     * 获取检索耗时计时器。
+     *
+     * @param plan 检索计划
+     * @return 计时器
+     */
+    protected Timer timer(String plan) {
+        return Timer.builder(METRIC_SEARCH)
+                .tag("table", tableName)
+                .tag("plan", plan)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 获取原始 PgVectorEmbeddingStore。
+     *
+     * @return 原始存储
+     */
+    public EmbeddingStore<TextSegment> getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * 写入向量并返回 ID。
+     *
+     * @param embedding 向量
+     * @return ID
+     */
+    @Override
+    public String add(Embedding embedding) {
+        return delegate.add(embedding);
+    }
+
+    /**
+     * 写入指定 ID 的向量。
+     *
+     * @param id        ID
+     * @param embedding 向量
+     */
+    @Override
+    public void add(String id, Embedding embedding) {
+        delegate.add(id, embedding);
+    }
+
+    /**
+     * 写入向量与分段。
+     *
+     * @param embedding   向量
+     * @param textSegment 分段
+     * @return ID
+     */
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        return delegate.add(embedding, textSegment);
+    }
+
+    /**
+     * 批量写入向量。
+     *
+     * @param embeddings 向量列表
+     * @return ID 列表
+     */
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return delegate.addAll(embeddings);
+    }
+
+    /**
+     * 批量写入向量与分段。
+     *
+     * @param embeddings 向量列表
+     * @param embedded   分段列表
+     * @return ID 列表
+     */
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        return delegate.addAll(embeddings, embedded);
+    }
+
+    /**
+     * 批量写入指定 ID 的向量与分段。
+     *
+     * @param ids        ID 列表
+     * @param embeddings 向量列表
+     * @param embedded   分段列表
+     */
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        delegate.addAll(ids, embeddings, embedded);
+    }
+
+    /**
+     * 根据过滤条件删除向量。
+     *
+     * @param filter 过滤条件
+     */
+    @Override
+    public void removeAll(Filter filter) {
+        delegate.removeAll(filter);
+    }
+
+    /**
+     * 删除指定 ID 的向量。
+     *
+     * @param id ID
+     */
+    @Override
+    public void remove(String id) {
+        delegate.remove(id);
+    }
+
+    /**
+     * 删除全部向量。
+     */
+    @Override
+    public void removeAll() {
+        delegate.removeAll();
+    }
+
+    /**
+     * 批量删除指定 ID 的向量。
+     *
+     * @param ids ID 集合
+     */
+    @Override
+    public void removeAll(Collection<String> ids) {
+        delegate.removeAll(ids);
+    }
+
+    /**
+     * 检索计划。
+     *
+     * @param name        计划名称（exact/ann）
+     * @param selectivity 过滤条件命中比例
+     */
+    private record SearchPlan(String name, double selectivity) {
+    }
+
+    /**
+     * 可抛出数据库异常的查询。
+     *
+     * @param <T> 结果类型
+     */
+    @FunctionalInterface
+    private interface SqlQuery<T> {
+
+        /**
+         * 执行查询。
+         *
+         * @return 查询结果
+         * @throws SQLException 数据库异常
+         */
+        T execute() throws SQLException;
+    }
+}
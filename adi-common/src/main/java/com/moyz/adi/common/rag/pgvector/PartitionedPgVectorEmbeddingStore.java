@@ -0,0 +1,237 @@
+package com.moyz.adi.common.rag.pgvector;
+
+import com.moyz.adi.common.config.AdiProperties;
+import com.moyz.adi.common.cosntant.AdiConstant;
+import com.moyz.adi.common.util.JsonUtil;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * 按 kb_uuid 分区的知识库向量库。
+ * <p>
+ * 分区表的主键必须包含分区键，原始存储按 embedding_id 冲突更新的写法无法用于分区表，因此写入由此类完成：
+ * 写入前确保知识库分区存在，kb_uuid 取自文本段元数据。
+ * kb_uuid 过滤条件直接作用于分区键，检索只扫描相关分区；按知识库删除时清空整个分区。
+ */
+@Slf4j
+public class PartitionedPgVectorEmbeddingStore extends AdiPgVectorEmbeddingStore {
+
+    /**
+     * 分区管理器。
+     */
+    private final PgVectorPartitionManager partitionManager;
+
+    /**
+     * 构建分区向量库。
+     *
+     * @param delegate         原始存储
+     * @param dataSource       数据源
+     * @param tableName        表名
+     * @param config           索引配置
+     * @param indexType        向量索引类型
+     * @param meterRegistry    指标注册表
+     * @param partitionManager 分区管理器
+     */
+    public PartitionedPgVectorEmbeddingStore(EmbeddingStore<TextSegment> delegate, DataSource dataSource, String tableName,
+                                             AdiProperties.PgVectorIndex config, String indexType, MeterRegistry meterRegistry,
+                                             PgVectorPartitionManager partitionManager) {
+        super(delegate, dataSource, tableName, config, indexType, meterRegistry);
+        this.partitionManager = partitionManager;
+    }
+
+    /**
+     * 写入向量并返回 ID。
+     *
+     * @param embedding 向量
+     * @return ID
+     */
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), null);
+        return id;
+    }
+
+    /**
+     * 写入指定 ID 的向量。
+     *
+     * @param id        ID
+     * @param embedding 向量
+     */
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    /**
+     * 写入向量与分段。
+     *
+     * @param embedding   向量
+     * @param textSegment 分段
+     * @return ID
+     */
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    /**
+     * 批量写入向量。
+     *
+     * @param embeddings 向量列表
+     * @return ID 列表
+     */
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    /**
+     * 批量写入向量与分段。
+     *
+     * @param embeddings 向量列表
+     * @param embedded   分段列表
+     * @return ID 列表
+     */
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, embedded);
+        return ids;
+    }
+
+    /**
+     * 批量写入指定 ID 的向量与分段，ID 已存在时覆盖。
+     *
+     * @param ids        ID 列表
+     * @param embeddings 向量列表
+     * @param embedded   分段列表，可为 null
+     */
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<String> kbUuids = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            TextSegment segment = null == embedded ? null : embedded.get(i);
+            String kbUuid = null == segment ? null : segment.metadata().getString(AdiConstant.MetadataKey.KB_UUID);
+            kbUuids.add(null == kbUuid ? "" : kbUuid);
+        }
+        new LinkedHashSet<>(kbUuids).forEach(kbUuid -> partitionManager.ensurePartition(tableName, kbUuid));
+        String sql = "INSERT INTO " + tableName + " (embedding_id, kb_uuid, embedding, text, metadata) VALUES (?::uuid, ?, ?::vector, ?, ?::json) "
+                + "ON CONFLICT (kb_uuid, embedding_id) DO UPDATE SET embedding = EXCLUDED.embedding, text = EXCLUDED.text, metadata = EXCLUDED.metadata";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < ids.size(); i++) {
+                TextSegment segment = null == embedded ? null : embedded.get(i);
+                statement.setString(1, ids.get(i));
+                statement.setString(2, kbUuids.get(i));
+                statement.setString(3, Arrays.toString(embeddings.get(i).vector()));
+                statement.setString(4, null == segment ? null : segment.text());
+                statement.setString(5, null == segment ? null : JsonUtil.toJson(segment.metadata().toMap()));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } catch (SQLException e) {
+            log.error("add embeddings error,table:{}", tableName, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 清空知识库对应的分区，不存在独立分区时不做任何处理。
+     *
+     * @param kbUuid 知识库 UUID
+     * @return 是否清空了分区
+     */
+    public boolean truncatePartition(String kbUuid) {
+        return partitionManager.truncatePartition(tableName, kbUuid);
+    }
+
+    /**
+     * 根据过滤条件删除向量，仅按单个知识库删除时清空分区。
+     *
+     * @param filter 过滤条件
+     */
+    @Override
+    public void removeAll(Filter filter) {
+        if (filter instanceof IsEqualTo isEqualTo
+                && AdiConstant.MetadataKey.KB_UUID.equals(isEqualTo.key())
+                && partitionManager.truncatePartition(tableName, String.valueOf(isEqualTo.comparisonValue()))) {
+            return;
+        }
+        super.removeAll(filter);
+    }
+
+    /**
+     * kb_uuid 直接使用分区键列，其他键仍取自元数据。
+     *
+     * @param key 元数据键
+     * @return SQL 表达式
+     */
+    @Override
+    protected String column(String key) {
+        return AdiConstant.MetadataKey.KB_UUID.equals(key) ? "kb_uuid" : super.column(key);
+    }
+
+    /**
+     * 检索范围为过滤条件涉及的知识库分区，用分区内的行数计算命中比例，
+     * 仅按知识库过滤时命中比例为 1，不再放大搜索宽度。
+     *
+     * @param filter 过滤条件
+     * @return 总行数
+     */
+    @Override
+    protected long scopeRows(Filter filter) {
+        Set<Object> kbUuids = new LinkedHashSet<>();
+        collectKbUuids(filter, kbUuids);
+        if (kbUuids.isEmpty()) {
+            return super.scopeRows(filter);
+        }
+        String where = "kb_uuid IN (" + kbUuids.stream().map(item -> "?").collect(Collectors.joining(",")) + ")";
+        return estimateRows(where, new ArrayList<>(kbUuids));
+    }
+
+    /**
+     * 收集过滤条件中 AND 连接的 kb_uuid 取值。
+     *
+     * @param filter  过滤条件
+     * @param kbUuids 收集结果
+     * @return 无
+     */
+    private static void collectKbUuids(Filter filter, Collection<Object> kbUuids) {
+        if (filter instanceof IsEqualTo isEqualTo && AdiConstant.MetadataKey.KB_UUID.equals(isEqualTo.key())) {
+            kbUuids.add(isEqualTo.comparisonValue());
+        } else if (filter instanceof IsIn isIn && AdiConstant.MetadataKey.KB_UUID.equals(isIn.key())) {
+            kbUuids.addAll(isIn.comparisonValues());
+        } else if (filter instanceof And and) {
+            collectKbUuids(and.left(), kbUuids);
+            collectKbUuids(and.right(), kbUuids);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.moyz.adi.common.rag.pgvector;
+
+import com.moyz.adi.common.config.AdiProperties;
+import com.moyz.adi.common.util.HashUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * pgvector 向量表索引管理。
+ * <p>
+ * 向量表由 PgVectorEmbeddingStore 自动建表，但不会建立向量索引与元数据索引，数据量增大后检索退化为全表扫描。
+ * 此处在后台以 CREATE INDEX CONCURRENTLY 补建：
+ * <ul>
+ *     <li>向量列的 HNSW 或 IVFFlat 索引（余弦距离）</li>
+ *     <li>常用过滤键（kb_uuid、conv_id、search_uuid 等）的 (metadata ->> 'key') 表达式索引</li>
+ * </ul>
+ * 并发建索引失败会留下无效索引，再次启动时先删除无效索引后重建。
+ */
+@Slf4j
+public class PgVectorIndexManager {
+
+    /**
+     * 向量索引类型：HNSW。
+     */
+    public static final String TYPE_HNSW = "hnsw";
+
+    /**
+     * 向量索引类型：IVFFlat。
+     */
+    public static final String TYPE_IVFFLAT = "ivfflat";
+
+    /**
+     * 向量索引类型：不建向量索引。
+     */
+    public static final String TYPE_NONE = "none";
+
+    /**
+     * pgvector 可建索引的 vector 列最大维度。
+     */
+    private static final int MAX_INDEXABLE_DIMENSION = 2000;
+
+    /**
+     * PostgreSQL 标识符最大长度。
+     */
+    private static final int MAX_IDENTIFIER_LENGTH = 63;
+
+    /**
+     * 合法的表名、元数据键。
+     */
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z0-9_]+");
+
+    /**
+     * JDBC 操作模板。
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 索引配置。
+     */
+    private final AdiProperties.PgVectorIndex config;
+
+    /**
+     * 执行建索引任务的线程池。
+     */
+    private final AsyncTaskExecutor executor;
+
+    /**
+     * 构建索引管理器。
+     *
+     * @param jdbcTemplate JDBC 操作模板
+     * @param config       索引配置
+     * @param executor     执行建索引任务的线程池
+     */
+    public PgVectorIndexManager(JdbcTemplate jdbcTemplate, AdiProperties.PgVectorIndex config, AsyncTaskExecutor executor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.config = config;
+        this.executor = executor;
+    }
+
+    /**
+     * 在后台为向量表补建向量索引与元数据索引，不阻塞应用启动。
+     *
+     * @param tableName    表名
+     * @param dimension    向量维度
+     * @param metadataKeys 需要建索引的元数据键
+     * @return 无
+     */
+    public void ensureIndexesAsync(String tableName, int dimension, List<String> metadataKeys) {
+        executor.execute(() -> {
+            try {
+                ensureIndexes(tableName, dimension, metadataKeys);
+            } catch (Exception e) {
+                log.error("ensure pgvector indexes error,table:{}", tableName, e);
+            }
+        });
+    }
+
+    /**
+     * 为向量表补建向量索引与元数据索引。
+     *
+     * @param tableName    表名
+     * @param dimension    向量维度
+     * @param metadataKeys 需要建索引的元数据键
+     * @return 无
+     */
+    public void ensureIndexes(String tableName, int dimension, List<String> metadataKeys) {
+        checkIdentifier(tableName);
+        // 分区表不支持 CONCURRENTLY，父表上的索引会自动建到每个分区（包括之后新建的分区）
+        String create = isPartitioned(tableName) ? "CREATE INDEX IF NOT EXISTS " : "CREATE INDEX CONCURRENTLY IF NOT EXISTS ";
+        for (String key : metadataKeys) {
+            checkIdentifier(key);
+            String indexName = indexName(tableName, key);
+            createIndex(tableName, indexName, create + indexName + " ON " + tableName + " ((metadata ->> '" + key + "'))");
+        }
+        String type = getIndexType();
+        for (String other : List.of(TYPE_HNSW, TYPE_IVFFLAT)) {
+            if (!other.equals(type)) {
+                dropIndex(tableName, indexName(tableName, "embedding_" + other));
+            }
+        }
+        if (TYPE_NONE.equals(type)) {
+            return;
+        }
+        if (dimension > MAX_INDEXABLE_DIMENSION) {
+            log.warn("pgvector can not index vectors with more than {} dimensions,table:{},dimension:{}", MAX_INDEXABLE_DIMENSION, tableName, dimension);
+            return;
+        }
+        String indexName = indexName(tableName, "embedding_" + type);
+        String with = TYPE_HNSW.equals(type)
+                ? "m = " + config.getHnswM() + ", ef_construction = " + config.getHnswEfConstruction()
+                : "lists = " + config.getIvfflatLists();
+        createIndex(tableName, indexName, create + indexName + " ON " + tableName + " USING " + type + " (embedding vector_cosine_ops) WITH (" + with + ")");
+    }
+
+    /**
+     * 当前配置的向量索引类型，无法识别时按 none 处理。
+     *
+     * @return 索引类型
+     */
+    public String getIndexType() {
+        String type = config.getType();
+        if (TYPE_HNSW.equalsIgnoreCase(type)) {
+            return TYPE_HNSW;
+        } else if (TYPE_IVFFLAT.equalsIgnoreCase(type)) {
+            return TYPE_IVFFLAT;
+        }
+        return TYPE_NONE;
+    }
+
+    /**
+     * 建索引，已存在但无效（之前并发建索引失败）的索引先删除再建。
+     *
+     * @param tableName 表名
+     * @param indexName 索引名
+     * @param ddl       建索引语句
+     * @return 无
+     */
+    private void createIndex(String tableName, String indexName, String ddl) {
+        List<Boolean> valid = jdbcTemplate.queryForList("SELECT i.indisvalid FROM pg_class c JOIN pg_index i ON i.indexrelid = c.oid WHERE c.relname = ?", Boolean.class, indexName);
+        if (!valid.isEmpty() && Boolean.TRUE.equals(valid.get(0))) {
+            return;
+        }
+        if (!valid.isEmpty()) {
+            log.warn("drop invalid pgvector index:{}", indexName);
+            dropIndex(tableName, indexName);
+        }
+        long start = System.currentTimeMillis();
+        log.info("create pgvector index start:{}", ddl);
+        jdbcTemplate.execute(ddl);
+        log.info("create pgvector index done:{},cost:{}ms", indexName, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 删除索引（如存在）。
+     *
+     * @param tableName 表名
+     * @param indexName 索引名
+     * @return 无
+     */
+    private void dropIndex(String tableName, String indexName) {
+        jdbcTemplate.execute((isPartitioned(tableName) ? "DROP INDEX IF EXISTS " : "DROP INDEX CONCURRENTLY IF EXISTS ") + indexName);
+    }
+
+    /**
+     * 判断是否为分区表。
+     *
+     * @param tableName 表名
+     * @return 是否为分区表
+     */
+    private boolean isPartitioned(String tableName) {
+        List<String> relkind = jdbcTemplate.queryForList("SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)", String.class, tableName);
+        return !relkind.isEmpty() && "p".equals(relkind.get(0));
+    }
+
+    /**
+     * 生成索引名。
+     *
+     * @param tableName 表名
+     * @param name      索引用途
+     * @return 索引名
+     */
+    static String indexName(String tableName, String name) {
+        return shortName(tableName + "_" + name + "_idx");
+    }
+
+    /**
+     * 生成不超过 PostgreSQL 标识符长度的名称，过长时截断并追加哈希，避免截断后重名。
+     *
+     * @param name 名称
+     * @return 名称
+     */
+    static String shortName(String name) {
+        if (name.length() <= MAX_IDENTIFIER_LENGTH) {
+            return name;
+        }
+        return name.substring(0, MAX_IDENTIFIER_LENGTH - 9) + "_" + HashUtil.sha256(name).substring(0, 8);
+    }
+
+    /**
+     * 校验拼入 SQL 的标识符。
+     *
+     * @param identifier 表名或元数据键
+     * @return 无
+     */
+    static void checkIdentifier(String identifier) {
+        if (!IDENTIFIER.matcher(identifier).matches()) {
+            throw new IllegalArgumentException("illegal identifier:" + identifier);
+        }
+    }
+
+    /**
+     * 判断元数据键能否直接拼入 SQL。
+     *
+     * @param key 元数据键
+     * @return 是否合法
+     */
+    static boolean isIdentifier(String key) {
+        return null != key && IDENTIFIER.matcher(key).matches();
+    }
+}
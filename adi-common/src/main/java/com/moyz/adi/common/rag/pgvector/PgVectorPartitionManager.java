@@ -0,0 +1,216 @@
+package com.moyz.adi.common.rag.pgvector;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * pgvector 向量表按知识库分区的管理。
+ * <p>
+ * 分区表以 kb_uuid 列做 LIST 分区，每个知识库一个分区，另有一个默认分区存放没有知识库归属的数据：
+ * <ul>
+ *     <li>按 kb_uuid 检索时只扫描对应分区，大知识库不再拖慢小知识库</li>
+ *     <li>删除知识库时清空分区，不再逐行删除</li>
+ *     <li>父表上的索引自动建到每个分区，每个知识库拥有独立的 ANN 索引</li>
+ * </ul>
+ */
+@Slf4j
+public class PgVectorPartitionManager {
+
+    /**
+     * 可作为分区值的知识库 UUID。
+     */
+    private static final Pattern PARTITION_VALUE = Pattern.compile("[A-Za-z0-9_-]+");
+
+    /**
+     * JDBC 操作模板。
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 本节点已确认存在的分区名。
+     */
+    private final Set<String> partitions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 构建分区管理器。
+     *
+     * @param jdbcTemplate JDBC 操作模板
+     */
+    public PgVectorPartitionManager(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 准备分区表：不存在时新建，已存在未分区的旧表时在一个事务内迁移为分区表。
+     *
+     * @param tableName 表名
+     * @param dimension 向量维度
+     * @return 无
+     */
+    public void prepareTable(String tableName, int dimension) {
+        PgVectorIndexManager.checkIdentifier(tableName);
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS vector");
+        List<String> relkind = jdbcTemplate.queryForList("SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)", String.class, tableName);
+        if (relkind.isEmpty()) {
+            log.info("create partitioned embedding table:{}", tableName);
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try (Statement statement = connection.createStatement()) {
+                    createPartitionedTable(statement, tableName, dimension);
+                    connection.commit();
+                } catch (Exception e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+                return null;
+            });
+        } else if ("r".equals(relkind.get(0))) {
+            migrate(tableName, dimension);
+        }
+    }
+
+    /**
+     * 确保知识库对应的分区存在，无法作为分区值的 UUID 写入默认分区。
+     *
+     * @param tableName 表名
+     * @param kbUuid    知识库 UUID
+     * @return 无
+     */
+    public void ensurePartition(String tableName, String kbUuid) {
+        if (null == kbUuid || !PARTITION_VALUE.matcher(kbUuid).matches()) {
+            return;
+        }
+        String partition = partitionName(tableName, kbUuid);
+        if (partitions.contains(partition)) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute(createPartitionSql(tableName, partition, kbUuid));
+            log.info("embedding partition ready:{},kbUuid:{}", partition, kbUuid);
+        } catch (DataAccessException e) {
+            // 其他节点同时建了同一分区
+            if (null == jdbcTemplate.queryForObject("SELECT to_regclass(?)::text", String.class, partition)) {
+                throw e;
+            }
+        }
+        partitions.add(partition);
+    }
+
+    /**
+     * 清空知识库对应的分区。
+     *
+     * @param tableName 表名
+     * @param kbUuid    知识库 UUID
+     * @return 是否存在对应分区，不存在时数据可能在默认分区，需按条件删除
+     */
+    public boolean truncatePartition(String tableName, String kbUuid) {
+        if (null == kbUuid || !PARTITION_VALUE.matcher(kbUuid).matches()) {
+            return false;
+        }
+        String partition = partitionName(tableName, kbUuid);
+        if (null == jdbcTemplate.queryForObject("SELECT to_regclass(?)::text", String.class, partition)) {
+            return false;
+        }
+        jdbcTemplate.execute("TRUNCATE TABLE " + partition);
+        log.info("embedding partition truncated:{},kbUuid:{}", partition, kbUuid);
+        return true;
+    }
+
+    /**
+     * 把未分区的旧表迁移为分区表：旧表改名，新建分区表并按知识库建分区，复制数据后删除旧表。
+     * 整个过程在一个事务内完成，失败时保持旧表不变。
+     *
+     * @param tableName 表名
+     * @param dimension 向量维度
+     * @return 无
+     */
+    private void migrate(String tableName, int dimension) {
+        String legacy = PgVectorIndexManager.shortName(tableName + "_unpartitioned");
+        long start = System.currentTimeMillis();
+        log.info("migrate embedding table to partitioned table start:{}", tableName);
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ALTER TABLE " + tableName + " RENAME TO " + legacy);
+                createPartitionedTable(statement, tableName, dimension);
+                List<String> kbUuids = new ArrayList<>();
+                try (ResultSet rs = statement.executeQuery("SELECT DISTINCT metadata ->> 'kb_uuid' FROM " + legacy)) {
+                    while (rs.next()) {
+                        kbUuids.add(rs.getString(1));
+                    }
+                }
+                for (String kbUuid : kbUuids) {
+                    if (null != kbUuid && PARTITION_VALUE.matcher(kbUuid).matches()) {
+                        statement.execute(createPartitionSql(tableName, partitionName(tableName, kbUuid), kbUuid));
+                    }
+                }
+                int rows = statement.executeUpdate("INSERT INTO " + tableName + " (embedding_id, kb_uuid, embedding, text, metadata) "
+                        + "SELECT embedding_id, COALESCE(metadata ->> 'kb_uuid', ''), embedding, text, metadata::json FROM " + legacy);
+                statement.execute("DROP TABLE " + legacy);
+                connection.commit();
+                log.info("migrate embedding table to partitioned table done:{},partitions:{},rows:{},cost:{}ms", tableName, kbUuids.size(), rows, System.currentTimeMillis() - start);
+            } catch (Exception e) {
+                connection.rollback();
+                log.error("migrate embedding table to partitioned table error:{}", tableName, e);
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 新建分区表、默认分区以及按向量 ID 删除时使用的索引。
+     *
+     * @param statement 语句
+     * @param tableName 表名
+     * @param dimension 向量维度
+     * @return 无
+     * @throws SQLException 数据库异常
+     */
+    private static void createPartitionedTable(Statement statement, String tableName, int dimension) throws SQLException {
+        statement.execute("CREATE TABLE " + tableName + " (embedding_id uuid NOT NULL, kb_uuid varchar(64) NOT NULL DEFAULT '', "
+                + "embedding vector(" + dimension + "), text text NULL, metadata json NULL, PRIMARY KEY (kb_uuid, embedding_id)) PARTITION BY LIST (kb_uuid)");
+        statement.execute("CREATE TABLE " + PgVectorIndexManager.shortName(tableName + "_default") + " PARTITION OF " + tableName + " DEFAULT");
+        statement.execute("CREATE INDEX " + PgVectorIndexManager.indexName(tableName, "embedding_id") + " ON " + tableName + " (embedding_id)");
+    }
+
+    /**
+     * 建分区语句。
+     *
+     * @param tableName 表名
+     * @param partition 分区名
+     * @param kbUuid    知识库 UUID（已校验）
+     * @return 建分区语句
+     */
+    private static String createPartitionSql(String tableName, String partition, String kbUuid) {
+        return "CREATE TABLE IF NOT EXISTS " + partition + " PARTITION OF " + tableName + " FOR VALUES IN ('" + kbUuid + "')";
+    }
+
+    /**
+     * 知识库对应的分区名。
+     *
+     * @param tableName 表名
+     * @param kbUuid    知识库 UUID
+     * @return 分区名
+     */
+    private static String partitionName(String tableName, String kbUuid) {
+        return PgVectorIndexManager.shortName(tableName + "_p_" + kbUuid.toLowerCase().replace('-', '_'));
+    }
+}
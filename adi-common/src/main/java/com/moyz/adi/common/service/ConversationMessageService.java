@@ -20,7 +20,7 @@ import com.moyz.adi.common.helper.SSEEmitterHelper;
 import com.moyz.adi.common.languagemodel.data.LLMResponseContent;
 import com.moyz.adi.common.mapper.ConversationMessageMapper;
 import com.moyz.adi.common.memory.longterm.LongTermMemoryService;
-import com.moyz.adi.common.memory.shortterm.MapDBChatMemoryStore;
+import com.moyz.adi.common.memory.shortterm.ChatMemoryStoreFactory;
 import com.moyz.adi.common.rag.AdiEmbeddingStoreContentRetriever;
 import com.moyz.adi.common.rag.CompositeRag;
 import com.moyz.adi.common.rag.GraphStoreContentRetriever;
@@ -28,7 +28,6 @@ import com.moyz.adi.common.languagemodel.AbstractLLMService;
 import com.moyz.adi.common.util.*;
 import com.moyz.adi.common.vo.*;
 import dev.langchain4j.data.message.AiMessage;
-import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.mcp.client.McpClient;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.rag.content.Content;
@@ -50,6 +49,7 @@ import ws.schild.jave.info.MultimediaInfo;
 
 import java.util.*;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static com.moyz.adi.common.cosntant.AdiConstant.*;
@@ -123,10 +123,10 @@ public class ConversationMessageService extends ServiceImpl<ConversationMessageM
     private FileService fileService;
 
     /**
-     * 主线程执行器。
+     * 检索线程执行器，与承载对话任务的主执行器隔离。
      */
-    @Resource
-    private AsyncTaskExecutor mainExecutor;
+    @Resource(name = "retrievalExecutor")
+    private AsyncTaskExecutor retrievalExecutor;
 
     /**
      * 长期记忆服务。
@@ -144,7 +144,7 @@ public class ConversationMessageService extends ServiceImpl<ConversationMessageM
         SseEmitter sseEmitter = new SseEmitter(SSE_TIMEOUT);
         User user = ThreadContext.getCurrentUser();
         // 先做限流与并发占用校验，避免建立无效 SSE 连接
-        if (!sseEmitterHelper.checkOrComplete(user, sseEmitter)) {
+        if (!sseEmitterHelper.checkOrComplete(user, askReq.getModelName(), sseEmitter)) {
             return sseEmitter;
         }
         // 先启动 SSE，确保前端尽快进入流式响应状态
@@ -397,16 +397,22 @@ public class ConversationMessageService extends ServiceImpl<ConversationMessageM
         if (!retrieverWrappers.isEmpty()) {
             CountDownLatch countDownLatch = new CountDownLatch(retrieverWrappers.size());
             for (RetrieverWrapper retriever : retrieverWrappers) {
-                mainExecutor.execute(() -> {
-                    try {
-                        List<Content> contents = retriever.getRetriever().retrieve(Query.from(askReq.getPrompt()));
-                        retriever.setResponse(contents);
-                    } catch (Exception e) {
-                        log.error("检索内容失败", e);
-                    } finally {
-                        countDownLatch.countDown();
-                    }
-                });
+                try {
+                    retrievalExecutor.execute(() -> {
+                        try {
+                            List<Content> contents = retriever.getRetriever().retrieve(Query.from(askReq.getPrompt()));
+                            retriever.setResponse(contents);
+                        } catch (Exception e) {
+                            log.error("检索内容失败", e);
+                        } finally {
+                            countDownLatch.countDown();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // 检索线程池已满，跳过该检索器
+                    log.warn("检索任务被拒绝,{}", e.getMessage());
+                    countDownLatch.countDown();
+                }
             }
             try {
                 // 设置等待上限，防止单个检索阻塞整体响应
@@ -523,11 +529,7 @@ public class ConversationMessageService extends ServiceImpl<ConversationMessageM
         // 写入短期记忆
         if (Boolean.TRUE.equals(conversation.getUnderstandContextEnable())) {
             // 仅在启用上下文时写入短期记忆，避免无用数据占用
-            MapDBChatMemoryStore mapDBChatMemoryStore = MapDBChatMemoryStore.getSingleton();
-            List<ChatMessage> messages = mapDBChatMemoryStore.getMessages(askReq.getConversationUuid());
-            List<ChatMessage> newMessages = new ArrayList<>(messages);
-            newMessages.add(AiMessage.aiMessage(response.getContent()));
-            mapDBChatMemoryStore.updateMessages(askReq.getConversationUuid(), newMessages);
+            ChatMemoryStoreFactory.get().appendMessage(askReq.getConversationUuid(), AiMessage.aiMessage(response.getContent()));
         }
 
         // 待办：部分视觉模型如 qwen2-vl-7b-instruct 不支持 JSON 结构返回内容，待处理
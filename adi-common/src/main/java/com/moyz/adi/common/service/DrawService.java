@@ -17,7 +17,6 @@ import com.moyz.adi.common.helper.RateLimitHelper;
 import com.moyz.adi.common.languagemodel.AbstractImageModelService;
 import com.moyz.adi.common.mapper.DrawMapper;
 import com.moyz.adi.common.util.LocalCache;
-import com.moyz.adi.common.util.LocalDateTimeUtil;
 import com.moyz.adi.common.util.PrivilegeUtil;
 import com.moyz.adi.common.util.UuidUtil;
 import jakarta.annotation.Resource;
@@ -131,8 +130,8 @@ public class DrawService extends ServiceImpl<DrawMapper, Draw> {
             throw new BaseException(A_DRAWING);
         }
 
-        String requestTimesKey = MessageFormat.format(RedisKeyConstant.USER_REQUEST_TEXT_TIMES, user.getId());
-        if (!rateLimitHelper.checkRequestTimes(requestTimesKey, LocalCache.TEXT_RATE_LIMIT_CONFIG)) {
+        // 校验 2：请求频率，通过即计入请求次数
+        if (!rateLimitHelper.tryAcquireImage(user, null, LocalCache.IMAGE_RATE_LIMIT_CONFIG)) {
             throw new BaseException(A_REQUEST_TOO_MUCH);
         }
         ErrorEnum errorEnum = quotaHelper.checkImageQuota(user, false);
@@ -237,10 +236,6 @@ public class DrawService extends ServiceImpl<DrawMapper, Draw> {
         stringRedisTemplate.opsForValue().set(drawingKey, "1", 30, TimeUnit.SECONDS);
 
         try {
-            // 增加请求次数计数
-            String requestTimesKey = MessageFormat.format(RedisKeyConstant.USER_REQUEST_TEXT_TIMES, user.getId());
-            rateLimitHelper.increaseRequestTimes(requestTimesKey, LocalCache.IMAGE_RATE_LIMIT_CONFIG);
-
             AbstractImageModelService imageModelService = ImageModelContext.getOrDefault(draw.getAiModelName());
             List<String> images;
             if (draw.getInteractingMethod() == INTERACTING_METHOD_EDIT_IMAGE) {
@@ -265,18 +260,7 @@ public class DrawService extends ServiceImpl<DrawMapper, Draw> {
 
             // 更新当前用户的消耗统计
             boolean modelIsFree = imageModelService.getAiModel().getIsFree();
-            UserDayCost userDayCost = userDayCostService.getTodayCost(user, modelIsFree);
-            UserDayCost saveOrUpdateInst = new UserDayCost();
-            if (null == userDayCost) {
-                saveOrUpdateInst.setUserId(user.getId());
-                saveOrUpdateInst.setDay(LocalDateTimeUtil.getToday());
-                saveOrUpdateInst.setDrawTimes(1);
-            } else {
-                saveOrUpdateInst.setId(userDayCost.getId());
-                saveOrUpdateInst.setDrawTimes(userDayCost.getDrawTimes() + 1);
-            }
-            saveOrUpdateInst.setIsFree(modelIsFree);
-            userDayCostService.saveOrUpdate(saveOrUpdateInst);
+            userDayCostService.appendDrawToUser(user, modelIsFree);
         } catch (Exception e) {
             log.error("createFromRemote error", e);
             updateDrawFail(draw.getId(), e.getMessage());
@@ -21,6 +21,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -80,36 +82,45 @@ public class FileService extends ServiceImpl<FileMapper, AdiFile> {
      * @return 文件记录
      */
     public AdiFile saveFile(MultipartFile file, boolean image) {
-        String sha256 = HashUtil.sha256(file);
-        Optional<AdiFile> existFile = this.lambdaQuery()
-                .eq(AdiFile::getSha256, sha256)
-                .eq(AdiFile::getIsDeleted, false)
-                .last("limit 1")
-                .oneOpt();
-        if (existFile.isPresent()) {
-            // 按内容哈希去重，减少重复存储与带宽消耗
-            AdiFile adiFile = existFile.get();
-            boolean exist = FileOperatorContext.checkIfExist(adiFile);
-            if (exist) {
-                return adiFile;
-            } else {
-                // 记录存在但文件缺失时软删，保持数据一致性
-                log.warn("文件不存在,删除记录以便后续重新生成,fileId:{},uuid:{},sha256:{}", adiFile.getId(), adiFile.getUuid(), adiFile.getSha256());
-                this.lambdaUpdate().eq(AdiFile::getId, adiFile.getId()).set(AdiFile::getIsDeleted, true).update();
+        FileOperatorContext fileOperator = new FileOperatorContext();
+        // 上传内容只读取一遍：写入临时文件的同时计算哈希，不整体读入内存
+        Pair<Path, String> tempFile = LocalFileUtil.saveToTemp(file, fileOperator.getTempDir(image));
+        try {
+            String sha256 = tempFile.getRight();
+            Optional<AdiFile> existFile = this.lambdaQuery()
+                    .eq(AdiFile::getSha256, sha256)
+                    .eq(AdiFile::getIsDeleted, false)
+                    .last("limit 1")
+                    .oneOpt();
+            if (existFile.isPresent()) {
+                // 按内容哈希去重，减少重复存储与带宽消耗
+                AdiFile adiFile = existFile.get();
+                boolean exist = FileOperatorContext.checkIfExist(adiFile);
+                if (exist) {
+                    return adiFile;
+                } else {
+                    // 记录存在但文件缺失时软删，保持数据一致性
+                    log.warn("文件不存在,删除记录以便后续重新生成,fileId:{},uuid:{},sha256:{}", adiFile.getId(), adiFile.getUuid(), adiFile.getSha256());
+                    this.lambdaUpdate().eq(AdiFile::getId, adiFile.getId()).set(AdiFile::getIsDeleted, true).update();
+                }
             }
+            String uuid = UuidUtil.createShort();
+            String ext = LocalFileUtil.getFileExtension(org.springframework.util.StringUtils.cleanPath(file.getOriginalFilename()));
+            Pair<String, String> originalFile = fileOperator.save(tempFile.getLeft(), image, uuid, ext);
+            AdiFile adiFile = new AdiFile();
+            adiFile.setName(file.getOriginalFilename());
+            adiFile.setUuid(uuid);
+            adiFile.setSha256(sha256);
+            adiFile.setPath(originalFile.getLeft());
+            adiFile.setExt(originalFile.getRight());
+            adiFile.setUserId(ThreadContext.getCurrentUserId());
+            adiFile.setStorageLocation(FileOperatorContext.getStorageLocation());
+            this.getBaseMapper().insert(adiFile);
+            return adiFile;
+        } finally {
+            // 命中去重或上传到 OSS 后临时文件不再需要；本地存储时已被移走，删除不会生效
+            LocalFileUtil.deleteQuietly(tempFile.getLeft());
         }
-        String uuid = UuidUtil.createShort();
-        Pair<String, String> originalFile = new FileOperatorContext().save(file, image, uuid);
-        AdiFile adiFile = new AdiFile();
-        adiFile.setName(file.getOriginalFilename());
-        adiFile.setUuid(uuid);
-        adiFile.setSha256(sha256);
-        adiFile.setPath(originalFile.getLeft());
-        adiFile.setExt(originalFile.getRight());
-        adiFile.setUserId(ThreadContext.getCurrentUserId());
-        adiFile.setStorageLocation(FileOperatorContext.getStorageLocation());
-        this.getBaseMapper().insert(adiFile);
-        return adiFile;
     }
 
     /**
@@ -213,6 +224,17 @@ public class FileService extends ServiceImpl<FileMapper, AdiFile> {
      * @throws BaseException 未授权或文件不存在时抛出异常
      */
     public BufferedImage readMyImage(String uuid, boolean thumbnail) {
+        return LocalFileUtil.readLocalImage(getMyFileOrThrow(uuid), thumbnail, thumbnailsPath);
+    }
+
+    /**
+     * 获取文件记录，管理员或文件拥有者才有权限查看。
+     *
+     * @param uuid 文件 UUID
+     * @return 文件记录
+     * @throws BaseException 未授权或文件不存在时抛出异常
+     */
+    public AdiFile getMyFileOrThrow(String uuid) {
         if (StringUtils.isBlank(ThreadContext.getToken())) {
             throw new BaseException(A_AI_IMAGE_NO_AUTH);
         }
@@ -224,7 +246,18 @@ public class FileService extends ServiceImpl<FileMapper, AdiFile> {
         if (null == adiFile) {
             throw new BaseException(A_FILE_NOT_EXIST);
         }
-        return LocalFileUtil.readLocalImage(adiFile, thumbnail, thumbnailsPath);
+        return adiFile;
+    }
+
+    /**
+     * 获取图片或其缩略图的本地文件，缩略图不存在时先生成。
+     *
+     * @param adiFile   图片记录
+     * @param thumbnail 是否获取缩略图
+     * @return 本地文件
+     */
+    public File getLocalImageFile(AdiFile adiFile, boolean thumbnail) {
+        return LocalFileUtil.getLocalImageFile(adiFile, thumbnail, thumbnailsPath);
     }
 
     /**
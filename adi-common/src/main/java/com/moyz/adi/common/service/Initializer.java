@@ -93,7 +93,7 @@ public class Initializer {
      * AI 搜索向量存储。
      */
     @Lazy
-    @Resource
+    @Resource(name = "searchEmbeddingStore")
     private EmbeddingStore<TextSegment> aiSearchEmbeddingStore;
     /**
      * 向量模型。
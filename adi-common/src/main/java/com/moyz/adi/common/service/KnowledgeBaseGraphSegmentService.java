@@ -1,14 +1,61 @@
 package com.moyz.adi.common.service;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.baomidou.mybatisplus.extension.toolkit.ChainWrappers;
 import com.moyz.adi.common.entity.KnowledgeBaseGraphSegment;
 import com.moyz.adi.common.mapper.KnowledgeBaseGraphSegmentMapper;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * 知识库图谱分段服务。
  */
 @Service
 public class KnowledgeBaseGraphSegmentService extends ServiceImpl<KnowledgeBaseGraphSegmentMapper, KnowledgeBaseGraphSegment> {
 
+    /**
+     * 查询知识点下未删除的分段（仅 uuid 与指纹）。
+     *
+     * @param kbItemUuid 知识点 UUID
+     * @return 分段列表
+     */
+    public List<KnowledgeBaseGraphSegment> listHashByItemUuid(String kbItemUuid) {
+        return ChainWrappers.lambdaQueryChain(baseMapper)
+                .select(KnowledgeBaseGraphSegment::getUuid, KnowledgeBaseGraphSegment::getSegmentHash)
+                .eq(KnowledgeBaseGraphSegment::getKbItemUuid, kbItemUuid)
+                .eq(KnowledgeBaseGraphSegment::getIsDeleted, false)
+                .list();
+    }
+
+    /**
+     * 记录分段指纹，表示该分段已成功抽取，下次索引时内容未变即可跳过。
+     *
+     * @param uuid        分段 UUID
+     * @param segmentHash 分段指纹
+     * @return 是否更新成功
+     */
+    public boolean updateSegmentHash(String uuid, String segmentHash) {
+        return ChainWrappers.lambdaUpdateChain(baseMapper)
+                .eq(KnowledgeBaseGraphSegment::getUuid, uuid)
+                .set(KnowledgeBaseGraphSegment::getSegmentHash, segmentHash)
+                .update();
+    }
+
+    /**
+     * 软删除分段。
+     *
+     * @param uuids 分段 UUID 列表
+     * @return 是否删除成功
+     */
+    public boolean softDeleteByUuids(Collection<String> uuids) {
+        if (uuids.isEmpty()) {
+            return true;
+        }
+        return ChainWrappers.lambdaUpdateChain(baseMapper)
+                .in(KnowledgeBaseGraphSegment::getUuid, uuids)
+                .set(KnowledgeBaseGraphSegment::getIsDeleted, true)
+                .update();
+    }
 }
@@ -1,5 +1,7 @@
 package com.moyz.adi.common.service;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.conditions.update.LambdaUpdateChainWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.baomidou.mybatisplus.extension.toolkit.ChainWrappers;
@@ -13,12 +15,14 @@ import com.moyz.adi.common.entity.User;
 import com.moyz.adi.common.enums.EmbeddingStatusEnum;
 import com.moyz.adi.common.enums.GraphicalStatusEnum;
 import com.moyz.adi.common.exception.BaseException;
+import com.moyz.adi.common.helper.KbAnswerCacheHelper;
 import com.moyz.adi.common.helper.LLMContext;
 import com.moyz.adi.common.mapper.KnowledgeBaseItemMapper;
-import com.moyz.adi.common.rag.EmbeddingRagContext;
+import com.moyz.adi.common.rag.EmbeddingIngestPipeline;
 import com.moyz.adi.common.rag.GraphRagContext;
 import com.moyz.adi.common.service.embedding.IEmbeddingService;
 import com.moyz.adi.common.languagemodel.AbstractLLMService;
+import com.moyz.adi.common.util.BizPager;
 import com.moyz.adi.common.util.UuidUtil;
 import com.moyz.adi.common.vo.ChatModelBuilderProperties;
 import com.moyz.adi.common.vo.GraphIngestParams;
@@ -37,8 +41,16 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.text.MessageFormat;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static com.moyz.adi.common.cosntant.AdiConstant.DOC_INDEX_TYPE_EMBEDDING;
 import static com.moyz.adi.common.cosntant.AdiConstant.DOC_INDEX_TYPE_GRAPHICAL;
@@ -79,6 +91,18 @@ public class KnowledgeBaseItemService extends ServiceImpl<KnowledgeBaseItemMappe
     @Resource
     private FileService fileService;
 
+    /**
+     * 语义答案缓存。
+     */
+    @Resource
+    private KbAnswerCacheHelper kbAnswerCacheHelper;
+
+    /**
+     * 向量化入库流水线。
+     */
+    @Resource
+    private EmbeddingIngestPipeline embeddingIngestPipeline;
+
     /**
      * 新增或更新知识点。
      *
@@ -150,78 +174,244 @@ public class KnowledgeBaseItemService extends ServiceImpl<KnowledgeBaseItemMappe
      * @return 成功或失败
      */
     public boolean checkAndIndexing(KnowledgeBase knowledgeBase, List<String> kbItemUuids, List<String> indexTypes) {
+        List<KnowledgeBaseItem> items = new ArrayList<>();
         for (String kbItemUuid : kbItemUuids) {
             if (checkPrivilege(kbItemUuid)) {
-                KnowledgeBaseItem item = getEnable(kbItemUuid);
-                self.asyncIndex(ThreadContext.getCurrentUser(), knowledgeBase, item, indexTypes);
+                items.add(getEnable(kbItemUuid));
             }
         }
+        if (!items.isEmpty()) {
+            self.asyncIndex(ThreadContext.getCurrentUser(), knowledgeBase, items, indexTypes)
+                    .exceptionally(throwable -> {
+                        indexRejected(knowledgeBase.getUuid(), items, indexTypes, throwable);
+                        return null;
+                    });
+        }
         return true;
     }
 
+    /**
+     * 对知识库下的所有知识点进行索引(向量化、图谱化)
+     *
+     * @param user          用户
+     * @param knowledgeBase 知识库
+     * @param indexTypes    索引类型，如embedding,graphical
+     * @return 索引结束时完成；推迟后被线程池拒绝时以 RejectedExecutionException 结束
+     */
+    @Async("indexExecutor")
+    public CompletableFuture<Void> asyncIndexAll(User user, KnowledgeBase knowledgeBase, List<String> indexTypes) {
+        LambdaQueryWrapper<KnowledgeBaseItem> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(KnowledgeBaseItem::getIsDeleted, false);
+        wrapper.eq(KnowledgeBaseItem::getKbUuid, knowledgeBase.getUuid());
+        index(user, knowledgeBase, consumer -> BizPager.batchWithAnchor(wrapper, this, KnowledgeBaseItem::getId, consumer), indexTypes);
+        return CompletableFuture.completedFuture(null);
+    }
+
     /**
      * 对文档进行索引(向量化、图谱化)
      *
      * @param user          用户
      * @param knowledgeBase 知识库
-     * @param kbItem        知识点
+     * @param kbItems       知识点列表
      * @param indexTypes    索引类型，如embedding,graphical
+     * @return 索引结束时完成；推迟后被线程池拒绝时以 RejectedExecutionException 结束
      */
-    @Async
-    public void asyncIndex(User user, KnowledgeBase knowledgeBase, KnowledgeBaseItem kbItem, List<String> indexTypes) {
-        stringRedisTemplate.opsForValue().set(MessageFormat.format(USER_INDEXING, knowledgeBase.getOwnerId()), "", 10, TimeUnit.MINUTES);
-        try {
-            if (indexTypes.contains(DOC_INDEX_TYPE_EMBEDDING) && kbItem.getEmbeddingStatus() != EmbeddingStatusEnum.DOING) {
-                Metadata metadata = new Metadata();
-                metadata.put(AdiConstant.MetadataKey.KB_UUID, kbItem.getKbUuid());
-                metadata.put(AdiConstant.MetadataKey.KB_ITEM_UUID, kbItem.getUuid());
-                Document document = new DefaultDocument(kbItem.getRemark(), metadata);
-                iEmbeddingService.deleteByItemUuid(kbItem.getUuid());
-                indexingEmbedding(knowledgeBase, kbItem, document);
-            }
-            if (indexTypes.contains(DOC_INDEX_TYPE_GRAPHICAL) && kbItem.getGraphicalStatus() != GraphicalStatusEnum.DOING) {
-                Metadata metadata = new Metadata();
-                metadata.put(AdiConstant.MetadataKey.KB_UUID, kbItem.getKbUuid());
-                metadata.put(AdiConstant.MetadataKey.KB_ITEM_UUID, kbItem.getUuid());
-                Document document = new DefaultDocument(kbItem.getRemark(), metadata);
-                indexingGraph(user, knowledgeBase, kbItem, document);
+    @Async("indexExecutor")
+    public CompletableFuture<Void> asyncIndex(User user, KnowledgeBase knowledgeBase, List<KnowledgeBaseItem> kbItems, List<String> indexTypes) {
+        index(user, knowledgeBase, consumer -> consumer.accept(kbItems), indexTypes);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * 索引任务推迟后被线程池拒绝（未执行）时，把待索引知识点的对应索引状态标记为失败，其他异常只记录日志。
+     *
+     * @param kbUuid     知识库 UUID
+     * @param kbItems    待索引的知识点，为 null 时表示知识库下的全部知识点
+     * @param indexTypes 索引类型，如embedding,graphical
+     * @param throwable  失败原因
+     * @return 无
+     */
+    public void indexRejected(String kbUuid, List<KnowledgeBaseItem> kbItems, List<String> indexTypes, Throwable throwable) {
+        if (!(throwable instanceof RejectedExecutionException)) {
+            log.error("index error,kbUuid:{}", kbUuid, throwable);
+            return;
+        }
+        log.error("index task rejected,kbUuid:{},items:{}", kbUuid, null == kbItems ? "all" : kbItems.size());
+        LambdaUpdateChainWrapper<KnowledgeBaseItem> wrapper = ChainWrappers.lambdaUpdateChain(baseMapper)
+                .eq(KnowledgeBaseItem::getKbUuid, kbUuid)
+                .eq(KnowledgeBaseItem::getIsDeleted, false);
+        if (null != kbItems) {
+            if (kbItems.isEmpty()) {
+                return;
             }
+            wrapper.in(KnowledgeBaseItem::getId, kbItems.stream().map(KnowledgeBaseItem::getId).toList());
+        }
+        if (indexTypes.contains(DOC_INDEX_TYPE_EMBEDDING)) {
+            wrapper.set(KnowledgeBaseItem::getEmbeddingStatusChangeTime, LocalDateTime.now())
+                    .set(KnowledgeBaseItem::getEmbeddingStatus, EmbeddingStatusEnum.FAIL);
+        }
+        if (indexTypes.contains(DOC_INDEX_TYPE_GRAPHICAL)) {
+            wrapper.set(KnowledgeBaseItem::getGraphicalStatusChangeTime, LocalDateTime.now())
+                    .set(KnowledgeBaseItem::getGraphicalStatus, GraphicalStatusEnum.FAIL);
+        }
+        if (indexTypes.contains(DOC_INDEX_TYPE_EMBEDDING) || indexTypes.contains(DOC_INDEX_TYPE_GRAPHICAL)) {
+            wrapper.update();
+        }
+    }
+
+    /**
+     * 逐页索引知识点。
+     * <p>
+     * 向量化交给 {@link EmbeddingIngestPipeline} 批量处理，流水线已满时在此阻塞，因此一个知识库的索引任务只占用一个线程；
+     * 图谱化在当前线程逐个进行，抽取并发由 {@link com.moyz.adi.common.rag.GraphExtractScheduler} 控制。
+     * 向量化结束后的删除旧向量、更新状态在本线程（indexExecutor）中执行，不占用流水线的写入线程。
+     * 所有知识点处理完成后才清除“索引中”标记。
+     *
+     * @param user          用户
+     * @param knowledgeBase 知识库
+     * @param pager         分页遍历待索引知识点的方法
+     * @param indexTypes    索引类型，如embedding,graphical
+     */
+    private void index(User user, KnowledgeBase knowledgeBase, Consumer<Consumer<List<KnowledgeBaseItem>>> pager, List<String> indexTypes) {
+        String userIndexKey = MessageFormat.format(USER_INDEXING, knowledgeBase.getOwnerId());
+        stringRedisTemplate.opsForValue().set(userIndexKey, "", 10, TimeUnit.MINUTES);
+        List<CompletableFuture<?>> embeddingFutures = new ArrayList<>();
+        // 流水线线程只把结束回调放入队列，由本线程取出执行
+        BlockingQueue<Runnable> embeddingCallbacks = new LinkedBlockingQueue<>();
+        try {
+            pager.accept(kbItems -> {
+                if (indexTypes.contains(DOC_INDEX_TYPE_EMBEDDING)) {
+                    for (KnowledgeBaseItem kbItem : kbItems) {
+                        if (kbItem.getEmbeddingStatus() != EmbeddingStatusEnum.DOING) {
+                            embeddingFutures.add(indexingEmbedding(knowledgeBase, kbItem, toDocument(kbItem), embeddingCallbacks::add));
+                        }
+                    }
+                    runCallbacks(embeddingCallbacks);
+                }
+                if (indexTypes.contains(DOC_INDEX_TYPE_GRAPHICAL)) {
+                    for (KnowledgeBaseItem kbItem : kbItems) {
+                        if (kbItem.getGraphicalStatus() != GraphicalStatusEnum.DOING) {
+                            indexingGraph(user, knowledgeBase, kbItem, toDocument(kbItem));
+                        }
+                    }
+                }
+                stringRedisTemplate.expire(userIndexKey, 10, TimeUnit.MINUTES);
+            });
+            awaitEmbedding(userIndexKey, embeddingFutures, embeddingCallbacks);
         } finally {
-            stringRedisTemplate.opsForSet().add(KB_STATISTIC_RECALCULATE_SIGNAL, kbItem.getKbUuid());
-            stringRedisTemplate.delete(MessageFormat.format(USER_INDEXING, knowledgeBase.getOwnerId()));
+            stringRedisTemplate.opsForSet().add(KB_STATISTIC_RECALCULATE_SIGNAL, knowledgeBase.getUuid());
+            stringRedisTemplate.delete(userIndexKey);
+            // 知识点内容已重新索引，基于旧内容的答案不再可信
+            kbAnswerCacheHelper.invalidate(knowledgeBase.getUuid());
         }
+    }
 
+    /**
+     * 等待已提交的向量化任务全部结束并执行其结束回调，等待期间续期“索引中”标记。
+     * 单个知识点的失败已在其状态中记录。
+     *
+     * @param userIndexKey       “索引中”标记的 Redis 键
+     * @param embeddingFutures   向量化任务（含结束回调）
+     * @param embeddingCallbacks 待执行的结束回调
+     */
+    private void awaitEmbedding(String userIndexKey, List<CompletableFuture<?>> embeddingFutures, BlockingQueue<Runnable> embeddingCallbacks) {
+        CompletableFuture<Void> all = CompletableFuture.allOf(embeddingFutures.toArray(new CompletableFuture[0]));
+        while (!all.isDone()) {
+            try {
+                Runnable callback = embeddingCallbacks.poll(1, TimeUnit.MINUTES);
+                if (null == callback) {
+                    stringRedisTemplate.expire(userIndexKey, 10, TimeUnit.MINUTES);
+                } else {
+                    callback.run();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 执行已到达的向量化结束回调，不等待。
+     *
+     * @param embeddingCallbacks 待执行的结束回调
+     */
+    private void runCallbacks(BlockingQueue<Runnable> embeddingCallbacks) {
+        Runnable callback;
+        while (null != (callback = embeddingCallbacks.poll())) {
+            callback.run();
+        }
+    }
+
+    /**
+     * 构造知识点对应的文档。
+     *
+     * @param kbItem 知识点
+     * @return 文档
+     */
+    private static Document toDocument(KnowledgeBaseItem kbItem) {
+        Metadata metadata = new Metadata();
+        metadata.put(AdiConstant.MetadataKey.KB_UUID, kbItem.getKbUuid());
+        metadata.put(AdiConstant.MetadataKey.KB_ITEM_UUID, kbItem.getUuid());
+        return new DefaultDocument(kbItem.getRemark(), metadata);
     }
 
     /**
      * 向量化索引知识点内容。
      *
-     * @param knowledgeBase 知识库
-     * @param kbItem        知识点
-     * @param document      文档内容
+     * @param knowledgeBase    知识库
+     * @param kbItem           知识点
+     * @param document         文档内容
+     * @param callbackExecutor 执行结束回调（删除旧向量、更新状态）的执行器
+     * @return 知识点向量化结束（成功或失败）且回调执行完成时完成
      */
-    private void indexingEmbedding(KnowledgeBase knowledgeBase, KnowledgeBaseItem kbItem, Document document) {
+    private CompletableFuture<?> indexingEmbedding(KnowledgeBase knowledgeBase, KnowledgeBaseItem kbItem, Document document, Executor callbackExecutor) {
         try {
+            // 指纹未变的文本段沿用已有向量，其余向量在新向量写入后删除
+            Map<String, String> existingSegmentHashes = iEmbeddingService.listSegmentHashes(kbItem.getKbUuid(), kbItem.getUuid());
             ChainWrappers.lambdaUpdateChain(baseMapper)
                     .eq(KnowledgeBaseItem::getId, kbItem.getId())
                     .set(KnowledgeBaseItem::getEmbeddingStatusChangeTime, LocalDateTime.now())
                     .set(KnowledgeBaseItem::getEmbeddingStatus, EmbeddingStatusEnum.DOING)
                     .update();
-            EmbeddingRagContext.get(KNOWLEDGE_BASE).ingest(document, knowledgeBase.getIngestMaxOverlap(), knowledgeBase.getIngestTokenEstimator(), null);
-            ChainWrappers.lambdaUpdateChain(baseMapper)
-                    .eq(KnowledgeBaseItem::getId, kbItem.getId())
-                    .set(KnowledgeBaseItem::getEmbeddingStatus, EmbeddingStatusEnum.DONE)
-                    .update();
+            return embeddingIngestPipeline.submit(kbItem.getKbUuid(), document, knowledgeBase.getIngestMaxOverlap(), knowledgeBase.getIngestTokenEstimator(), existingSegmentHashes)
+                    .whenCompleteAsync((result, throwable) -> {
+                        if (null != throwable) {
+                            embeddingFail(kbItem, throwable);
+                            return;
+                        }
+                        try {
+                            iEmbeddingService.deleteByEmbeddingIds(kbItem.getKbUuid(), result.getStaleEmbeddingIds());
+                            log.info("kb item embedded,kbItemUuid:{},reused:{},stored:{},deleted:{}", kbItem.getUuid(), result.getReusedSegments(), result.getStoredSegments(), result.getStaleEmbeddingIds().size());
+                            ChainWrappers.lambdaUpdateChain(baseMapper)
+                                    .eq(KnowledgeBaseItem::getId, kbItem.getId())
+                                    .set(KnowledgeBaseItem::getEmbeddingStatus, EmbeddingStatusEnum.DONE)
+                                    .update();
+                        } catch (Exception e) {
+                            embeddingFail(kbItem, e);
+                        }
+                    }, callbackExecutor);
         } catch (Exception e) {
-            log.error("ingestForEmbedding error", e);
-            ChainWrappers.lambdaUpdateChain(baseMapper)
-                    .eq(KnowledgeBaseItem::getId, kbItem.getId())
-                    .set(KnowledgeBaseItem::getEmbeddingStatusChangeTime, LocalDateTime.now())
-                    .set(KnowledgeBaseItem::getEmbeddingStatus, EmbeddingStatusEnum.FAIL)
-                    .update();
+            embeddingFail(kbItem, e);
+            return CompletableFuture.failedFuture(e);
         }
     }
 
+    /**
+     * 标记知识点向量化失败。
+     *
+     * @param kbItem    知识点
+     * @param throwable 失败原因
+     */
+    private void embeddingFail(KnowledgeBaseItem kbItem, Throwable throwable) {
+        log.error("ingestForEmbedding error,kbItemUuid:{}", kbItem.getUuid(), throwable);
+        ChainWrappers.lambdaUpdateChain(baseMapper)
+                .eq(KnowledgeBaseItem::getId, kbItem.getId())
+                .set(KnowledgeBaseItem::getEmbeddingStatusChangeTime, LocalDateTime.now())
+                .set(KnowledgeBaseItem::getEmbeddingStatus, EmbeddingStatusEnum.FAIL)
+                .update();
+    }
+
     /**
      * 图谱化索引知识点内容。
      *
@@ -252,6 +442,7 @@ public class KnowledgeBaseItemService extends ServiceImpl<KnowledgeBaseItemMappe
                             .overlap(knowledgeBase.getIngestMaxOverlap())
                             .tokenEstimator(knowledgeBase.getIngestTokenEstimator())
                             .ChatModel(ChatModel)
+                            .modelName(llmService.getAiModel().getName())
                             .identifyColumns(List.of(AdiConstant.MetadataKey.KB_UUID))
                             .appendColumns(List.of(AdiConstant.MetadataKey.KB_ITEM_UUID))
                             .isFreeToken(llmService.getAiModel().getIsFree())
@@ -288,11 +479,11 @@ public class KnowledgeBaseItemService extends ServiceImpl<KnowledgeBaseItemMappe
         if (!success) {
             return false;
         }
-        iEmbeddingService.deleteByItemUuid(uuid);
-
         KnowledgeBaseItem item = baseMapper.getByUuid(uuid);
         if (null != item) {
+            iEmbeddingService.deleteByItemUuid(item.getKbUuid(), uuid);
             stringRedisTemplate.opsForSet().add(KB_STATISTIC_RECALCULATE_SIGNAL, item.getKbUuid());
+            kbAnswerCacheHelper.invalidate(item.getKbUuid());
         }
         return true;
     }
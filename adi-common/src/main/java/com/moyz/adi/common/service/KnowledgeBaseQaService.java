@@ -21,6 +21,7 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.moyz.adi.common.enums.ErrorEnum.A_DATA_NOT_FOUND;
@@ -150,6 +151,39 @@ public class KnowledgeBaseQaService extends ServiceImpl<KnowledgeBaseQaRecordMap
         knowledgeBaseQaRecordRefGraphService.save(refGraph);
     }
 
+    /**
+     * 复制问答记录的向量及图谱引用，语义答案缓存命中时使用。
+     *
+     * @param user           用户
+     * @param fromQaRecordId 来源问答记录 ID
+     * @param toQaRecordId   目标问答记录 ID
+     * @return 无
+     */
+    public void copyRefs(User user, Long fromQaRecordId, Long toQaRecordId) {
+        List<KnowledgeBaseQaRefEmbedding> embeddingRefs = knowledgeBaseQaRecordReferenceService.lambdaQuery()
+                .eq(KnowledgeBaseQaRefEmbedding::getQaRecordId, fromQaRecordId)
+                .list();
+        for (KnowledgeBaseQaRefEmbedding ref : embeddingRefs) {
+            ref.setId(null);
+            ref.setQaRecordId(toQaRecordId);
+            ref.setUserId(user.getId());
+        }
+        if (!embeddingRefs.isEmpty()) {
+            knowledgeBaseQaRecordReferenceService.saveBatch(embeddingRefs);
+        }
+        List<KnowledgeBaseQaRefGraph> graphRefs = knowledgeBaseQaRecordRefGraphService.lambdaQuery()
+                .eq(KnowledgeBaseQaRefGraph::getQaRecordId, fromQaRecordId)
+                .list();
+        for (KnowledgeBaseQaRefGraph ref : graphRefs) {
+            ref.setId(null);
+            ref.setQaRecordId(toQaRecordId);
+            ref.setUserId(user.getId());
+        }
+        if (!graphRefs.isEmpty()) {
+            knowledgeBaseQaRecordRefGraphService.saveBatch(graphRefs);
+        }
+    }
+
     /**
      * 获取问答记录，不存在则抛异常。
      *
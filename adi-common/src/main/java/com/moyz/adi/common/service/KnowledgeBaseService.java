@@ -8,19 +8,26 @@ import com.moyz.adi.common.base.ThreadContext;
 import com.moyz.adi.common.cosntant.AdiConstant;
 import com.moyz.adi.common.cosntant.RedisKeyConstant;
 import com.moyz.adi.common.dto.KbEditReq;
+import com.moyz.adi.common.dto.KbIndexingProgressResp;
 import com.moyz.adi.common.dto.KbInfoResp;
 import com.moyz.adi.common.dto.KbSearchReq;
 import com.moyz.adi.common.entity.*;
 import com.moyz.adi.common.exception.BaseException;
 import com.moyz.adi.common.file.FileOperatorContext;
+import com.moyz.adi.common.helper.KbAnswerCacheHelper;
 import com.moyz.adi.common.helper.LLMContext;
 import com.moyz.adi.common.helper.SSEEmitterHelper;
 import com.moyz.adi.common.mapper.KnowledgeBaseMapper;
+import com.moyz.adi.common.memory.shortterm.ChatMemoryStoreFactory;
 import com.moyz.adi.common.rag.*;
 import com.moyz.adi.common.service.embedding.IEmbeddingService;
 import com.moyz.adi.common.util.*;
 import com.moyz.adi.common.vo.*;
 import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
@@ -32,6 +39,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.BeanUtils;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -46,7 +54,9 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 import static com.moyz.adi.common.cosntant.AdiConstant.RetrieveContentFrom.KNOWLEDGE_BASE;
 import static com.moyz.adi.common.cosntant.AdiConstant.SSE_TIMEOUT;
@@ -124,6 +134,24 @@ public class KnowledgeBaseService extends ServiceImpl<KnowledgeBaseMapper, Knowl
     @Resource
     private IEmbeddingService embeddingService;
 
+    /**
+     * 语义答案缓存。
+     */
+    @Resource
+    private KbAnswerCacheHelper kbAnswerCacheHelper;
+
+    /**
+     * 知识库索引等后台任务线程池。
+     */
+    @Resource(name = "indexExecutor")
+    private AsyncTaskExecutor indexExecutor;
+
+    /**
+     * 向量化入库流水线。
+     */
+    @Resource
+    private EmbeddingIngestPipeline embeddingIngestPipeline;
+
     /**
      * 新增或更新知识库。
      *
@@ -156,6 +184,9 @@ public class KnowledgeBaseService extends ServiceImpl<KnowledgeBaseMapper, Knowl
             checkPrivilege(kbEditReq.getId(), null);
             knowledgeBase.setId(kbEditReq.getId());
             baseMapper.updateById(knowledgeBase);
+            // 系统提示词等配置变化会影响答案，清空已缓存的答案
+            String kbUuid = StringUtils.isNotBlank(kbEditReq.getUuid()) ? kbEditReq.getUuid() : baseMapper.selectById(kbEditReq.getId()).getUuid();
+            kbAnswerCacheHelper.invalidate(kbUuid);
         }
         return knowledgeBase;
     }
@@ -264,13 +295,25 @@ public class KnowledgeBaseService extends ServiceImpl<KnowledgeBaseMapper, Knowl
     public boolean indexing(String kbUuid, List<String> indexTypes) {
         checkPrivilege(null, kbUuid);
         KnowledgeBase knowledgeBase = this.getOrThrow(kbUuid);
-        LambdaQueryWrapper<KnowledgeBaseItem> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(KnowledgeBaseItem::getIsDeleted, false);
-        wrapper.eq(KnowledgeBaseItem::getUuid, kbUuid);
-        BizPager.oneByOneWithAnchor(wrapper, knowledgeBaseItemService, KnowledgeBaseItem::getId, kbItem -> knowledgeBaseItemService.asyncIndex(ThreadContext.getCurrentUser(), knowledgeBase, kbItem, indexTypes));
+        knowledgeBaseItemService.asyncIndexAll(ThreadContext.getCurrentUser(), knowledgeBase, indexTypes)
+                .exceptionally(throwable -> {
+                    knowledgeBaseItemService.indexRejected(kbUuid, null, indexTypes, throwable);
+                    return null;
+                });
         return true;
     }
 
+    /**
+     * 获取知识库最近一轮向量化的进度
+     *
+     * @param kbUuid 知识库uuid
+     * @return 进度，本节点未进行过向量化时为null
+     */
+    public KbIndexingProgressResp getIndexingProgress(String kbUuid) {
+        checkPrivilege(null, kbUuid);
+        return embeddingIngestPipeline.getProgress(kbUuid).orElse(null);
+    }
+
     /**
      * 索引知识点（同一知识库下）
      *
@@ -388,10 +431,20 @@ public class KnowledgeBaseService extends ServiceImpl<KnowledgeBaseMapper, Knowl
      */
     public boolean softDelete(String uuid) {
         checkPrivilege(null, uuid);
-        return ChainWrappers.lambdaUpdateChain(baseMapper)
+        boolean success = ChainWrappers.lambdaUpdateChain(baseMapper)
                 .eq(KnowledgeBase::getUuid, uuid)
                 .set(KnowledgeBase::getIsDeleted, true)
                 .update();
+        if (success) {
+            // 分区表下异步清空该知识库的分区，不阻塞删除请求；其他情况保留向量
+            try {
+                indexExecutor.execute(() -> embeddingService.deleteByKbUuid(uuid));
+            } catch (RejectedExecutionException e) {
+                log.warn("Release embeddings of deleted kb rejected,uuid:{}", uuid);
+            }
+        }
+        kbAnswerCacheHelper.invalidate(uuid);
+        return success;
     }
 
     /**
@@ -494,6 +547,21 @@ public class KnowledgeBaseService extends ServiceImpl<KnowledgeBaseMapper, Knowl
         KnowledgeBase knowledgeBase = getOrThrow(qaRecord.getKbUuid());
         AiModel aiModel = aiModelService.getByIdOrThrow(qaRecord.getAiModelId());
 
+        // 使用“知识库UUID_用户UUID”隔离不同用户与知识库的记忆上下文
+        String memoryId = qaRecord.getKbUuid() + "_" + user.getUuid();
+        // 启用语义答案缓存时，相似问题直接复用同一模型的历史答案；答案依赖会话记忆，只在会话没有历史消息时使用缓存
+        boolean answerCacheUsable = Boolean.TRUE.equals(knowledgeBase.getAnswerCacheEnable()) && !hasChatHistory(memoryId);
+        long answerCacheVersion = 0;
+        if (answerCacheUsable) {
+            answerCacheVersion = kbAnswerCacheHelper.currentVersion(knowledgeBase.getUuid());
+            Optional<KbAnswerCacheHelper.CachedAnswer> cachedAnswer = kbAnswerCacheHelper.lookup(knowledgeBase, aiModel.getId(), qaRecord.getQuestion());
+            if (cachedAnswer.isPresent()) {
+                replayCachedAnswer(user, sseEmitter, qaRecord, memoryId, knowledgeBase.getQuerySystemMessage(), cachedAnswer.get());
+                return;
+            }
+        }
+        long cacheVersion = answerCacheVersion;
+
         // 使用知识库配置的估算器，确保 token 统计口径一致
         TokenEstimatorThreadLocal.setTokenEstimator(knowledgeBase.getIngestTokenEstimator());
 
@@ -509,8 +577,7 @@ public class KnowledgeBaseService extends ServiceImpl<KnowledgeBaseMapper, Knowl
         sseAskParams.setUuid(qaRecord.getUuid());
         sseAskParams.setHttpRequestParams(
                 ChatModelRequestParams.builder()
-                        // 使用“知识库UUID_用户UUID”隔离不同用户与知识库的记忆上下文
-                        .memoryId(qaRecord.getKbUuid() + "_" + user.getUuid())
+                        .memoryId(memoryId)
                         .systemMessage(knowledgeBase.getQuerySystemMessage())
                         .userMessage(qaRecord.getQuestion())
                         .build()
@@ -572,16 +639,23 @@ public class KnowledgeBaseService extends ServiceImpl<KnowledgeBaseMapper, Knowl
             // 组合检索执行 RAG，并在回调中完成收尾与统计
             compositeRag.ragChat(retrievers, sseAskParams, (response, promptMeta, answerMeta) -> {
                         sseEmitterHelper.sendComplete(user.getId(), sseAskParams.getSseEmitter());
+                        // 迟到或被拒绝的检索器未参与本次回答，不写入引用
+                        List<ContentRetriever> usedRetrievers = retrievers.stream()
+                                .filter(retriever -> !compositeRag.getLateRetrievers().contains(retriever) && !compositeRag.getRejectedRetrievers().contains(retriever))
+                                .toList();
                         // 回写问答记录、引用与成本，保证可追溯
-                        updateQaRecord(
+                        int allToken = updateQaRecord(
                                 UpdateQaParams.builder()
                                         .user(user)
                                         .qaRecord(qaRecord)
-                                        .retrievers(retrievers)
+                                        .retrievers(usedRetrievers)
                                         .sseAskParams(sseAskParams)
                                         .response(response)
                                         .isTokenFree(aiModel.getIsFree())
                                         .build());
+                        if (answerCacheUsable) {
+                            kbAnswerCacheHelper.put(knowledgeBase, aiModel.getId(), cacheVersion, qaRecord.getQuestion(), qaRecord.getId(), response, allToken);
+                        }
                         // 清理线程变量，避免污染后续请求
                         TokenEstimatorThreadLocal.clearTokenEstimator();
                     }
@@ -589,13 +663,57 @@ public class KnowledgeBaseService extends ServiceImpl<KnowledgeBaseMapper, Knowl
         }
     }
 
+    /**
+     * 使用缓存的答案回复，复制原问答记录的引用，并把问答写入会话记忆以保持后续对话的上下文。
+     *
+     * @param user          当前提问的用户
+     * @param sseEmitter    sse emitter
+     * @param qaRecord      问答记录
+     * @param memoryId      会话记忆 ID
+     * @param systemMessage 知识库配置的系统消息
+     * @param cachedAnswer  缓存的答案
+     * @return 无
+     */
+    private void replayCachedAnswer(User user, SseEmitter sseEmitter, KnowledgeBaseQa qaRecord, String memoryId, String systemMessage, KbAnswerCacheHelper.CachedAnswer cachedAnswer) {
+        log.info("命中语义答案缓存,qaRecordUuid:{},sourceQaRecordId:{}", qaRecord.getUuid(), cachedAnswer.getQaRecordId());
+        SSEEmitterHelper.parseAndSendPartialMsg(sseEmitter, cachedAnswer.getAnswer());
+        // 未请求 LLM，本次问答不消耗 token
+        KnowledgeBaseQa updateRecord = new KnowledgeBaseQa();
+        updateRecord.setId(qaRecord.getId());
+        updateRecord.setPrompt(qaRecord.getQuestion());
+        updateRecord.setPromptTokens(0);
+        updateRecord.setAnswer(cachedAnswer.getAnswer());
+        updateRecord.setAnswerTokens(0);
+        knowledgeBaseQaRecordService.updateById(updateRecord);
+        knowledgeBaseQaRecordService.copyRefs(user, cachedAnswer.getQaRecordId(), qaRecord.getId());
+        kbAnswerCacheHelper.recordSavedTokens(qaRecord.getKbUuid(), cachedAnswer.getTokens());
+        ChatMemory chatMemory = CompositeRag.buildChatMemory(memoryId);
+        if (StringUtils.isNotBlank(systemMessage)) {
+            chatMemory.add(SystemMessage.from(systemMessage));
+        }
+        chatMemory.add(UserMessage.from(qaRecord.getQuestion()));
+        chatMemory.add(AiMessage.from(cachedAnswer.getAnswer()));
+        sseEmitterHelper.sendComplete(user.getId(), sseEmitter);
+    }
+
+    /**
+     * 会话记忆中是否已有对话消息（系统消息不计入）。
+     *
+     * @param memoryId 会话记忆 ID
+     * @return 是否有历史消息
+     */
+    private boolean hasChatHistory(String memoryId) {
+        return ChatMemoryStoreFactory.get().getMessages(memoryId).stream()
+                .anyMatch(message -> message instanceof UserMessage || message instanceof AiMessage);
+    }
+
     /**
      * 更新问答记录并写入消耗统计。
      *
      * @param updateQaParams 更新参数
-     * @return 无
+     * @return 本次请求消耗的 token 总数
      */
-    private void updateQaRecord(UpdateQaParams updateQaParams) {
+    private int updateQaRecord(UpdateQaParams updateQaParams) {
 
         // 从 Redis 汇总本次请求的 token 消耗，保证计费与统计一致
         Pair<Integer, Integer> inputOutputTokenCost = LLMTokenUtil.calAllTokenCostByUuid(stringRedisTemplate, updateQaParams.getSseAskParams().getUuid());
@@ -620,6 +738,7 @@ public class KnowledgeBaseService extends ServiceImpl<KnowledgeBaseMapper, Knowl
         if (allToken > 0) {
             userDayCostService.appendCostToUser(user, allToken, updateQaParams.isTokenFree());
         }
+        return allToken;
     }
 
     /**
@@ -1,6 +1,7 @@
 package com.moyz.adi.common.service;
 
 import com.moyz.adi.common.base.ThreadContext;
+import com.moyz.adi.common.config.AdiProperties;
 import com.moyz.adi.common.cosntant.AdiConstant;
 import com.moyz.adi.common.dto.AiSearchReq;
 import com.moyz.adi.common.dto.SearchEngineResp;
@@ -11,9 +12,11 @@ import com.moyz.adi.common.entity.AiSearchRecord;
 import com.moyz.adi.common.entity.User;
 import com.moyz.adi.common.helper.LLMContext;
 import com.moyz.adi.common.helper.SSEEmitterHelper;
+import com.moyz.adi.common.helper.WebPageFetcher;
 import com.moyz.adi.common.rag.CompositeRag;
 import com.moyz.adi.common.rag.EmbeddingRag;
 import com.moyz.adi.common.rag.EmbeddingRagContext;
+import com.moyz.adi.common.rag.EphemeralEmbeddingStore;
 import com.moyz.adi.common.searchengine.SearchEngineServiceContext;
 import com.moyz.adi.common.util.PromptUtil;
 import com.moyz.adi.common.util.UuidUtil;
@@ -23,15 +26,14 @@ import com.moyz.adi.common.vo.SseAskParams;
 import dev.langchain4j.data.document.DefaultDocument;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.jsoup.Jsoup;
-import org.jsoup.safety.Cleaner;
-import org.jsoup.safety.Safelist;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.scheduling.annotation.Async;
@@ -39,8 +41,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.moyz.adi.common.cosntant.AdiConstant.RetrieveContentFrom.WEB;
 import static com.moyz.adi.common.cosntant.AdiConstant.SSE_TIMEOUT;
@@ -85,10 +92,35 @@ public class SearchService {
     private AiModelService aiModelService;
 
     /**
-     * 异步执行器。
+     * 检索线程执行器，用于网页内容的并发入库。
+     */
+    @Resource(name = "retrievalExecutor")
+    private AsyncTaskExecutor retrievalExecutor;
+
+    /**
+     * 后台任务执行器，用于持久化搜索结果的向量。
+     */
+    @Resource(name = "indexExecutor")
+    private AsyncTaskExecutor indexExecutor;
+
+    /**
+     * 应用配置。
+     */
+    @Resource
+    private AdiProperties adiProperties;
+
+    /**
+     * AI 搜索向量库，仅在开启持久化时写入。
+     */
+    @Lazy
+    @Resource(name = "searchEmbeddingStore")
+    private EmbeddingStore<TextSegment> searchEmbeddingStore;
+
+    /**
+     * 网页正文抓取。
      */
     @Resource
-    private AsyncTaskExecutor mainExecutor;
+    private WebPageFetcher webPageFetcher;
 
     /**
      * 发起搜索请求（SSE）。
@@ -99,7 +131,7 @@ public class SearchService {
     public SseEmitter search(AiSearchReq req) {
         User user = ThreadContext.getCurrentUser();
         SseEmitter sseEmitter = new SseEmitter(SSE_TIMEOUT);
-        if (!sseEmitterHelper.checkOrComplete(user, sseEmitter)) {
+        if (!sseEmitterHelper.checkOrComplete(user, req.getModelName(), sseEmitter)) {
             return sseEmitter;
         }
         sseEmitterHelper.startSse(user, sseEmitter);
@@ -197,7 +229,7 @@ public class SearchService {
 
     /**
      * 1. 通过搜索引擎检索
-     * 2. 保存响应到向量库
+     * 2. 向量化到请求内的内存向量库
      * 3. 召回文档并构建提示词
      * 4. 发送提示词给大模型
      *
@@ -224,43 +256,73 @@ public class SearchService {
         newRecord.setAiModelId(aiModel.getId());
         aiSearchRecordService.save(newRecord);
 
-        CountDownLatch countDownLatch = new CountDownLatch(resultItems.size());
-        for (int i = 0; i < resultItems.size(); i++) {
-            int finalI = i;
-            mainExecutor.execute(() -> {
+        // 网页内容只在本次回答中使用，向量存于请求内的内存向量库，检索不经过数据库
+        EphemeralEmbeddingStore searchStore = new EphemeralEmbeddingStore();
+        EmbeddingRag webRag = EmbeddingRagContext.get(WEB).withEmbeddingStore(searchStore);
+        // 摘要立即向量化；排名靠前的网页异步抓取正文，抓到足够的网页或超出时间预算即开始生成，迟到的正文只作为引用
+        AdiProperties.AiSearch config = adiProperties.getAiSearch();
+        int fetchPages = Math.min(config.getFetchPages(), resultItems.size());
+        CountDownLatch snippetLatch = new CountDownLatch(resultItems.size());
+        CountDownLatch quorumLatch = new CountDownLatch(Math.max(0, Math.min(config.getFetchQuorum(), fetchPages)));
+        AtomicBoolean generating = new AtomicBoolean(false);
+        // 抓取线程不修改 resultItems，正文按序号保存在各自的 future 中，回答结束后再生成带正文的搜索结果
+        List<CompletableFuture<String>> pageContents = new ArrayList<>(fetchPages);
+        for (int i = 0; i < fetchPages; i++) {
+            SearchReturnWebPage item = resultItems.get(i);
+            CompletableFuture<String> pageContent = webPageFetcher.fetch(item.getLink());
+            pageContents.add(pageContent);
+            pageContent.thenAccept(content -> {
+                if (StringUtils.isBlank(content)) {
+                    quorumLatch.countDown();
+                    return;
+                }
+                if (generating.get()) {
+                    log.info("Late page used as citation only,uuid:{},link:{}", searchUuid, item.getLink());
+                    return;
+                }
                 try {
-                    SearchReturnWebPage item = resultItems.get(finalI);
-                    String content;
-                    if (finalI < 2) {
-                        content = getContentFromRemote(item);
-
-                        // 用网页正文内容填充
-                        item.setContent(content);
-                    } else {
-                        content = item.getSnippet();
-                    }
-
-                    // 向量化入库
-                    if (StringUtils.isNotBlank(content)) {
-                        Metadata metadata = new Metadata();
-                        metadata.put(AdiConstant.MetadataKey.ENGINE_NAME, engineName);
-                        metadata.put(AdiConstant.MetadataKey.SEARCH_UUID, searchUuid);
-                        Document document = new DefaultDocument(content, metadata);
-                        EmbeddingRagContext.get(WEB).ingest(document, 0, "", null);
-                    }
-                } catch (Exception e) {
-                    log.error("Detail search error,uuid:{}", searchUuid, e);
-                } finally {
-                    countDownLatch.countDown();
+                    retrievalExecutor.execute(() -> {
+                        try {
+                            ingestBeforeCutoff(content, engineName, searchUuid, searchStore, generating);
+                        } finally {
+                            quorumLatch.countDown();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // 检索线程池已满，该网页正文只作为引用
+                    log.warn("Page ingest rejected,uuid:{},link:{}", searchUuid, item.getLink());
+                    quorumLatch.countDown();
                 }
             });
         }
+        for (SearchReturnWebPage item : resultItems) {
+            try {
+                retrievalExecutor.execute(() -> {
+                    try {
+                        ingestBeforeCutoff(item.getSnippet(), engineName, searchUuid, searchStore, generating);
+                    } finally {
+                        snippetLatch.countDown();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // 检索线程池已满，跳过该摘要
+                log.warn("Snippet ingest rejected,uuid:{}", searchUuid);
+                snippetLatch.countDown();
+            }
+        }
+        long deadline = System.currentTimeMillis() + config.getFetchBudgetMillis();
         try {
-            countDownLatch.await();
+            snippetLatch.await(config.getFetchBudgetMillis(), TimeUnit.MILLISECONDS);
+            quorumLatch.await(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
             log.error("CountDownLatch await error,uuid:{}", searchUuid, e);
             Thread.currentThread().interrupt();
         }
+        // 置位与各网页并入共享向量库互斥，之后向量库不再变化，提示词只由截止前完成的网页构建
+        synchronized (generating) {
+            generating.set(true);
+        }
+        log.info("Fetch stage done,uuid:{},segments:{},pendingSnippets:{},pendingQuorum:{}", searchUuid, searchStore.size(), snippetLatch.getCount(), quorumLatch.getCount());
 
         log.info("Create prompt");
         int maxInputTokens = aiModel.getMaxInputTokens();
@@ -271,7 +333,7 @@ public class SearchService {
                 .minScore(0)
                 .breakIfSearchMissed(false)
                 .build();
-        ContentRetriever contentRetriever = EmbeddingRagContext.get(WEB).createRetriever(createParam);
+        ContentRetriever contentRetriever = webRag.createRetriever(createParam);
         SseAskParams sseAskParams = new SseAskParams();
         sseAskParams.setUuid(searchUuid);
         sseAskParams.setUser(user);
@@ -292,8 +354,8 @@ public class SearchService {
 
             AiSearchRecord updateRecord = new AiSearchRecord();
             updateRecord.setId(existRecord.getId());
-            // 更新搜索结果内容（包含正文）
-            updateRecord.setSearchEngineResp(new SearchEngineResp().setItems(resultItems));
+            // 更新搜索结果内容（包含正文，迟到的正文只作为引用）
+            updateRecord.setSearchEngineResp(new SearchEngineResp().setItems(withContents(resultItems, pageContents)));
             // 待办：增强后的 prompt
             updateRecord.setPrompt("");
             updateRecord.setPromptTokens(promptMeta.getTokens());
@@ -302,36 +364,99 @@ public class SearchService {
             aiSearchRecordService.updateById(updateRecord);
 
             userDayCostService.appendCostToUser(user, promptMeta.getTokens() + answerMeta.getTokens(), aiModel.getIsFree());
+
+            if (adiProperties.getAiSearch().isPersistEmbeddings()) {
+                try {
+                    indexExecutor.execute(() -> persistEmbeddings(searchUuid, searchStore));
+                } catch (RejectedExecutionException e) {
+                    log.warn("Persist embeddings rejected,uuid:{}", searchUuid);
+                }
+            }
         });
     }
 
     /**
-     * 从远程网页获取正文内容。
+     * 把内存向量库中的网页向量写入 AI 搜索向量库，不在回答的关键路径上执行。
      *
-     * @param item 搜索结果条目
-     * @return 正文内容
+     * @param searchUuid  搜索记录 UUID
+     * @param searchStore 内存向量库
+     * @return 无
      */
-    private String getContentFromRemote(SearchReturnWebPage item) {
-        String result = "";
+    private void persistEmbeddings(String searchUuid, EphemeralEmbeddingStore searchStore) {
         try {
-            String url = item.getLink();
-            if (StringUtils.isBlank(url) || !url.startsWith("http")) {
-                return result;
-            }
-            org.jsoup.nodes.Document doc = Jsoup.connect(url).ignoreContentType(true).get();
-            if (!doc.getElementsByTag("main").isEmpty()) {
-                result = doc.getElementsByTag("main").get(0).html();
-            } else {
-                result = doc.body().html();
-            }
-            if (StringUtils.isBlank(result)) {
-                log.error("Empty content from {}, use snippet instead", item.getLink());
-                return item.getSnippet();
+            int count = searchStore.copyTo(searchEmbeddingStore);
+            log.info("search embeddings persisted,uuid:{},count:{}", searchUuid, count);
+        } catch (Exception e) {
+            log.error("persist search embeddings error,uuid:{}", searchUuid, e);
+        }
+    }
+
+    /**
+     * 把网页内容向量化到单独的内存向量库，生成开始前完成的才并入本次搜索的共享向量库，
+     * 避免检索期间仍有网页写入。
+     *
+     * @param content     网页正文或摘要
+     * @param engineName  搜索引擎名称
+     * @param searchUuid  搜索记录 UUID
+     * @param searchStore 本次搜索的共享内存向量库
+     * @param generating  是否已开始生成
+     * @return 无
+     */
+    private void ingestBeforeCutoff(String content, String engineName, String searchUuid, EphemeralEmbeddingStore searchStore, AtomicBoolean generating) {
+        EphemeralEmbeddingStore pageStore = new EphemeralEmbeddingStore();
+        ingestWebContent(EmbeddingRagContext.get(WEB).withEmbeddingStore(pageStore), content, engineName, searchUuid);
+        synchronized (generating) {
+            if (!generating.get()) {
+                pageStore.copyTo(searchStore);
+                return;
             }
+        }
+        log.info("Late content used as citation only,uuid:{}", searchUuid);
+    }
+
+    /**
+     * 生成带网页正文的搜索结果副本，正文取自已完成的抓取，不修改原搜索结果。
+     *
+     * @param resultItems  搜索结果
+     * @param pageContents 按序号对应的网页正文抓取结果
+     * @return 搜索结果副本
+     */
+    private static List<SearchReturnWebPage> withContents(List<SearchReturnWebPage> resultItems, List<CompletableFuture<String>> pageContents) {
+        List<SearchReturnWebPage> result = new ArrayList<>(resultItems.size());
+        for (int i = 0; i < resultItems.size(); i++) {
+            SearchReturnWebPage item = resultItems.get(i);
+            String content = i < pageContents.size() ? pageContents.get(i).getNow(null) : null;
+            result.add(SearchReturnWebPage.builder()
+                    .title(item.getTitle())
+                    .link(item.getLink())
+                    .snippet(item.getSnippet())
+                    .content(StringUtils.isBlank(content) ? item.getContent() : content)
+                    .build());
+        }
+        return result;
+    }
+
+    /**
+     * 把网页内容向量化到请求内的内存向量库。
+     *
+     * @param webRag     使用内存向量库的 RAG 实例
+     * @param content    网页正文或摘要
+     * @param engineName 搜索引擎名称
+     * @param searchUuid 搜索记录 UUID
+     * @return 无
+     */
+    private void ingestWebContent(EmbeddingRag webRag, String content, String engineName, String searchUuid) {
+        if (StringUtils.isBlank(content)) {
+            return;
+        }
+        try {
+            Metadata metadata = new Metadata();
+            metadata.put(AdiConstant.MetadataKey.ENGINE_NAME, engineName);
+            metadata.put(AdiConstant.MetadataKey.SEARCH_UUID, searchUuid);
+            Document document = new DefaultDocument(content, metadata);
+            webRag.ingest(document, 0, "", null);
         } catch (Exception e) {
-            log.error("Failed to load document from {}, use snippet instead", item.getLink(), e);
+            log.error("Detail search error,uuid:{}", searchUuid, e);
         }
-        Cleaner cleaner = new Cleaner(Safelist.none());
-        return cleaner.clean(Jsoup.parse(result)).text();
     }
 }
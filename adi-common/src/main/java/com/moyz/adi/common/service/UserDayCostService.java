@@ -1,32 +1,98 @@
 package com.moyz.adi.common.service;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.moyz.adi.common.config.AdiProperties;
+import com.moyz.adi.common.cosntant.RedisKeyConstant;
 import com.moyz.adi.common.entity.User;
 import com.moyz.adi.common.entity.UserDayCost;
 import com.moyz.adi.common.mapper.UserDayCostMapper;
 import com.moyz.adi.common.util.LocalDateTimeUtil;
 import com.moyz.adi.common.vo.CostStat;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.Lazy;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.text.MessageFormat;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 用户每日消耗统计服务。
+ * <p>
+ * 消耗计数保存在 Redis 中（每个用户每月一个 hash，当天与当月计数在同一个脚本中原子累加），
+ * 额度检查只读取该 hash 的几个字段，不再按月查询数据库；
+ * 计数定时批量写入 adi_user_day_cost，数据库中的统计最多落后 adi.user-cost.flush-interval-millis。
+ * Redis 中没有当月计数时（首次使用或数据丢失）从数据库加载后再累加。
  */
 @Slf4j
 @Service
 public class UserDayCostService extends ServiceImpl<UserDayCostMapper, UserDayCost> {
 
     /**
-     * 自身代理对象（用于触发异步方法）。
+     * 当月计数字段前缀。
+     */
+    private static final String MONTH = "month";
+
+    /**
+     * 已从数据库加载的标记字段。
+     */
+    private static final String SEEDED = "seeded";
+
+    /**
+     * 累加计数：当月计数不存在时返回 0，由调用方从数据库加载后重试。
+     * 每次累加都刷新当月计数的过期时间，避免落库前过期丢失增量。
+     * KEYS：当月计数、待落库集合；ARGV：日期、token 数、请求数、绘图数、待落库成员、过期秒数。
+     */
+    private static final RedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return 0
+            end
+            for i, name in ipairs({'tokens', 'requests', 'draws'}) do
+                local delta = tonumber(ARGV[i + 1])
+                if delta ~= 0 then
+                    redis.call('HINCRBY', KEYS[1], ARGV[1] .. ':' .. name, delta)
+                    redis.call('HINCRBY', KEYS[1], 'month:' .. name, delta)
+                end
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[6])
+            redis.call('SADD', KEYS[2], ARGV[5])
+            return 1
+            """, Long.class);
+
+    /**
+     * 加载当月计数，已存在时不覆盖。
+     * KEYS：当月计数；ARGV：过期秒数、字段1、值1、字段2、值2...
+     */
+    private static final RedisScript<Long> SEED_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 1 then
+                return 0
+            end
+            for i = 2, #ARGV, 2 do
+                redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[1])
+            return 1
+            """, Long.class);
+
+    /**
+     * 应用配置。
      */
-    @Lazy
     @Resource
-    private UserDayCostService self;
+    private AdiProperties adiProperties;
+
+    /**
+     * Redis 操作模板。
+     */
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
 
     /**
      * 累加用户的 token 消耗。
@@ -42,58 +108,51 @@ public class UserDayCostService extends ServiceImpl<UserDayCostMapper, UserDayCo
         if (tokens <= 0) {
             return;
         }
-        // 先查询当天记录，存在则累加，不存在则新增
-        UserDayCost userDayCost = getTodayCost(user, isFree);
-        UserDayCost saveOrUpdateInst = new UserDayCost();
-        if (null == userDayCost) {
-            saveOrUpdateInst.setUserId(user.getId());
-            saveOrUpdateInst.setDay(LocalDateTimeUtil.getToday());
-            saveOrUpdateInst.setTokens(tokens);
-            saveOrUpdateInst.setRequestTimes(1);
-        } else {
-            saveOrUpdateInst.setId(userDayCost.getId());
-            saveOrUpdateInst.setTokens(userDayCost.getTokens() + tokens);
-            saveOrUpdateInst.setRequestTimes(userDayCost.getRequestTimes() + 1);
-        }
-        saveOrUpdateInst.setIsFree(isFree);
-        self.saveOrUpdate(saveOrUpdateInst);
+        increment(user.getId(), isFree, tokens, 1, 0);
+    }
+
+    /**
+     * 累加用户的绘图次数。
+     *
+     * @param user   用户
+     * @param isFree 消耗的是否免费额度
+     * @return 无
+     */
+    public void appendDrawToUser(User user, boolean isFree) {
+        increment(user.getId(), isFree, 0, 0, 1);
     }
 
     /**
-     * 统计用户当月与当日消耗。
+     * 统计用户当月与当日消耗，直接读取 Redis 中的计数。
      *
      * @param userId 用户 ID
      * @param isFree 是否免费额度
      * @return 消耗统计
      */
     public CostStat costStatByUser(long userId, boolean isFree) {
-        CostStat result = new CostStat();
-
-        int today = LocalDateTimeUtil.getIntDay(LocalDateTime.now());
-        int start = LocalDateTimeUtil.getIntDay(LocalDateTime.now().withDayOfMonth(1));
-        int end = LocalDateTimeUtil.getIntDay(LocalDateTime.now().plusMonths(1).withDayOfMonth(1).minusDays(1));
-
-        List<UserDayCost> userDayCostList = this.lambdaQuery()
-                .eq(UserDayCost::getUserId, userId)
-                .between(UserDayCost::getDay, start, end)
-                .eq(UserDayCost::getIsFree, isFree)
-                .list();
-        for (UserDayCost userDayCost : userDayCostList) {
-            result.setTextTokenCostByMonth(result.getTextTokenCostByMonth() + userDayCost.getTokens());
-            result.setTextRequestTimesByMonth(result.getTextRequestTimesByMonth() + userDayCost.getRequestTimes());
-            result.setDrawTimesByMonth(result.getDrawTimesByMonth() + userDayCost.getDrawTimes());
-            if (userDayCost.getDay() == today) {
-                result.setTextTokenCostByDay(userDayCost.getTokens());
-                result.setTextRequestTimesByDay(userDayCost.getRequestTimes());
-                result.setDrawTimesByDay(userDayCost.getDrawTimes());
-            }
-            result.setFree(userDayCost.getIsFree());
+        int today = LocalDateTimeUtil.getToday();
+        String key = key(userId, today, isFree);
+        List<Object> fields = List.of(SEEDED, MONTH + ":tokens", MONTH + ":requests", MONTH + ":draws",
+                today + ":tokens", today + ":requests", today + ":draws");
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(key, fields);
+        if (null == values.get(0)) {
+            seed(userId, today, isFree);
+            values = stringRedisTemplate.opsForHash().multiGet(key, fields);
         }
+        CostStat result = new CostStat();
+        result.setTextTokenCostByMonth(toInt(values.get(1)));
+        result.setTextRequestTimesByMonth(toInt(values.get(2)));
+        result.setDrawTimesByMonth(toInt(values.get(3)));
+        result.setTextTokenCostByDay(toInt(values.get(4)));
+        result.setTextRequestTimesByDay(toInt(values.get(5)));
+        result.setDrawTimesByDay(toInt(values.get(6)));
+        result.setFree(isFree);
         return result;
     }
 
     /**
      * 获取用户当天消耗记录。
+     * 数据库中的记录最多落后 adi.user-cost.flush-interval-millis，实时计数请使用 {@link #costStatByUser}。
      *
      * @param user   用户
      * @param isFree 是否免费额度
@@ -127,4 +186,171 @@ public class UserDayCostService extends ServiceImpl<UserDayCostMapper, UserDayCo
         int end = LocalDateTimeUtil.getIntDay(LocalDateTime.now().plusMonths(1).withDayOfMonth(1).minusDays(1));
         return baseMapper.sumCostByDayPeriod(start, end).intValue();
     }
+
+    /**
+     * 把有变化的当天计数批量写入数据库。
+     * 写入的是 Redis 中的累计值而不是增量，重复写入或多个节点同时写入结果一致。
+     *
+     * @return 无
+     */
+    @Scheduled(initialDelayString = "${adi.user-cost.flush-interval-millis:5000}", fixedDelayString = "${adi.user-cost.flush-interval-millis:5000}")
+    public void flush() {
+        int batchSize = Math.max(1, adiProperties.getUserCost().getFlushBatchSize());
+        List<String> members;
+        while (!(members = popDirty(batchSize)).isEmpty()) {
+            try {
+                List<UserDayCost> rows = new ArrayList<>(members.size());
+                for (String member : members) {
+                    UserDayCost row = toRow(member);
+                    if (null != row) {
+                        rows.add(row);
+                    }
+                }
+                if (!rows.isEmpty()) {
+                    baseMapper.batchUpsert(rows);
+                }
+                log.debug("user day cost flushed,rows:{}", rows.size());
+            } catch (Exception e) {
+                // 放回待落库集合，下次重试
+                stringRedisTemplate.opsForSet().add(RedisKeyConstant.USER_COST_DIRTY, members.toArray(new String[0]));
+                log.error("user day cost flush error,rows:{}", members.size(), e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 停机前把计数写入数据库。
+     *
+     * @return 无
+     */
+    @PreDestroy
+    public void destroy() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("user day cost flush on shutdown error", e);
+        }
+    }
+
+    /**
+     * 原子累加计数，当月计数不存在时先从数据库加载。
+     *
+     * @param userId   用户 ID
+     * @param isFree   是否免费额度
+     * @param tokens   token 数
+     * @param requests 请求数
+     * @param draws    绘图数
+     * @return 无
+     */
+    private void increment(long userId, boolean isFree, int tokens, int requests, int draws) {
+        int today = LocalDateTimeUtil.getToday();
+        List<String> keys = List.of(key(userId, today, isFree), RedisKeyConstant.USER_COST_DIRTY);
+        String member = userId + ":" + today + ":" + (isFree ? 1 : 0);
+        Object[] args = {String.valueOf(today), String.valueOf(tokens), String.valueOf(requests), String.valueOf(draws), member,
+                String.valueOf(TimeUnit.DAYS.toSeconds(adiProperties.getUserCost().getTtlDays()))};
+        Long done = stringRedisTemplate.execute(INCREMENT_SCRIPT, keys, args);
+        if (null == done || done == 0) {
+            seed(userId, today, isFree);
+            stringRedisTemplate.execute(INCREMENT_SCRIPT, keys, args);
+        }
+    }
+
+    /**
+     * 从数据库加载用户当月的计数到 Redis，其他请求已加载时不覆盖。
+     *
+     * @param userId 用户 ID
+     * @param today  当天日期 yyyyMMdd
+     * @param isFree 是否免费额度
+     * @return 无
+     */
+    private void seed(long userId, int today, boolean isFree) {
+        int start = today / 100 * 100 + 1;
+        int end = today / 100 * 100 + 31;
+        List<UserDayCost> rows = this.lambdaQuery()
+                .eq(UserDayCost::getUserId, userId)
+                .between(UserDayCost::getDay, start, end)
+                .eq(UserDayCost::getIsFree, isFree)
+                .list();
+        long monthTokens = 0;
+        long monthRequests = 0;
+        long monthDraws = 0;
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(TimeUnit.DAYS.toSeconds(adiProperties.getUserCost().getTtlDays())));
+        args.add(SEEDED);
+        args.add("1");
+        for (UserDayCost row : rows) {
+            int tokens = null == row.getTokens() ? 0 : row.getTokens();
+            int requests = null == row.getRequestTimes() ? 0 : row.getRequestTimes();
+            int draws = null == row.getDrawTimes() ? 0 : row.getDrawTimes();
+            args.addAll(List.of(row.getDay() + ":tokens", String.valueOf(tokens), row.getDay() + ":requests", String.valueOf(requests), row.getDay() + ":draws", String.valueOf(draws)));
+            monthTokens += tokens;
+            monthRequests += requests;
+            monthDraws += draws;
+        }
+        args.addAll(List.of(MONTH + ":tokens", String.valueOf(monthTokens), MONTH + ":requests", String.valueOf(monthRequests), MONTH + ":draws", String.valueOf(monthDraws)));
+        stringRedisTemplate.execute(SEED_SCRIPT, List.of(key(userId, today, isFree)), args.toArray());
+        log.info("user cost seeded from db,userId:{},month:{},isFree:{},days:{}", userId, today / 100, isFree, rows.size());
+    }
+
+    /**
+     * 从待落库集合中取出一批成员。
+     *
+     * @param batchSize 数量
+     * @return 成员列表
+     */
+    private List<String> popDirty(int batchSize) {
+        List<String> members = stringRedisTemplate.opsForSet().pop(RedisKeyConstant.USER_COST_DIRTY, batchSize);
+        return null == members ? List.of() : members;
+    }
+
+    /**
+     * 根据待落库成员读取当天计数。
+     *
+     * @param member 用户id:日期:是否免费额度
+     * @return 日统计行，计数已过期时返回 null
+     */
+    private UserDayCost toRow(String member) {
+        String[] parts = member.split(":");
+        if (parts.length != 3) {
+            return null;
+        }
+        long userId = Long.parseLong(parts[0]);
+        int day = Integer.parseInt(parts[1]);
+        boolean isFree = "1".equals(parts[2]);
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(key(userId, day, isFree), List.of(day + ":tokens", day + ":requests", day + ":draws"));
+        if (values.stream().allMatch(item -> null == item)) {
+            return null;
+        }
+        UserDayCost row = new UserDayCost();
+        row.setUserId(userId);
+        row.setDay(day);
+        row.setTokens(toInt(values.get(0)));
+        row.setRequestTimes(toInt(values.get(1)));
+        row.setDrawTimes(toInt(values.get(2)));
+        row.setIsFree(isFree);
+        return row;
+    }
+
+    /**
+     * 用户当月计数的 key。
+     *
+     * @param userId 用户 ID
+     * @param day    日期 yyyyMMdd
+     * @param isFree 是否免费额度
+     * @return key
+     */
+    private static String key(long userId, int day, boolean isFree) {
+        return MessageFormat.format(RedisKeyConstant.USER_COST, String.valueOf(userId), String.valueOf(day / 100), isFree ? "1" : "0");
+    }
+
+    /**
+     * 计数转为整数，不存在时为 0。
+     *
+     * @param value 计数
+     * @return 整数
+     */
+    private static int toInt(Object value) {
+        return null == value ? 0 : NumberUtils.toInt(value.toString());
+    }
 }
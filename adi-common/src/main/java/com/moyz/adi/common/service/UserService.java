@@ -14,6 +14,7 @@ import com.moyz.adi.common.enums.ErrorEnum;
 import com.moyz.adi.common.enums.UserStatusEnum;
 import com.moyz.adi.common.exception.BaseException;
 import com.moyz.adi.common.helper.AdiMailSender;
+import com.moyz.adi.common.helper.UserTokenCache;
 import com.moyz.adi.common.mapper.UserMapper;
 import com.moyz.adi.common.util.*;
 import com.moyz.adi.common.vo.CostStat;
@@ -31,6 +32,7 @@ import org.springframework.stereotype.Service;
 
 import java.text.MessageFormat;
 import java.time.LocalDateTime;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static com.moyz.adi.common.cosntant.RedisKeyConstant.*;
@@ -73,6 +75,12 @@ public class UserService extends ServiceImpl<UserMapper, User> {
     @Resource
     private AdiProperties adiProperties;
 
+    /**
+     * 登录 token 本地缓存。
+     */
+    @Resource
+    private UserTokenCache userTokenCache;
+
     /**
      * 应用名称。
      */
@@ -164,6 +172,7 @@ public class UserService extends ServiceImpl<UserMapper, User> {
         updateUser.setId(Long.parseLong(userId));
         updateUser.setPassword(BCrypt.hashpw(AdiConstant.DEFAULT_PASSWORD, BCrypt.gensalt()));
         baseMapper.updateById(updateUser);
+        refreshLoginTokens(updateUser.getId());
         stringRedisTemplate.delete(key);
     }
 
@@ -185,6 +194,7 @@ public class UserService extends ServiceImpl<UserMapper, User> {
         updateUser.setId(user.getId());
         updateUser.setPassword(hashed);
         baseMapper.updateById(updateUser);
+        refreshLoginTokens(updateUser.getId());
     }
 
     /**
@@ -227,6 +237,7 @@ public class UserService extends ServiceImpl<UserMapper, User> {
         updateUser.setUserStatus(UserStatusEnum.NORMAL);
         updateUser.setActiveTime(LocalDateTime.now());
         baseMapper.updateById(updateUser);
+        refreshLoginTokens(updateUser.getId());
     }
 
     /**
@@ -240,6 +251,7 @@ public class UserService extends ServiceImpl<UserMapper, User> {
         updateUser.setId(user.getId());
         updateUser.setUserStatus(UserStatusEnum.FREEZE);
         baseMapper.updateById(updateUser);
+        refreshLoginTokens(updateUser.getId());
     }
 
     /**
@@ -259,6 +271,7 @@ public class UserService extends ServiceImpl<UserMapper, User> {
             editUser.setPassword(null);
         }
         baseMapper.updateById(editUser);
+        refreshLoginTokens(editUser.getId());
     }
 
     /**
@@ -402,6 +415,7 @@ public class UserService extends ServiceImpl<UserMapper, User> {
         user.setId(ThreadContext.getCurrentUserId());
         BeanUtils.copyProperties(userUpdateReq, user);
         baseMapper.updateById(user);
+        refreshLoginTokens(user.getId());
     }
 
     /**
@@ -415,6 +429,8 @@ public class UserService extends ServiceImpl<UserMapper, User> {
         }
         String tokenKey = MessageFormat.format(USER_TOKEN, token);
         stringRedisTemplate.delete(tokenKey);
+        stringRedisTemplate.opsForSet().remove(MessageFormat.format(USER_TOKENS, ThreadContext.getCurrentUserId()), token);
+        userTokenCache.invalidateToken(token);
     }
 
     /**
@@ -424,6 +440,55 @@ public class UserService extends ServiceImpl<UserMapper, User> {
      * @return 生成的登录令牌
      */
     private String setLoginToken(User user) {
+        fillDefaultQuota(user);
+        String token = UuidUtil.createShort();
+        String tokenKey = MessageFormat.format(USER_TOKEN, token);
+        String jsonUser = JsonUtil.toJson(user);
+        stringRedisTemplate.opsForValue().set(tokenKey, jsonUser, AdiConstant.USER_TOKEN_EXPIRE, TimeUnit.HOURS);
+        String userTokensKey = MessageFormat.format(USER_TOKENS, user.getId());
+        stringRedisTemplate.opsForSet().add(userTokensKey, token);
+        stringRedisTemplate.expire(userTokensKey, AdiConstant.USER_TOKEN_EXPIRE, TimeUnit.HOURS);
+        return token;
+    }
+
+    /**
+     * 用户信息变更后改写其全部登录 token 中保存的用户信息，用户已冻结或删除时删除这些 token，
+     * 再通知各节点失效本地缓存，变更对已登录的会话立即生效。
+     *
+     * @param userId 用户 ID
+     */
+    private void refreshLoginTokens(Long userId) {
+        String userTokensKey = MessageFormat.format(USER_TOKENS, userId);
+        Set<String> tokens = stringRedisTemplate.opsForSet().members(userTokensKey);
+        if (null != tokens && !tokens.isEmpty()) {
+            User user = baseMapper.selectById(userId);
+            boolean revoke = null == user || Boolean.TRUE.equals(user.getIsDeleted()) || user.getUserStatus() == UserStatusEnum.FREEZE;
+            String jsonUser = null;
+            if (!revoke) {
+                fillDefaultQuota(user);
+                jsonUser = JsonUtil.toJson(user);
+            }
+            for (String token : tokens) {
+                String tokenKey = MessageFormat.format(USER_TOKEN, token);
+                Long ttl = stringRedisTemplate.getExpire(tokenKey, TimeUnit.SECONDS);
+                // 只改写仍然有效的 token，保留其剩余有效期
+                if (revoke || null == ttl || ttl <= 0
+                        || !Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfPresent(tokenKey, jsonUser, ttl, TimeUnit.SECONDS))) {
+                    stringRedisTemplate.delete(tokenKey);
+                    stringRedisTemplate.opsForSet().remove(userTokensKey, token);
+                }
+            }
+            log.info("refresh login tokens,userId:{},tokens:{},revoke:{}", userId, tokens.size(), revoke);
+        }
+        userTokenCache.invalidateUser(userId);
+    }
+
+    /**
+     * 用户未单独设置的额度使用系统默认值。
+     *
+     * @param user 用户
+     */
+    private void fillDefaultQuota(User user) {
         if (user.getQuotaByTokenDaily() == 0) {
             user.setQuotaByTokenDaily(Integer.parseInt(LocalCache.CONFIGS.get(AdiConstant.SysConfigKey.QUOTA_BY_TOKEN_DAILY)));
         }
@@ -442,11 +507,6 @@ public class UserService extends ServiceImpl<UserMapper, User> {
         if (user.getQuotaByImageMonthly() == 0) {
             user.setQuotaByImageMonthly(Integer.parseInt(LocalCache.CONFIGS.get(AdiConstant.SysConfigKey.QUOTA_BY_IMAGE_MONTHLY)));
         }
-        String token = UuidUtil.createShort();
-        String tokenKey = MessageFormat.format(USER_TOKEN, token);
-        String jsonUser = JsonUtil.toJson(user);
-        stringRedisTemplate.opsForValue().set(tokenKey, jsonUser, AdiConstant.USER_TOKEN_EXPIRE, TimeUnit.HOURS);
-        return token;
     }
 
     /**
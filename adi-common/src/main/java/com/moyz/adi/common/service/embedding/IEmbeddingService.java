@@ -5,6 +5,7 @@ import com.moyz.adi.common.dto.KbItemEmbeddingDto;
 import com.moyz.adi.common.dto.RefEmbeddingDto;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 向量数据服务接口。
@@ -31,10 +32,38 @@ public interface IEmbeddingService {
     /**
      * 删除指定知识点的向量。
      *
+     * @param kbUuid     知识点所属知识库 UUID
      * @param kbItemUuid 知识点 UUID
      * @return 是否删除成功
      */
-    boolean deleteByItemUuid(String kbItemUuid);
+    boolean deleteByItemUuid(String kbUuid, String kbItemUuid);
+
+    /**
+     * 释放已删除知识库占用的向量存储。
+     * 仅在代价与行数无关时执行（如清空知识库独立的分区），否则保留向量，由知识库的软删除标记屏蔽。
+     *
+     * @param kbUuid 知识库 UUID
+     * @return 是否释放了向量存储
+     */
+    boolean deleteByKbUuid(String kbUuid);
+
+    /**
+     * 查询指定知识点各向量对应文本段的指纹，用于增量索引。
+     *
+     * @param kbUuid     知识点所属知识库 UUID
+     * @param kbItemUuid 知识点 UUID
+     * @return 向量 ID 到文本段指纹的映射，未记录指纹的向量对应空串
+     */
+    Map<String, String> listSegmentHashes(String kbUuid, String kbItemUuid);
+
+    /**
+     * 根据向量 ID 删除向量。
+     *
+     * @param kbUuid       向量所属知识库 UUID
+     * @param embeddingIds 向量 ID 列表
+     * @return 是否删除成功
+     */
+    boolean deleteByEmbeddingIds(String kbUuid, List<String> embeddingIds);
 
     /**
      * 统计知识库下的向量数量。
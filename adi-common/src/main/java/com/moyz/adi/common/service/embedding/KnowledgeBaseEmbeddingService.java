@@ -3,16 +3,24 @@ package com.moyz.adi.common.service.embedding;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.moyz.adi.common.config.AdiProperties;
 import com.moyz.adi.common.dto.KbItemEmbeddingDto;
 import com.moyz.adi.common.entity.KnowledgeBaseEmbedding;
 import com.moyz.adi.common.mapper.KnowledgeBaseEmbeddingMapper;
+import com.moyz.adi.common.rag.pgvector.PartitionedPgVectorEmbeddingStore;
 import com.moyz.adi.common.util.AdiPropertiesUtil;
 import com.moyz.adi.common.util.MPPageUtil;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -23,6 +31,18 @@ import java.util.UUID;
 @ConditionalOnProperty(value = "adi.vector-database", havingValue = "pgvector")
 public class KnowledgeBaseEmbeddingService extends ServiceImpl<KnowledgeBaseEmbeddingMapper, KnowledgeBaseEmbedding> implements IEmbeddingService {
 
+    /**
+     * 应用配置。
+     */
+    @Resource
+    private AdiProperties adiProperties;
+
+    /**
+     * 知识库向量库，分区表下删除知识库时清空其分区。
+     */
+    @Resource
+    private EmbeddingStore<TextSegment> embeddingStore;
+
     /**
      * 根据向量 ID 列表查询向量内容。
      *
@@ -62,12 +82,58 @@ public class KnowledgeBaseEmbeddingService extends ServiceImpl<KnowledgeBaseEmbe
     /**
      * 删除指定知识点的向量。
      *
+     * @param kbUuid     知识点所属知识库 UUID
+     * @param kbItemUuid 知识点 UUID
+     * @return 是否删除成功
+     */
+    @Override
+    public boolean deleteByItemUuid(String kbUuid, String kbItemUuid) {
+        return baseMapper.deleteByItemUuid(kbUuid, kbItemUuid, AdiPropertiesUtil.EMBEDDING_TABLE_SUFFIX, isPartitioned());
+    }
+
+    /**
+     * 释放已删除知识库占用的向量存储：分区表下清空该知识库的分区；未分区时按行删除代价过高，保留向量。
+     *
+     * @param kbUuid 知识库 UUID
+     * @return 是否清空了分区
+     */
+    @Override
+    public boolean deleteByKbUuid(String kbUuid) {
+        if (embeddingStore instanceof PartitionedPgVectorEmbeddingStore partitionedStore) {
+            return partitionedStore.truncatePartition(kbUuid);
+        }
+        return false;
+    }
+
+    /**
+     * 查询指定知识点各向量对应文本段的指纹。
+     *
+     * @param kbUuid     知识点所属知识库 UUID
      * @param kbItemUuid 知识点 UUID
+     * @return 向量 ID 到文本段指纹的映射
+     */
+    @Override
+    public Map<String, String> listSegmentHashes(String kbUuid, String kbItemUuid) {
+        Map<String, String> result = new HashMap<>();
+        for (KnowledgeBaseEmbedding embedding : baseMapper.selectSegmentHashByItemUuid(kbUuid, kbItemUuid, AdiPropertiesUtil.EMBEDDING_TABLE_SUFFIX, isPartitioned())) {
+            result.put(embedding.getEmbeddingId(), StringUtils.defaultString(embedding.getSegmentHash()));
+        }
+        return result;
+    }
+
+    /**
+     * 根据向量 ID 删除向量。
+     *
+     * @param kbUuid       向量所属知识库 UUID
+     * @param embeddingIds 向量 ID 列表
      * @return 是否删除成功
      */
     @Override
-    public boolean deleteByItemUuid(String kbItemUuid) {
-        return baseMapper.deleteByItemUuid(kbItemUuid, AdiPropertiesUtil.EMBEDDING_TABLE_SUFFIX);
+    public boolean deleteByEmbeddingIds(String kbUuid, List<String> embeddingIds) {
+        if (embeddingIds.isEmpty()) {
+            return true;
+        }
+        return baseMapper.deleteByIds(kbUuid, embeddingIds, AdiPropertiesUtil.EMBEDDING_TABLE_SUFFIX, isPartitioned());
     }
 
     /**
@@ -78,6 +144,15 @@ public class KnowledgeBaseEmbeddingService extends ServiceImpl<KnowledgeBaseEmbe
      */
     @Override
     public Integer countByKbUuid(String kbUuid) {
-        return baseMapper.countByKbUuid(kbUuid, AdiPropertiesUtil.EMBEDDING_TABLE_SUFFIX);
+        return baseMapper.countByKbUuid(kbUuid, AdiPropertiesUtil.EMBEDDING_TABLE_SUFFIX, isPartitioned());
+    }
+
+    /**
+     * 知识库向量表是否按 kb_uuid 分区。
+     *
+     * @return 是否分区
+     */
+    private boolean isPartitioned() {
+        return adiProperties.getPgvectorPartition().isEnable();
     }
 }
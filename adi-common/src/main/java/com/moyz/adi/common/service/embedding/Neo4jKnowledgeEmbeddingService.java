@@ -15,7 +15,9 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -114,15 +116,60 @@ public class Neo4jKnowledgeEmbeddingService implements IEmbeddingService {
     /**
      * 删除指定知识点的向量。
      *
+     * @param kbUuid     知识点所属知识库 UUID
      * @param kbItemUuid 知识点 UUID
      * @return 是否删除成功
      */
     @Override
-    public boolean deleteByItemUuid(String kbItemUuid) {
+    public boolean deleteByItemUuid(String kbUuid, String kbItemUuid) {
         embeddingStore.removeAll(new IsEqualTo(AdiConstant.MetadataKey.KB_ITEM_UUID, kbItemUuid));
         return true;
     }
 
+    /**
+     * 释放已删除知识库占用的向量存储：Neo4j 只能按条件逐个删除，代价过高，保留向量。
+     *
+     * @param kbUuid 知识库 UUID
+     * @return 始终为 false
+     */
+    @Override
+    public boolean deleteByKbUuid(String kbUuid) {
+        return false;
+    }
+
+    /**
+     * 查询指定知识点各向量对应文本段的指纹。
+     *
+     * @param kbUuid     知识点所属知识库 UUID
+     * @param kbItemUuid 知识点 UUID
+     * @return 向量 ID 到文本段指纹的映射
+     */
+    @Override
+    public Map<String, String> listSegmentHashes(String kbUuid, String kbItemUuid) {
+        EmbeddingSearchResult<TextSegment> searchResult = ((AdiNeo4jEmbeddingStore) embeddingStore).searchByMetadata(new IsEqualTo(AdiConstant.MetadataKey.KB_ITEM_UUID, kbItemUuid), Integer.MAX_VALUE);
+        Map<String, String> result = new HashMap<>();
+        for (EmbeddingMatch<TextSegment> embeddingMatch : searchResult.matches()) {
+            String hash = embeddingMatch.embedded().metadata().getString(AdiConstant.MetadataKey.SEGMENT_HASH);
+            result.put(embeddingMatch.embeddingId(), null == hash ? "" : hash);
+        }
+        return result;
+    }
+
+    /**
+     * 根据向量 ID 删除向量。
+     *
+     * @param kbUuid       向量所属知识库 UUID
+     * @param embeddingIds 向量 ID 列表
+     * @return 是否删除成功
+     */
+    @Override
+    public boolean deleteByEmbeddingIds(String kbUuid, List<String> embeddingIds) {
+        if (!embeddingIds.isEmpty()) {
+            embeddingStore.removeAll(embeddingIds);
+        }
+        return true;
+    }
+
     /**
      * 统计知识库下的向量数量。
      *
@@ -4,6 +4,7 @@ import com.moyz.adi.common.vo.GraphSearchCondition;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.*;
 /**
@@ -66,6 +67,57 @@ public class GraphStoreUtil {
         }
         return result;
     }
+    /**
+     * 构建起点/终点名称对的 WHERE 条件语句，名称通过参数传入。
+     *
+     * @param pairs       起点与终点名称对
+     * @param sourceAlias 起点别名
+     * @param targetAlias 终点别名
+     * @return WHERE 子句
+     */
+    public static String buildPairsWhereClause(List<Pair<String, String>> pairs, String sourceAlias, String targetAlias) {
+        List<String> pairClauses = new ArrayList<>();
+        for (int i = 0; i < pairs.size(); i++) {
+            pairClauses.add(String.format("(%1$s.name = $pair_source_%3$d and %2$s.name = $pair_target_%3$d)", sourceAlias, targetAlias, i));
+        }
+        return "(" + String.join(" or ", pairClauses) + ")";
+    }
+
+    /**
+     * 构建起点/终点名称对的 WHERE 参数。
+     *
+     * @param pairs 起点与终点名称对
+     * @return 参数 Map
+     */
+    public static Map<String, Object> buildPairsWhereArgs(List<Pair<String, String>> pairs) {
+        Map<String, Object> result = new HashMap<>();
+        for (int i = 0; i < pairs.size(); i++) {
+            result.put("pair_source_" + i, pairs.get(i).getLeft());
+            result.put("pair_target_" + i, pairs.get(i).getRight());
+        }
+        return result;
+    }
+
+    /**
+     * 从逗号分隔的分段 ID 中移除指定分段。
+     *
+     * @param textSegmentId 逗号分隔的分段 ID
+     * @param segmentIds    要移除的分段 ID
+     * @return 剩余的分段 ID，逗号分隔，全部移除时为空串
+     */
+    public static String removeSegmentIds(String textSegmentId, Collection<String> segmentIds) {
+        if (StringUtils.isBlank(textSegmentId)) {
+            return StringUtils.EMPTY;
+        }
+        List<String> remaining = new ArrayList<>();
+        for (String id : textSegmentId.split(",")) {
+            if (StringUtils.isNotBlank(id) && !segmentIds.contains(id.trim())) {
+                remaining.add(id.trim());
+            }
+        }
+        return String.join(",", remaining);
+    }
+
     /**
      * 构建 SET 子句。
      *
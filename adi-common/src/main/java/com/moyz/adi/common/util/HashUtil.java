@@ -4,9 +4,12 @@ import com.moyz.adi.common.enums.ErrorEnum;
 import com.moyz.adi.common.exception.BaseException;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 /**
@@ -20,22 +23,20 @@ public class HashUtil {
     private HashUtil() {
     }
     /**
-     * 计算文件内容的 SHA-256。
+     * 边复制边计算 SHA-256，输入只读取一遍，不在内存中缓存完整内容。
      *
-     * @param file 文件
+     * @param in  输入流（调用方负责关闭）
+     * @param out 输出流（调用方负责关闭）
      * @return 十六进制哈希串
+     * @throws IOException 读写失败时抛出异常
      */
-    public static String sha256(MultipartFile file) {
+    public static String sha256(InputStream in, OutputStream out) throws IOException {
         try {
-            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
-            byte[] hash = sha256.digest(file.getBytes());
-            // 将哈希值转换为十六进制字符串
-            return getHashStr(hash);
+            DigestInputStream digestIn = new DigestInputStream(in, MessageDigest.getInstance("SHA-256"));
+            digestIn.transferTo(out);
+            return getHashStr(digestIn.getMessageDigest().digest());
         } catch (NoSuchAlgorithmException e) {
-            log.error("Calculate file sha256 NoSuchAlgorithmException", e);
-            throw new BaseException(ErrorEnum.B_SERVER_EXCEPTION);
-        } catch (Exception e) {
-            log.error("Calculate file sha256 error", e);
+            log.error("Calculate stream sha256 NoSuchAlgorithmException", e);
             throw new BaseException(ErrorEnum.B_SERVER_EXCEPTION);
         }
     }
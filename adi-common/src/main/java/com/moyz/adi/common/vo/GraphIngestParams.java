@@ -34,6 +34,10 @@ public class GraphIngestParams {
      * 聊天模型
      */
     private ChatModel ChatModel;
+    /**
+     * 聊天模型名称，用于按模型限制抽取并发
+     */
+    private String modelName;
     /**
      * identifyColumns
      */
@@ -46,4 +50,9 @@ public class GraphIngestParams {
      * 是否免费Token
      */
     private boolean isFreeToken;
+    /**
+     * 是否批量写入图谱（先在内存中合并全部分段的实体与关系，再按批次落库）
+     */
+    @Builder.Default
+    private boolean batchMode = true;
 }
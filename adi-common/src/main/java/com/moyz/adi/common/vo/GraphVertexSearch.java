@@ -32,4 +32,8 @@ public class GraphVertexSearch extends GraphSearchCondition {
      */
     @Builder.Default
     private Long maxId = Long.MAX_VALUE;
+    /**
+     * 字符串形式的最大 ID（Neo4j 的 elementId 不是数字），非空时只返回 ID 小于该值的顶点，用于分页。
+     */
+    private String maxElementId;
 }
@@ -26,6 +26,10 @@ public class GraphVertexUpdateInfo {
      * 顶点名称。
      */
     private String name;
+    /**
+     * 顶点标签，为空时不按标签过滤。
+     */
+    private String label;
     /**
      * 元数据过滤条件。
      */
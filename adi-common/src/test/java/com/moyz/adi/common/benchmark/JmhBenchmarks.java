@@ -0,0 +1,39 @@
+package com.moyz.adi.common.benchmark;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * JMH 基准测试启动工具。
+ * <p>
+ * 基准测试类以 {@code @Tag("benchmark")} 的测试方法调用 {@link #run(Class)}，默认构建时跳过，
+ * 通过 {@code mvn -pl adi-common -Pbenchmark test -Dtest=XxxBenchmark} 运行。
+ * 迭代参数可用系统属性覆盖：adi.bench.forks、adi.bench.warmup、adi.bench.iterations、adi.bench.seconds。
+ */
+public final class JmhBenchmarks {
+
+    private JmhBenchmarks() {
+    }
+
+    /**
+     * 运行指定类中的全部基准方法，结果输出到控制台。
+     *
+     * @param benchmarkClass 基准测试类
+     * @return 无
+     * @throws RunnerException 基准测试执行失败时抛出
+     */
+    public static void run(Class<?> benchmarkClass) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(benchmarkClass.getName().replace("$", "\\$") + "\\.")
+                .forks(Integer.getInteger("adi.bench.forks", 1))
+                .warmupIterations(Integer.getInteger("adi.bench.warmup", 3))
+                .measurementIterations(Integer.getInteger("adi.bench.iterations", 5))
+                .warmupTime(TimeValue.seconds(Integer.getInteger("adi.bench.seconds", 2)))
+                .measurementTime(TimeValue.seconds(Integer.getInteger("adi.bench.seconds", 2)))
+                .shouldFailOnError(true);
+        new Runner(options.build()).run();
+    }
+}
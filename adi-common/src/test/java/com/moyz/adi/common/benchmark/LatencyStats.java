@@ -0,0 +1,96 @@
+package com.moyz.adi.common.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 负载测试的耗时统计，线程安全。
+ * <p>
+ * 需要真实基础设施（数据库、Redis）的负载测试不适合用 JMH 驱动，以此记录每次操作耗时并输出吞吐量与分位数。
+ */
+@Slf4j
+public class LatencyStats {
+
+    /**
+     * 统计名称。
+     */
+    private final String name;
+
+    /**
+     * 每次操作耗时（纳秒）。
+     */
+    private long[] samples = new long[1024];
+
+    /**
+     * 已记录的次数。
+     */
+    private int count;
+
+    /**
+     * 开始时间（System.nanoTime）。
+     */
+    private final long start = System.nanoTime();
+
+    /**
+     * 创建耗时统计。
+     *
+     * @param name 统计名称
+     */
+    public LatencyStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 记录一次操作耗时。
+     *
+     * @param nanos 耗时（纳秒）
+     * @return 无
+     */
+    public synchronized void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    /**
+     * 已记录的次数。
+     *
+     * @return 次数
+     */
+    public synchronized int count() {
+        return count;
+    }
+
+    /**
+     * 计算分位数耗时。
+     *
+     * @param percentile 分位数，取值 0~100
+     * @return 耗时（毫秒）
+     */
+    public synchronized double percentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * 输出统计结果：次数、吞吐量（按每次操作处理的条数折算）与 p50/p99/max 耗时。
+     *
+     * @param itemsPerOp 每次操作处理的条数
+     * @return 统计结果文本
+     */
+    public synchronized String report(int itemsPerOp) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        String report = String.format("%s: ops=%d, items/s=%.1f, p50=%.2fms, p99=%.2fms, max=%.2fms",
+                name, count, count * (double) itemsPerOp / seconds, percentileMillis(50), percentileMillis(99), percentileMillis(100));
+        log.info(report);
+        return report;
+    }
+}
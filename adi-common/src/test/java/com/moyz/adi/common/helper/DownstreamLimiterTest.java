@@ -0,0 +1,80 @@
+package com.moyz.adi.common.helper;
+
+import com.moyz.adi.common.config.AdiProperties;
+import com.moyz.adi.common.exception.BaseException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 下游并发限制测试。
+ */
+class DownstreamLimiterTest {
+
+    /**
+     * 应用配置。
+     */
+    private AdiProperties adiProperties;
+
+    /**
+     * 被测对象。
+     */
+    private DownstreamLimiter limiter;
+
+    /**
+     * 创建被测对象，许可等待时间设为很短。
+     *
+     * @return 无
+     */
+    @BeforeEach
+    void setUp() {
+        adiProperties = new AdiProperties();
+        adiProperties.getExecutor().setAcquireTimeoutMillis(10);
+        limiter = new DownstreamLimiter();
+        ReflectionTestUtils.setField(limiter, "adiProperties", adiProperties);
+    }
+
+    /**
+     * 达到上限后获取超时，归还后可再次获取，重复归还只释放一次。
+     *
+     * @return 无
+     */
+    @Test
+    void limitAndRelease() {
+        adiProperties.getExecutor().setGraphPermits(1);
+        DownstreamLimiter.Permit permit = limiter.acquireGraph();
+        assertThrows(BaseException.class, limiter::acquireGraph);
+        permit.close();
+        permit.close();
+        DownstreamLimiter.Permit again = limiter.acquireGraph();
+        assertThrows(BaseException.class, limiter::acquireGraph);
+        again.close();
+    }
+
+    /**
+     * 上限调整且旧许可全部归还后按新上限限制。
+     *
+     * @return 无
+     */
+    @Test
+    void limitChangeTakesEffect() {
+        adiProperties.getExecutor().setLlmPermits(1);
+        DownstreamLimiter.Permit first = limiter.acquireLlm("openai");
+        assertThrows(BaseException.class, () -> limiter.acquireLlm("openai"));
+        first.close();
+
+        adiProperties.getExecutor().setLlmPermits(2);
+        DownstreamLimiter.Permit second = limiter.acquireLlm("openai");
+        DownstreamLimiter.Permit third = limiter.acquireLlm("openai");
+        assertThrows(BaseException.class, () -> limiter.acquireLlm("openai"));
+        second.close();
+        third.close();
+
+        adiProperties.getExecutor().setLlmPermits(0);
+        for (int i = 0; i < 10; i++) {
+            limiter.acquireLlm("openai");
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.moyz.adi.common.helper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 实体词典匹配测试。
+ */
+class GraphEntityDictionaryTest {
+
+    /**
+     * 重叠的名称只取一个：较长的优先，等长时取靠前的。
+     *
+     * @return 无
+     */
+    @Test
+    void overlappingNamesKeepLongestThenEarliest() {
+        GraphEntityDictionary.Automaton automaton = GraphEntityDictionary.Automaton.build(Set.of("NEW YORK", "YORK CITY", "ABC DEF", "DEF GHI"));
+        assertEquals(List.of("YORK CITY"), automaton.find("NEW YORK CITY", 10));
+        assertEquals(List.of("ABC DEF"), automaton.find("ABC DEF GHI", 10));
+    }
+
+    /**
+     * 嵌套的名称取最外层，嵌套名称在其他位置单独出现时仍能匹配。
+     *
+     * @return 无
+     */
+    @Test
+    void nestedNamesPreferOutermost() {
+        GraphEntityDictionary.Automaton automaton = GraphEntityDictionary.Automaton.build(Set.of("NEW YORK TIMES", "NEW YORK", "YORK"));
+        assertEquals(List.of("NEW YORK TIMES", "YORK"), automaton.find("NEW YORK TIMES REPORTS FROM YORK", 10));
+        assertEquals(List.of("NEW YORK"), automaton.find("NEW YORK", 10));
+    }
+
+    /**
+     * 字母、数字开头或结尾的名称不匹配单词内部。
+     *
+     * @return 无
+     */
+    @Test
+    void latinAndDigitNamesRequireWordBoundary() {
+        GraphEntityDictionary.Automaton automaton = GraphEntityDictionary.Automaton.build(Set.of("AI", "GPT4", "3"));
+        assertEquals(List.of(), automaton.find("SAID GPT4O 2023", 10));
+        assertEquals(List.of("GPT4", "AI"), automaton.find("AI, GPT4 (V3.0)", 10));
+        assertEquals(List.of("3"), automaton.find("VERSION 3", 10));
+        assertEquals(List.of("AI"), automaton.find("用AI做", 10));
+    }
+
+    /**
+     * 中文名称不要求词边界，与英文混合时按字母端检查边界。
+     *
+     * @return 无
+     */
+    @Test
+    void cjkNamesMatchInsideSentence() {
+        GraphEntityDictionary.Automaton automaton = GraphEntityDictionary.Automaton.build(Set.of("北京", "北京大学", "大学", "AI芯片"));
+        assertEquals(List.of("北京大学", "北京"), automaton.find("我在北京大学读书，北京很大", 10));
+        assertEquals(List.of("AI芯片"), automaton.find("新AI芯片发布", 10));
+        assertEquals(List.of(), automaton.find("MAI芯片", 10));
+    }
+
+    /**
+     * 返回数不超过上限，按名称长度优先；同一名称多次出现只返回一次。
+     *
+     * @return 无
+     */
+    @Test
+    void maxResultsAndDuplicates() {
+        GraphEntityDictionary.Automaton automaton = GraphEntityDictionary.Automaton.build(Set.of("ALPHA", "BETA", "GAMMA"));
+        assertEquals(List.of("ALPHA", "GAMMA"), automaton.find("ALPHA BETA GAMMA", 2));
+        assertEquals(List.of("BETA"), automaton.find("BETA AND BETA", 10));
+        assertEquals(List.of(), automaton.find("ALPHA", 0));
+    }
+
+    /**
+     * 大小写转换与默认区域无关，土耳其语环境下小写 i 的名称仍能匹配。
+     *
+     * @return 无
+     */
+    @Test
+    void caseInsensitiveRegardlessOfDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+            GraphEntityDictionary.Dictionary dictionary = new GraphEntityDictionary.Dictionary(2, 100);
+            dictionary.add("istanbul");
+            dictionary.add("Linux");
+            assertEquals(List.of("istanbul", "Linux"), dictionary.match("Trip to ISTANBUL with linux", 10));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.moyz.adi.common.helper;
+
+import com.moyz.adi.common.benchmark.LatencyStats;
+import com.moyz.adi.common.config.AdiProperties;
+import com.moyz.adi.common.exception.BaseException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 主执行器 SSE 并发负载测试。
+ * <p>
+ * 以固定到达速率提交模拟的流式对话：先阻塞等待检索（模拟数据库、向量库调用），再获取大模型下游许可，
+ * 按固定间隔逐个产生分片并经 SseFrameWriter 写出。分别使用平台线程池（与 adi.executor.chat 默认配置相同）
+ * 与虚拟线程执行器运行，输出完成数、被拒绝数、首帧耗时与总耗时的分位数。
+ * <p>
+ * 虚拟线程需要 JDK 21+，低版本只运行线程池模式。参数：-Dadi.bench.sse.sessions（默认 3000）、
+ * -Dadi.bench.sse.rate（每秒到达数，默认 300）、-Dadi.bench.sse.retrieval-millis（默认 200）、
+ * -Dadi.bench.sse.tokens（默认 100）、-Dadi.bench.sse.token-interval-millis（默认 20）、
+ * -Dadi.bench.sse.llm-permits（大模型下游许可数，默认 0 不限制）。
+ * 运行：mvn -pl adi-common -Pbenchmark test -Dtest=MainExecutorSseLoadBenchmark
+ */
+@Slf4j
+class MainExecutorSseLoadBenchmark {
+
+    /**
+     * 分别在线程池与虚拟线程下运行。
+     *
+     * @return 无
+     * @throws InterruptedException 等待被中断时抛出
+     */
+    @Test
+    @Tag("benchmark")
+    void sseLoad() throws InterruptedException {
+        run("pool", newPool());
+        if (Runtime.version().feature() < 21) {
+            log.info("virtual: skipped, virtual threads require JDK 21+,current:{}", Runtime.version().feature());
+            return;
+        }
+        SimpleAsyncTaskExecutor virtual = new SimpleAsyncTaskExecutor("main-vt-");
+        virtual.setVirtualThreads(true);
+        run("virtual", virtual);
+    }
+
+    /**
+     * 以固定速率提交会话并等待全部结束。
+     *
+     * @param mode     执行器模式
+     * @param executor 执行器
+     * @return 无
+     * @throws InterruptedException 等待被中断时抛出
+     */
+    private void run(String mode, AsyncTaskExecutor executor) throws InterruptedException {
+        int sessions = Integer.getInteger("adi.bench.sse.sessions", 3000);
+        int rate = Integer.getInteger("adi.bench.sse.rate", 300);
+        long retrievalMillis = Long.getLong("adi.bench.sse.retrieval-millis", 200);
+        int tokens = Integer.getInteger("adi.bench.sse.tokens", 100);
+        long tokenIntervalMillis = Long.getLong("adi.bench.sse.token-interval-millis", 20);
+        DownstreamLimiter limiter = newLimiter(Integer.getInteger("adi.bench.sse.llm-permits", 0));
+        ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor();
+        AdiProperties.SseStream sseConfig = new AdiProperties().getSseStream();
+
+        LatencyStats firstFrame = new LatencyStats(mode + " first frame");
+        LatencyStats total = new LatencyStats(mode + " session");
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger busy = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(sessions);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, rate);
+        long next = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            LockSupport.parkNanos(next - System.nanoTime());
+            next += intervalNanos;
+            long submitted = System.nanoTime();
+            try {
+                executor.execute(() -> {
+                    try {
+                        FirstFrameEmitter emitter = new FirstFrameEmitter();
+                        SseFrameWriter writer = new SseFrameWriter(emitter, sseConfig.getFlushIntervalMillis(), sseConfig.getMaxBufferChars(), flushScheduler, null, null);
+                        sleep(retrievalMillis);
+                        try (DownstreamLimiter.Permit ignored = limiter.acquireLlm("bench")) {
+                            for (int t = 0; t < tokens; t++) {
+                                sleep(tokenIntervalMillis);
+                                writer.append(null, "token" + t);
+                            }
+                        }
+                        writer.flush();
+                        firstFrame.record(emitter.firstWriteNanos - submitted);
+                        total.record(System.nanoTime() - submitted);
+                    } catch (BaseException e) {
+                        busy.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejected.incrementAndGet();
+                done.countDown();
+            }
+        }
+        done.await();
+        flushScheduler.shutdownNow();
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            pool.shutdown();
+        }
+        log.info("{}: sessions={},completed={},rejected={},busy={}", mode, sessions, total.count(), rejected.get(), busy.get());
+        firstFrame.report(1);
+        total.report(1);
+    }
+
+    /**
+     * 创建与 adi.executor.chat 默认配置相同的线程池。
+     *
+     * @return 线程池
+     */
+    private static ThreadPoolTaskExecutor newPool() {
+        AdiProperties.Pool config = new AdiProperties().getExecutor().getChat();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(config.getPoolSize());
+        executor.setMaxPoolSize(config.getPoolSize());
+        executor.setQueueCapacity(config.getQueueCapacity());
+        executor.setThreadNamePrefix("main-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 创建下游并发限制。
+     *
+     * @param llmPermits 大模型下游许可数
+     * @return 下游并发限制
+     */
+    private static DownstreamLimiter newLimiter(int llmPermits) {
+        AdiProperties adiProperties = new AdiProperties();
+        adiProperties.getExecutor().setLlmPermits(llmPermits);
+        DownstreamLimiter limiter = new DownstreamLimiter();
+        ReflectionTestUtils.setField(limiter, "adiProperties", adiProperties);
+        return limiter;
+    }
+
+    /**
+     * 模拟阻塞调用。
+     *
+     * @param millis 毫秒
+     * @return 无
+     */
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 记录首次写出时间的 SSE 连接，写出内容直接丢弃。
+     */
+    private static class FirstFrameEmitter extends SseEmitter {
+
+        /**
+         * 首次写出时间（System.nanoTime）。
+         */
+        private volatile long firstWriteNanos;
+
+        /**
+         * 记录首次写出时间。
+         *
+         * @param items 帧
+         * @return 无
+         */
+        @Override
+        public void send(Set<DataWithMediaType> items) {
+            if (firstWriteNanos == 0) {
+                firstWriteNanos = System.nanoTime();
+            }
+        }
+    }
+}
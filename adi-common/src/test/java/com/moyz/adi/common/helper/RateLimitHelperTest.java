@@ -0,0 +1,161 @@
+package com.moyz.adi.common.helper;
+
+import com.moyz.adi.common.cosntant.RedisKeyConstant;
+import io.lettuce.core.cluster.SlotHash;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 滑动窗口限流测试。
+ * <p>
+ * 并发测试需要可访问的 Redis（-Dadi.test.redis.host / -Dadi.test.redis.port，默认 localhost:6379），不可访问时跳过。
+ */
+class RateLimitHelperTest {
+
+    /**
+     * 并发请求线程数。
+     */
+    private static final int THREADS = 32;
+
+    /**
+     * 每个线程的请求次数。
+     */
+    private static final int REQUESTS_PER_THREAD = 50;
+
+    /**
+     * Redis 连接工厂。
+     */
+    private static LettuceConnectionFactory connectionFactory;
+
+    /**
+     * 被测对象。
+     */
+    private static RateLimitHelper rateLimitHelper;
+
+    /**
+     * Redis 操作模板。
+     */
+    private static StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 连接测试 Redis。
+     *
+     * @return 无
+     */
+    @BeforeAll
+    static void setUp() {
+        String host = System.getProperty("adi.test.redis.host", "localhost");
+        int port = Integer.getInteger("adi.test.redis.port", 6379);
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        rateLimitHelper = new RateLimitHelper();
+        ReflectionTestUtils.setField(rateLimitHelper, "stringRedisTemplate", stringRedisTemplate);
+    }
+
+    /**
+     * 关闭连接。
+     *
+     * @return 无
+     */
+    @AfterAll
+    static void tearDown() {
+        if (null != connectionFactory) {
+            connectionFactory.destroy();
+        }
+    }
+
+    /**
+     * 同一次检查的各个 key 位于同一个集群槽位，脚本在集群模式下不会报 CROSSSLOT。
+     *
+     * @return 无
+     */
+    @Test
+    void keysOfOneCheckShareSlot() {
+        int slot = SlotHash.getSlot(MessageFormat.format(RedisKeyConstant.RATE_LIMIT_GLOBAL, RateLimitHelper.TYPE_TEXT));
+        assertEquals(slot, SlotHash.getSlot(MessageFormat.format(RedisKeyConstant.RATE_LIMIT_USER, RateLimitHelper.TYPE_TEXT, "1")));
+        assertEquals(slot, SlotHash.getSlot(MessageFormat.format(RedisKeyConstant.RATE_LIMIT_USER, RateLimitHelper.TYPE_TEXT, "987654321")));
+        assertEquals(slot, SlotHash.getSlot(MessageFormat.format(RedisKeyConstant.RATE_LIMIT_MODEL, RateLimitHelper.TYPE_TEXT, "gpt-4o-mini")));
+    }
+
+    /**
+     * 大量并发请求同时检查时，放行数恰好等于限制数，不会超额放行。
+     *
+     * @return 无
+     * @throws Exception 并发执行异常
+     */
+    @Test
+    void concurrentRequestsNeverOverAdmit() throws Exception {
+        assumeTrue(redisAvailable(), "Redis not available");
+        String tag = UUID.randomUUID().toString();
+        String userKey = MessageFormat.format(RedisKeyConstant.RATE_LIMIT_USER, tag, "1");
+        String globalKey = MessageFormat.format(RedisKeyConstant.RATE_LIMIT_GLOBAL, tag);
+        int userTimes = 37;
+        List<RateLimitHelper.Limit> limits = List.of(
+                new RateLimitHelper.Limit(userKey, userTimes, TimeUnit.MINUTES.toMillis(1)),
+                new RateLimitHelper.Limit(globalKey, userTimes * 2, TimeUnit.MINUTES.toMillis(1))
+        );
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < REQUESTS_PER_THREAD; j++) {
+                        if (rateLimitHelper.tryAcquire(limits) == 0) {
+                            admitted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(userTimes, admitted.get());
+        // 被拒绝的请求不计数：两个限制的计数都等于放行数
+        assertEquals(Long.valueOf(userTimes), stringRedisTemplate.opsForZSet().zCard(userKey));
+        assertEquals(Long.valueOf(userTimes), stringRedisTemplate.opsForZSet().zCard(globalKey));
+        stringRedisTemplate.delete(List.of(userKey, globalKey));
+    }
+
+    /**
+     * 测试 Redis 是否可访问。
+     *
+     * @return 是否可访问
+     */
+    private static boolean redisAvailable() {
+        try {
+            stringRedisTemplate.hasKey("rate-limit:test");
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.moyz.adi.common.helper;
+
+import com.moyz.adi.common.benchmark.JmhBenchmarks;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.RunnerException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SSE 分片写出基准测试。
+ * <p>
+ * 把一段回答的全部分片（默认 500 个，含换行）写入 SSE 连接，对比每个分片逐帧写出（合并前的行为）
+ * 与 SseFrameWriter 合并写出的吞吐量。每次写出模拟一次响应写入与 flush 的开销（writeCost，JMH CPU 单位）。
+ * 结果中每次操作为一段完整回答，每秒分片数 = 每秒操作数 × partials。
+ * 运行：mvn -pl adi-common -Pbenchmark test -Dtest=SseFrameWriterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SseFrameWriterBenchmark {
+
+    /**
+     * 一段回答的分片数。
+     */
+    @Param({"500"})
+    public int partials;
+
+    /**
+     * 每次写出的模拟开销，0 表示只计算成帧与序列化。
+     */
+    @Param({"0", "5000"})
+    public long writeCost;
+
+    /**
+     * 一段回答的分片。
+     */
+    private List<String> tokens;
+
+    /**
+     * 定时写出调度器。
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 生成分片：1~4 个字符，约 5% 的分片带换行。
+     *
+     * @return 无
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        tokens = new ArrayList<>(partials);
+        String alphabet = "检索增强生成先从知识库召回相关片段再交给大模型生成回答abcdefghijklmnopqrstuvwxyz ";
+        for (int i = 0; i < partials; i++) {
+            StringBuilder token = new StringBuilder();
+            int length = 1 + random.nextInt(4);
+            for (int j = 0; j < length; j++) {
+                token.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            if (random.nextInt(20) == 0) {
+                token.append('\n');
+            }
+            tokens.add(token.toString());
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * 关闭调度器。
+     *
+     * @return 无
+     */
+    @TearDown
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 合并前的行为：每个分片按行拆分后逐帧写出，每帧一次写入与 flush。
+     * 直接传入帧集合，SseEmitter.send(SseEventBuilder) 内部以 super 调用写出，不经过子类。
+     *
+     * @param blackhole JMH 黑洞
+     * @return 写出次数
+     */
+    @Benchmark
+    public int perPartial(Blackhole blackhole) {
+        CountingEmitter emitter = new CountingEmitter(blackhole, writeCost);
+        for (String token : tokens) {
+            String[] lines = token.split("[\\r\\n]", -1);
+            emitter.send(SseEmitter.event().data(" " + lines[0]).build());
+            for (int i = 1; i < lines.length; i++) {
+                emitter.send(SseEmitter.event().data(SseFrameWriter.WRAP).build());
+                emitter.send(SseEmitter.event().data(" " + lines[i]).build());
+            }
+        }
+        return emitter.writes;
+    }
+
+    /**
+     * 使用 SseFrameWriter，时间窗口为 0，每个分片立即写出（工作流默认配置）。
+     *
+     * @param blackhole JMH 黑洞
+     * @return 写出次数
+     */
+    @Benchmark
+    public int writerImmediate(Blackhole blackhole) {
+        return stream(blackhole, 0, 256);
+    }
+
+    /**
+     * 使用 SseFrameWriter 合并写出，缓冲达到 256 个字符或时间窗口到达时写出一次。
+     *
+     * @param blackhole JMH 黑洞
+     * @return 写出次数
+     */
+    @Benchmark
+    public int writerCoalesced(Blackhole blackhole) {
+        return stream(blackhole, 50, 256);
+    }
+
+    /**
+     * 通过 SseFrameWriter 写出一段回答。
+     *
+     * @param blackhole           JMH 黑洞
+     * @param flushIntervalMillis 时间窗口
+     * @param maxBufferChars      缓冲字符数上限
+     * @return 写出次数
+     */
+    private int stream(Blackhole blackhole, long flushIntervalMillis, int maxBufferChars) {
+        CountingEmitter emitter = new CountingEmitter(blackhole, writeCost);
+        SseFrameWriter writer = new SseFrameWriter(emitter, flushIntervalMillis, maxBufferChars, scheduler, null, null);
+        for (String token : tokens) {
+            writer.append(null, token);
+        }
+        writer.flush();
+        return emitter.writes;
+    }
+
+    /**
+     * 运行基准测试。
+     *
+     * @return 无
+     * @throws RunnerException 基准测试执行失败时抛出
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark() throws RunnerException {
+        JmhBenchmarks.run(SseFrameWriterBenchmark.class);
+    }
+
+    /**
+     * 记录写出次数的 SSE 连接，每次写出把帧序列化为文本并消耗模拟的写入开销。
+     */
+    private static class CountingEmitter extends SseEmitter {
+
+        /**
+         * JMH 黑洞。
+         */
+        private final Blackhole blackhole;
+
+        /**
+         * 每次写出的模拟开销。
+         */
+        private final long writeCost;
+
+        /**
+         * 写出次数。
+         */
+        private int writes;
+
+        /**
+         * 创建连接。
+         *
+         * @param blackhole JMH 黑洞
+         * @param writeCost 每次写出的模拟开销
+         */
+        CountingEmitter(Blackhole blackhole, long writeCost) {
+            this.blackhole = blackhole;
+            this.writeCost = writeCost;
+        }
+
+        /**
+         * 写出一批帧：序列化后模拟一次写入与 flush。
+         *
+         * @param items 帧
+         * @return 无
+         */
+        @Override
+        public synchronized void send(Set<DataWithMediaType> items) {
+            StringBuilder body = new StringBuilder();
+            for (DataWithMediaType item : items) {
+                body.append(item.getData());
+            }
+            blackhole.consume(body.toString());
+            Blackhole.consumeCPU(writeCost);
+            writes++;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.moyz.adi.common.memory.shortterm;
+
+import com.moyz.adi.common.benchmark.JmhBenchmarks;
+import com.moyz.adi.common.config.AdiProperties;
+import com.moyz.adi.common.util.SpringUtil;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.RunnerException;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 短期记忆存储并发负载基准测试。
+ * <p>
+ * 多个线程同时模拟对话回合：读取会话记忆、超出窗口时整体更新为窗口内的消息、追加用户消息与 AI 回答，
+ * 对比单文件 MapDB（每次写入同步提交）与分片增量存储（定时批量提交）的吞吐量。
+ * 运行：mvn -pl adi-common -Pbenchmark test -Dtest=ChatMemoryStoreBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+public class ChatMemoryStoreBenchmark {
+
+    /**
+     * 会话记忆窗口（消息条数）。
+     */
+    private static final int WINDOW = 20;
+
+    /**
+     * 存储实现：mapdb、sharded。
+     */
+    @Param({"mapdb", "sharded"})
+    public String store;
+
+    /**
+     * 会话数，会话数少时线程间竞争同一会话。
+     */
+    @Param({"100", "10000"})
+    public int conversations;
+
+    /**
+     * 被测存储。
+     */
+    private AbstractChatMemoryStore chatMemoryStore;
+
+    /**
+     * 存储目录。
+     */
+    private File memoryDir;
+
+    /**
+     * 用户消息。
+     */
+    private final UserMessage userMessage = UserMessage.from("请根据上文总结一下检索增强生成在知识库问答中的作用。");
+
+    /**
+     * AI 回答。
+     */
+    private final AiMessage aiMessage = AiMessage.from("检索增强生成先从知识库召回相关片段，再交给大模型生成回答，"
+            + "回答有据可查，也能覆盖模型训练数据之外的私有知识。");
+
+    /**
+     * 在临时目录中创建存储。
+     *
+     * @return 无
+     * @throws Exception 创建目录失败时抛出
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        memoryDir = Files.createTempDirectory("adi-chat-memory-bench").toFile();
+        String path = memoryDir.getAbsolutePath() + File.separator;
+        if ("mapdb".equals(store)) {
+            // MapDBChatMemoryStore 为单例，从 Spring 配置中读取存储目录；每组参数在独立的 JVM 中运行
+            GenericApplicationContext context = new GenericApplicationContext();
+            context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("bench", Map.of("local.chat-memory", path)));
+            context.refresh();
+            new SpringUtil().setApplicationContext(context);
+            chatMemoryStore = MapDBChatMemoryStore.getSingleton();
+        } else {
+            chatMemoryStore = new ShardedChatMemoryStore(path, new AdiProperties.ChatMemory());
+        }
+    }
+
+    /**
+     * 关闭存储并删除临时目录。
+     *
+     * @return 无
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (chatMemoryStore instanceof ShardedChatMemoryStore sharded) {
+            sharded.close();
+        }
+        File[] files = memoryDir.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        memoryDir.delete();
+    }
+
+    /**
+     * 一个对话回合。
+     *
+     * @return 读取到的消息数
+     */
+    @Benchmark
+    public int chatTurn() {
+        String memoryId = "conversation_" + ThreadLocalRandom.current().nextInt(conversations);
+        List<ChatMessage> messages = chatMemoryStore.getMessages(memoryId);
+        if (messages.size() >= WINDOW) {
+            // 与滑动窗口记忆一样整体更新为窗口内的消息，保持用户消息开头
+            int from = messages.size() - WINDOW + 2;
+            if (messages.get(from) instanceof AiMessage) {
+                from++;
+            }
+            chatMemoryStore.updateMessages(memoryId, messages.subList(from, messages.size()));
+        }
+        chatMemoryStore.appendMessage(memoryId, userMessage);
+        chatMemoryStore.appendMessage(memoryId, aiMessage);
+        return messages.size();
+    }
+
+    /**
+     * 运行基准测试。
+     *
+     * @return 无
+     * @throws RunnerException 基准测试执行失败时抛出
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark() throws RunnerException {
+        JmhBenchmarks.run(ChatMemoryStoreBenchmark.class);
+    }
+}
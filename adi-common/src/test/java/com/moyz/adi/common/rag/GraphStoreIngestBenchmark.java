@@ -0,0 +1,156 @@
+package com.moyz.adi.common.rag;
+
+import com.moyz.adi.common.benchmark.LatencyStats;
+import com.moyz.adi.common.cosntant.AdiConstant;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Apache AGE 图谱写入吞吐量负载测试。
+ * <p>
+ * 以固定的模拟抽取结果（不调用大模型）驱动 GraphStoreIngestor，分别测量逐行模式与批量模式下每秒写入的分段数、
+ * 每个分段的写入耗时分位数。实体名称从有限词表中抽取，后续分段会命中已存在的顶点与边，覆盖新增与更新两条路径。
+ * <p>
+ * 需要安装了 AGE 扩展的 PostgreSQL，连接参数：-Dadi.bench.age.host/port/user/password/database，
+ * 规模参数：-Dadi.bench.age.segments（默认 200）、-Dadi.bench.age.entities（每个分段的实体数，默认 10）、
+ * -Dadi.bench.age.vocabulary（实体词表大小，默认 300）。每种模式都会重建测试图谱 adi_bench_graph。
+ * 运行：mvn -pl adi-common -Pbenchmark test -Dtest=GraphStoreIngestBenchmark
+ */
+class GraphStoreIngestBenchmark {
+
+    /**
+     * 测试图谱名称。
+     */
+    private static final String GRAPH_NAME = "adi_bench_graph";
+
+    /**
+     * 对比逐行写入与批量写入的吞吐量。
+     *
+     * @return 无
+     */
+    @Test
+    @Tag("benchmark")
+    void upsertThroughput() {
+        int segments = Integer.getInteger("adi.bench.age.segments", 200);
+        int entities = Integer.getInteger("adi.bench.age.entities", 10);
+        int vocabulary = Integer.getInteger("adi.bench.age.vocabulary", 300);
+        List<Document> documents = new ArrayList<>(segments);
+        List<String> responses = new ArrayList<>(segments);
+        Random random = new Random(42);
+        for (int i = 0; i < segments; i++) {
+            documents.add(Document.from("segment " + i, Metadata.from("bench_uuid", "bench").put("kb_item_uuid", "item" + (i % 5))));
+            responses.add(response(random, entities, vocabulary));
+        }
+        for (boolean batchMode : List.of(false, true)) {
+            ApacheAgeGraphStore graphStore = createStore();
+            try {
+                LatencyStats stats = new LatencyStats("age ingest,batchMode=" + batchMode + ",segments=" + segments + ",entities=" + entities);
+                GraphStoreIngestor.builder()
+                        .graphStore(graphStore)
+                        .documentSplitter(document -> List.of(document.toTextSegment()))
+                        .segmentsFunction(textSegments -> timed(textSegments, responses, stats))
+                        .identifyColumns(List.of("bench_uuid"))
+                        .appendColumns(List.of("kb_item_uuid"))
+                        .batchMode(batchMode)
+                        .build()
+                        .ingest(documents);
+                stats.report(1);
+            } finally {
+                graphStore.close();
+            }
+        }
+    }
+
+    /**
+     * 连接测试数据库并重建测试图谱，不可连接时跳过。
+     *
+     * @return 图谱存储
+     */
+    private ApacheAgeGraphStore createStore() {
+        try {
+            return ApacheAgeGraphStore.builder()
+                    .host(System.getProperty("adi.bench.age.host", "localhost"))
+                    .port(Integer.getInteger("adi.bench.age.port", 5432))
+                    .user(System.getProperty("adi.bench.age.user", "postgres"))
+                    .password(System.getProperty("adi.bench.age.password", "postgres"))
+                    .database(System.getProperty("adi.bench.age.database", "aideepin"))
+                    .graphName(GRAPH_NAME)
+                    .createGraph(true)
+                    .dropGraphFirst(true)
+                    .build();
+        } catch (RuntimeException e) {
+            assumeTrue(false, "Apache AGE is not available: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * 按顺序返回模拟抽取结果，并记录相邻两次取结果之间的耗时，即入库器处理上一个分段（含批量写入）的耗时。
+     *
+     * @param segments  分段
+     * @param responses 模拟抽取结果
+     * @param stats     耗时统计
+     * @return 分段、分段 ID 与抽取结果
+     */
+    private Iterator<Triple<TextSegment, String, String>> timed(List<TextSegment> segments, List<String> responses, LatencyStats stats) {
+        return new Iterator<>() {
+            private int index;
+            private long last;
+
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = index < segments.size();
+                if (!hasNext && last > 0) {
+                    stats.record(System.nanoTime() - last);
+                    last = 0;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Triple<TextSegment, String, String> next() {
+                long now = System.nanoTime();
+                if (last > 0) {
+                    stats.record(now - last);
+                }
+                last = now;
+                int i = index++;
+                return Triple.of(segments.get(i), "segment_" + i, responses.get(i));
+            }
+        };
+    }
+
+    /**
+     * 生成一个分段的模拟抽取结果：若干实体及相邻实体间的关系。
+     *
+     * @param random     随机数
+     * @param entities   实体数
+     * @param vocabulary 实体词表大小
+     * @return 抽取结果
+     */
+    private static String response(Random random, int entities, int vocabulary) {
+        String tuple = AdiConstant.GRAPH_TUPLE_DELIMITER;
+        List<String> names = new ArrayList<>(entities);
+        List<String> rows = new ArrayList<>(entities * 2);
+        for (int i = 0; i < entities; i++) {
+            String name = "ENTITY" + random.nextInt(vocabulary);
+            names.add(name);
+            rows.add("(\"entity\"" + tuple + name + tuple + "CONCEPT" + tuple + "description of " + name + ")");
+        }
+        for (int i = 1; i < names.size(); i++) {
+            rows.add("(\"relationship\"" + tuple + names.get(i - 1) + tuple + names.get(i) + tuple + "related" + tuple + (1 + random.nextInt(9)) + ")");
+        }
+        return String.join(AdiConstant.GRAPH_RECORD_DELIMITER, rows);
+    }
+}
@@ -0,0 +1,124 @@
+package com.moyz.adi.common.rag;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.openai.OpenAiTokenCountEstimator;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 带请求级记忆的 token 估算器测试。
+ */
+class MemoizingTokenCountEstimatorTest {
+
+    /**
+     * 测试消息。
+     */
+    private static final List<ChatMessage> MESSAGES = List.of(
+            SystemMessage.from("你是一个助手"),
+            UserMessage.from("什么是检索增强生成？"),
+            AiMessage.from("先检索相关资料，再交给模型生成回答。"));
+
+    /**
+     * 按消息累加的结果与原估算器一致。
+     *
+     * @return 无
+     */
+    @Test
+    void sameCountAsDelegate() {
+        for (String model : List.of("gpt-3.5-turbo", "gpt-4o-mini")) {
+            TokenCountEstimator delegate = new OpenAiTokenCountEstimator(model);
+            TokenCountEstimator memoizing = MemoizingTokenCountEstimator.of(model, delegate);
+            boolean opened = TokenEstimatorThreadLocal.openMemoScope();
+            try {
+                assertEquals(delegate.estimateTokenCountInMessages(MESSAGES), memoizing.estimateTokenCountInMessages(MESSAGES));
+                assertEquals(delegate.estimateTokenCountInMessages(MESSAGES.subList(0, 2)), memoizing.estimateTokenCountInMessages(MESSAGES.subList(0, 2)));
+                assertEquals(delegate.estimateTokenCountInText("你好"), memoizing.estimateTokenCountInText("你好"));
+            } finally {
+                TokenEstimatorThreadLocal.closeMemoScope(opened);
+            }
+        }
+    }
+
+    /**
+     * 请求范围内同一消息只估算一次，范围外不记忆。
+     *
+     * @return 无
+     */
+    @Test
+    void memoizeWithinScope() {
+        AtomicInteger calls = new AtomicInteger();
+        TokenCountEstimator counting = new CountingEstimator(calls);
+        TokenCountEstimator memoizing = MemoizingTokenCountEstimator.of("counting", counting);
+        boolean opened = TokenEstimatorThreadLocal.openMemoScope();
+        try {
+            memoizing.estimateTokenCountInMessage(MESSAGES.get(1));
+            memoizing.estimateTokenCountInMessage(MESSAGES.get(1));
+            assertEquals(1, calls.get());
+        } finally {
+            TokenEstimatorThreadLocal.closeMemoScope(opened);
+        }
+        memoizing.estimateTokenCountInMessage(MESSAGES.get(1));
+        assertEquals(2, calls.get());
+    }
+
+    /**
+     * 嵌套开启时沿用外层范围，内层关闭不影响外层。
+     *
+     * @return 无
+     */
+    @Test
+    void nestedScope() {
+        AtomicInteger calls = new AtomicInteger();
+        TokenCountEstimator memoizing = MemoizingTokenCountEstimator.of("counting", new CountingEstimator(calls));
+        boolean outer = TokenEstimatorThreadLocal.openMemoScope();
+        try {
+            assertTrue(outer);
+            boolean inner = TokenEstimatorThreadLocal.openMemoScope();
+            assertFalse(inner);
+            memoizing.estimateTokenCountInText("abc");
+            TokenEstimatorThreadLocal.closeMemoScope(inner);
+            memoizing.estimateTokenCountInText("abc");
+            assertEquals(1, calls.get());
+        } finally {
+            TokenEstimatorThreadLocal.closeMemoScope(outer);
+        }
+        assertSame(memoizing, MemoizingTokenCountEstimator.of("other", memoizing));
+    }
+
+    /**
+     * 记录调用次数的估算器。
+     *
+     * @param calls 调用次数
+     */
+    private record CountingEstimator(AtomicInteger calls) implements TokenCountEstimator {
+
+        @Override
+        public int estimateTokenCountInText(String text) {
+            calls.incrementAndGet();
+            return text.length();
+        }
+
+        @Override
+        public int estimateTokenCountInMessage(ChatMessage message) {
+            calls.incrementAndGet();
+            return 1;
+        }
+
+        @Override
+        public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+            calls.incrementAndGet();
+            return 1;
+        }
+    }
+}
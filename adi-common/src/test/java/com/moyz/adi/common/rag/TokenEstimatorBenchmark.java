@@ -0,0 +1,156 @@
+package com.moyz.adi.common.rag;
+
+import com.moyz.adi.common.benchmark.JmhBenchmarks;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.chat.TokenWindowChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.openai.OpenAiTokenCountEstimator;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话记忆 token 估算基准测试。
+ * <p>
+ * 按 AbstractLLMService 组装对话消息的方式（写入系统消息、多次读取记忆、写入用户消息）驱动滑动窗口记忆，
+ * 对比每次新建估算器、共享估算器与共享估算器加请求级记忆三种方式的单次请求耗时。
+ * 运行：mvn -pl adi-common -Pbenchmark test -Dtest=TokenEstimatorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TokenEstimatorBenchmark {
+
+    /**
+     * 估算器对应的模型名称。
+     */
+    private static final String MODEL_NAME = "gpt-4o-mini";
+
+    /**
+     * 历史消息条数。
+     */
+    @Param({"10", "40"})
+    public int historySize;
+
+    /**
+     * 历史消息。
+     */
+    private List<ChatMessage> history;
+
+    /**
+     * 共享的估算器。
+     */
+    private TokenCountEstimator shared;
+
+    /**
+     * 共享并带请求级记忆的估算器。
+     */
+    private TokenCountEstimator memoizing;
+
+    /**
+     * 准备历史消息与估算器。
+     *
+     * @return 无
+     */
+    @Setup
+    public void setUp() {
+        history = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize / 2; i++) {
+            history.add(UserMessage.from("第" + i + "个问题：请解释一下知识库检索增强生成的原理，以及 embedding 与图谱检索在召回上的差异。"));
+            history.add(AiMessage.from("第" + i + "个回答：检索增强生成先从知识库中召回与问题相关的片段，再把片段与问题一起交给大模型生成回答。"
+                    + "向量检索按语义相似度召回，图谱检索按实体及其关系召回，两者互补。"));
+        }
+        shared = new OpenAiTokenCountEstimator(MODEL_NAME);
+        memoizing = MemoizingTokenCountEstimator.of(MODEL_NAME, new OpenAiTokenCountEstimator(MODEL_NAME));
+    }
+
+    /**
+     * 每次请求新建估算器（优化前的行为）。
+     *
+     * @return 发送给模型的消息
+     */
+    @Benchmark
+    public List<ChatMessage> newEstimatorPerRequest() {
+        return assemble(new OpenAiTokenCountEstimator(MODEL_NAME));
+    }
+
+    /**
+     * 共享估算器，不记忆估算结果。
+     *
+     * @return 发送给模型的消息
+     */
+    @Benchmark
+    public List<ChatMessage> sharedEstimator() {
+        return assemble(shared);
+    }
+
+    /**
+     * 共享估算器，并在请求范围内记忆估算结果。
+     *
+     * @return 发送给模型的消息
+     */
+    @Benchmark
+    public List<ChatMessage> sharedMemoizingEstimator() {
+        boolean opened = TokenEstimatorThreadLocal.openMemoScope();
+        try {
+            return assemble(memoizing);
+        } finally {
+            TokenEstimatorThreadLocal.closeMemoScope(opened);
+        }
+    }
+
+    /**
+     * 以与 AbstractLLMService 相同的读写顺序组装一次请求的消息。
+     *
+     * @param estimator 估算器
+     * @return 发送给模型的消息
+     */
+    private List<ChatMessage> assemble(TokenCountEstimator estimator) {
+        InMemoryChatMemoryStore store = new InMemoryChatMemoryStore();
+        store.updateMessages("bench", history);
+        TokenWindowChatMemory memory = TokenWindowChatMemory.builder()
+                .chatMemoryStore(store)
+                .id("bench")
+                .maxTokens(8192, estimator)
+                .build();
+        memory.add(SystemMessage.from("你是一个知识库问答助手，请根据提供的资料回答。"));
+        if (!memory.messages().isEmpty()) {
+            ChatMessage lastMessage = memory.messages().get(memory.messages().size() - 1);
+            if (lastMessage instanceof UserMessage) {
+                List<ChatMessage> list = memory.messages().subList(0, memory.messages().size() - 1);
+                memory.clear();
+                list.forEach(memory::add);
+            }
+        }
+        memory.add(UserMessage.from("最后一个问题：图谱检索什么时候需要调用大模型抽取实体？"));
+        return memory.messages();
+    }
+
+    /**
+     * 运行基准测试。
+     *
+     * @return 无
+     * @throws RunnerException 基准测试执行失败时抛出
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark() throws RunnerException {
+        JmhBenchmarks.run(TokenEstimatorBenchmark.class);
+    }
+}
@@ -0,0 +1,181 @@
+package com.moyz.adi.common.rag.pgvector;
+
+import com.moyz.adi.common.benchmark.LatencyStats;
+import com.moyz.adi.common.config.AdiProperties;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * pgvector 检索延迟负载测试。
+ * <p>
+ * 在指定行数（默认 10 万、100 万、500 万）的向量表上分别执行不带过滤、按知识库过滤（约 1% 命中）
+ * 与按知识点过滤（约 0.02% 命中）的检索，对比 langchain4j 原始存储与 AdiPgVectorEmbeddingStore 的 p50/p99 延迟。
+ * 测试表 adi_bench_embedding_&lt;行数&gt; 不存在或行数不足时用随机向量补齐，之后的运行直接复用。
+ * <p>
+ * 需要安装了 vector 扩展的 PostgreSQL，连接参数：-Dadi.bench.pg.host/port/user/password/database，
+ * 规模参数：-Dadi.bench.pg.rows（逗号分隔，默认 100000,1000000,5000000）、-Dadi.bench.pg.dimension（默认 384）、
+ * -Dadi.bench.pg.queries（每种检索的次数，默认 200）、-Dadi.bench.pg.index（hnsw/ivfflat/none，默认 hnsw）。
+ * 运行：mvn -pl adi-common -Pbenchmark test -Dtest=PgVectorSearchBenchmark
+ */
+@Slf4j
+class PgVectorSearchBenchmark {
+
+    /**
+     * 知识库数量，按知识库过滤时约命中 1/KB_COUNT 的行。
+     */
+    private static final int KB_COUNT = 100;
+
+    /**
+     * 每个知识库的知识点数量。
+     */
+    private static final int ITEMS_PER_KB = 50;
+
+    /**
+     * 每批补齐的行数。
+     */
+    private static final int LOAD_BATCH_ROWS = 100000;
+
+    /**
+     * 各规模下的检索延迟。
+     *
+     * @return 无
+     * @throws SQLException 数据库异常
+     */
+    @Test
+    @Tag("benchmark")
+    void searchLatency() throws SQLException {
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setServerNames(new String[]{System.getProperty("adi.bench.pg.host", "localhost")});
+        dataSource.setPortNumbers(new int[]{Integer.getInteger("adi.bench.pg.port", 5432)});
+        dataSource.setUser(System.getProperty("adi.bench.pg.user", "postgres"));
+        dataSource.setPassword(System.getProperty("adi.bench.pg.password", "postgres"));
+        dataSource.setDatabaseName(System.getProperty("adi.bench.pg.database", "aideepin"));
+        try (Connection ignored = dataSource.getConnection()) {
+            // 仅检查数据库是否可连接
+        } catch (SQLException e) {
+            assumeTrue(false, "PostgreSQL is not available: " + e);
+        }
+        int dimension = Integer.getInteger("adi.bench.pg.dimension", 384);
+        int queries = Integer.getInteger("adi.bench.pg.queries", 200);
+        AdiProperties.PgVectorIndex config = new AdiProperties.PgVectorIndex();
+        config.setType(System.getProperty("adi.bench.pg.index", PgVectorIndexManager.TYPE_HNSW));
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        PgVectorIndexManager indexManager = new PgVectorIndexManager(jdbcTemplate, config, null);
+        for (String size : System.getProperty("adi.bench.pg.rows", "100000,1000000,5000000").split(",")) {
+            long rows = Long.parseLong(size.trim());
+            String table = "adi_bench_embedding_" + rows;
+            PgVectorEmbeddingStore delegate = PgVectorEmbeddingStore.datasourceBuilder()
+                    .datasource(dataSource)
+                    .table(table)
+                    .dimension(dimension)
+                    .createTable(true)
+                    .build();
+            load(jdbcTemplate, table, dimension, rows);
+            indexManager.ensureIndexes(table, dimension, List.of("kb_uuid", "kb_item_uuid"));
+            jdbcTemplate.execute("ANALYZE " + table);
+            AdiPgVectorEmbeddingStore store = new AdiPgVectorEmbeddingStore(delegate, dataSource, table, config, indexManager.getIndexType(), new SimpleMeterRegistry());
+
+            Random random = new Random(42);
+            Map<String, Filter> filters = new LinkedHashMap<>();
+            filters.put("none", null);
+            filters.put("kb", metadataKey("kb_uuid").isEqualTo("kb_" + random.nextInt(KB_COUNT)));
+            filters.put("item", metadataKey("kb_item_uuid").isEqualTo("item_" + random.nextInt(KB_COUNT * ITEMS_PER_KB)));
+            for (Map.Entry<String, Filter> filter : filters.entrySet()) {
+                measure("delegate,rows=" + rows + ",filter=" + filter.getKey(), delegate, filter.getValue(), dimension, queries, random);
+                measure("adi,rows=" + rows + ",filter=" + filter.getKey() + ",index=" + indexManager.getIndexType(), store, filter.getValue(), dimension, queries, random);
+            }
+        }
+    }
+
+    /**
+     * 执行检索并输出延迟分位数，先预热十分之一的次数。
+     *
+     * @param name      统计名称
+     * @param store     向量存储
+     * @param filter    过滤条件，可为 null
+     * @param dimension 向量维度
+     * @param queries   检索次数
+     * @param random    随机数
+     * @return 无
+     */
+    private void measure(String name, EmbeddingStore<TextSegment> store, Filter filter, int dimension, int queries, Random random) {
+        LatencyStats stats = new LatencyStats(name);
+        int warmup = Math.max(1, queries / 10);
+        for (int i = 0; i < warmup + queries; i++) {
+            EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(randomEmbedding(dimension, random))
+                    .filter(filter)
+                    .maxResults(10)
+                    .minScore(0.0)
+                    .build();
+            long start = System.nanoTime();
+            store.search(request);
+            if (i >= warmup) {
+                stats.record(System.nanoTime() - start);
+            }
+        }
+        stats.report(1);
+    }
+
+    /**
+     * 用随机向量把测试表补齐到指定行数，元数据按知识库、知识点均匀分布。
+     *
+     * @param jdbcTemplate JdbcTemplate
+     * @param table        表名
+     * @param dimension    向量维度
+     * @param rows         目标行数
+     * @return 无
+     */
+    private void load(JdbcTemplate jdbcTemplate, String table, int dimension, long rows) {
+        Long existing = jdbcTemplate.queryForObject("SELECT count(*) FROM " + table, Long.class);
+        long current = null == existing ? 0 : existing;
+        while (current < rows) {
+            long batch = Math.min(LOAD_BATCH_ROWS, rows - current);
+            // 子查询引用外层的 g，保证每行生成不同的向量
+            jdbcTemplate.update("INSERT INTO " + table + " (embedding_id, embedding, text, metadata) "
+                    + "SELECT gen_random_uuid(), (SELECT array_agg(random() - 0.5 + g * 0) FROM generate_series(1, ?))::vector, 'segment ' || g, "
+                    + "json_build_object('kb_uuid', 'kb_' || (g % ?), 'kb_item_uuid', 'item_' || (g % ?)) "
+                    + "FROM generate_series(?::bigint, ?::bigint) AS g", dimension, KB_COUNT, KB_COUNT * ITEMS_PER_KB, current, current + batch - 1);
+            current += batch;
+            log.info("Loaded {}/{} rows into {}", current, rows, table);
+        }
+    }
+
+    /**
+     * 生成随机查询向量。
+     *
+     * @param dimension 向量维度
+     * @param random    随机数
+     * @return 向量
+     */
+    private static Embedding randomEmbedding(int dimension, Random random) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = random.nextFloat() - 0.5f;
+        }
+        Embedding embedding = Embedding.from(vector);
+        embedding.normalize();
+        return embedding;
+    }
+}
@@ -528,6 +528,26 @@ COMMENT ON COLUMN adi_user_day_cost.create_time IS '记录创建的时间戳 | T
 COMMENT ON COLUMN adi_user_day_cost.update_time IS '记录最后更新的时间戳，自动更新 | Timestamp of record last update, automatically updated on each update';
 COMMENT ON COLUMN adi_user_day_cost.draw_times IS '图片数量 | Number of images';
 
+-- 消耗计数按 (用户, 日期, 是否免费额度) 批量 upsert | Usage counters are flushed with batched upserts on (user, day, is_free)
+-- 已有数据升级时先将重复行的计数合并到 id 最小的行并删除其余行 | When upgrading, merge duplicate rows into the lowest id and delete the rest first
+UPDATE adi_user_day_cost t
+SET tokens        = d.tokens,
+    draw_times    = d.draw_times,
+    request_times = d.request_times
+FROM (SELECT min(id) AS id, sum(tokens) AS tokens, sum(draw_times) AS draw_times, sum(request_times) AS request_times
+      FROM adi_user_day_cost
+      GROUP BY user_id, day, is_free
+      HAVING count(*) > 1) d
+WHERE t.id = d.id;
+DELETE
+FROM adi_user_day_cost t
+    USING adi_user_day_cost k
+WHERE t.user_id = k.user_id
+  AND t.day = k.day
+  AND t.is_free = k.is_free
+  AND t.id > k.id;
+CREATE UNIQUE INDEX udx_user_day_cost_user_day_free ON adi_user_day_cost (user_id, day, is_free);
+
 CREATE TRIGGER trigger_user_day_cost_update_time
     BEFORE UPDATE
     ON adi_user_day_cost
@@ -551,6 +571,8 @@ create table adi_knowledge_base
     retrieve_min_score     numeric(2, 1) default 0.6               not null,
     query_llm_temperature  numeric(2, 1) default 0.7               not null,
     query_system_message   varchar(1000) default ''                not null,
+    answer_cache_enable    boolean       default false             not null,
+    answer_cache_min_score numeric(3, 2) default 0.95              not null,
     owner_id               bigint        default 0                 not null,
     owner_uuid             varchar(32)   default ''                not null,
     owner_name             varchar(45)   default ''                not null,
@@ -576,6 +598,8 @@ comment on column adi_knowledge_base.retrieve_max_results is '设置召回向量
 comment on column adi_knowledge_base.retrieve_min_score is '设置向量搜索时命中所需的最低分数,为0表示使用默认 | Set the minimum score required for a hit in vector search, 0 means using the default';
 comment on column adi_knowledge_base.query_llm_temperature is '用户查询时指定LLM响应时的创造性/随机性 | LLM response creativity/randomness specified during user query';
 COMMENT ON COLUMN adi_knowledge_base.query_system_message IS '提供给LLM的系统信息 | System message for LLM';
+comment on column adi_knowledge_base.answer_cache_enable is '是否启用语义答案缓存,启用后与历史问题足够相似的提问直接返回历史答案 | Enable semantic answer cache, questions similar enough to a previous one are answered with the cached answer';
+comment on column adi_knowledge_base.answer_cache_min_score is '语义答案缓存命中所需的最低相似度 | Minimum similarity required for a semantic answer cache hit';
 comment on column adi_knowledge_base.star_count is '点赞数 | Number of Likes';
 comment on column adi_knowledge_base.item_count is '知识点数量 | Number of Knowledge Items';
 comment on column adi_knowledge_base.embedding_count is '向量数 | Number of Embeddings';
@@ -721,6 +745,7 @@ create table adi_knowledge_base_graph_segment
     kb_uuid      varchar(32) default ''                not null,
     kb_item_uuid varchar(32) default ''                not null,
     remark       text        default ''                not null,
+    segment_hash varchar(64) default ''                not null,
     user_id      bigint      default 0                 not null,
     create_time  timestamp   default CURRENT_TIMESTAMP not null,
     update_time  timestamp   default CURRENT_TIMESTAMP not null,
@@ -732,6 +757,7 @@ comment on column adi_knowledge_base_graph_segment.uuid is '唯一标识 | Uniqu
 comment on column adi_knowledge_base_graph_segment.kb_uuid is '所属知识库uuid |adi_knowledge_base UUID';
 comment on column adi_knowledge_base_graph_segment.kb_item_uuid is '所属知识点uuid | adi_knowledge_base_item UUID';
 comment on column adi_knowledge_base_graph_segment.remark is '内容 | Content';
+comment on column adi_knowledge_base_graph_segment.segment_hash is '分段指纹,抽取成功后记录,内容未变时重新索引可跳过抽取 | Segment fingerprint, recorded after a successful extraction so that unchanged segments are skipped on re-index';
 comment on column adi_knowledge_base_graph_segment.user_id is '所属用户 | adi_user ID';
 comment on column adi_knowledge_base_graph_segment.create_time is '创建时间 | Creation Time';
 comment on column adi_knowledge_base_graph_segment.update_time is '更新时间 | Update Time';